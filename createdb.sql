@@ -30,6 +30,25 @@ CREATE TABLE events
     args  TEXT                NOT NULL DEFAULT '[]'
 );
 
+CREATE TABLE eventResult
+(
+    rid   INTEGER PRIMARY KEY,
+    label TEXT
+);
+
+-- Times are stored as 'YYYY-MM-DD HH:MM:SS.SSS' strings. eid is NULL for manual events, and neither eid nor sid are foreign keys so that history outlives the rows it refers to.
+CREATE TABLE event_history
+(
+    hid       INTEGER PRIMARY KEY NOT NULL,
+    eid       INTEGER,
+    sid       INTEGER             NOT NULL,
+    etype     INTEGER             NOT NULL REFERENCES eventType (etid),
+    scheduled TEXT                NOT NULL,
+    actual    TEXT                NOT NULL,
+    duration  INTEGER             NOT NULL,
+    result    INTEGER             NOT NULL REFERENCES eventResult (rid)
+);
+
 -- Event Type
 
 INSERT INTO eventType
@@ -47,6 +66,29 @@ VALUES (3, 'STOP');
 INSERT INTO eventType
 VALUES (4, 'WARN');
 
+INSERT INTO eventType
+VALUES (5, 'STOP_COUNTDOWN');
+
+-- Indexes. These must match the ones created by the migrations in SchemaMigrator.
+
+CREATE INDEX idx_events_sid_time ON events (sid, time, etype, args);
+CREATE INDEX idx_events_time ON events (time, sid, etype, args);
+
+CREATE INDEX idx_event_history_sid_actual ON event_history (sid, actual);
+CREATE INDEX idx_event_history_sid_etype_result ON event_history (sid, etype, result, actual);
+CREATE INDEX idx_event_history_actual ON event_history (actual);
+
+-- Event Result
+
+INSERT INTO eventResult
+VALUES (0, 'SUCCESS');
+
+INSERT INTO eventResult
+VALUES (1, 'SKIPPED');
+
+INSERT INTO eventResult
+VALUES (2, 'FAILED');
+
 -- Servers
 
 INSERT INTO servers
@@ -151,4 +193,8 @@ VALUES (8,
         0,
         '["/bin/bash", "-flag1", "-flag2"]');
 
+-- Schema version. This is the version of the last migration in SchemaMigrator, since this file already contains everything the migrations would add.
+
+PRAGMA user_version = 4;
+
 .exit
\ No newline at end of file
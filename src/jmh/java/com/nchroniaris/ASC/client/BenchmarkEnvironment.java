@@ -0,0 +1,196 @@
+package com.nchroniaris.ASC.client;
+
+import com.nchroniaris.ASC.client.core.Main;
+import com.nchroniaris.ASC.client.database.SchemaMigrator;
+import com.nchroniaris.ASC.client.model.EventFactory;
+import com.nchroniaris.ASC.util.model.GameServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sets up what the benchmarks need from the outside world: a properties file where ASCProperties looks for it, and SQLite databases of any size. Every benchmark fork is a new JVM, so this is done once per fork, before anything touches ASCProperties.
+ */
+public class BenchmarkEnvironment {
+
+    // The first line of every properties file written here, so that a real one is never overwritten by accident
+    private static final String MARKER = "# Generated by the ASC benchmarks, safe to delete";
+
+    // An executable that exists on every system the benchmarks run on. It stands in for screen and for the start files of the servers.
+    private static final String PATH_EXECUTABLE = "/bin/true";
+
+    // The event types that the generated databases cycle through, with valid arguments for each
+    private static final int[] EVENT_TYPES = {EventFactory.EVENT_START, EventFactory.EVENT_COMMAND, EventFactory.EVENT_WARN, EventFactory.EVENT_STOP};
+    private static final String[] EVENT_ARGS = {"[]", "[\"say Hello\"]", "[\"5\"]", "[]"};
+
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+
+    private static boolean installed = false;
+
+    private BenchmarkEnvironment() {
+    }
+
+    /**
+     * Writes a properties file (and an empty database for it) to the resources folder that ASCProperties reads from. The multiplexer points to an executable that does nothing, and the log goes to a temporary file. Calling this more than once has no additional effect.
+     *
+     * @throws IllegalStateException If there is a properties file there already that was not written by the benchmarks.
+     */
+    public static synchronized void install() throws IllegalStateException {
+
+        if (BenchmarkEnvironment.installed)
+            return;
+
+        try {
+
+            // This is the same folder that ASCProperties.findJarWorkingDir() finds
+            String workingDir = URLDecoder.decode(new File(Main.class.getProtectionDomain().getCodeSource().getLocation().getPath()).getParent(), "UTF-8");
+
+            File resources = new File(workingDir, "resources");
+            File properties = new File(resources, "ASC.properties");
+
+            if (properties.exists() && !Files.readAllLines(properties.toPath()).get(0).equals(BenchmarkEnvironment.MARKER))
+                throw new IllegalStateException(String.format("There is already a properties file at %s! Please move it out of the way before running the benchmarks.", properties.getPath()));
+
+            resources.mkdirs();
+
+            File database = BenchmarkEnvironment.createDatabase(0, 0);
+            File log = File.createTempFile("ASC-benchmark", ".log");
+            log.deleteOnExit();
+
+            // Absolute paths are used as they are by ASCProperties.resolvePath()
+            Files.write(properties.toPath(), Arrays.asList(
+                    BenchmarkEnvironment.MARKER,
+                    "path.screen=" + BenchmarkEnvironment.PATH_EXECUTABLE,
+                    "path.db=" + database.getAbsolutePath(),
+                    "path.log=" + log.getAbsolutePath(),
+                    "multiplexer=screen"
+            ), StandardCharsets.UTF_8);
+
+        } catch (IOException e) {
+
+            throw new UncheckedIOException(e);
+
+        }
+
+        BenchmarkEnvironment.installed = true;
+
+    }
+
+    /**
+     * Builds a list of game servers like the ones in a real database, with a start file that exists.
+     *
+     * @param count The number of servers.
+     * @return The servers, with sids starting at 1.
+     */
+    public static List<GameServer> createGameServers(int count) {
+
+        List<GameServer> servers = new ArrayList<>(count);
+
+        for (int sid = 1; sid <= count; sid++)
+            servers.add(new GameServer(sid, "Benchmark server " + sid, "game" + (sid % 10), "server" + sid, BenchmarkEnvironment.PATH_EXECUTABLE, "stop", "There are $TIME minute(s) left", 25565 + sid, true));
+
+        return servers;
+
+    }
+
+    /**
+     * Creates a database with the latest schema in a temporary file, filled with generated servers and events. The events of every server are spread evenly over the day, and cycle through the start, command, warn and stop event types.
+     *
+     * @param servers         The number of servers.
+     * @param eventsPerServer The number of events of each server.
+     * @return The database file. It is deleted when the JVM exits.
+     */
+    public static File createDatabase(int servers, int eventsPerServer) {
+
+        try {
+
+            File file = File.createTempFile("ASC-benchmark", ".sqlite3");
+            file.deleteOnExit();
+
+            try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath())) {
+
+                // This is the schema from before any migrations existed. The migrations bring it up to date, exactly like they would for a real database.
+                try (Statement statement = connection.createStatement()) {
+
+                    statement.executeUpdate("CREATE TABLE servers (sid INTEGER PRIMARY KEY NOT NULL, description TEXT NOT NULL, game TEXT NOT NULL, moniker TEXT NOT NULL, startfile TEXT NOT NULL, stopcommand TEXT NOT NULL, warncommand TEXT NOT NULL, port INTEGER NOT NULL, autostart INTEGER NOT NULL)");
+                    statement.executeUpdate("CREATE TABLE eventType (etid INTEGER PRIMARY KEY, label TEXT)");
+                    statement.executeUpdate("CREATE TABLE events (eid INTEGER PRIMARY KEY NOT NULL, sid INTEGER NOT NULL REFERENCES servers (sid), time TIME NOT NULL, etype INTEGER NOT NULL REFERENCES eventType (etid), args TEXT NOT NULL DEFAULT '[]')");
+                    statement.executeUpdate("INSERT INTO eventType VALUES (0, 'EXECUTE'), (1, 'START'), (2, 'COMMAND'), (3, 'STOP'), (4, 'WARN')");
+
+                }
+
+                SchemaMigrator.migrate(connection);
+
+                connection.setAutoCommit(false);
+
+                try (PreparedStatement insertServer = connection.prepareStatement("INSERT INTO servers VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+                     PreparedStatement insertEvent = connection.prepareStatement("INSERT INTO events VALUES (?, ?, ?, ?, ?)")) {
+
+                    int eid = 1;
+
+                    for (GameServer server : BenchmarkEnvironment.createGameServers(servers)) {
+
+                        insertServer.setInt(1, server.getSid());
+                        insertServer.setString(2, server.getDescription());
+                        insertServer.setString(3, server.getGame());
+                        insertServer.setString(4, server.getMoniker());
+                        insertServer.setString(5, server.getStartFile());
+                        insertServer.setString(6, server.getStopCommand());
+                        insertServer.setString(7, server.getWarnCommand());
+                        insertServer.setInt(8, server.getPort());
+                        insertServer.setBoolean(9, server.isAutostart());
+                        insertServer.addBatch();
+
+                        for (int i = 0; i < eventsPerServer; i++) {
+
+                            int type = (server.getSid() + i) % BenchmarkEnvironment.EVENT_TYPES.length;
+                            int secondOfDay = (int) ((long) i * BenchmarkEnvironment.SECONDS_PER_DAY / eventsPerServer);
+
+                            insertEvent.setInt(1, eid++);
+                            insertEvent.setInt(2, server.getSid());
+                            insertEvent.setString(3, String.format("%02d:%02d:%02d", secondOfDay / 3600, (secondOfDay / 60) % 60, secondOfDay % 60));
+                            insertEvent.setInt(4, BenchmarkEnvironment.EVENT_TYPES[type]);
+                            insertEvent.setString(5, BenchmarkEnvironment.EVENT_ARGS[type]);
+                            insertEvent.addBatch();
+
+                        }
+
+                        insertEvent.executeBatch();
+
+                    }
+
+                    insertServer.executeBatch();
+
+                }
+
+                connection.commit();
+
+            }
+
+            return file;
+
+        } catch (IOException e) {
+
+            throw new UncheckedIOException(e);
+
+        } catch (SQLException e) {
+
+            throw new IllegalStateException("The benchmark database could not be created!", e);
+
+        }
+
+    }
+
+}
@@ -0,0 +1,308 @@
+package com.nchroniaris.ASC.client;
+
+import com.nchroniaris.ASC.client.core.ASCClient;
+import com.nchroniaris.ASC.client.database.ASCRepository;
+import com.nchroniaris.ASC.client.model.EventDescriptor;
+import com.nchroniaris.ASC.client.model.EventFactory;
+import com.nchroniaris.ASC.client.multiplexer.InstrumentedMultiplexer;
+import com.nchroniaris.ASC.util.model.GameServer;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Measures the whole path from the instant an event is scheduled for, to its command reaching the session. A real ASCClient (in headless mode) runs a generated schedule through an InstrumentedMultiplexer, which records when every call finishes. Every event carries its eid in its command (or in the arguments of the session it starts), so the calls can be matched back to the events they came from.
+ * <p>
+ * Every server gets M events, and the i-th event of every server is scheduled before the (i+1)-th event of any server, spread evenly over a window that starts a few seconds after launch. The first event of every server starts its session, and the rest alternate between sending a command and sending a warning. Since events are scheduled to the second, several events usually share the same second, which is what happens on a real schedule too (every server restarting at 04:00, for example).
+ * <p>
+ * Run it with `gradlew latencyHarness --args='--servers 100 --events 10 --window 30 --latency 5 --jitter 5 --failures 0.01'`.
+ */
+public class FireLatencyHarness {
+
+    private static final String USAGE = "Usage: FireLatencyHarness [--servers N] [--events M] [--window SECONDS] [--latency MILLIS] [--jitter MILLIS] [--failures RATE] [--seed SEED]";
+
+    // How long after launch the first event is, so that the client has time to load the schedule
+    private static final int LEAD_SECONDS = 3;
+
+    // How long to wait for the last calls after the last event is due (plus whatever the artificial latency adds up to)
+    private static final long GRACE_MILLIS = 10_000;
+
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+
+    private static final Pattern PATTERN_TAG = Pattern.compile("#(\\d+)");
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private int servers = 100;
+    private int events = 10;
+    private int windowSeconds = 30;
+    private long latencyMillis = 0;
+    private long jitterMillis = 0;
+    private double failureRate = 0;
+    private long seed = 1;
+
+    public static void main(String[] args) {
+
+        FireLatencyHarness harness = new FireLatencyHarness();
+
+        try {
+
+            harness.parse(args);
+
+        } catch (IllegalArgumentException e) {
+
+            System.err.println(e.getMessage());
+            System.err.println(FireLatencyHarness.USAGE);
+            System.exit(1);
+
+        }
+
+        harness.run();
+
+        // The client's shutdown hook takes care of the rest
+        System.exit(0);
+
+    }
+
+    private void parse(String[] args) throws IllegalArgumentException {
+
+        if (args.length % 2 != 0)
+            throw new IllegalArgumentException("Every option needs a value!");
+
+        try {
+
+            for (int i = 0; i < args.length; i += 2) {
+
+                switch (args[i]) {
+
+                    case "--servers":
+                        this.servers = Integer.parseInt(args[i + 1]);
+                        break;
+
+                    case "--events":
+                        this.events = Integer.parseInt(args[i + 1]);
+                        break;
+
+                    case "--window":
+                        this.windowSeconds = Integer.parseInt(args[i + 1]);
+                        break;
+
+                    case "--latency":
+                        this.latencyMillis = Long.parseLong(args[i + 1]);
+                        break;
+
+                    case "--jitter":
+                        this.jitterMillis = Long.parseLong(args[i + 1]);
+                        break;
+
+                    case "--failures":
+                        this.failureRate = Double.parseDouble(args[i + 1]);
+                        break;
+
+                    case "--seed":
+                        this.seed = Long.parseLong(args[i + 1]);
+                        break;
+
+                    default:
+                        throw new IllegalArgumentException(String.format("Unknown option '%s'!", args[i]));
+
+                }
+
+            }
+
+        } catch (NumberFormatException e) {
+
+            throw new IllegalArgumentException("Option values must be numbers! " + e.getMessage());
+
+        }
+
+        if (this.servers <= 0 || this.events <= 0)
+            throw new IllegalArgumentException("There must be at least one server and one event per server!");
+
+        if (this.windowSeconds <= 0 || this.windowSeconds >= FireLatencyHarness.SECONDS_PER_DAY - FireLatencyHarness.LEAD_SECONDS - 1)
+            throw new IllegalArgumentException("The window must be positive and shorter than a day!");
+
+    }
+
+    private void run() {
+
+        BenchmarkEnvironment.install();
+
+        List<GameServer> serverList = BenchmarkEnvironment.createGameServers(this.servers);
+        Map<GameServer, List<EventDescriptor>> eventsByServer = new HashMap<>();
+
+        // The scheduled instant of every event, indexed by eid, in nanoseconds since the epoch
+        long[] scheduledNanos = new long[this.servers * this.events + 1];
+
+        LocalTime now = LocalTime.now();
+        LocalDate today = LocalDate.now();
+        int firstSecond = now.toSecondOfDay() + FireLatencyHarness.LEAD_SECONDS;
+        long totalEvents = (long) this.servers * this.events;
+
+        for (GameServer server : serverList)
+            eventsByServer.put(server, new ArrayList<>(this.events));
+
+        for (int i = 0; i < this.events; i++) {
+
+            for (int s = 0; s < this.servers; s++) {
+
+                GameServer server = serverList.get(s);
+                int eid = i * this.servers + s + 1;
+                long offset = (eid - 1) * this.windowSeconds / totalEvents;
+                int secondOfDay = (int) ((firstSecond + offset) % FireLatencyHarness.SECONDS_PER_DAY);
+
+                // The eid goes in the command (or the arguments of the session), where InstrumentedMultiplexer records it. The warn command of the generated servers is "There are $TIME minute(s) left".
+                String tag = "#" + eid;
+                EventDescriptor descriptor;
+
+                if (i == 0)
+                    descriptor = new EventDescriptor(eid, EventFactory.EVENT_EXECUTE, server, secondOfDay, new String[]{server.getStartFile(), tag});
+                else if (i % 2 == 1)
+                    descriptor = new EventDescriptor(eid, EventFactory.EVENT_COMMAND, server, secondOfDay, new String[]{"say " + tag});
+                else
+                    descriptor = new EventDescriptor(eid, EventFactory.EVENT_WARN, server, secondOfDay, new String[]{tag});
+
+                eventsByServer.get(server).add(descriptor);
+
+                // Events past midnight run tomorrow
+                LocalDate date = (firstSecond + offset >= FireLatencyHarness.SECONDS_PER_DAY) ? today.plusDays(1) : today;
+                scheduledNanos[eid] = date.atTime(LocalTime.ofSecondOfDay(secondOfDay)).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() * 1_000_000L;
+
+            }
+
+        }
+
+        ASCRepository repository = new ASCRepository() {
+            @Override
+            public List<GameServer> getAllGameServers() {
+
+                return serverList;
+
+            }
+
+            @Override
+            public List<EventDescriptor> getEventDescriptors(GameServer server) {
+
+                return eventsByServer.get(server);
+
+            }
+        };
+
+        InstrumentedMultiplexer multiplexer = new InstrumentedMultiplexer(this.latencyMillis, this.jitterMillis, this.failureRate, this.seed);
+
+        ASCClient.ClientOptions options = new ASCClient.ClientOptions();
+        options.headless = true;
+        options.serverless = true;
+
+        ASCClient client = new ASCClient(options, repository, multiplexer);
+        Thread clientThread = new Thread(client::start, "ASC-harness-client");
+
+        System.out.printf("Running %d servers x %d events = %d events over %d seconds, starting in %d seconds (latency %d ms + up to %d ms, failure rate %.4f)...%n",
+                this.servers, this.events, totalEvents, this.windowSeconds, FireLatencyHarness.LEAD_SECONDS, this.latencyMillis, this.jitterMillis, this.failureRate);
+
+        clientThread.start();
+
+        // Wait for every event to reach the multiplexer, or until it is clear that some never will
+        long deadline = System.currentTimeMillis() + (FireLatencyHarness.LEAD_SECONDS + this.windowSeconds) * 1000L + FireLatencyHarness.GRACE_MILLIS + totalEvents * (this.latencyMillis + this.jitterMillis);
+
+        while (multiplexer.getCallCount() < totalEvents && System.currentTimeMillis() < deadline) {
+
+            try {
+
+                Thread.sleep(100);
+
+            } catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+                break;
+
+            }
+
+        }
+
+        client.shutdown();
+
+        try {
+
+            clientThread.join();
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+
+        }
+
+        this.report(multiplexer.getCalls(), scheduledNanos, totalEvents);
+
+    }
+
+    private void report(List<InstrumentedMultiplexer.Call> calls, long[] scheduledNanos, long totalEvents) {
+
+        long[] latencies = new long[calls.size()];
+        int count = 0;
+        int failed = 0;
+        int untagged = 0;
+
+        long firstScheduled = Long.MAX_VALUE;
+        long lastCompleted = Long.MIN_VALUE;
+
+        for (InstrumentedMultiplexer.Call call : calls) {
+
+            Matcher matcher = FireLatencyHarness.PATTERN_TAG.matcher(call.getPayload());
+
+            if (!matcher.find()) {
+
+                untagged++;
+                continue;
+
+            }
+
+            int eid = Integer.parseInt(matcher.group(1));
+
+            if (call.isFailed())
+                failed++;
+
+            latencies[count++] = call.getCompletedAtNanos() - scheduledNanos[eid];
+            firstScheduled = Math.min(firstScheduled, scheduledNanos[eid]);
+            lastCompleted = Math.max(lastCompleted, call.getCompletedAtNanos());
+
+        }
+
+        latencies = Arrays.copyOf(latencies, count);
+        Arrays.sort(latencies);
+
+        System.out.println();
+        System.out.printf("Calls:      %d of %d events (%d failed, %d missing, %d unrecognized)%n", count, totalEvents, failed, totalEvents - count, untagged);
+
+        if (count == 0)
+            return;
+
+        System.out.println("Latency from the scheduled instant to the call finishing:");
+
+        for (double percentile : FireLatencyHarness.PERCENTILES)
+            System.out.printf("  p%-8s %10.3f ms%n", FireLatencyHarness.formatPercentile(percentile), latencies[(int) Math.min(Math.ceil(percentile / 100 * count) - 1, count - 1)] / 1e6);
+
+        System.out.printf("  %-9s %10.3f ms%n", "max", latencies[count - 1] / 1e6);
+        System.out.printf("  %-9s %10.3f ms%n", "mean", Arrays.stream(latencies).average().orElse(0) / 1e6);
+
+        // Throughput is over the time the events were actually being run, from the first one being due to the last call finishing
+        double seconds = Math.max(lastCompleted - firstScheduled, 1) / 1e9;
+        System.out.printf("Throughput: %.1f calls/s over %.3f s%n", count / seconds, seconds);
+
+    }
+
+    private static String formatPercentile(double percentile) {
+
+        return (percentile == Math.rint(percentile)) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.nchroniaris.ASC.client;
+
+import com.nchroniaris.ASC.client.model.CommandSendBenchmark;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collection;
+
+/**
+ * Runs CommandSendBenchmark with the gc profiler, and fails if sending a command event that is already built allocates anything. This is a regression check for the part of the fire path that runs after the event is built (with the history writer closed and the log level at WARN, see CommandSendBenchmark), rather than a benchmark, so it only reports the allocation and exits with a non-zero code if it is not zero. It says nothing about building the event, history or logging, which CommandFireBenchmark measures.
+ * <p>
+ * The allocation rate is an average over millions of sends, and JMH itself allocates a little every iteration, so it is never exactly 0. Anything under a byte per send is taken to be 0, since the smallest object is 16 bytes: a single allocation every few sends would be well over the limit.
+ * <p>
+ * Run it with `gradlew sendAllocationCheck`.
+ */
+public class SendAllocationCheck {
+
+    // The name of the secondary result that the gc profiler reports the allocation per operation in
+    private static final String RESULT_ALLOCATION = "\u00b7gc.alloc.rate.norm";
+
+    private static final double LIMIT_BYTES = 1.0;
+
+    public static void main(String[] args) {
+
+        Options options = new OptionsBuilder()
+                .include(CommandSendBenchmark.class.getName())
+                .addProfiler(GCProfiler.class)
+                .forks(1)
+                .warmupIterations(3)
+                .measurementIterations(5)
+                .build();
+
+        Collection<RunResult> results = null;
+
+        try {
+
+            results = new Runner(options).run();
+
+        } catch (RunnerException e) {
+
+            System.err.println("[ERROR] The benchmark could not be run!");
+            e.printStackTrace();
+            System.exit(1);
+
+        }
+
+        boolean failed = results.isEmpty();
+
+        for (RunResult result : results) {
+
+            Result allocation = result.getSecondaryResults().get(SendAllocationCheck.RESULT_ALLOCATION);
+            String eventType = result.getParams().getParam("eventType");
+
+            if (allocation == null) {
+
+                System.err.printf("[ERROR] The gc profiler did not report the allocation of event type %s!%n", eventType);
+                failed = true;
+
+            } else if (allocation.getScore() >= SendAllocationCheck.LIMIT_BYTES) {
+
+                System.err.printf("[ERROR] Sending event type %s allocates %.3f B/op, it should be 0!%n", eventType, allocation.getScore());
+                failed = true;
+
+            } else {
+
+                System.out.printf("Sending event type %s allocates %.3f B/op.%n", eventType, allocation.getScore());
+
+            }
+
+        }
+
+        System.exit(failed ? 1 : 0);
+
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.nchroniaris.ASC.client.database;
+
+import com.nchroniaris.ASC.client.BenchmarkEnvironment;
+import com.nchroniaris.ASC.client.model.Event;
+import com.nchroniaris.ASC.client.model.EventDescriptor;
+import com.nchroniaris.ASC.util.model.GameServer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long it takes to read a whole schedule out of a SQLite database, which is what the client does on startup and at every reload. The databases are generated with the given number of servers and events per server.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class SQLiteRepositoryBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int servers;
+
+    @Param({"10", "100"})
+    public int eventsPerServer;
+
+    private SQLiteRepository repository;
+    private List<GameServer> serverList;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        // Connecting runs the migrations, which log through ASCProperties, and building events needs its multiplexer
+        BenchmarkEnvironment.install();
+
+        File database = BenchmarkEnvironment.createDatabase(this.servers, this.eventsPerServer);
+
+        this.repository = new SQLiteRepository(database.getAbsolutePath());
+        this.serverList = this.repository.getAllGameServers();
+
+    }
+
+    @Benchmark
+    public List<GameServer> getAllGameServers() {
+
+        return this.repository.getAllGameServers();
+
+    }
+
+    /**
+     * Only reads the events, without building them. This is what loading a schedule does.
+     */
+    @Benchmark
+    public void getEventDescriptors(Blackhole blackhole) {
+
+        for (GameServer server : this.serverList) {
+
+            List<EventDescriptor> descriptors = this.repository.getEventDescriptors(server);
+            blackhole.consume(descriptors);
+
+        }
+
+    }
+
+    /**
+     * Reads the events and builds every one of them.
+     */
+    @Benchmark
+    public void getAllEvents(Blackhole blackhole) {
+
+        for (GameServer server : this.serverList) {
+
+            List<Event> events = this.repository.getAllEvents(server);
+            blackhole.consume(events);
+
+        }
+
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.nchroniaris.ASC.client.model;
+
+import com.nchroniaris.ASC.client.BenchmarkEnvironment;
+import com.nchroniaris.ASC.client.core.ASCProperties;
+import com.nchroniaris.ASC.client.multiplexer.WarmSessionMultiplexer;
+import com.nchroniaris.ASC.client.schedule.ScheduleTable;
+import com.nchroniaris.ASC.util.model.GameServer;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a whole fire of a command event (a generic command, a stop or a warning) whose session is running, the way the scheduler does it: the descriptor is taken from a schedule table row, the event is built from it (with the command template that the table compiled while loading), and it is run. The multiplexer does not start any processes, but everything else is as configured: the history writer is open and the log level is the default one.
+ * <p>
+ * The gc profiler counts what every thread allocates, so the allocation reported here includes the history writer turning records into rows and the log writer formatting lines, on top of the descriptor and the event themselves. This is the number to watch for the cost of an event. It is not expected to be 0, see CommandSendBenchmark for the part of the fire that is. At millions of fires a second the history writer cannot keep up, so most records end up counted as dropped, which makes its share of the allocation lower than it would be with a real schedule.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class CommandFireBenchmark {
+
+    // EVENT_COMMAND, EVENT_STOP and EVENT_WARN
+    @Param({"2", "3", "4"})
+    public int eventType;
+
+    private ScheduleTable table;
+    private WarmSessionMultiplexer multiplexer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        // Loaded here so that it is not part of the first measurement. Nothing is changed in it.
+        BenchmarkEnvironment.install();
+        ASCProperties.getInstance();
+
+        GameServer server = BenchmarkEnvironment.createGameServers(1).get(0);
+        this.multiplexer = new WarmSessionMultiplexer(server.getSessionName());
+
+        String[] args;
+
+        switch (this.eventType) {
+
+            case EventFactory.EVENT_COMMAND:
+                args = new String[]{"say Hello"};
+                break;
+
+            case EventFactory.EVENT_WARN:
+                args = new String[]{"5"};
+                break;
+
+            default:
+                args = new String[0];
+
+        }
+
+        ScheduleTable.Builder builder = new ScheduleTable.Builder();
+        builder.add(1, this.eventType, server, LocalTime.now().toSecondOfDay(), args);
+
+        this.table = builder.build();
+
+    }
+
+    @Benchmark
+    public void fire() {
+
+        this.table.describe(0).run(this.multiplexer);
+
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.nchroniaris.ASC.client.model;
+
+import com.nchroniaris.ASC.client.BenchmarkEnvironment;
+import com.nchroniaris.ASC.client.core.ASCProperties;
+import com.nchroniaris.ASC.client.multiplexer.WarmSessionMultiplexer;
+import com.nchroniaris.ASC.util.logger.LogLevel;
+import com.nchroniaris.ASC.util.model.GameServer;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures only the sending part of a fire of a command event (a generic command, a stop or a warning) whose session is running, through a multiplexer that does not start any processes. The event is built once, outside of the measurement, and the history writer and the logging above WARN are switched off for the whole fork. What is left (the checks on the way, the metrics and sending the command) must not allocate anything, and SendAllocationCheck fails if the gc profiler says otherwise.
+ * <p>
+ * This is not what a scheduled fire costs: building the descriptor and the event, writing the history and logging all allocate, on the firing thread or on the writer threads. See CommandFireBenchmark for that.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class CommandSendBenchmark {
+
+    // EVENT_COMMAND, EVENT_STOP and EVENT_WARN
+    @Param({"2", "3", "4"})
+    public int eventType;
+
+    private Event event;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        BenchmarkEnvironment.install();
+
+        ASCProperties properties = ASCProperties.getInstance();
+
+        // Both writers allocate on their own threads, which the gc profiler would count as part of the send. Closed, the history writer only counts records as dropped.
+        properties.HISTORY.close();
+        properties.LOGGER.setLevel(LogLevel.WARN);
+
+        GameServer server = BenchmarkEnvironment.createGameServers(1).get(0);
+        WarmSessionMultiplexer multiplexer = new WarmSessionMultiplexer(server.getSessionName());
+
+        String[] args;
+
+        switch (this.eventType) {
+
+            case EventFactory.EVENT_COMMAND:
+                args = new String[]{"say Hello"};
+                break;
+
+            case EventFactory.EVENT_WARN:
+                args = new String[]{"5"};
+                break;
+
+            default:
+                args = new String[0];
+
+        }
+
+        this.event = EventFactory.buildEvent(multiplexer, 1, this.eventType, server, LocalTime.now(), args);
+
+    }
+
+    @Benchmark
+    public void send() {
+
+        this.event.run();
+
+    }
+
+}
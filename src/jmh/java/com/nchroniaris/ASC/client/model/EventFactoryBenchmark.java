@@ -0,0 +1,65 @@
+package com.nchroniaris.ASC.client.model;
+
+import com.nchroniaris.ASC.client.BenchmarkEnvironment;
+import com.nchroniaris.ASC.client.core.ASCProperties;
+import com.nchroniaris.ASC.util.model.GameServer;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building an event from its descriptor, which happens every time an event fires. The interesting number here is as much the allocation per event (from the gc profiler, see build.gradle) as the time, since this runs on the scheduler's only thread.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class EventFactoryBenchmark {
+
+    // EVENT_EXECUTE, EVENT_START, EVENT_COMMAND, EVENT_STOP and EVENT_WARN
+    @Param({"0", "1", "2", "3", "4"})
+    public int eventType;
+
+    private GameServer server;
+    private LocalTime time;
+    private String[] args;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        // Building an event gets the multiplexer from ASCProperties, which is loaded here so that it is not part of the first measurement
+        BenchmarkEnvironment.install();
+        ASCProperties.getInstance();
+
+        this.server = BenchmarkEnvironment.createGameServers(1).get(0);
+        this.time = LocalTime.of(12, 0);
+
+        switch (this.eventType) {
+
+            case EventFactory.EVENT_EXECUTE:
+                this.args = new String[]{this.server.getStartFile(), "--nogui"};
+                break;
+
+            case EventFactory.EVENT_COMMAND:
+                this.args = new String[]{"say Hello"};
+                break;
+
+            case EventFactory.EVENT_WARN:
+                this.args = new String[]{"5"};
+                break;
+
+            default:
+                this.args = new String[0];
+
+        }
+
+    }
+
+    @Benchmark
+    public Event buildEvent() {
+
+        return EventFactory.buildEvent(1, this.eventType, this.server, this.time, this.args);
+
+    }
+
+}
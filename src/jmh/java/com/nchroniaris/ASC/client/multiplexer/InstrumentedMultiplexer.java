@@ -0,0 +1,241 @@
+package com.nchroniaris.ASC.client.multiplexer;
+
+import com.nchroniaris.ASC.client.exception.SessionDoesNotExistException;
+import com.nchroniaris.ASC.client.exception.SessionExistsException;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A multiplexer that only exists in memory. It keeps track of which sessions exist like a real one would, and records exactly when every session was started and every command was sent. To make it behave more like a real multiplexer, every call can be made to take a while, and a fraction of the calls can be made to fail.
+ */
+public class InstrumentedMultiplexer extends TerminalMultiplexer {
+
+    /**
+     * The kinds of calls that are recorded.
+     */
+    public enum CallType {
+        START_SESSION,
+        SEND_COMMAND
+    }
+
+    /**
+     * A single call to startSession() or sendCommand().
+     */
+    public static final class Call {
+
+        private final CallType type;
+        private final String sessionName;
+        private final String payload;
+        private final long completedAtNanos;
+        private final boolean failed;
+
+        private Call(CallType type, String sessionName, String payload, long completedAtNanos, boolean failed) {
+
+            this.type = type;
+            this.sessionName = sessionName;
+            this.payload = payload;
+            this.completedAtNanos = completedAtNanos;
+            this.failed = failed;
+
+        }
+
+        public CallType getType() {
+            return type;
+        }
+
+        public String getSessionName() {
+            return sessionName;
+        }
+
+        /**
+         * @return The command that was sent, or the executable and its arguments (separated by spaces) for a started session.
+         */
+        public String getPayload() {
+            return payload;
+        }
+
+        /**
+         * @return When the call finished (after the artificial latency), in nanoseconds since the epoch. This is when the session would have received the command.
+         */
+        public long getCompletedAtNanos() {
+            return completedAtNanos;
+        }
+
+        /**
+         * @return Whether the call failed, either because it was made to or because the session was (or was not) there already.
+         */
+        public boolean isFailed() {
+            return failed;
+        }
+
+    }
+
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final double failureRate;
+
+    // Only used by the threads that run events, and java.util.Random is thread safe, so the failures and jitter are reproducible for a given seed as long as the events run in the same order
+    private final Random random;
+
+    private final Set<String> sessions;
+    private final ConcurrentLinkedQueue<Call> calls;
+
+    // The size of a ConcurrentLinkedQueue takes a walk through the whole queue to find out, so it is counted separately
+    private final AtomicInteger callCount;
+
+    /**
+     * Creates a multiplexer with no sessions.
+     *
+     * @param latencyMillis How long every call takes, at the least.
+     * @param jitterMillis  Up to how much longer every call can take, chosen at random.
+     * @param failureRate   The fraction (between 0 and 1) of calls that fail, as if the session was not there (or was there already).
+     * @param seed          The seed for the jitter and failures.
+     */
+    public InstrumentedMultiplexer(long latencyMillis, long jitterMillis, double failureRate, long seed) {
+
+        super();
+
+        if (latencyMillis < 0 || jitterMillis < 0)
+            throw new IllegalArgumentException("The latency and jitter cannot be negative!");
+
+        if (failureRate < 0 || failureRate > 1)
+            throw new IllegalArgumentException(String.format("The failure rate must be between 0 and 1! Got %f", failureRate));
+
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.failureRate = failureRate;
+        this.random = new Random(seed);
+
+        this.sessions = ConcurrentHashMap.newKeySet();
+        this.calls = new ConcurrentLinkedQueue<>();
+        this.callCount = new AtomicInteger();
+
+    }
+
+    private static long nowNanos() {
+
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000_000L + now.getNano();
+
+    }
+
+    /**
+     * Waits for the artificial latency of a call, and decides whether it fails.
+     *
+     * @return true if the call should fail.
+     */
+    private boolean simulateCall() {
+
+        long delay = this.latencyMillis;
+
+        if (this.jitterMillis > 0)
+            delay += (long) (this.random.nextDouble() * this.jitterMillis);
+
+        boolean fail = this.failureRate > 0 && this.random.nextDouble() < this.failureRate;
+
+        if (delay > 0) {
+
+            try {
+
+                Thread.sleep(delay);
+
+            } catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+
+            }
+
+        }
+
+        return fail;
+
+    }
+
+    private void record(Call call) {
+
+        this.calls.add(call);
+        this.callCount.incrementAndGet();
+
+    }
+
+    @Override
+    public void startSession(String sessionName, String executable, String[] additionalArgs) throws SessionExistsException {
+
+        if (additionalArgs == null)
+            throw new IllegalArgumentException("The additionalArgs argument cannot be null!");
+
+        boolean fail = this.simulateCall() || !this.sessions.add(sessionName);
+        String payload = (additionalArgs.length == 0) ? executable : executable + " " + String.join(" ", additionalArgs);
+
+        this.record(new Call(CallType.START_SESSION, sessionName, payload, InstrumentedMultiplexer.nowNanos(), fail));
+
+        if (fail)
+            throw new SessionExistsException(String.format("Session '%s' could not be started!", sessionName));
+
+    }
+
+    @Override
+    public void startSession(String sessionName, String executable) throws SessionExistsException {
+
+        this.startSession(sessionName, executable, new String[0]);
+
+    }
+
+    @Override
+    public void sendCommand(String sessionName, String command) throws SessionDoesNotExistException {
+
+        boolean fail = this.simulateCall() || !this.sessions.contains(sessionName);
+
+        this.record(new Call(CallType.SEND_COMMAND, sessionName, command, InstrumentedMultiplexer.nowNanos(), fail));
+
+        if (fail)
+            throw new SessionDoesNotExistException(String.format("The command could not be sent to session '%s'!", sessionName));
+
+    }
+
+    @Override
+    public boolean sessionExists(String sessionName) {
+
+        return this.sessions.contains(sessionName);
+
+    }
+
+    @Override
+    public Set<String> listSessions() {
+
+        return Collections.unmodifiableSet(new HashSet<>(this.sessions));
+
+    }
+
+    /**
+     * Gets the number of calls so far, including the ones that failed.
+     *
+     * @return The number of calls.
+     */
+    public int getCallCount() {
+
+        return this.callCount.get();
+
+    }
+
+    /**
+     * Gets every call so far.
+     *
+     * @return The calls, in the order they finished.
+     */
+    public List<Call> getCalls() {
+
+        return new ArrayList<>(this.calls);
+
+    }
+
+}
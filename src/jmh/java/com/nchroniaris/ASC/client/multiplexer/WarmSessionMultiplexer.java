@@ -0,0 +1,92 @@
+package com.nchroniaris.ASC.client.multiplexer;
+
+import com.nchroniaris.ASC.client.exception.SessionDoesNotExistException;
+import com.nchroniaris.ASC.client.exception.SessionExistsException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A multiplexer whose sessions are all running already, and that only counts the commands it is sent. Unlike InstrumentedMultiplexer, it does not record anything per call, so it adds nothing of its own to the allocation of an event that goes through it.
+ */
+public class WarmSessionMultiplexer extends TerminalMultiplexer {
+
+    private final Set<String> sessions;
+    private final AtomicLong commandsSent;
+
+    /**
+     * Creates a multiplexer with a fixed set of sessions.
+     *
+     * @param sessionNames The names of the sessions that are running. No other session can be started.
+     */
+    public WarmSessionMultiplexer(String... sessionNames) {
+
+        super();
+
+        this.sessions = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(sessionNames)));
+        this.commandsSent = new AtomicLong(0);
+
+    }
+
+    @Override
+    public void startSession(String sessionName, String executable, String[] additionalArgs) throws SessionExistsException {
+
+        throw new SessionExistsException(String.format("Every session of this multiplexer is running already! Got '%s'", sessionName));
+
+    }
+
+    @Override
+    public void startSession(String sessionName, String executable) throws SessionExistsException {
+
+        this.startSession(sessionName, executable, new String[0]);
+
+    }
+
+    @Override
+    public void sendCommand(String sessionName, String command) throws SessionDoesNotExistException {
+
+        if (!this.trySendCommand(sessionName, command))
+            throw new SessionDoesNotExistException(String.format("Session '%s' is not active!", sessionName));
+
+    }
+
+    @Override
+    public boolean trySendCommand(String sessionName, String command) {
+
+        if (!this.sessions.contains(sessionName))
+            return false;
+
+        this.commandsSent.incrementAndGet();
+        return true;
+
+    }
+
+    @Override
+    public boolean sessionExists(String sessionName) {
+
+        return this.sessions.contains(sessionName);
+
+    }
+
+    @Override
+    public Set<String> listSessions() {
+
+        return this.sessions;
+
+    }
+
+    /**
+     * Gets the number of commands that were sent to a running session.
+     *
+     * @return The number of commands.
+     */
+    public long getCommandsSent() {
+
+        return this.commandsSent.get();
+
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.nchroniaris.ASC.client.schedule;
+
+import com.nchroniaris.ASC.client.BenchmarkEnvironment;
+import com.nchroniaris.ASC.client.model.EventDescriptor;
+import com.nchroniaris.ASC.client.model.EventFactory;
+import com.nchroniaris.ASC.util.model.GameServer;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long it takes to hand a day's worth of events to the scheduler, with every event scheduled on its own (scheduleEvents()) and with the events in a table that is armed a window at a time (scheduleTable()), as well as the delay calculation that every event goes through.
+ * <p>
+ * Every invocation gets a new scheduler, which is thrown away (with all its events) afterwards. None of the events ever fire: they are all at least an hour away from the time the benchmark starts.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class EventSchedulerBenchmark {
+
+    private static final int SERVERS = 100;
+
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+    private static final int SECONDS_PER_HOUR = 60 * 60;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int events;
+
+    private List<EventDescriptor> eventList;
+    private LocalTime[] times;
+    private LocalTime now;
+
+    private EventScheduler scheduler;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+
+        List<GameServer> servers = BenchmarkEnvironment.createGameServers(EventSchedulerBenchmark.SERVERS);
+
+        this.now = LocalTime.now();
+        this.eventList = new ArrayList<>(this.events);
+        this.times = new LocalTime[this.events];
+
+        // The events are spread over the 22 hours that start an hour from now, so that none of them comes close to firing during the benchmark
+        int start = this.now.toSecondOfDay() + EventSchedulerBenchmark.SECONDS_PER_HOUR;
+        int span = 22 * EventSchedulerBenchmark.SECONDS_PER_HOUR;
+
+        for (int i = 0; i < this.events; i++) {
+
+            int secondOfDay = (int) ((start + (long) i * span / this.events) % EventSchedulerBenchmark.SECONDS_PER_DAY);
+
+            this.eventList.add(new EventDescriptor(i + 1, EventFactory.EVENT_COMMAND, servers.get(i % servers.size()), secondOfDay, new String[]{"say Hello"}));
+            this.times[i] = LocalTime.ofSecondOfDay(secondOfDay);
+
+        }
+
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+
+        this.scheduler = new EventScheduler();
+
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDownInvocation() {
+
+        this.scheduler.shutdownNow();
+
+    }
+
+    @Benchmark
+    public List<Future<?>> scheduleEvents() {
+
+        return this.scheduler.scheduleEvents(this.eventList);
+
+    }
+
+    @Benchmark
+    public Future<?> scheduleTable() {
+
+        // Building the table is part of loading a schedule, so it is measured too. The first window is armed on the scheduler's own thread, outside of the measurement.
+        return this.scheduler.scheduleTable(new ScheduleTable(this.eventList));
+
+    }
+
+    @Benchmark
+    public long calculateDelay() {
+
+        long total = 0;
+
+        for (LocalTime time : this.times)
+            total += this.scheduler.calculateDelay(time, this.now);
+
+        return total;
+
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.nchroniaris.ASC.util.logger;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many lines the logger can take when several threads log at the same time, which is what happens when events for different servers fire together while the console and the control server are busy. Every thread logs the same kind of line an event does when it fires. The logger is shared by all the threads, and writes to a temporary file.
+ * <p>
+ * JMH only lets the number of threads be set per benchmark, so there is one benchmark for each thread count.
+ * <p>
+ * firePath() logs everything that an event does when it fires, at INFO and at TRACE, where the extra trace line is formatted and written too. Run it with -prof gc to compare what each level allocates per fire.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class ASCLoggerBenchmark {
+
+    // Whether the file is written on a background thread (log.async in the properties file)
+    @Param({"false", "true"})
+    public boolean async;
+
+    private File logFile;
+    private ASCLogger logger;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        try {
+
+            this.logFile = File.createTempFile("ASCLoggerBenchmark", ".log");
+
+        } catch (IOException e) {
+
+            throw new UncheckedIOException(e);
+
+        }
+
+        this.logger = new ASCLogger(this.logFile.getPath(), null, this.async);
+
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+
+        this.logger.close();
+        this.logFile.delete();
+
+    }
+
+    private void logLine() {
+
+        this.logger.logInfo("Event [%s] - Command sent to session '%s'.", "Run Command", "game1_server1");
+
+    }
+
+    /**
+     * The level that firePath() logs at. This is a state of its own, so that the thread count benchmarks are not run at every level.
+     */
+    @State(Scope.Benchmark)
+    public static class FireLevel {
+
+        @Param({"INFO", "TRACE"})
+        public LogLevel level;
+
+        @Setup(Level.Trial)
+        public void setUp(ASCLoggerBenchmark benchmark) {
+
+            benchmark.logger.setLevel(this.level);
+
+        }
+
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void firePath(FireLevel fireLevel) {
+
+        this.logger.logTrace("Event [%s] - Firing for session '%s'.", "Run Command", "game1_server1");
+        this.logger.journalEvent(EventJournal.LEVEL_INFO, 1, 2, 0, "%s - Session '%s'", "Run Command", "game1_server1");
+        this.logLine();
+
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void threads01() {
+
+        this.logLine();
+
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void threads02() {
+
+        this.logLine();
+
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void threads04() {
+
+        this.logLine();
+
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void threads08() {
+
+        this.logLine();
+
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void threads16() {
+
+        this.logLine();
+
+    }
+
+}
@@ -69,7 +69,7 @@ public class SynchronizedFutureList {
 
             // If there were any cancelled events, log that.
             if (numCancelled > 0)
-                ASCProperties.getInstance().LOGGER.logWarning(numCancelled + " events were cancelled!");
+                ASCProperties.getInstance().LOGGER.logWarning("%d events were cancelled!", numCancelled);
 
         } finally {
 
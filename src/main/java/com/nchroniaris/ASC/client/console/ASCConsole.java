@@ -1,14 +1,52 @@
 package com.nchroniaris.ASC.client.console;
 
+import com.nchroniaris.ASC.client.model.EventFactory;
+import com.nchroniaris.ASC.client.model.ServerIndex;
+import com.nchroniaris.ASC.client.schedule.ScheduleTable;
+import com.nchroniaris.ASC.util.model.GameServer;
 import com.nchroniaris.ASC.util.terminal.ASCTerminal;
 import org.jline.reader.EndOfFileException;
 import org.jline.reader.UserInterruptException;
 
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
 /**
  * This class is the main driver code for the console part of the program. Specifically, it uses the an ASCTerminal instance to read/write to the screen and provide interaction between the user and the database/program via some simple commands. It implements Runnable since it's meant to be run in a separate thread. As such, the run() call is blocking as it will run in an infinite I/O loop unless an exit command is input or the calling thread gets a kill signal.
  */
 public class ASCConsole implements Runnable {
 
+    private static final String HELP_TEXT = "Commands:"
+            + "\n\thelp\t\t\tShows this help text"
+            + "\n\tlist [prefix]\t\tLists the servers (whose session name starts with the prefix) and whether they are running"
+            + "\n\tnext [n]\t\tShows the next n (default 10) scheduled events"
+            + "\n\tstart <server>\t\tStarts a server"
+            + "\n\tstop <server>\t\tStops a server"
+            + "\n\twarn <server> <minutes>\tWarns the players of a server that it will stop in some minutes"
+            + "\n\tcmd <server> <command>\tSends a command to a server"
+            + "\n\ttop\t\t\tShows a live view of the servers and the schedule"
+            + "\n\texit\t\t\tExits the program"
+            + "\n\nA <server> is its sid, its session name, or the start of its session name. Press tab to complete session names.";
+
+    // Every command, in the order they are suggested by tab completion
+    private static final List<String> COMMANDS = Arrays.asList("cmd", "exit", "help", "list", "next", "start", "stop", "top", "warn");
+
+    // The commands whose first argument is a server, which is what tab completion suggests after them
+    private static final List<String> SERVER_COMMANDS = Arrays.asList("cmd", "list", "start", "stop", "warn");
+
+    private static final int DEFAULT_NEXT_COUNT = 10;
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    // Tab completion never suggests more than this many session names at once
+    private static final int MAX_COMPLETIONS = 200;
+
     private final ASCTerminal terminal;
     private ConsoleCallback callback;
 
@@ -30,24 +68,30 @@ public class ASCConsole implements Runnable {
 
         this.callback = callback;
 
+        this.terminal.setCompleter(this::complete);
+
     }
 
     @Override
     public void run() {
 
-        // Temporary code for testing
         while (true) {
 
             try {
 
-                String command = this.terminal.readLine().trim().toLowerCase();
+                String line = this.terminal.readLine().trim();
+
+                if (line.isEmpty())
+                    continue;
+
+                // Split into the command, the server, and everything else. Only the command is case insensitive, since the rest can be a command for the game server.
+                String[] words = line.split("\\s+", 3);
+                String command = words[0].toLowerCase(Locale.ROOT);
 
                 if (command.equals("exit"))
                     break;
-                else if (command.equals("help"))
-                    terminal.printDefault("Commands:\n\thelp\t\tShows this help text\n\texit\t\tExits the program");
-                else
-                    terminal.printSuccess("echo: " + command);
+
+                this.execute(command, words);
 
             } catch (UserInterruptException e) {
 
@@ -66,4 +110,200 @@ public class ASCConsole implements Runnable {
 
     }
 
+    /**
+     * Runs a single command other than exit. Mistakes in the command (such as a server that does not exist) are shown to the user instead of being thrown.
+     *
+     * @param command The command, in lowercase.
+     * @param words   The words of the line: the command, then the server, then everything else in one piece.
+     */
+    private void execute(String command, String[] words) {
+
+        try {
+
+            switch (command) {
+
+                case "help":
+                    this.terminal.printDefault(ASCConsole.HELP_TEXT);
+                    break;
+
+                case "list":
+                    this.list((words.length > 1) ? words[1] : "");
+                    break;
+
+                case "next":
+                    this.next((words.length > 1) ? Integer.parseInt(words[1]) : ASCConsole.DEFAULT_NEXT_COUNT);
+                    break;
+
+                case "start":
+                    this.scheduleEvent(EventFactory.EVENT_START, words, "start <server>");
+                    break;
+
+                case "stop":
+                    this.scheduleEvent(EventFactory.EVENT_STOP, words, "stop <server>");
+                    break;
+
+                case "warn":
+                    this.scheduleEvent(EventFactory.EVENT_WARN, words, "warn <server> <minutes>");
+                    break;
+
+                case "cmd":
+                    this.scheduleEvent(EventFactory.EVENT_COMMAND, words, "cmd <server> <command>");
+                    break;
+
+                case "top":
+                    this.showTop();
+                    break;
+
+                default:
+                    this.terminal.printError(String.format("Unknown command '%s'. Type 'help' for a list of commands.", words[0]));
+
+            }
+
+        } catch (NumberFormatException e) {
+
+            this.terminal.printError("Expected a number!");
+
+        } catch (IllegalArgumentException | UnsupportedOperationException e) {
+
+            this.terminal.printError(e.getMessage());
+
+        }
+
+    }
+
+    /**
+     * Runs an event against a server right away, through the scheduler.
+     *
+     * @param eventType The eventType id of the event to run.
+     * @param words     The words of the line. The second one is the server, and the third one (if the event needs it) is the argument of the event.
+     * @param usage     How the command is used, which is shown if the words are missing something.
+     */
+    private void scheduleEvent(int eventType, String[] words, String usage) {
+
+        boolean needsArgument = (eventType == EventFactory.EVENT_WARN || eventType == EventFactory.EVENT_COMMAND);
+
+        if (words.length < (needsArgument ? 3 : 2))
+            throw new IllegalArgumentException("Usage: " + usage);
+
+        GameServer server = this.callback.getServerIndex().resolve(words[1]);
+        String[] args = needsArgument ? new String[]{words[2]} : new String[0];
+
+        this.callback.scheduleEvent(EventFactory.buildEvent(this.callback.getMultiplexer(), eventType, server, LocalTime.now(), args));
+
+        this.terminal.printSuccess(String.format("%s queued for '%s'.", EventFactory.eventTypeName(eventType), server.getSessionName()));
+
+    }
+
+    /**
+     * Prints the servers whose session name starts with a prefix, along with whether they are running. The whole list is printed at once, so that it shows up as a single block.
+     *
+     * @param prefix The start of the session name. If empty, every server is listed.
+     */
+    private void list(String prefix) {
+
+        ServerIndex index = this.callback.getServerIndex();
+        List<GameServer> servers = new ArrayList<>();
+
+        if (prefix.isEmpty()) {
+
+            servers.addAll(index.getAll());
+
+        } else {
+
+            for (String sessionName : index.sessionNamesWithPrefix(prefix, Integer.MAX_VALUE))
+                servers.add(index.bySessionName(sessionName));
+
+        }
+
+        if (servers.isEmpty()) {
+
+            this.terminal.printWarning("No servers found.");
+            return;
+
+        }
+
+        Set<String> sessions = this.callback.getMultiplexer().listSessions();
+
+        StringBuilder builder = new StringBuilder(String.format("%-6s%-24s%-9s%-16s%-7s%s", "SID", "SESSION", "STATE", "GAME", "PORT", "AUTOSTART"));
+
+        for (GameServer server : servers)
+            builder.append(String.format("%n%-6d%-24s%-9s%-16s%-7d%s", server.getSid(), server.getSessionName(), sessions.contains(server.getSessionName()) ? "running" : "stopped", server.getGame(), server.getPort(), server.isAutostart() ? "yes" : "no"));
+
+        this.terminal.printDefault(builder.toString());
+
+    }
+
+    /**
+     * Prints the next events in the schedule, in the order they will run.
+     *
+     * @param count How many events to print.
+     */
+    private void next(int count) {
+
+        if (count <= 0)
+            throw new IllegalArgumentException("The number of events must be positive!");
+
+        ScheduleTable schedule = this.callback.getSchedule();
+
+        if (schedule == null || schedule.size() == 0) {
+
+            this.terminal.printWarning("No events are scheduled.");
+            return;
+
+        }
+
+        StringBuilder builder = new StringBuilder(String.format("%-10s%-6s%-24s%-14s%s", "TIME", "SID", "SESSION", "EVENT", "ARGS"));
+
+        for (int row : schedule.nextRows(LocalTime.now().toSecondOfDay(), count)) {
+
+            GameServer server = schedule.getGameServer(row);
+            builder.append(String.format("%n%-10s%-6d%-24s%-14s%s", ASCConsole.TIME_FORMATTER.format(LocalTime.ofSecondOfDay(schedule.getSecondOfDay(row))), server.getSid(), server.getSessionName(), EventFactory.eventTypeName(schedule.getEventType(row)), String.join(" ", schedule.getArgs(row))));
+
+        }
+
+        this.terminal.printDefault(builder.toString());
+
+    }
+
+    /**
+     * Suggests commands for the first word, and session names for the word after a command that takes a server. Session names come from the prefix trie in ServerIndex, so this stays instant with thousands of servers.
+     */
+    private List<String> complete(List<String> words, String prefix) {
+
+        if (words.isEmpty()) {
+
+            List<String> commands = new ArrayList<>();
+
+            for (String command : ASCConsole.COMMANDS)
+                if (command.startsWith(prefix))
+                    commands.add(command);
+
+            return commands;
+
+        }
+
+        if (words.size() == 1 && ASCConsole.SERVER_COMMANDS.contains(words.get(0).toLowerCase(Locale.ROOT)))
+            return this.callback.getServerIndex().sessionNamesWithPrefix(prefix, ASCConsole.MAX_COMPLETIONS);
+
+        return Collections.emptyList();
+
+    }
+
+    /**
+     * Opens the full screen live view, and returns when the user quits it.
+     */
+    private void showTop() {
+
+        try {
+
+            new TopView(this.terminal, this.callback).run();
+
+        } catch (IllegalStateException e) {
+
+            this.terminal.printError(e.getMessage());
+
+        }
+
+    }
+
 }
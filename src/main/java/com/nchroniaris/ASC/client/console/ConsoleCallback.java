@@ -1,7 +1,12 @@
 package com.nchroniaris.ASC.client.console;
 
 import com.nchroniaris.ASC.client.model.Event;
+import com.nchroniaris.ASC.client.model.ServerIndex;
+import com.nchroniaris.ASC.client.multiplexer.TerminalMultiplexer;
+import com.nchroniaris.ASC.client.schedule.RecentEvents;
+import com.nchroniaris.ASC.client.schedule.ScheduleTable;
 
+import java.util.List;
 import java.util.concurrent.Future;
 
 /**
@@ -27,4 +32,40 @@ public interface ConsoleCallback {
      */
     void shutdownNow();
 
+    /**
+     * Gets the index of every game server, including the ones that are not set to autostart. This is built ahead of time, so commands can look servers up without querying the repository.
+     *
+     * @return The current ServerIndex.
+     */
+    ServerIndex getServerIndex();
+
+    /**
+     * Gets the schedule that is currently running.
+     *
+     * @return The current ScheduleTable, or null if no schedule has been loaded (in console only mode, for example).
+     */
+    ScheduleTable getSchedule();
+
+    /**
+     * Gets the multiplexer that the client runs events through. Events built by the console should use this one, and a game server is running if its session name is in listSessions().
+     *
+     * @return The multiplexer.
+     */
+    TerminalMultiplexer getMultiplexer();
+
+    /**
+     * Gets the number of tasks waiting in the scheduler's queue.
+     *
+     * @return The queue depth.
+     */
+    int getQueueDepth();
+
+    /**
+     * Gets the timing of the scheduled events that fired most recently.
+     *
+     * @param limit The maximum number of events to return.
+     * @return The events, newest first.
+     */
+    List<RecentEvents.Entry> getRecentEvents(int limit);
+
 }
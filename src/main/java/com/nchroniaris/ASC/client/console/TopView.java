@@ -0,0 +1,294 @@
+package com.nchroniaris.ASC.client.console;
+
+import com.nchroniaris.ASC.client.model.EventFactory;
+import com.nchroniaris.ASC.client.model.ServerIndex;
+import com.nchroniaris.ASC.client.schedule.RecentEvents;
+import com.nchroniaris.ASC.client.schedule.ScheduleTable;
+import com.nchroniaris.ASC.util.model.GameServer;
+import com.nchroniaris.ASC.util.terminal.ASCTerminal;
+import com.nchroniaris.ASC.util.terminal.FullScreen;
+import org.jline.utils.AttributedString;
+import org.jline.utils.AttributedStringBuilder;
+import org.jline.utils.AttributedStyle;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A full screen, `top`-like view of the client: the state of every game server's session, the next events in the schedule, the scheduler's queue and how the last few events went. It refreshes every second until the user presses 'q'.
+ * <p>
+ * Every frame is laid out in fixed width columns, so that from one second to the next only the few cells that actually changed (the clock, a countdown, a session that came up) are different. Since FullScreen only redraws what changed, refreshing costs almost nothing even with hundreds of servers.
+ */
+class TopView {
+
+    private static final long REFRESH_MILLIS = 1000;
+
+    private static final int NEXT_EVENTS = 5;
+    private static final int RECENT_EVENTS = 5;
+
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private static final AttributedStyle STYLE_TITLE = AttributedStyle.BOLD;
+    private static final AttributedStyle STYLE_HEADER = AttributedStyle.INVERSE;
+
+    private static final AttributedStyle STYLE_RUNNING = new AttributedStyle()
+            .foreground(AttributedStyle.GREEN);
+
+    private static final AttributedStyle STYLE_STOPPED = new AttributedStyle()
+            .foreground(AttributedStyle.RED);
+
+    private static final AttributedStyle STYLE_LATE = new AttributedStyle()
+            .foreground(AttributedStyle.YELLOW);
+
+    // Events that start more than this late are highlighted
+    private static final long LATE_MILLIS = 1000;
+
+    private final ASCTerminal terminal;
+    private final ConsoleCallback callback;
+
+    // The index of the first server shown in the server list, which the user can scroll
+    private int scroll;
+
+    TopView(ASCTerminal terminal, ConsoleCallback callback) {
+
+        this.terminal = terminal;
+        this.callback = callback;
+        this.scroll = 0;
+
+    }
+
+    /**
+     * Shows the view until the user quits it. This blocks the calling thread, just like reading a line from the console does.
+     *
+     * @throws IllegalStateException If the terminal cannot show full screen views.
+     */
+    void run() throws IllegalStateException {
+
+        try (FullScreen screen = this.terminal.openFullScreen()) {
+
+            while (true) {
+
+                long frameStart = System.currentTimeMillis();
+
+                screen.update(this.render(screen.getRows(), screen.getColumns()));
+
+                // Handle keys until it is time for the next frame. Scrolling redraws right away.
+                long remaining;
+
+                while ((remaining = TopView.REFRESH_MILLIS - (System.currentTimeMillis() - frameStart)) > 0) {
+
+                    int key = screen.readKey(remaining);
+
+                    if (key == FullScreen.KEY_TIMEOUT)
+                        break;
+
+                    if (key == FullScreen.KEY_EOF || key == 'q' || key == 'Q')
+                        return;
+
+                    if (key == 'j' || key == ' ') {
+
+                        this.scroll++;
+                        break;
+
+                    }
+
+                    if (key == 'k') {
+
+                        this.scroll = Math.max(this.scroll - 1, 0);
+                        break;
+
+                    }
+
+                }
+
+            }
+
+        } catch (IOException e) {
+
+            this.terminal.printError("The view could not read from the terminal: " + e.getMessage());
+
+        }
+
+    }
+
+    /**
+     * Builds a whole frame.
+     *
+     * @param rows    The height of the terminal.
+     * @param columns The width of the terminal.
+     * @return The lines of the frame, at most `rows` of them.
+     */
+    private List<AttributedString> render(int rows, int columns) {
+
+        int now = LocalTime.now().toSecondOfDay();
+
+        ServerIndex index = this.callback.getServerIndex();
+        List<GameServer> servers = index.getAll();
+
+        Set<String> sessions = this.callback.getMultiplexer().listSessions();
+        ScheduleTable schedule = this.callback.getSchedule();
+
+        int running = 0;
+
+        for (GameServer server : servers)
+            if (sessions.contains(server.getSessionName()))
+                running++;
+
+        List<AttributedString> lines = new ArrayList<>(rows);
+
+        AttributedStringBuilder title = new AttributedStringBuilder();
+        title.styled(TopView.STYLE_TITLE, "ASC top - " + TopView.formatTime(now));
+        title.append(String.format("   servers: %d/%d running   events today: %d   queue: %d", running, servers.size(), (schedule == null) ? 0 : schedule.size(), this.callback.getQueueDepth()));
+        title.append("   (q: quit, j/k: scroll)");
+        lines.add(title.toAttributedString());
+        lines.add(AttributedString.EMPTY);
+
+        // Next events
+        lines.add(TopView.header(String.format("%-10s%-10s%-6s%-20s%-14s%s", "NEXT", "IN", "SID", "SESSION", "EVENT", "ARGS"), columns));
+
+        int[] nextRows = (schedule == null) ? new int[0] : schedule.nextRows(now, TopView.NEXT_EVENTS);
+
+        for (int row : nextRows) {
+
+            GameServer server = schedule.getGameServer(row);
+
+            lines.add(new AttributedString(String.format("%-10s%-10s%-6d%-20s%-14s%s",
+                    TopView.formatTime(schedule.getSecondOfDay(row)),
+                    TopView.formatCountdown(Math.floorMod(schedule.getSecondOfDay(row) - now, TopView.SECONDS_PER_DAY)),
+                    server.getSid(),
+                    TopView.fit(server.getSessionName(), 19),
+                    EventFactory.eventTypeName(schedule.getEventType(row)),
+                    String.join(" ", schedule.getArgs(row)))));
+
+        }
+
+        for (int i = nextRows.length; i < TopView.NEXT_EVENTS; i++)
+            lines.add(AttributedString.EMPTY);
+
+        lines.add(AttributedString.EMPTY);
+
+        // Recent events
+        lines.add(TopView.header(String.format("%-10s%-6s%-20s%-14s%10s%10s", "FIRED", "SID", "SESSION", "EVENT", "LATE", "TOOK"), columns));
+
+        List<RecentEvents.Entry> recent = this.callback.getRecentEvents(TopView.RECENT_EVENTS);
+
+        for (RecentEvents.Entry entry : recent) {
+
+            GameServer server = index.bySid(entry.getSid());
+
+            AttributedStringBuilder line = new AttributedStringBuilder();
+            line.append(String.format("%-10s%-6d%-20s%-14s",
+                    TopView.TIME_FORMATTER.format(Instant.ofEpochMilli(entry.getFiredAtMillis()).atZone(ZoneId.systemDefault())),
+                    entry.getSid(),
+                    TopView.fit((server == null) ? "?" : server.getSessionName(), 19),
+                    EventFactory.eventTypeName(entry.getEventType())));
+            line.styled((entry.getLateMillis() > TopView.LATE_MILLIS) ? TopView.STYLE_LATE : AttributedStyle.DEFAULT, String.format("%8dms", entry.getLateMillis()));
+            line.append(String.format("%8dms", entry.getDurationMillis()));
+
+            lines.add(line.toAttributedString());
+
+        }
+
+        for (int i = recent.size(); i < TopView.RECENT_EVENTS; i++)
+            lines.add(AttributedString.EMPTY);
+
+        lines.add(AttributedString.EMPTY);
+
+        // Servers, with as many as fit in the rest of the screen
+        lines.add(TopView.header(String.format("%-6s%-20s%-9s%-16s%-7s%s", "SID", "SESSION", "STATE", "GAME", "PORT", "NEXT EVENT"), columns));
+
+        Map<Integer, Integer> nextRowBySid = TopView.nextRowBySid(schedule, now, servers.size());
+
+        int visible = Math.max(rows - lines.size(), 0);
+        this.scroll = Math.min(this.scroll, Math.max(servers.size() - visible, 0));
+
+        for (int i = this.scroll; i < servers.size() && i < this.scroll + visible; i++) {
+
+            GameServer server = servers.get(i);
+            boolean isRunning = sessions.contains(server.getSessionName());
+            Integer nextRow = nextRowBySid.get(server.getSid());
+
+            AttributedStringBuilder line = new AttributedStringBuilder();
+            line.append(String.format("%-6d%-20s", server.getSid(), TopView.fit(server.getSessionName(), 19)));
+            line.styled(isRunning ? TopView.STYLE_RUNNING : TopView.STYLE_STOPPED, String.format("%-9s", isRunning ? "running" : "stopped"));
+            line.append(String.format("%-16s%-7d", TopView.fit(server.getGame(), 15), server.getPort()));
+
+            if (nextRow != null)
+                line.append(String.format("%s %s", TopView.formatTime(schedule.getSecondOfDay(nextRow)), EventFactory.eventTypeName(schedule.getEventType(nextRow))));
+
+            lines.add(line.toAttributedString());
+
+        }
+
+        return lines;
+
+    }
+
+    /**
+     * Finds the next event of every server, by going through the schedule in the order the events will run until every server has been seen.
+     */
+    private static Map<Integer, Integer> nextRowBySid(ScheduleTable schedule, int now, int servers) {
+
+        Map<Integer, Integer> nextRows = new HashMap<>();
+
+        if (schedule == null || schedule.size() == 0)
+            return nextRows;
+
+        int first = schedule.firstRowAtOrAfter(now);
+
+        for (int i = 0; i < schedule.size() && nextRows.size() < servers; i++) {
+
+            int row = (first + i) % schedule.size();
+            nextRows.putIfAbsent(schedule.getGameServer(row).getSid(), row);
+
+        }
+
+        return nextRows;
+
+    }
+
+    private static AttributedString header(String text, int columns) {
+
+        // Pad the header to the full width so that the inverse style makes a bar across the screen
+        return new AttributedString(String.format("%-" + Math.max(columns, 1) + "s", text), TopView.STYLE_HEADER);
+
+    }
+
+    private static String fit(String text, int width) {
+
+        if (text == null)
+            return "";
+
+        return (text.length() > width) ? text.substring(0, width - 1) + "~" : text;
+
+    }
+
+    private static String formatTime(int secondOfDay) {
+
+        return TopView.TIME_FORMATTER.format(LocalTime.ofSecondOfDay(secondOfDay));
+
+    }
+
+    private static String formatCountdown(int seconds) {
+
+        if (seconds < 60)
+            return seconds + "s";
+
+        if (seconds < 60 * 60)
+            return (seconds / 60) + "m";
+
+        return String.format("%dh%02dm", seconds / 3600, (seconds / 60) % 60);
+
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.nchroniaris.ASC.client.control;
+
+import com.nchroniaris.ASC.client.model.Event;
+import com.nchroniaris.ASC.client.multiplexer.TerminalMultiplexer;
+import com.nchroniaris.ASC.client.schedule.ScheduleTable;
+import com.nchroniaris.ASC.util.model.GameServer;
+
+import java.util.concurrent.Future;
+
+/**
+ * This interface serves as a callback for the control server, much like ConsoleCallback does for the console. Each method is something a request needs from the ASCClient.
+ */
+public interface ControlCallback {
+
+    /**
+     * Schedules an event (defined by the parameter) as soon as possible.
+     *
+     * @param event The event to schedule
+     * @return A {@code Future} that represents the future status of the event
+     */
+    Future<?> scheduleEvent(Event event);
+
+    /**
+     * Looks up a game server by its sid. This includes servers that are not set to autostart.
+     *
+     * @param sid The sid of the server.
+     * @return The GameServer, or null if there is no server with that sid.
+     */
+    GameServer getGameServer(int sid);
+
+    /**
+     * Gets the schedule that is currently running.
+     *
+     * @return The current ScheduleTable, or null if no schedule has been loaded (in console only mode, for example).
+     */
+    ScheduleTable getSchedule();
+
+    /**
+     * Gets the multiplexer that the client runs events through. Events built by the control server should use this one.
+     *
+     * @return The multiplexer.
+     */
+    TerminalMultiplexer getMultiplexer();
+
+}
@@ -0,0 +1,696 @@
+package com.nchroniaris.ASC.client.control;
+
+import com.nchroniaris.ASC.client.core.ASCProperties;
+import com.nchroniaris.ASC.client.model.EventFactory;
+import com.nchroniaris.ASC.client.schedule.ScheduleTable;
+import com.nchroniaris.ASC.util.model.GameServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A local endpoint for controlling the client from scripts, without going through the console. It listens on the loopback interface only, and serves every connection from a single thread using a Selector, so it can keep up with hundreds of requests per second without a thread (or a process) per request.
+ * <p>
+ * The protocol is line based. A request is a single line of words separated by spaces, and every request gets exactly one response, in the same order as the requests. This means a client can write many requests at once and read the responses afterwards (pipelining). A response is either a single line starting with '+' (success) or '-ERR' (failure), or a line "*n" followed by n lines of data. Empty lines are ignored.
+ * <pre>
+ * PING                        +PONG
+ * AUTH &lt;token&gt;                +OK           Required before anything else
+ * RUN &lt;sid&gt; &lt;etype&gt; [arg]     +QUEUED       Runs an event now. The argument is the rest of the line, such as a command.
+ * STATE &lt;sid&gt;                 +RUNNING or +STOPPED, depending on whether the server's session exists
+ * NEXT [count]                *n            The next n (default 10) scheduled events, one per line: time, sid, etype, eid and args, separated by tabs
+ * QUIT                        +BYE          The connection is closed after this
+ * </pre>
+ * RUN responds as soon as the event has been handed to the scheduler, not when it finishes; its outcome shows up in the log and the history like any other event. STATE is answered from a list of every session, which is taken at most once per SESSIONS_MAX_AGE_MILLIS and shared by every STATE in the meantime, so that STATE does not start a process per request. Listing the sessions takes a process, so it is done on a separate thread, and responses that come after a STATE on the same connection wait for it, to keep them in order.
+ */
+public class ControlServer implements AutoCloseable {
+
+    // Longest request that is accepted. A connection that sends a longer line gets an error and is closed.
+    private static final int MAX_LINE_BYTES = 8192;
+
+    // A connection stops being read from when this many responses are waiting, or when this many bytes of responses have not been written yet. This keeps a client that never reads its responses from using up memory.
+    private static final int MAX_PENDING_RESPONSES = 1024;
+    private static final int MAX_UNWRITTEN_BYTES = 64 * 1024;
+
+    private static final int DEFAULT_NEXT_COUNT = 10;
+    private static final int MAX_NEXT_COUNT = 1000;
+
+    // How old the list of sessions can be before a STATE lists them again. This is the same as how often StartAdmission lists them, so that STATE is never more out of date than the scheduler is.
+    private static final long SESSIONS_MAX_AGE_MILLIS = 1000;
+
+    private static final long CLOSE_TIMEOUT_MS = 1000;
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private static final String RESPONSE_PONG = "+PONG\n";
+    private static final String RESPONSE_OK = "+OK\n";
+    private static final String RESPONSE_QUEUED = "+QUEUED\n";
+    private static final String RESPONSE_RUNNING = "+RUNNING\n";
+    private static final String RESPONSE_STOPPED = "+STOPPED\n";
+    private static final String RESPONSE_BYE = "+BYE\n";
+
+    private final ControlCallback callback;
+
+    // Length of the tokens made by generateToken(), in random bytes
+    private static final int GENERATED_TOKEN_BYTES = 32;
+
+    // The token that clients have to send with AUTH
+    private final byte[] token;
+
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+
+    // Connections whose STATE responses have come in from the session query thread, and that the selector thread should write out
+    private final Queue<Connection> ready;
+    private final ExecutorService sessionQueries;
+
+    // The latest list of sessions (which might still be in progress), and the System.nanoTime() it was started at. These are only touched by the selector thread.
+    private CompletableFuture<Set<String>> sessions;
+    private long sessionsListedNanos;
+
+    private final Thread selectorThread;
+    private volatile boolean closed;
+
+    /**
+     * Creates a control server on the loopback interface and starts serving requests.
+     *
+     * @param port     The port to listen on. If 0, any free port is used (see getPort()).
+     * @param token    The token clients must send before making any other request. Any local user can connect to the port, so this is mandatory (see generateToken()).
+     * @param callback A valid ControlCallback implementation, which requests are carried out with.
+     * @throws IOException If the port could not be bound.
+     */
+    public ControlServer(int port, String token, ControlCallback callback) throws IOException {
+
+        if (callback == null)
+            throw new IllegalArgumentException("The callback must have some implementation!");
+
+        if (port < 0 || port > 65535)
+            throw new IllegalArgumentException(String.format("The port must be between 0 and 65535! Got %d", port));
+
+        if (token == null || token.isEmpty())
+            throw new IllegalArgumentException("The token argument should NOT be null or empty!");
+
+        this.callback = callback;
+        this.token = token.getBytes(StandardCharsets.UTF_8);
+
+        this.selector = Selector.open();
+
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        this.serverChannel.configureBlocking(false);
+        this.serverChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+
+        this.ready = new ConcurrentLinkedQueue<>();
+
+        // A single thread, since there is never more than one listing in progress
+        this.sessionQueries = Executors.newSingleThreadExecutor(runnable -> {
+
+            Thread thread = new Thread(runnable, "ASC-control-query");
+            thread.setDaemon(true);
+
+            return thread;
+
+        });
+
+        this.sessions = null;
+        this.sessionsListedNanos = 0;
+
+        this.closed = false;
+
+        this.selectorThread = new Thread(this::selectLoop, "ASC-control");
+        this.selectorThread.setDaemon(true);
+        this.selectorThread.start();
+
+    }
+
+    /**
+     * Makes up a random token and writes it to a file that only the current user can read, for when the properties file does not set one. Scripts that run as the same user as the client can read the token from there.
+     *
+     * @param file The file to write the token to. It is replaced if it exists, so that a file that someone else created beforehand cannot be used to read the token.
+     * @return The new token.
+     * @throws IOException If the file could not be written.
+     */
+    public static String generateToken(Path file) throws IOException {
+
+        byte[] bytes = new byte[ControlServer.GENERATED_TOKEN_BYTES];
+        new SecureRandom().nextBytes(bytes);
+
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        Files.deleteIfExists(file);
+
+        try {
+
+            // The file is created with its permissions in one go, so the token is never readable by anyone else, not even for a moment
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+
+        } catch (UnsupportedOperationException e) {
+
+            // Not a POSIX file system, such as on Windows, where a new file in the user's directory is private anyway
+            Files.createFile(file);
+
+        }
+
+        Files.write(file, token.getBytes(StandardCharsets.UTF_8));
+
+        return token;
+
+    }
+
+    /**
+     * Gets the port the server is listening on, which is useful if it was created with port 0.
+     *
+     * @return The local port.
+     */
+    public int getPort() {
+
+        return this.serverChannel.socket().getLocalPort();
+
+    }
+
+    private void selectLoop() {
+
+        while (!this.closed) {
+
+            try {
+
+                this.selector.select();
+
+            } catch (IOException e) {
+
+                ASCProperties.getInstance().LOGGER.logError("The control server stopped working: %s", e.getMessage());
+                break;
+
+            }
+
+            Connection connection;
+
+            while ((connection = this.ready.poll()) != null)
+                connection.flushSafely();
+
+            Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+
+            while (keys.hasNext()) {
+
+                SelectionKey key = keys.next();
+                keys.remove();
+
+                if (!key.isValid())
+                    continue;
+
+                if (key.isAcceptable()) {
+
+                    this.accept();
+                    continue;
+
+                }
+
+                connection = (Connection) key.attachment();
+
+                try {
+
+                    if (key.isReadable())
+                        connection.read();
+                    else if (key.isWritable())
+                        connection.flush();
+
+                } catch (IOException e) {
+
+                    connection.close();
+
+                }
+
+            }
+
+        }
+
+        // Close every connection along with the server itself
+        for (SelectionKey key : this.selector.keys())
+            if (key.attachment() instanceof Connection)
+                ((Connection) key.attachment()).close();
+
+        try {
+
+            this.serverChannel.close();
+            this.selector.close();
+
+        } catch (IOException e) {
+
+            e.printStackTrace();
+
+        }
+
+    }
+
+    private void accept() {
+
+        try {
+
+            SocketChannel channel = this.serverChannel.accept();
+
+            if (channel == null)
+                return;
+
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+
+            new Connection(channel);
+
+        } catch (IOException e) {
+
+            ASCProperties.getInstance().LOGGER.logWarning("A control connection could not be accepted: %s", e.getMessage());
+
+        }
+
+    }
+
+    /**
+     * Carries out a single request. Everything is done right away on the selector thread, so it has to be quick, except for listing the sessions for STATE.
+     *
+     * @param connection The connection the request came from.
+     * @param line       The request, without the line terminator.
+     * @return The response, which might not be complete yet.
+     */
+    private CompletableFuture<String> handle(Connection connection, String line) {
+
+        String[] words = line.split(" ", 4);
+        String command = words[0].toUpperCase(Locale.ROOT);
+
+        if (!connection.authenticated && !command.equals("AUTH") && !command.equals("QUIT"))
+            return ControlServer.error("Authentication required");
+
+        try {
+
+            switch (command) {
+
+                case "PING":
+                    return CompletableFuture.completedFuture(ControlServer.RESPONSE_PONG);
+
+                case "AUTH":
+                    return this.authenticate(connection, words);
+
+                case "RUN":
+                    return this.run(words);
+
+                case "STATE":
+                    return this.state(words);
+
+                case "NEXT":
+                    return this.next(words);
+
+                case "QUIT":
+                    connection.closing = true;
+                    return CompletableFuture.completedFuture(ControlServer.RESPONSE_BYE);
+
+                default:
+                    return ControlServer.error(String.format("Unknown command '%s'", words[0]));
+
+            }
+
+        } catch (NumberFormatException e) {
+
+            return ControlServer.error("Expected a number");
+
+        } catch (IllegalArgumentException | UnsupportedOperationException e) {
+
+            return ControlServer.error(e.getMessage());
+
+        } catch (RuntimeException e) {
+
+            // Such as the scheduler rejecting an event because it is shutting down. This runs on the selector thread, so letting it through would stop the whole control server.
+            ASCProperties.getInstance().LOGGER.logError("The control request '%s' failed: %s", command, e.toString());
+
+            return ControlServer.error(String.format("The request failed: %s", e));
+
+        }
+
+    }
+
+    private CompletableFuture<String> authenticate(Connection connection, String[] words) {
+
+        // Compare in constant time, and drop the connection on a wrong token so that guessing it takes a new connection every time
+        if (words.length < 2 || !MessageDigest.isEqual(this.token, words[1].getBytes(StandardCharsets.UTF_8))) {
+
+            ASCProperties.getInstance().LOGGER.logWarning("A control connection sent the wrong token and was closed.");
+
+            connection.closing = true;
+            return ControlServer.error("Invalid token");
+
+        }
+
+        connection.authenticated = true;
+        return CompletableFuture.completedFuture(ControlServer.RESPONSE_OK);
+
+    }
+
+    private CompletableFuture<String> run(String[] words) {
+
+        if (words.length < 3)
+            throw new IllegalArgumentException("Usage: RUN <sid> <etype> [arg]");
+
+        GameServer server = this.findGameServer(words[1]);
+        int eventType = Integer.parseInt(words[2]);
+        String[] args = (words.length > 3) ? new String[]{words[3]} : new String[0];
+
+        EventFactory.validate(eventType, args);
+
+        this.callback.scheduleEvent(EventFactory.buildEvent(this.callback.getMultiplexer(), eventType, server, LocalTime.now(), args));
+
+        return CompletableFuture.completedFuture(ControlServer.RESPONSE_QUEUED);
+
+    }
+
+    private CompletableFuture<String> state(String[] words) {
+
+        if (words.length < 2)
+            throw new IllegalArgumentException("Usage: STATE <sid>");
+
+        String sessionName = this.findGameServer(words[1]).getSessionName();
+
+        return this.listSessions().handle((sessions, e) -> {
+
+            if (e != null)
+                return ControlServer.errorLine(String.format("Could not query the session: %s", (e.getCause() != null) ? e.getCause().getMessage() : e.getMessage()));
+
+            return sessions.contains(sessionName) ? ControlServer.RESPONSE_RUNNING : ControlServer.RESPONSE_STOPPED;
+
+        });
+
+    }
+
+    /**
+     * Gets the sessions that exist, listing them again only if the last list is more than SESSIONS_MAX_AGE_MILLIS old (or failed). However many STATE requests come in, the multiplexer is asked at most once in that time, and a request that comes in while a list is in progress waits for that one.
+     *
+     * @return The names of the sessions, which might not be complete yet.
+     */
+    private CompletableFuture<Set<String>> listSessions() {
+
+        long now = System.nanoTime();
+
+        boolean stale = this.sessions == null
+                || this.sessions.isCompletedExceptionally()
+                || (this.sessions.isDone() && now - this.sessionsListedNanos >= ControlServer.SESSIONS_MAX_AGE_MILLIS * 1_000_000);
+
+        if (stale) {
+
+            this.sessions = CompletableFuture.supplyAsync(() -> this.callback.getMultiplexer().listSessions(), this.sessionQueries);
+            this.sessionsListedNanos = now;
+
+        }
+
+        return this.sessions;
+
+    }
+
+    private CompletableFuture<String> next(String[] words) {
+
+        int count = (words.length > 1) ? Integer.parseInt(words[1]) : ControlServer.DEFAULT_NEXT_COUNT;
+
+        if (count < 0 || count > ControlServer.MAX_NEXT_COUNT)
+            throw new IllegalArgumentException(String.format("The count must be between 0 and %d", ControlServer.MAX_NEXT_COUNT));
+
+        ScheduleTable schedule = this.callback.getSchedule();
+
+        if (schedule == null)
+            return CompletableFuture.completedFuture("*0\n");
+
+        int[] rows = schedule.nextRows(LocalTime.now().toSecondOfDay(), count);
+
+        StringBuilder builder = new StringBuilder();
+        builder.append('*').append(rows.length).append('\n');
+
+        for (int row : rows) {
+
+            builder.append(ControlServer.TIME_FORMATTER.format(LocalTime.ofSecondOfDay(schedule.getSecondOfDay(row))))
+                    .append('\t').append(schedule.getGameServer(row).getSid())
+                    .append('\t').append(schedule.getEventType(row))
+                    .append('\t').append(schedule.getEid(row));
+
+            for (String arg : schedule.getArgs(row))
+                builder.append('\t').append(arg);
+
+            builder.append('\n');
+
+        }
+
+        return CompletableFuture.completedFuture(builder.toString());
+
+    }
+
+    private GameServer findGameServer(String sid) {
+
+        GameServer server = this.callback.getGameServer(Integer.parseInt(sid));
+
+        if (server == null)
+            throw new IllegalArgumentException(String.format("There is no server with the sid %s", sid));
+
+        return server;
+
+    }
+
+    private static CompletableFuture<String> error(String message) {
+
+        return CompletableFuture.completedFuture(ControlServer.errorLine(message));
+
+    }
+
+    private static String errorLine(String message) {
+
+        // The message must stay on one line, or the client would read the rest of it as the next response
+        return "-ERR " + String.valueOf(message).replace('\n', ' ').replace('\r', ' ') + "\n";
+
+    }
+
+    /**
+     * Stops accepting requests and closes every connection, waiting a little for a list of the sessions that is in progress. Responses that have not been written yet are lost. Calling this more than once has no additional effect.
+     */
+    @Override
+    public void close() {
+
+        if (this.closed)
+            return;
+
+        this.closed = true;
+        this.selector.wakeup();
+
+        try {
+
+            this.selectorThread.join(ControlServer.CLOSE_TIMEOUT_MS);
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+
+        }
+
+        // Not shutdownNow(): interrupting the multiplexer in the middle of a process can end the whole program, before the history and the log have been written out
+        this.sessionQueries.shutdown();
+
+        try {
+
+            if (!this.sessionQueries.awaitTermination(ControlServer.CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS))
+                ASCProperties.getInstance().LOGGER.logWarning("The control server's session query did not finish within %d ms.", ControlServer.CLOSE_TIMEOUT_MS);
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+
+        }
+
+    }
+
+    /**
+     * The state of a single client connection. Except for the STATE completions (which only ever add the connection to the ready queue), this is only touched by the selector thread.
+     */
+    private final class Connection {
+
+        private final SocketChannel channel;
+        private final SelectionKey key;
+
+        private final ByteBuffer in;
+        private ByteBuffer out;
+
+        // Responses in the order of their requests. Only the ones at the head that are complete can be written.
+        private final ArrayDeque<CompletableFuture<String>> pending;
+
+        private boolean authenticated;
+
+        // Set when the connection should be closed once every pending response has been written
+        private boolean closing;
+
+        private Connection(SocketChannel channel) throws IOException {
+
+            this.channel = channel;
+            this.in = ByteBuffer.allocate(ControlServer.MAX_LINE_BYTES);
+            this.out = ByteBuffer.allocate(4096);
+            this.pending = new ArrayDeque<>();
+            this.authenticated = false;
+            this.closing = false;
+
+            this.key = channel.register(ControlServer.this.selector, SelectionKey.OP_READ, this);
+
+        }
+
+        private void read() throws IOException {
+
+            int read = this.channel.read(this.in);
+
+            // The client is done sending, but it might still be waiting for the responses to what it sent
+            if (read == -1)
+                this.closing = true;
+
+            this.in.flip();
+
+            int start = this.in.position();
+
+            for (int i = start; i < this.in.limit() && !this.closing; i++) {
+
+                if (this.in.get(i) != '\n')
+                    continue;
+
+                int end = (i > start && this.in.get(i - 1) == '\r') ? i - 1 : i;
+                String line = new String(this.in.array(), start, end - start, StandardCharsets.UTF_8).trim();
+
+                start = i + 1;
+
+                if (line.isEmpty())
+                    continue;
+
+                CompletableFuture<String> response = ControlServer.this.handle(this, line);
+
+                // Responses that are not ready yet tell the selector thread when they are
+                if (!response.isDone())
+                    response.whenComplete((result, e) -> {
+
+                        ControlServer.this.ready.add(this);
+                        ControlServer.this.selector.wakeup();
+
+                    });
+
+                this.pending.add(response);
+
+            }
+
+            this.in.position(start);
+            this.in.compact();
+
+            // A full buffer without a single line terminator in it
+            if (!this.in.hasRemaining() && !this.closing) {
+
+                this.pending.add(ControlServer.error("The request is too long"));
+                this.closing = true;
+
+            }
+
+            this.flush();
+
+        }
+
+        private void flush() throws IOException {
+
+            // Move the responses that are ready, in order, to the output buffer
+            while (!this.pending.isEmpty() && this.pending.peek().isDone())
+                this.append(this.pending.poll().join());
+
+            this.out.flip();
+            this.channel.write(this.out);
+            this.out.compact();
+
+            boolean unwritten = this.out.position() > 0;
+
+            if (this.closing && this.pending.isEmpty() && !unwritten) {
+
+                this.close();
+                return;
+
+            }
+
+            int interest = 0;
+
+            if (unwritten)
+                interest |= SelectionKey.OP_WRITE;
+
+            if (!this.closing && this.pending.size() < ControlServer.MAX_PENDING_RESPONSES && this.out.position() < ControlServer.MAX_UNWRITTEN_BYTES)
+                interest |= SelectionKey.OP_READ;
+
+            this.key.interestOps(interest);
+
+        }
+
+        private void flushSafely() {
+
+            if (!this.channel.isOpen())
+                return;
+
+            try {
+
+                this.flush();
+
+            } catch (IOException e) {
+
+                this.close();
+
+            }
+
+        }
+
+        private void append(String response) {
+
+            byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+
+            if (this.out.remaining() < bytes.length) {
+
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(this.out.capacity() * 2, this.out.position() + bytes.length));
+
+                this.out.flip();
+                larger.put(this.out);
+
+                this.out = larger;
+
+            }
+
+            this.out.put(bytes);
+
+        }
+
+        private void close() {
+
+            this.key.cancel();
+
+            try {
+
+                this.channel.close();
+
+            } catch (IOException ignored) {
+                // The connection is going away either way
+            }
+
+        }
+
+    }
+
+}
@@ -3,14 +3,28 @@ package com.nchroniaris.ASC.client.core;
 import com.nchroniaris.ASC.client.concurrent.SynchronizedFutureList;
 import com.nchroniaris.ASC.client.console.ASCConsole;
 import com.nchroniaris.ASC.client.console.ConsoleCallback;
+import com.nchroniaris.ASC.client.control.ControlCallback;
+import com.nchroniaris.ASC.client.control.ControlServer;
 import com.nchroniaris.ASC.client.database.ASCRepository;
+import com.nchroniaris.ASC.client.metrics.MetricsCallback;
+import com.nchroniaris.ASC.client.metrics.MetricsServer;
 import com.nchroniaris.ASC.client.model.Event;
+import com.nchroniaris.ASC.client.model.EventFactory;
+import com.nchroniaris.ASC.client.model.ServerIndex;
+import com.nchroniaris.ASC.client.multiplexer.TerminalMultiplexer;
 import com.nchroniaris.ASC.client.schedule.EventScheduler;
+import com.nchroniaris.ASC.client.schedule.HostPressure;
+import com.nchroniaris.ASC.client.schedule.LoadAdmission;
+import com.nchroniaris.ASC.client.schedule.RecentEvents;
+import com.nchroniaris.ASC.client.schedule.ScheduleTable;
+import com.nchroniaris.ASC.client.schedule.StartAdmission;
+import com.nchroniaris.ASC.client.trace.Tracer;
 import com.nchroniaris.ASC.util.model.GameServer;
 import com.nchroniaris.ASC.util.terminal.ASCTerminal;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -28,7 +42,7 @@ public class ASCClient {
         public boolean serverless;
         public boolean allowDumbTerminal;
         public boolean consoleOnly;
-
+        public boolean headless;
 
         /**
          * Default constructor. Inserts default values for all primitives.
@@ -38,6 +52,7 @@ public class ASCClient {
             this.serverless = false;
             this.allowDumbTerminal = false;
             this.consoleOnly = false;
+            this.headless = false;
 
         }
 
@@ -54,6 +69,7 @@ public class ASCClient {
             this.serverless = clientOptions.serverless;
             this.allowDumbTerminal = clientOptions.allowDumbTerminal;
             this.consoleOnly = clientOptions.consoleOnly;
+            this.headless = clientOptions.headless;
 
         }
 
@@ -61,8 +77,20 @@ public class ASCClient {
 
     private final ClientOptions options;
 
+    // Where the schedule is loaded from. This is null if the repository configured in the properties file should be used, which is resolved when the schedule is loaded.
+    private final ASCRepository repository;
+
+    // What every event runs through. Like the repository, this is null if the multiplexer configured in the properties file should be used.
+    private final TerminalMultiplexer multiplexer;
+
     private EventScheduler scheduler;
     private ScheduledExecutorService consoleExecutor;
+    private ControlServer controlServer;
+    private MetricsServer metricsServer;
+
+    // The schedule that is currently running, and an index of every game server, for the console and the control server. Both are replaced whenever the schedule is (re)loaded.
+    private volatile ScheduleTable schedule;
+    private volatile ServerIndex serverIndex;
 
     private final SynchronizedFutureList synchronizedFutureList;
 
@@ -91,10 +119,130 @@ public class ASCClient {
             ASCClient.this.shutdownNow();
 
         }
+
+        @Override
+        public ServerIndex getServerIndex() {
+
+            return ASCClient.this.getServerIndex();
+
+        }
+
+        @Override
+        public ScheduleTable getSchedule() {
+
+            return ASCClient.this.schedule;
+
+        }
+
+        @Override
+        public TerminalMultiplexer getMultiplexer() {
+
+            return ASCClient.this.getMultiplexer();
+
+        }
+
+        @Override
+        public int getQueueDepth() {
+
+            return ASCClient.this.scheduler.getQueueDepth();
+
+        }
+
+        @Override
+        public List<RecentEvents.Entry> getRecentEvents(int limit) {
+
+            return ASCClient.this.scheduler.getRecentEvents(limit);
+
+        }
+    };
+
+    // Same as above, for the control server
+    private final ControlCallback controlCallback = new ControlCallback() {
+        @Override
+        public Future<?> scheduleEvent(Event event) {
+
+            return ASCClient.this.scheduler.submitEventNow(event);
+
+        }
+
+        @Override
+        public GameServer getGameServer(int sid) {
+
+            return ASCClient.this.getServerIndex().bySid(sid);
+
+        }
+
+        @Override
+        public ScheduleTable getSchedule() {
+
+            return ASCClient.this.schedule;
+
+        }
+
+        @Override
+        public TerminalMultiplexer getMultiplexer() {
+
+            return ASCClient.this.getMultiplexer();
+
+        }
+    };
+
+    // Same as above, for the metrics server
+    private final MetricsCallback metricsCallback = new MetricsCallback() {
+        @Override
+        public int getSessionCount() {
+
+            return ASCClient.this.getMultiplexer().listSessions().size();
+
+        }
+
+        @Override
+        public int getQueueDepth() {
+
+            EventScheduler scheduler = ASCClient.this.scheduler;
+
+            return (scheduler != null) ? scheduler.getQueueDepth() : 0;
+
+        }
+
+        @Override
+        public int getLogQueueDepth() {
+
+            return ASCProperties.getInstance().LOGGER.getQueueDepth();
+
+        }
     };
 
     public ASCClient(ClientOptions options) {
 
+        this(options, null);
+
+    }
+
+    /**
+     * Creates a client that loads its schedule from a specific repository, instead of the one configured in the properties file. This is mostly useful for testing and benchmarking.
+     *
+     * @param options    The options to run the client with. If null, the defaults are used.
+     * @param repository The repository to load the schedule from. If null, the repository configured in the properties file is used.
+     */
+    public ASCClient(ClientOptions options, ASCRepository repository) {
+
+        this(options, repository, null);
+
+    }
+
+    /**
+     * Creates a client that loads its schedule from a specific repository and runs every event through a specific multiplexer, instead of the ones configured in the properties file. This is mostly useful for testing and benchmarking, with a multiplexer that does not start any real sessions.
+     *
+     * @param options     The options to run the client with. If null, the defaults are used.
+     * @param repository  The repository to load the schedule from. If null, the repository configured in the properties file is used.
+     * @param multiplexer The multiplexer to run events through. If null, the multiplexer configured in the properties file is used.
+     */
+    public ASCClient(ClientOptions options, ASCRepository repository, TerminalMultiplexer multiplexer) {
+
+        this.repository = repository;
+        this.multiplexer = multiplexer;
+
         // If options are null (which they shouldn't be) create a default set. Otherwise clone the object to prevent it be mutated further.
         if (options == null)
             this.options = new ClientOptions();
@@ -103,6 +251,11 @@ public class ASCClient {
 
         this.scheduler = null;
         this.consoleExecutor = null;
+        this.controlServer = null;
+        this.metricsServer = null;
+
+        this.schedule = null;
+        this.serverIndex = null;
 
         this.synchronizedFutureList = new SynchronizedFutureList();
 
@@ -123,6 +276,14 @@ public class ASCClient {
         // This is according to the docs: https://docs.oracle.com/javase/8/docs/api/java/lang/Runtime.html#addShutdownHook-java.lang.Thread-
         Runtime.getRuntime().addShutdownHook(new Thread(this::shutdownNow));
 
+        // Headless mode has its own path, which is kept separate so that none of the terminal or console classes (and therefore none of JLine) are ever loaded
+        if (this.options.headless) {
+
+            this.startHeadless();
+            return;
+
+        }
+
         // Spawn a terminal using try-with-resources. In any case, the close() method should be invoked but in the case of a kill signal it's not guaranteed (see note at end of try block)
         try (ASCTerminal terminal = new ASCTerminal(this.options.allowDumbTerminal)) {
 
@@ -134,26 +295,19 @@ public class ASCClient {
                 properties.LOGGER.logInfo("Server registration stub!");
 
             // Spawn EventScheduler and a console instance. We pass consoleCallback to ASCConsole in order to allow it to schedule manual async events requested by the user. We do this after the instantiation of EventScheduler() in order to guarantee that the callback has a non-null scheduler to call.
-            this.scheduler = new EventScheduler();
+            this.scheduler = this.createScheduler();
             ASCConsole console = new ASCConsole(terminal, this.consoleCallback);
 
+            this.startControlServer();
+            this.startMetricsServer();
+
             // We want the console to be on its own thread so that it doesn't block the main thread with IO
             this.consoleExecutor = Executors.newSingleThreadScheduledExecutor();
             this.consoleExecutor.execute(console);
 
             // Main loop for scheduling events. This should continue until the user decides to exit or the program gets a kill signal.
-            if (!this.options.consoleOnly) {
-
-                // The atomic boolean controls whether to keep scheduling more events when the first batch has completed.
-                while (this.continueScheduling.get()) {
-
-                    // Schedule events, and pass the list of futures returned by the scheduler to the synced future list so that we can call waitForCompletion() on it. If another thread calls the cancelAllEvents() method the waitForCompletion() will return immediately since it will process all the remaining futures and realize they are cancelled.
-                    this.synchronizedFutureList.clearAndAddAll(this.scheduleEvents());
-                    this.synchronizedFutureList.waitForCompletion();
-
-                }
-
-            }
+            if (!this.options.consoleOnly)
+                this.scheduleUntilShutdown();
 
             // NOTE: Anything after this point is fair game to not get executed by the main thread (most of the time). As far as I can tell, the JVM forcibly terminates the main thread *at some point* when receiving an interrupt, like SIGTERM. This means that while shutdownNow() is definitely invoked, the rest of the code here might not be. This isn't a problem because shutdownNow() pretty much does what the following does, but what might be a problem is that the implicit finally{} block in this try-with-resources usually does not execute, meaning that ASCTerminal is not closed properly. I have no idea how "destructive" not closing the terminal is when the JVM is shutting down, but I imagine it's not that bad. I am not sure how else to restructure this such that the terminal is guaranteed to shut down on SIGTERM.
 
@@ -161,9 +315,17 @@ public class ASCClient {
             this.consoleExecutor.shutdown();
             this.consoleExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
 
+            this.stopControlServer();
+            this.stopMetricsServer();
+
             // This call is blocking
             this.scheduler.shutdown();
 
+            // All events have finished by now, so write out whatever traces and history are left in their queues. The logger goes last since both writers might still log an error.
+            Tracer.getInstance().close();
+            properties.HISTORY.close();
+            properties.LOGGER.close();
+
         } catch (IOException e) {
 
             // TODO: 2020-08-26 implement
@@ -178,6 +340,233 @@ public class ASCClient {
 
     }
 
+    /**
+     * Creates the scheduler that the schedule runs on. If the properties file limits how many servers can be starting at a time, the scheduler gets a StartAdmission to stagger its starts with, and if it allows heavy events to be deferred, a LoadAdmission to defer them with.
+     *
+     * @return The new scheduler.
+     */
+    private EventScheduler createScheduler() {
+
+        ASCProperties properties = ASCProperties.getInstance();
+        EventScheduler scheduler = new EventScheduler(this.multiplexer);
+
+        if (properties.START_CONCURRENCY > 0) {
+
+            try {
+
+                scheduler.setStartAdmission(new StartAdmission(properties.START_CONCURRENCY, properties.START_JITTER, properties.START_READY_TIMEOUT));
+                properties.LOGGER.logInfo("At most %d servers can be starting at a time, with up to %d seconds of jitter.", properties.START_CONCURRENCY, properties.START_JITTER.getSeconds());
+
+            } catch (IllegalArgumentException e) {
+
+                properties.LOGGER.logError("Starts will not be staggered: %s", e.getMessage());
+
+            }
+
+        }
+
+        if (!properties.DEFER_MAX.isZero() && !properties.DEFER_MAX.isNegative()) {
+
+            scheduler.setLoadAdmission(new LoadAdmission(HostPressure.getInstance(), properties.DEFER_LOAD_PER_CPU, properties.DEFER_PRESSURE_PERCENT, properties.DEFER_MEMORY_AVAILABLE_PERCENT, properties.DEFER_MAX));
+            properties.LOGGER.logInfo("Heavy events can be deferred for up to %d seconds while the host is under pressure.", properties.DEFER_MAX.getSeconds());
+
+        }
+
+        return scheduler;
+
+    }
+
+    /**
+     * Runs the client without a terminal or a console, for running it as a service (under systemd, for example). Everything that is logged only goes to the log file and the journal. Since there is no console to control the client with, it is controlled through signals instead: SIGHUP reloads the schedule, and SIGTERM/SIGINT shut it down through the shutdown hook like usual.
+     */
+    private void startHeadless() {
+
+        ASCProperties properties = ASCProperties.getInstance();
+
+        properties.LOGGER.logInfo("Running headless. Send SIGHUP to reload the schedule.");
+        this.installReloadSignal();
+
+        // Register events with ASCServer (Stub for now)
+        if (!this.options.serverless)
+            properties.LOGGER.logInfo("Server registration stub!");
+
+        this.scheduler = this.createScheduler();
+
+        this.startControlServer();
+        this.startMetricsServer();
+
+        // There is no console to keep the client alive, so this is the only thing the main thread does until a shutdown
+        this.scheduleUntilShutdown();
+
+        this.stopControlServer();
+        this.stopMetricsServer();
+
+        try {
+
+            // This call is blocking
+            this.scheduler.shutdown();
+
+        } catch (InterruptedException e) {
+
+            System.err.println("The shutdown process was interrupted! Scheduled events might not execute correctly!");
+            e.printStackTrace();
+
+        }
+
+        // Same as in start(), the logger goes last
+        Tracer.getInstance().close();
+        properties.HISTORY.close();
+        properties.LOGGER.close();
+
+    }
+
+    /**
+     * Makes SIGHUP reload the schedule (see SignalSupport). If the signal cannot be handled on this platform a warning is logged and the client keeps running without it.
+     */
+    private void installReloadSignal() {
+
+        try {
+
+            SignalSupport.handle("HUP", this::reload);
+
+        } catch (UnsupportedOperationException e) {
+
+            ASCProperties.getInstance().LOGGER.logWarning("SIGHUP cannot be handled on this platform (%s), so the schedule will only be reloaded at midnight.", e.getMessage());
+
+        }
+
+    }
+
+    /**
+     * Starts the control server if a port is set in the properties file. If the port cannot be bound the client keeps running without it, since the schedule matters more than remote control.
+     */
+    private void startControlServer() {
+
+        ASCProperties properties = ASCProperties.getInstance();
+
+        if (properties.CONTROL_PORT == 0)
+            return;
+
+        try {
+
+            String token = properties.CONTROL_TOKEN;
+
+            // Any local user can connect to the port, so the server never runs without a token
+            if (token.isEmpty()) {
+
+                token = ControlServer.generateToken(Paths.get(properties.PATH_CONTROL_TOKEN));
+                properties.LOGGER.logInfo("No control.token is set, so a new one was written to '%s', which only this user can read.", properties.PATH_CONTROL_TOKEN);
+
+            }
+
+            this.controlServer = new ControlServer(properties.CONTROL_PORT, token, this.controlCallback);
+            properties.LOGGER.logInfo("Control server listening on the loopback interface, port %d.", this.controlServer.getPort());
+
+        } catch (IOException e) {
+
+            properties.LOGGER.logError("The control server could not be started on port %d: %s", properties.CONTROL_PORT, e.getMessage());
+
+        }
+
+    }
+
+    private synchronized void stopControlServer() {
+
+        if (this.controlServer != null)
+            this.controlServer.close();
+
+    }
+
+    /**
+     * Starts the metrics server if a port is set in the properties file. Like the control server, the client keeps running without it if the port cannot be bound.
+     */
+    private void startMetricsServer() {
+
+        ASCProperties properties = ASCProperties.getInstance();
+
+        if (properties.METRICS_PORT == 0)
+            return;
+
+        try {
+
+            this.metricsServer = new MetricsServer(properties.METRICS_PORT, this.metricsCallback);
+            properties.LOGGER.logInfo("Metrics server listening on the loopback interface, port %d.", this.metricsServer.getPort());
+
+        } catch (IOException e) {
+
+            properties.LOGGER.logError("The metrics server could not be started on port %d: %s", properties.METRICS_PORT, e.getMessage());
+
+        }
+
+    }
+
+    private synchronized void stopMetricsServer() {
+
+        if (this.metricsServer != null)
+            this.metricsServer.close();
+
+    }
+
+    private TerminalMultiplexer getMultiplexer() {
+
+        return (this.multiplexer != null) ? this.multiplexer : ASCProperties.getInstance().MULTIPLEXER;
+
+    }
+
+    /**
+     * Gets the index of every game server. This is normally built along with the schedule, but in console only mode there is no schedule, so it is built here the first time it is needed.
+     *
+     * @return The current ServerIndex.
+     */
+    private ServerIndex getServerIndex() {
+
+        ServerIndex index = this.serverIndex;
+
+        if (index == null) {
+
+            ASCRepository repo = (this.repository != null) ? this.repository : ASCProperties.getInstance().REPOSITORY;
+
+            index = new ServerIndex(repo.getAllGameServers());
+            this.serverIndex = index;
+
+        }
+
+        return index;
+
+    }
+
+    /**
+     * Main loop for scheduling events, which returns once shutdown() or shutdownNow() has been called.
+     */
+    private void scheduleUntilShutdown() {
+
+        // The atomic boolean controls whether to keep scheduling more events when the first batch has completed.
+        while (this.continueScheduling.get()) {
+
+            // Schedule events, and pass the list of futures returned by the scheduler to the synced future list so that we can call waitForCompletion() on it. If another thread calls the cancelAllEvents() method the waitForCompletion() will return immediately since it will process all the remaining futures and realize they are cancelled.
+            this.synchronizedFutureList.clearAndAddAll(this.scheduleEvents());
+
+            // If shutdown() ran after the loop condition was checked but before the new schedule was added, it cancelled the previous (already finished) schedule instead of this one. Without this check, the loop would then wait for a whole day before exiting.
+            if (!this.continueScheduling.get())
+                this.synchronizedFutureList.cancelEvents(false);
+
+            this.synchronizedFutureList.waitForCompletion();
+
+        }
+
+    }
+
+    /**
+     * Reloads the schedule from the repository by cancelling the events that have not fired yet. The scheduling loop then sees that the current schedule is done and loads a new one, picking up any changes to the database (or snapshot). Events that are in the middle of executing are allowed to finish.
+     */
+    public void reload() {
+
+        ASCProperties.getInstance().LOGGER.logInfo("Reloading the schedule (signal)...");
+
+        this.synchronizedFutureList.cancelEvents(false);
+
+    }
+
     /**
      * Gracefully tries to exit the program by cancelling all the events currently scheduled but not yet executed.
      */
@@ -202,6 +591,9 @@ public class ASCClient {
         this.continueScheduling.set(false);
         this.synchronizedFutureList.cancelEvents(true);
 
+        this.stopControlServer();
+        this.stopMetricsServer();
+
         // Attempt to shutdown the executors immediately, not waiting after calling
         if (this.scheduler != null)
             this.scheduler.shutdownNow();
@@ -209,43 +601,64 @@ public class ASCClient {
         if (this.consoleExecutor != null)
             this.consoleExecutor.shutdownNow();
 
+        // Give the trace and history writers a chance to write out the spans and records of events that have already run, then do the same for the log. These wait a bounded amount of time.
+        Tracer.getInstance().close();
+        ASCProperties.getInstance().HISTORY.close();
+        ASCProperties.getInstance().LOGGER.close();
+
     }
 
     /**
      * Uses the database classes to get all the game servers and their associated events. It will then schedule (using EventScheduler) any and all events from game servers who have been flagged to be autostarted.
      *
-     * @return A list of {@code Future}s that each represent the future state of each scheduled event.
+     * @return A list holding a single {@code Future}, which represents the future state of the whole 24 hour schedule.
      */
     private List<Future<?>> scheduleEvents() {
 
         ASCProperties properties = ASCProperties.getInstance();
 
-        // TODO: 2020-07-30 perhaps dynamically inject this repo in order to facilitate testing
-        ASCRepository repo = ASCRepository.getInstance();
+        // Use the injected repository if there is one, otherwise use whatever the properties file asks for
+        ASCRepository repo = (this.repository != null) ? this.repository : properties.REPOSITORY;
 
         // Obtain all the servers from the database
         properties.LOGGER.logInfo("Querying all game servers...");
         List<GameServer> serverList = repo.getAllGameServers();
-        properties.LOGGER.logInfo(String.format("Got %d game servers.", serverList.size()));
+        properties.LOGGER.logInfo("Got %d game servers.", serverList.size());
+
+        this.serverIndex = new ServerIndex(serverList);
 
-        List<Event> eventList = new ArrayList<>();
+        // The events go straight from the repository into the columns of the table, so that loading a large schedule does not take an object per event. The scheduler only arms the events in the near future from it.
+        ScheduleTable.Builder builder = new ScheduleTable.Builder();
 
         // For every GameServer that is set to autostart, get all their events
         properties.LOGGER.logInfo("Querying all events...");
 
-        // Only start servers that have the autostart flag enabled
-        for (GameServer gameServer : serverList)
-            if (gameServer.isAutostart())
-                eventList.addAll(repo.getAllEvents(gameServer));
+        // Only start servers that have the autostart flag enabled. The events are only described at this point -- they are built right before they fire -- but we still check their structure now so that a broken database is caught on startup, like it used to be.
+        for (GameServer gameServer : serverList) {
 
-        properties.LOGGER.logInfo(String.format("Got %d events.", eventList.size()));
+            if (!gameServer.isAutostart())
+                continue;
+
+            repo.forEachEvent(gameServer, (eid, eventType, server, secondOfDay, args) -> {
+
+                EventFactory.validate(eventType, args);
+                builder.add(eid, eventType, server, secondOfDay, args);
+
+            });
+
+        }
+
+        properties.LOGGER.logInfo("Got %d events.", builder.size());
 
         properties.LOGGER.logInfo("Scheduling all events...");
-        List<Future<?>> futureList = this.scheduler.scheduleEvents(eventList);
+        ScheduleTable table = builder.build();
+
+        this.schedule = table;
+        Future<?> cycle = this.scheduler.scheduleTable(table);
 
         properties.LOGGER.logInfo("Done. Currently running...");
 
-        return futureList;
+        return Collections.singletonList(cycle);
 
     }
 
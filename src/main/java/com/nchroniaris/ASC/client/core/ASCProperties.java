@@ -1,13 +1,23 @@
 package com.nchroniaris.ASC.client.core;
 
+import com.nchroniaris.ASC.client.database.ASCRepository;
+import com.nchroniaris.ASC.client.database.EventHistoryWriter;
+import com.nchroniaris.ASC.client.database.SQLiteRepository;
+import com.nchroniaris.ASC.client.database.SnapshotRepository;
 import com.nchroniaris.ASC.client.exception.PropertiesNotFoundException;
 import com.nchroniaris.ASC.client.exception.PropertyNotSetException;
+import com.nchroniaris.ASC.client.jfr.FlightRecording;
 import com.nchroniaris.ASC.client.multiplexer.ScreenMultiplexer;
 import com.nchroniaris.ASC.client.multiplexer.TerminalMultiplexer;
+import com.nchroniaris.ASC.client.trace.Tracer;
 import com.nchroniaris.ASC.util.logger.ASCLogger;
+import com.nchroniaris.ASC.util.logger.EventJournal;
+import com.nchroniaris.ASC.util.logger.LogLevel;
 
 import java.io.*;
 import java.net.URLDecoder;
+import java.text.ParseException;
+import java.time.Duration;
 import java.util.Properties;
 
 /**
@@ -23,6 +33,62 @@ public class ASCProperties {
     private static final String PROPERTY_PATH_DB = "path.db";
     private static final String PROPERTY_PATH_LOG = "path.log";
     private static final String PROPERTY_MULTIPLEXER = "multiplexer";
+    private static final String PROPERTY_HISTORY_RETENTION = "history.retention.days";
+    private static final String PROPERTY_REPOSITORY = "repository";
+    private static final String PROPERTY_PATH_SNAPSHOT = "path.snapshot";
+    private static final String PROPERTY_LOG_ASYNC = "log.async";
+    private static final String PROPERTY_LOG_LEVEL = "log.level";
+    private static final String PROPERTY_LOG_ROTATE_SIZE = "log.rotate.size.mb";
+    private static final String PROPERTY_LOG_ROTATE_DAILY = "log.rotate.daily";
+    private static final String PROPERTY_LOG_RETENTION = "log.retention.count";
+    private static final String PROPERTY_LOG_JOURNAL = "log.journal";
+    private static final String PROPERTY_PATH_JOURNAL = "path.journal";
+    private static final String PROPERTY_CONTROL_PORT = "control.port";
+    private static final String PROPERTY_CONTROL_TOKEN = "control.token";
+    private static final String PROPERTY_PATH_CONTROL_TOKEN = "path.control.token";
+    private static final String PROPERTY_JFR_ENABLED = "jfr.enabled";
+    private static final String PROPERTY_JFR_MAX_AGE = "jfr.maxage.hours";
+    private static final String PROPERTY_JFR_MAX_SIZE = "jfr.maxsize.mb";
+    private static final String PROPERTY_PATH_JFR = "path.jfr";
+    private static final String PROPERTY_METRICS_PORT = "metrics.port";
+    private static final String PROPERTY_TRACE_SAMPLE_RATE = "trace.samplerate";
+    private static final String PROPERTY_PATH_TRACE = "path.trace";
+    private static final String PROPERTY_START_CONCURRENCY = "start.concurrency";
+    private static final String PROPERTY_START_JITTER = "start.jitter.seconds";
+    private static final String PROPERTY_START_READY_TIMEOUT = "start.ready.timeout.seconds";
+    private static final String PROPERTY_DEFER_MAX = "defer.max.seconds";
+    private static final String PROPERTY_DEFER_LOAD = "defer.load.per.cpu";
+    private static final String PROPERTY_DEFER_PRESSURE = "defer.pressure.percent";
+    private static final String PROPERTY_DEFER_MEMORY = "defer.memory.available.percent";
+
+    // Default values for properties that were added after the first release. If these are missing from an existing properties file, the defaults are used instead of failing.
+    private static final String DEFAULT_HISTORY_RETENTION = "30";
+    private static final String DEFAULT_REPOSITORY = "sqlite";
+    private static final String DEFAULT_PATH_SNAPSHOT = "resources/ASC.snapshot";
+    private static final String DEFAULT_LOG_ASYNC = "false";
+    private static final String DEFAULT_LOG_LEVEL = "INFO";
+    private static final String DEFAULT_LOG_ROTATE_SIZE = "10";
+    private static final String DEFAULT_LOG_ROTATE_DAILY = "true";
+    private static final String DEFAULT_LOG_RETENTION = "14";
+    private static final String DEFAULT_LOG_JOURNAL = "false";
+    private static final String DEFAULT_PATH_JOURNAL = "resources/ASC.journal";
+    private static final String DEFAULT_CONTROL_PORT = "0";
+    private static final String DEFAULT_CONTROL_TOKEN = "";
+    private static final String DEFAULT_PATH_CONTROL_TOKEN = "resources/ASC.control.token";
+    private static final String DEFAULT_JFR_ENABLED = "false";
+    private static final String DEFAULT_JFR_MAX_AGE = "24";
+    private static final String DEFAULT_JFR_MAX_SIZE = "100";
+    private static final String DEFAULT_PATH_JFR = "resources/ASC.jfr";
+    private static final String DEFAULT_METRICS_PORT = "0";
+    private static final String DEFAULT_TRACE_SAMPLE_RATE = "0";
+    private static final String DEFAULT_PATH_TRACE = "resources/ASC.trace.json";
+    private static final String DEFAULT_START_CONCURRENCY = "0";
+    private static final String DEFAULT_START_JITTER = "0";
+    private static final String DEFAULT_START_READY_TIMEOUT = "300";
+    private static final String DEFAULT_DEFER_MAX = "0";
+    private static final String DEFAULT_DEFER_LOAD = "1.5";
+    private static final String DEFAULT_DEFER_PRESSURE = "40";
+    private static final String DEFAULT_DEFER_MEMORY = "10";
 
     // This attribute holds the absolute path for the directory that contains the jar file.
     // I am aware doing this might be a bit awkward, but the specific way I have thought this application out is in such a way that it is meant to be "portable". Therefore, I would prefer if all relevant files that are core to the application reside in some sort of directory relative to the jar file. This also comes with the benefit of not having to make sure that the working directory is the same as the directory where the jar resides, as ALL files will be relative to THIS path instead of relative to the working dir.
@@ -37,8 +103,31 @@ public class ASCProperties {
 
     // These are public because they are declared final. The `PATH_...` variables are absolute paths that are meant to be in accordance with the ASC.properties file.
     public final String PATH_DB;
+    public final String PATH_SNAPSHOT;
+    public final SQLiteRepository DATABASE;
+    public final ASCRepository REPOSITORY;
     public final TerminalMultiplexer MULTIPLEXER;
     public final ASCLogger LOGGER;
+    public final EventHistoryWriter HISTORY;
+
+    // The port of the local control server (0 if it is disabled) and the token its clients have to send. If the token is empty, a random one is written to PATH_CONTROL_TOKEN every time the control server starts. See ControlServer.
+    public final int CONTROL_PORT;
+    public final String CONTROL_TOKEN;
+    public final String PATH_CONTROL_TOKEN;
+
+    // The port of the local Prometheus endpoint (0 if it is disabled). See MetricsServer.
+    public final int METRICS_PORT;
+
+    // How many servers can be starting at a time (0 for no limit), how far their starts are spread out, and how long each one gets to open its port before the next one starts anyway. See StartAdmission.
+    public final int START_CONCURRENCY;
+    public final Duration START_JITTER;
+    public final Duration START_READY_TIMEOUT;
+
+    // The longest that heavy events can be deferred for while the host is busy (0 to never defer them), and the limits past which the host counts as busy. See LoadAdmission.
+    public final Duration DEFER_MAX;
+    public final double DEFER_LOAD_PER_CPU;
+    public final double DEFER_PRESSURE_PERCENT;
+    public final double DEFER_MEMORY_AVAILABLE_PERCENT;
 
     /**
      * This gets the instance of the class as it is implemented as a singleton.
@@ -94,6 +183,33 @@ public class ASCProperties {
         properties.setProperty(ASCProperties.PROPERTY_PATH_DB, "resources/ASC.sqlite3");
         properties.setProperty(ASCProperties.PROPERTY_PATH_LOG, "resources/ASC.log");
         properties.setProperty(ASCProperties.PROPERTY_MULTIPLEXER, "screen");
+        properties.setProperty(ASCProperties.PROPERTY_HISTORY_RETENTION, ASCProperties.DEFAULT_HISTORY_RETENTION);
+        properties.setProperty(ASCProperties.PROPERTY_REPOSITORY, ASCProperties.DEFAULT_REPOSITORY);
+        properties.setProperty(ASCProperties.PROPERTY_PATH_SNAPSHOT, ASCProperties.DEFAULT_PATH_SNAPSHOT);
+        properties.setProperty(ASCProperties.PROPERTY_LOG_ASYNC, ASCProperties.DEFAULT_LOG_ASYNC);
+        properties.setProperty(ASCProperties.PROPERTY_LOG_LEVEL, ASCProperties.DEFAULT_LOG_LEVEL);
+        properties.setProperty(ASCProperties.PROPERTY_LOG_ROTATE_SIZE, ASCProperties.DEFAULT_LOG_ROTATE_SIZE);
+        properties.setProperty(ASCProperties.PROPERTY_LOG_ROTATE_DAILY, ASCProperties.DEFAULT_LOG_ROTATE_DAILY);
+        properties.setProperty(ASCProperties.PROPERTY_LOG_RETENTION, ASCProperties.DEFAULT_LOG_RETENTION);
+        properties.setProperty(ASCProperties.PROPERTY_LOG_JOURNAL, ASCProperties.DEFAULT_LOG_JOURNAL);
+        properties.setProperty(ASCProperties.PROPERTY_PATH_JOURNAL, ASCProperties.DEFAULT_PATH_JOURNAL);
+        properties.setProperty(ASCProperties.PROPERTY_CONTROL_PORT, ASCProperties.DEFAULT_CONTROL_PORT);
+        properties.setProperty(ASCProperties.PROPERTY_CONTROL_TOKEN, ASCProperties.DEFAULT_CONTROL_TOKEN);
+        properties.setProperty(ASCProperties.PROPERTY_PATH_CONTROL_TOKEN, ASCProperties.DEFAULT_PATH_CONTROL_TOKEN);
+        properties.setProperty(ASCProperties.PROPERTY_JFR_ENABLED, ASCProperties.DEFAULT_JFR_ENABLED);
+        properties.setProperty(ASCProperties.PROPERTY_JFR_MAX_AGE, ASCProperties.DEFAULT_JFR_MAX_AGE);
+        properties.setProperty(ASCProperties.PROPERTY_JFR_MAX_SIZE, ASCProperties.DEFAULT_JFR_MAX_SIZE);
+        properties.setProperty(ASCProperties.PROPERTY_PATH_JFR, ASCProperties.DEFAULT_PATH_JFR);
+        properties.setProperty(ASCProperties.PROPERTY_METRICS_PORT, ASCProperties.DEFAULT_METRICS_PORT);
+        properties.setProperty(ASCProperties.PROPERTY_TRACE_SAMPLE_RATE, ASCProperties.DEFAULT_TRACE_SAMPLE_RATE);
+        properties.setProperty(ASCProperties.PROPERTY_PATH_TRACE, ASCProperties.DEFAULT_PATH_TRACE);
+        properties.setProperty(ASCProperties.PROPERTY_START_CONCURRENCY, ASCProperties.DEFAULT_START_CONCURRENCY);
+        properties.setProperty(ASCProperties.PROPERTY_START_JITTER, ASCProperties.DEFAULT_START_JITTER);
+        properties.setProperty(ASCProperties.PROPERTY_START_READY_TIMEOUT, ASCProperties.DEFAULT_START_READY_TIMEOUT);
+        properties.setProperty(ASCProperties.PROPERTY_DEFER_MAX, ASCProperties.DEFAULT_DEFER_MAX);
+        properties.setProperty(ASCProperties.PROPERTY_DEFER_LOAD, ASCProperties.DEFAULT_DEFER_LOAD);
+        properties.setProperty(ASCProperties.PROPERTY_DEFER_PRESSURE, ASCProperties.DEFAULT_DEFER_PRESSURE);
+        properties.setProperty(ASCProperties.PROPERTY_DEFER_MEMORY, ASCProperties.DEFAULT_DEFER_MEMORY);
 
         File dirResources = new File(ASCProperties.PATH_RESOURCES_DIR);
 
@@ -131,8 +247,23 @@ public class ASCProperties {
 
         // Since the instance variables are final, we must do this rigamarole to avoid a compiler error. In reality, any of these variables will NEVER be null as upon catching an exception we will exit.
         String PATH_DB = null;
+        String PATH_SNAPSHOT = null;
+        SQLiteRepository DATABASE = null;
+        ASCRepository REPOSITORY = null;
         TerminalMultiplexer MULTIPLEXER = null;
         ASCLogger LOGGER = null;
+        EventHistoryWriter HISTORY = null;
+        int CONTROL_PORT = 0;
+        String CONTROL_TOKEN = null;
+        String PATH_CONTROL_TOKEN = null;
+        int METRICS_PORT = 0;
+        int START_CONCURRENCY = 0;
+        Duration START_JITTER = null;
+        Duration START_READY_TIMEOUT = null;
+        Duration DEFER_MAX = null;
+        double DEFER_LOAD_PER_CPU = 0;
+        double DEFER_PRESSURE_PERCENT = 0;
+        double DEFER_MEMORY_AVAILABLE_PERCENT = 0;
 
         // Open the properties file as a FileInputStream using a try-with-resources block and load the properties file and all relevant keys
         try (FileInputStream propertiesFile = new FileInputStream(ASCProperties.PATH_PROPERTIES)) {
@@ -141,6 +272,7 @@ public class ASCProperties {
 
             // Get all variables from the properties file. Note that a NullPointerException will occur if any of the properties are not found (mostly via the call to resolvePath()). Specifically, this will occur when a certain property does not exist in the property file.
             PATH_DB = this.resolvePath(properties.getProperty(ASCProperties.PROPERTY_PATH_DB));
+            PATH_SNAPSHOT = this.resolvePath(properties.getProperty(ASCProperties.PROPERTY_PATH_SNAPSHOT, ASCProperties.DEFAULT_PATH_SNAPSHOT));
 
             // These variables are local, and it will not be converted to an instance variable
             String mpType = properties.getProperty(ASCProperties.PROPERTY_MULTIPLEXER);
@@ -160,8 +292,124 @@ public class ASCProperties {
 
             }
 
-            // Construct logger using the resolved path from above
-            LOGGER = new ASCLogger(pathLog);
+            // Construct logger using the resolved path from above. In asynchronous mode the file is written on a background thread, so that logging never waits on the disk.
+            boolean logAsync = Boolean.parseBoolean(properties.getProperty(ASCProperties.PROPERTY_LOG_ASYNC, ASCProperties.DEFAULT_LOG_ASYNC).trim());
+
+            // The log is rotated when it reaches a certain size (0 disables this) and/or when the day changes, and only a certain number of old logs are kept (0 keeps all of them).
+            long logRotateMegabytes = Long.parseLong(properties.getProperty(ASCProperties.PROPERTY_LOG_ROTATE_SIZE, ASCProperties.DEFAULT_LOG_ROTATE_SIZE).trim());
+            boolean logRotateDaily = Boolean.parseBoolean(properties.getProperty(ASCProperties.PROPERTY_LOG_ROTATE_DAILY, ASCProperties.DEFAULT_LOG_ROTATE_DAILY).trim());
+            int logRetention = Integer.parseInt(properties.getProperty(ASCProperties.PROPERTY_LOG_RETENTION, ASCProperties.DEFAULT_LOG_RETENTION).trim());
+
+            LOGGER = new ASCLogger(pathLog, null, logAsync, logRotateMegabytes * 1024 * 1024, logRotateDaily, logRetention);
+
+            // Messages below this level are dropped before they are even formatted. TRACE and DEBUG are mostly useful for troubleshooting.
+            try {
+
+                LOGGER.setLevel(LogLevel.fromName(properties.getProperty(ASCProperties.PROPERTY_LOG_LEVEL, ASCProperties.DEFAULT_LOG_LEVEL)));
+
+            } catch (IllegalArgumentException e) {
+
+                System.err.println("[CRITICAL] " + e.getMessage());
+                System.exit(1);
+
+            }
+
+            // The journal is a binary copy of the log (plus the outcome of every event) that monitoring tools can read with JournalReader, instead of parsing the text log.
+            if (Boolean.parseBoolean(properties.getProperty(ASCProperties.PROPERTY_LOG_JOURNAL, ASCProperties.DEFAULT_LOG_JOURNAL).trim())) {
+
+                String pathJournal = this.resolvePath(properties.getProperty(ASCProperties.PROPERTY_PATH_JOURNAL, ASCProperties.DEFAULT_PATH_JOURNAL));
+
+                try {
+
+                    LOGGER.setJournal(new EventJournal(pathJournal));
+
+                } catch (IOException e) {
+
+                    System.err.printf("[CRITICAL] The event journal (%s) could not be opened!%n", pathJournal);
+                    e.printStackTrace();
+                    System.exit(1);
+
+                }
+
+            }
+
+            // The Flight Recorder recording is started as early as possible, so that it also covers loading the schedule. Unlike the journal, the client can do without it, so a failure is only a warning.
+            if (Boolean.parseBoolean(properties.getProperty(ASCProperties.PROPERTY_JFR_ENABLED, ASCProperties.DEFAULT_JFR_ENABLED).trim())) {
+
+                long jfrMaxAgeHours = Long.parseLong(properties.getProperty(ASCProperties.PROPERTY_JFR_MAX_AGE, ASCProperties.DEFAULT_JFR_MAX_AGE).trim());
+                long jfrMaxSizeMegabytes = Long.parseLong(properties.getProperty(ASCProperties.PROPERTY_JFR_MAX_SIZE, ASCProperties.DEFAULT_JFR_MAX_SIZE).trim());
+                String pathJfr = this.resolvePath(properties.getProperty(ASCProperties.PROPERTY_PATH_JFR, ASCProperties.DEFAULT_PATH_JFR));
+
+                try {
+
+                    FlightRecording.start(Duration.ofHours(jfrMaxAgeHours), jfrMaxSizeMegabytes * 1024 * 1024, pathJfr);
+
+                } catch (IOException | ParseException | IllegalStateException | IllegalArgumentException e) {
+
+                    LOGGER.logWarning("The Flight Recorder recording could not be started: %s", e.getMessage());
+
+                }
+
+            }
+
+            // A fraction (0 to 1) of the events are traced, from the moment they are due to fire until their last process exits. Like the recording, the client can do without it.
+            double traceSampleRate = Double.parseDouble(properties.getProperty(ASCProperties.PROPERTY_TRACE_SAMPLE_RATE, ASCProperties.DEFAULT_TRACE_SAMPLE_RATE).trim());
+
+            if (traceSampleRate > 0) {
+
+                String pathTrace = this.resolvePath(properties.getProperty(ASCProperties.PROPERTY_PATH_TRACE, ASCProperties.DEFAULT_PATH_TRACE));
+
+                try {
+
+                    Tracer.getInstance().start(traceSampleRate, pathTrace);
+
+                } catch (IOException | IllegalArgumentException e) {
+
+                    LOGGER.logWarning("Tracing could not be started: %s", e.getMessage());
+
+                }
+
+            }
+
+            // The SQLite database is always needed since it is the source of truth and holds the history, but the schedule can be read from a faster source. Like the multiplexer, this switch will fail with a NullPointerException only if the property is somehow null, which the default prevents.
+            DATABASE = new SQLiteRepository(PATH_DB);
+
+            String repositoryType = properties.getProperty(ASCProperties.PROPERTY_REPOSITORY, ASCProperties.DEFAULT_REPOSITORY);
+
+            switch (repositoryType) {
+
+                case "sqlite":
+                    REPOSITORY = DATABASE;
+                    break;
+
+                case "snapshot":
+                    REPOSITORY = new SnapshotRepository(PATH_SNAPSHOT, PATH_DB);
+                    break;
+
+                default:
+                    throw new UnsupportedOperationException(String.format("[CRITICAL] The current repository type set in the properties file is not supported (Got '%s'). Please specify one of 'sqlite' or 'snapshot'.", repositoryType));
+
+            }
+
+            // The history writer runs on its own thread, and keeps records for the given number of days (0 keeps them forever). This property is optional for compatibility with older properties files.
+            long retentionDays = Long.parseLong(properties.getProperty(ASCProperties.PROPERTY_HISTORY_RETENTION, ASCProperties.DEFAULT_HISTORY_RETENTION).trim());
+            HISTORY = new EventHistoryWriter(DATABASE, Duration.ofDays(retentionDays));
+
+            // The control server only listens on the loopback interface, but any local user can connect to it, which is what the token is for
+            CONTROL_PORT = Integer.parseInt(properties.getProperty(ASCProperties.PROPERTY_CONTROL_PORT, ASCProperties.DEFAULT_CONTROL_PORT).trim());
+            CONTROL_TOKEN = properties.getProperty(ASCProperties.PROPERTY_CONTROL_TOKEN, ASCProperties.DEFAULT_CONTROL_TOKEN).trim();
+            PATH_CONTROL_TOKEN = this.resolvePath(properties.getProperty(ASCProperties.PROPERTY_PATH_CONTROL_TOKEN, ASCProperties.DEFAULT_PATH_CONTROL_TOKEN));
+
+            METRICS_PORT = Integer.parseInt(properties.getProperty(ASCProperties.PROPERTY_METRICS_PORT, ASCProperties.DEFAULT_METRICS_PORT).trim());
+
+            START_CONCURRENCY = Integer.parseInt(properties.getProperty(ASCProperties.PROPERTY_START_CONCURRENCY, ASCProperties.DEFAULT_START_CONCURRENCY).trim());
+            START_JITTER = Duration.ofSeconds(Long.parseLong(properties.getProperty(ASCProperties.PROPERTY_START_JITTER, ASCProperties.DEFAULT_START_JITTER).trim()));
+            START_READY_TIMEOUT = Duration.ofSeconds(Long.parseLong(properties.getProperty(ASCProperties.PROPERTY_START_READY_TIMEOUT, ASCProperties.DEFAULT_START_READY_TIMEOUT).trim()));
+
+            DEFER_MAX = Duration.ofSeconds(Long.parseLong(properties.getProperty(ASCProperties.PROPERTY_DEFER_MAX, ASCProperties.DEFAULT_DEFER_MAX).trim()));
+            DEFER_LOAD_PER_CPU = Double.parseDouble(properties.getProperty(ASCProperties.PROPERTY_DEFER_LOAD, ASCProperties.DEFAULT_DEFER_LOAD).trim());
+            DEFER_PRESSURE_PERCENT = Double.parseDouble(properties.getProperty(ASCProperties.PROPERTY_DEFER_PRESSURE, ASCProperties.DEFAULT_DEFER_PRESSURE).trim());
+            DEFER_MEMORY_AVAILABLE_PERCENT = Double.parseDouble(properties.getProperty(ASCProperties.PROPERTY_DEFER_MEMORY, ASCProperties.DEFAULT_DEFER_MEMORY).trim());
 
         } catch (FileNotFoundException e) {
 
@@ -183,11 +431,31 @@ public class ASCProperties {
             System.err.println("[CRITICAL] One or more of the mandatory properties are empty! Please set them or regenerate the properties file.");
             System.exit(1);
 
+        } catch (NumberFormatException e) {
+
+            System.err.println("[CRITICAL] One or more of the numeric properties are not valid numbers! Please fix them or regenerate the properties file.");
+            System.exit(1);
+
         }
 
         this.PATH_DB = PATH_DB;
+        this.PATH_SNAPSHOT = PATH_SNAPSHOT;
+        this.DATABASE = DATABASE;
+        this.REPOSITORY = REPOSITORY;
         this.MULTIPLEXER = MULTIPLEXER;
         this.LOGGER = LOGGER;
+        this.HISTORY = HISTORY;
+        this.CONTROL_PORT = CONTROL_PORT;
+        this.CONTROL_TOKEN = CONTROL_TOKEN;
+        this.PATH_CONTROL_TOKEN = PATH_CONTROL_TOKEN;
+        this.METRICS_PORT = METRICS_PORT;
+        this.START_CONCURRENCY = START_CONCURRENCY;
+        this.START_JITTER = START_JITTER;
+        this.START_READY_TIMEOUT = START_READY_TIMEOUT;
+        this.DEFER_MAX = DEFER_MAX;
+        this.DEFER_LOAD_PER_CPU = DEFER_LOAD_PER_CPU;
+        this.DEFER_PRESSURE_PERCENT = DEFER_PRESSURE_PERCENT;
+        this.DEFER_MEMORY_AVAILABLE_PERCENT = DEFER_MEMORY_AVAILABLE_PERCENT;
 
     }
 
@@ -1,11 +1,25 @@
 package com.nchroniaris.ASC.client.core;
 
+import com.nchroniaris.ASC.client.database.ASCRepository;
+import com.nchroniaris.ASC.client.database.SnapshotRepository;
+import com.nchroniaris.ASC.client.schedule.ScheduleSimulator;
+import com.nchroniaris.ASC.client.schedule.ScheduleTable;
+import com.nchroniaris.ASC.client.schedule.SimulationReport;
+import com.nchroniaris.ASC.util.logger.LogLevel;
+import com.nchroniaris.ASC.util.model.GameServer;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.List;
 
 public class Main {
 
-    private static final String USAGE_STRING = "java -jar ASC-client.jar [-h|-s|-c|-d]";
+    // How many skipped or failed events a simulation lists one by one
+    private static final int SIMULATION_MAX_PROBLEMS = 100;
+
+    private static final String USAGE_STRING = "java -jar ASC-client.jar [-h|-r|-S|-s|-c|-d|-H]";
 
     public static void main(String[] args) {
 
@@ -25,6 +39,18 @@ public class Main {
                     Main.printHelp();
                     return;
 
+                // Regenerate the snapshot from the database and quit
+                case "-r":
+                case "--regenerate-snapshot":
+                    Main.regenerateSnapshot();
+                    return;
+
+                // Simulate a day of the schedule and quit
+                case "-S":
+                case "--simulate":
+                    Main.simulateSchedule();
+                    return;
+
                 case "-s":
                 case "--serverless":
                     options.serverless = true;
@@ -40,6 +66,11 @@ public class Main {
                     options.allowDumbTerminal = true;
                     break;
 
+                case "-H":
+                case "--headless":
+                    options.headless = true;
+                    break;
+
                 // Print error message, usage, and exit
                 default:
                     System.out.printf("Unrecognized option '%s'%n", arg);
@@ -50,6 +81,15 @@ public class Main {
 
         }
 
+        // Without a console there is nothing to do in console only mode, and the client would just sit there
+        if (options.headless && options.consoleOnly) {
+
+            System.out.println("The options --headless and --console-only cannot be used together.");
+            Main.printUsage();
+            return;
+
+        }
+
         // Run client with command line options
         Main.runClient(options);
 
@@ -67,6 +107,62 @@ public class Main {
 
     }
 
+    /**
+     * Writes a new snapshot of the database to the snapshot path in the properties file. The snapshot is used by the client when the repository property is set to "snapshot".
+     */
+    private static void regenerateSnapshot() {
+
+        ASCProperties properties = ASCProperties.getInstance();
+
+        try {
+
+            SnapshotRepository.writeSnapshot(properties.DATABASE, properties.PATH_SNAPSHOT);
+            System.out.printf("Snapshot written to %s%n", properties.PATH_SNAPSHOT);
+
+        } catch (IOException e) {
+
+            System.err.printf("[CRITICAL] There was an issue writing the snapshot (%s)!%n", properties.PATH_SNAPSHOT);
+            e.printStackTrace();
+            System.exit(1);
+
+        }
+
+    }
+
+    /**
+     * Simulates today's schedule from midnight to midnight against a virtual clock, and prints the timeline. Nothing is started and no commands are sent, so this is safe to run next to a running client. Exits with a non-zero status if any event would fail, so that it can be used to check a schedule before deploying it.
+     */
+    private static void simulateSchedule() {
+
+        ASCProperties properties = ASCProperties.getInstance();
+        ASCRepository repo = properties.REPOSITORY;
+
+        // The events still log what they do as they run, which would fill the log with a day of lines about things that never happened. Anything that goes wrong is in the timeline instead.
+        properties.LOGGER.setLevel(LogLevel.ERROR);
+
+        ScheduleTable.Builder builder = new ScheduleTable.Builder();
+
+        // Like the client, only the events of servers that are set to autostart are scheduled. Unlike the client, broken events are not fatal here: they fail in the simulation and show up in the timeline.
+        for (GameServer gameServer : repo.getAllGameServers()) {
+
+            if (gameServer.isAutostart())
+                repo.forEachEvent(gameServer, builder::add);
+
+        }
+
+        ScheduleSimulator simulator = new ScheduleSimulator(builder.build());
+        SimulationReport report = simulator.simulate(LocalDate.now().atStartOfDay(), ZoneId.systemDefault());
+
+        report.print(System.out, Main.SIMULATION_MAX_PROBLEMS);
+
+        properties.HISTORY.close();
+        properties.LOGGER.close();
+
+        if (report.getFailedCount() > 0)
+            System.exit(1);
+
+    }
+
     /**
      * Creates a new list of String arguments, with single combination arguments, like "-xyz" into full arguments, like "-x", "-y", and "-z" while preserving order.
      * @param programArgs A primitive String array that represents the current argument list
@@ -117,6 +213,14 @@ public class Main {
         System.out.println("\t\tShows this help menu");
         System.out.println();
 
+        System.out.println("\t-r, --regenerate-snapshot");
+        System.out.printf("\t\tWrites a snapshot of the database to the path in path.snapshot and exits.%n%n\t\tWhen the repository property is set to 'snapshot', the client loads its schedule from this file instead of the database, which is much faster for large schedules. Run this again whenever the database changes.%n");
+        System.out.println();
+
+        System.out.println("\t-S, --simulate");
+        System.out.printf("\t\tSimulates a whole day of the schedule (from midnight to midnight) in a few seconds, prints a timeline of it, and exits. Nothing is actually started and no commands are sent: every event runs against a multiplexer that only records what it was asked to do, on a virtual clock.%n%n\t\tThe timeline shows how many events run in every hour, the busiest second of the day, and every event that would be skipped (such as a command sent to a server that is not running) or fail (such as a missing executable). The exit status is non-zero if any event would fail, which makes this useful for checking a schedule before deploying it.%n");
+        System.out.println();
+
         System.out.println("\t-s, --serverless");
         System.out.printf("\t\tRuns in serverless mode. This will disable all networking functionality and the client will never attempt to register any of its game servers with the ASC server (if configured).%n%n\t\tThis is helpful if you have no need to connect it to an ASC server or otherwise do not want remote commands to be executed on the machine that's running this client.%n");
         System.out.println();
@@ -129,6 +233,10 @@ public class Main {
         System.out.printf("\t\tAllow a dumb terminal to be attached to the front-facing UI. Currently, if on startup the client cannot find a properly configured terminal to attach to, it will exit. This option allows a dumb terminal to be attached, which means that some terminals may now work but with limited or undefined functionality in terms of the operation of the console (the core of the program should be undisturbed).%n%n\t\tUsually this option should not be considered, as most standard terminals work out of the box. However if you are having trouble try using this option and see if it works.%n");
         System.out.println();
 
+        System.out.println("\t-H, --headless");
+        System.out.printf("\t\tRuns the client without a terminal or a console, which is meant for running it as a service (under systemd, for example). Everything is logged to the log file (and the journal, if enabled) only.%n%n\t\tSince there is no console, the client is controlled through signals: SIGHUP reloads the schedule from the database or snapshot, and SIGTERM shuts the client down. This mode also starts faster and uses less memory, since the terminal library is never loaded.%n");
+        System.out.println();
+
     }
 
     /**
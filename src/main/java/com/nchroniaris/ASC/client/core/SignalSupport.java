@@ -0,0 +1,71 @@
+package com.nchroniaris.ASC.client.core;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+
+/**
+ * Handles POSIX signals through sun.misc.Signal, which is not a standard API but is present on every JVM the client runs on. It is only ever loaded reflectively from here, since compiling against it directly causes a warning that javac does not allow to be suppressed.
+ */
+final class SignalSupport {
+
+    private SignalSupport() {
+    }
+
+    /**
+     * Runs a handler whenever the process receives a signal, instead of what the JVM would do by default. The handler runs on a thread of its own, which the JVM starts for every signal.
+     *
+     * @param signal  The name of the signal, without the "SIG" prefix (such as "HUP").
+     * @param handler What to do when the signal is received.
+     * @throws UnsupportedOperationException If signals cannot be handled on this JVM, or this signal cannot be handled on this platform.
+     */
+    static void handle(String signal, Runnable handler) {
+
+        if (signal == null)
+            throw new IllegalArgumentException("The signal argument should NOT be null!");
+
+        if (handler == null)
+            throw new IllegalArgumentException("The handler argument should NOT be null!");
+
+        try {
+
+            Class<?> signalClass = Class.forName("sun.misc.Signal");
+            Class<?> handlerClass = Class.forName("sun.misc.SignalHandler");
+
+            // SignalHandler has a single method, handle(Signal). The others are the ones of Object, which the JVM keeps the handler in a map with.
+            Object proxy = Proxy.newProxyInstance(SignalSupport.class.getClassLoader(), new Class<?>[]{handlerClass}, (self, method, args) -> {
+
+                switch (method.getName()) {
+
+                    case "equals":
+                        return self == args[0];
+
+                    case "hashCode":
+                        return System.identityHashCode(self);
+
+                    case "toString":
+                        return "SIG" + signal + " handler";
+
+                    default:
+                        handler.run();
+                        return null;
+
+                }
+
+            });
+
+            signalClass.getMethod("handle", signalClass, handlerClass).invoke(null, signalClass.getConstructor(String.class).newInstance(signal), proxy);
+
+        } catch (InvocationTargetException e) {
+
+            // An unknown signal, or one that the JVM uses itself
+            throw new UnsupportedOperationException(e.getCause().getMessage(), e.getCause());
+
+        } catch (ReflectiveOperationException | LinkageError e) {
+
+            throw new UnsupportedOperationException(String.format("sun.misc.Signal is not available (%s)", e), e);
+
+        }
+
+    }
+
+}
@@ -0,0 +1,358 @@
+package com.nchroniaris.ASC.client.database;
+
+import com.nchroniaris.ASC.client.core.ASCProperties;
+import com.nchroniaris.ASC.client.model.EventHistoryRecord;
+import com.nchroniaris.ASC.client.model.EventResult;
+import com.nchroniaris.ASC.util.concurrent.RingSequence;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class takes event history records from any number of threads and writes them to the event_history table on a single background thread. Records are put in a bounded queue, so recording history never blocks the event that produced it. The background thread takes as many records as are available (up to a limit) and inserts them in one transaction, so a burst of events costs one commit instead of one per event.
+ * <p>
+ * Every event records its outcome, so recording has to be cheap. The queue is a ring buffer of primitive fields (a RingSequence, like the one of AsyncLogWriter), and EventHistoryRecord objects are only created on the background thread, so recording a record does not allocate anything.
+ * <p>
+ * The caller is REQUIRED to close the writer when finished via <code>EventHistoryWriter.close()</code>, otherwise records still in the queue are lost.
+ */
+public class EventHistoryWriter implements AutoCloseable {
+
+    // Maximum number of records that can be waiting to be written. If the database is slow or unavailable, records past this are dropped rather than blocking events or growing the heap without bound. This must be a power of two (see RingSequence).
+    private static final int QUEUE_CAPACITY = 4096;
+
+    // Maximum number of records committed in one transaction
+    private static final int BATCH_SIZE = 256;
+
+    // How long the background thread sleeps when there are no records. Producers never wake it up, since that would cost them a system call, and history is not in a hurry.
+    private static final long IDLE_PARK_NANOS = 100_000_000L;
+
+    // How often old records are pruned, if a retention period is set
+    private static final Duration PRUNE_INTERVAL = Duration.ofHours(1);
+
+    // How long the background thread sleeps when it is finishing and a producer has claimed a slot but not filled it in yet. Producers fill their slot right after claiming it, so this only happens if one was preempted in between.
+    private static final long FINISH_PARK_NANOS = 1_000_000L;
+
+    // How long close() waits for the background thread to write out the remaining records
+    private static final long CLOSE_TIMEOUT_MS = 5000;
+
+    private final SQLiteRepository repository;
+    private final Duration retention;
+
+    // The ring buffer
+    private final RingSequence sequence;
+    private final int[] eids;
+    private final int[] sids;
+    private final int[] eventTypes;
+    private final long[] scheduledMillis;
+    private final long[] actualMillis;
+    private final long[] durationMillis;
+    private final EventResult[] results;
+
+    // The next position to be taken by the background thread, which is the only one that touches it
+    private long head;
+
+    private final Thread writerThread;
+
+    // Number of records that could not be queued or written. This is reported when the writer is closed.
+    private final AtomicLong droppedRecords;
+
+    private volatile boolean closed;
+
+    /**
+     * Creates a new EventHistoryWriter and starts its background thread.
+     *
+     * @param repository The database that records will be written to. History is always kept in SQLite, regardless of which repository the schedule is read from.
+     * @param retention  How long records are kept in the database. Records older than this are pruned periodically. Use {@code Duration.ZERO} to keep records forever.
+     */
+    public EventHistoryWriter(SQLiteRepository repository, Duration retention) {
+
+        if (repository == null)
+            throw new IllegalArgumentException("The repository argument should NOT be null!");
+
+        if (retention == null || retention.isNegative())
+            throw new IllegalArgumentException("The retention argument should not be null or negative!");
+
+        this.repository = repository;
+        this.retention = retention;
+
+        this.sequence = new RingSequence(EventHistoryWriter.QUEUE_CAPACITY);
+        this.eids = new int[EventHistoryWriter.QUEUE_CAPACITY];
+        this.sids = new int[EventHistoryWriter.QUEUE_CAPACITY];
+        this.eventTypes = new int[EventHistoryWriter.QUEUE_CAPACITY];
+        this.scheduledMillis = new long[EventHistoryWriter.QUEUE_CAPACITY];
+        this.actualMillis = new long[EventHistoryWriter.QUEUE_CAPACITY];
+        this.durationMillis = new long[EventHistoryWriter.QUEUE_CAPACITY];
+        this.results = new EventResult[EventHistoryWriter.QUEUE_CAPACITY];
+
+        this.head = 0;
+
+        this.droppedRecords = new AtomicLong(0);
+        this.closed = false;
+
+        // The thread is a daemon so that it does not keep the JVM alive if the caller forgets to close the writer.
+        this.writerThread = new Thread(this::writeLoop, "ASC-history-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+
+    }
+
+    /**
+     * Queues a record to be written to the database. This never blocks and does not allocate anything; if the queue is full or the writer is closed, the record is dropped. The fields are the same as the ones of EventHistoryRecord, except that times are in milliseconds since the epoch. They are turned into dates in the system's time zone by the background thread.
+     *
+     * @param eid             The id of the event in the events table, or {@code Event.EID_NONE}.
+     * @param sid             The id of the game server that the event belongs to.
+     * @param eventType       The eventType id of the event.
+     * @param scheduledMillis When the event was supposed to run.
+     * @param actualMillis    When the event actually started running.
+     * @param durationMillis  How long the event took to run, in milliseconds.
+     * @param result          The outcome of the event.
+     * @return true if the record was queued, false if it was dropped.
+     */
+    public boolean record(int eid, int sid, int eventType, long scheduledMillis, long actualMillis, long durationMillis, EventResult result) {
+
+        if (durationMillis < 0)
+            throw new IllegalArgumentException("The duration cannot be negative!");
+
+        if (result == null)
+            throw new IllegalArgumentException("The result argument should NOT be null!");
+
+        long position = this.closed ? -1 : this.sequence.claim();
+
+        if (position < 0) {
+
+            this.droppedRecords.incrementAndGet();
+            return false;
+
+        }
+
+        int slot = this.sequence.slot(position);
+
+        this.eids[slot] = eid;
+        this.sids[slot] = sid;
+        this.eventTypes[slot] = eventType;
+        this.scheduledMillis[slot] = scheduledMillis;
+        this.actualMillis[slot] = actualMillis;
+        this.durationMillis[slot] = durationMillis;
+        this.results[slot] = result;
+
+        // The background thread sees the stores above once it sees the position as published
+        this.sequence.publish(position);
+
+        return true;
+
+    }
+
+    /**
+     * The main loop of the background thread. It takes as many records as it can (up to a batch) out of the ring buffer and writes them in one go, and sleeps for a bit whenever there are none.
+     */
+    private void writeLoop() {
+
+        List<EventHistoryRecord> batch = new ArrayList<>(EventHistoryWriter.BATCH_SIZE);
+        ZoneId zone = ZoneId.systemDefault();
+
+        // Prune once on startup, since the client might not have been running for a while.
+        long nextPruneNanos = System.nanoTime();
+
+        while (true) {
+
+            while (batch.size() < EventHistoryWriter.BATCH_SIZE && this.sequence.isPublished(this.head)) {
+
+                int slot = this.sequence.slot(this.head);
+
+                batch.add(this.read(slot, zone));
+
+                // Release the slot for the producers, one lap ahead
+                this.results[slot] = null;
+                this.sequence.release(this.head++);
+
+            }
+
+            boolean drained = !batch.isEmpty();
+
+            if (drained) {
+
+                this.writeBatch(batch);
+                batch.clear();
+
+            }
+
+            if (!this.retention.isZero() && System.nanoTime() - nextPruneNanos >= 0) {
+
+                this.prune();
+                nextPruneNanos = System.nanoTime() + EventHistoryWriter.PRUNE_INTERVAL.toNanos();
+
+            }
+
+            if (!drained) {
+
+                // We keep going after close() until the buffer is empty, so that records from events that finished right before shutdown are not lost.
+                if (this.closed)
+                    break;
+
+                LockSupport.parkNanos(this, EventHistoryWriter.IDLE_PARK_NANOS);
+
+                // close() interrupts the thread if it takes too long. At that point we just give up on the remaining records, and finish() only counts them.
+                if (Thread.currentThread().isInterrupted())
+                    break;
+
+            }
+
+        }
+
+        this.finish(batch, zone);
+
+    }
+
+    /**
+     * Turns the record in a slot of the ring buffer into an EventHistoryRecord. Only the background thread should call this.
+     *
+     * @param slot The slot of the record.
+     * @param zone The time zone that times are turned into dates in.
+     * @return The record.
+     */
+    private EventHistoryRecord read(int slot, ZoneId zone) {
+
+        return new EventHistoryRecord(
+                this.eids[slot],
+                this.sids[slot],
+                this.eventTypes[slot],
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(this.scheduledMillis[slot]), zone),
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(this.actualMillis[slot]), zone),
+                this.durationMillis[slot],
+                this.results[slot]
+        );
+
+    }
+
+    /**
+     * The last thing the background thread does. A producer can see the writer as open, and only claim its position after the background thread has last looked at the ring buffer, so that record would be neither written nor counted as dropped. To close that gap, this claims every free slot of the ring buffer for the background thread itself: from then on there is no room for producers, and record() drops (and counts) anything that comes in. Then it writes the records that producers claimed before that, waiting for the ones that are still being filled in, unless close() has given up on the thread. Whatever is left is counted as dropped.
+     *
+     * @param batch An empty list to collect the records in.
+     * @param zone  The time zone that times are turned into dates in.
+     */
+    private void finish(List<EventHistoryRecord> batch, ZoneId zone) {
+
+        // The first position we claim is the end of the ones that producers claimed. If the buffer was already full, every position up to a lap ahead belongs to a producer.
+        long end = this.head + EventHistoryWriter.QUEUE_CAPACITY;
+
+        for (long position = this.sequence.claim(); position >= 0; position = this.sequence.claim())
+            end = Math.min(end, position);
+
+        while (this.head < end && !Thread.currentThread().isInterrupted()) {
+
+            if (!this.sequence.isPublished(this.head)) {
+
+                LockSupport.parkNanos(this, EventHistoryWriter.FINISH_PARK_NANOS);
+                continue;
+
+            }
+
+            // The slot is not released, since that would make room for a producer again
+            batch.add(this.read(this.sequence.slot(this.head++), zone));
+
+            if (batch.size() == EventHistoryWriter.BATCH_SIZE) {
+
+                this.writeBatch(batch);
+                batch.clear();
+
+            }
+
+        }
+
+        if (!batch.isEmpty())
+            this.writeBatch(batch);
+
+        this.droppedRecords.addAndGet(end - this.head);
+
+    }
+
+    /**
+     * Writes a batch of records to the database, logging an error if it fails. A failed batch is dropped.
+     *
+     * @param batch The records to write.
+     */
+    private void writeBatch(List<EventHistoryRecord> batch) {
+
+        try {
+
+            this.repository.insertEventHistory(batch);
+
+        } catch (SQLException e) {
+
+            this.droppedRecords.addAndGet(batch.size());
+            ASCProperties.getInstance().LOGGER.logError("Could not write %d event history records to the database: %s", batch.size(), e.getMessage());
+
+        }
+
+    }
+
+    /**
+     * Deletes records older than the retention period.
+     */
+    private void prune() {
+
+        try {
+
+            int deleted = this.repository.pruneEventHistory(LocalDateTime.now().minus(this.retention));
+
+            if (deleted > 0)
+                ASCProperties.getInstance().LOGGER.logInfo("Pruned %d old event history records.", deleted);
+
+        } catch (SQLException e) {
+
+            ASCProperties.getInstance().LOGGER.logError("Could not prune the event history: " + e.getMessage());
+
+        }
+
+    }
+
+    /**
+     * Returns the number of records that were dropped, either because the queue was full or because they could not be written.
+     *
+     * @return The number of dropped records so far.
+     */
+    public long getDroppedRecords() {
+
+        return this.droppedRecords.get();
+
+    }
+
+    /**
+     * Stops accepting new records and waits (for a bounded amount of time) for the background thread to write the ones that are still queued. Calling this more than once has no additional effect.
+     */
+    @Override
+    public void close() {
+
+        if (this.closed)
+            return;
+
+        this.closed = true;
+        LockSupport.unpark(this.writerThread);
+
+        try {
+
+            this.writerThread.join(EventHistoryWriter.CLOSE_TIMEOUT_MS);
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+
+        }
+
+        // If the database is hanging, we don't want to hang the shutdown with it.
+        if (this.writerThread.isAlive())
+            this.writerThread.interrupt();
+
+        if (this.droppedRecords.get() > 0)
+            System.err.printf("[WARNING] %d event history records were dropped!%n", this.droppedRecords.get());
+
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.nchroniaris.ASC.client.database;
+
+/**
+ * This is a data class that represents a single step in the evolution of the database schema. A migration takes the database from version {@code version - 1} to {@code version} by running its statements in order.
+ */
+public class Migration {
+
+    private final int version;
+    private final String description;
+    private final String[] statements;
+
+    /**
+     * Creates a new migration. Statements should be written so that running them on a database that already has their changes does nothing (CREATE ... IF NOT EXISTS, INSERT OR IGNORE, etc.), since databases created by createdb.sql can already be partially up to date.
+     *
+     * @param version     The schema version that this migration upgrades the database to. Must be positive.
+     * @param description A short human readable description of what the migration does. This is meant for logging purposes.
+     * @param statements  One or more SQL statements to run, in order.
+     */
+    public Migration(int version, String description, String... statements) {
+
+        if (version <= 0)
+            throw new IllegalArgumentException("The version of a migration must be positive!");
+
+        if (description == null)
+            throw new IllegalArgumentException("The description argument should NOT be null!");
+
+        if (statements == null || statements.length == 0)
+            throw new IllegalArgumentException("A migration must have at least one statement!");
+
+        this.version = version;
+        this.description = description;
+        this.statements = statements;
+
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String[] getStatements() {
+        return statements;
+    }
+
+}
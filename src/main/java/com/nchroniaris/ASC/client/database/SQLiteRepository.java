@@ -0,0 +1,578 @@
+package com.nchroniaris.ASC.client.database;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.nchroniaris.ASC.client.core.ASCProperties;
+import com.nchroniaris.ASC.client.exception.DatabaseNotFoundException;
+import com.nchroniaris.ASC.client.jfr.RepositoryQueryEvent;
+import com.nchroniaris.ASC.client.metrics.ClientMetrics;
+import com.nchroniaris.ASC.client.model.Event;
+import com.nchroniaris.ASC.client.model.EventDescriptor;
+import com.nchroniaris.ASC.client.model.EventHistoryRecord;
+import com.nchroniaris.ASC.client.model.EventResult;
+import com.nchroniaris.ASC.util.model.GameServer;
+
+import java.io.File;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class that handles the various functions that interact with the ASC database. Most functions read the database and construct rich objects or lists for the rest of the program to use. This is the source of truth for the schedule, and the only repository that keeps event history.
+ */
+public class SQLiteRepository implements ASCRepository {
+
+    // How this repository is identified in Flight Recorder events and metrics
+    private static final String REPOSITORY_NAME = "sqlite";
+
+    // Generic error message for a SQLExceptionError
+    private static final String SQL_EXCEPTION_ERROR = "[CRITICAL] There was an error communicating with the database! This is most likely due to an old version of the database, a corrupt database (no tables for where there should be one), or an empty database.";
+
+    private static final String TABLE_SERVERS = "servers";
+    private static final String TABLE_EVENTS = "events";
+    private static final String TABLE_EVENT_HISTORY = "event_history";
+
+    private static final String FIELD_SERVERS_SID = "sid";
+    private static final String FIELD_SERVERS_DESCRIPTION = "description";
+    private static final String FIELD_SERVERS_GAME = "game";
+    private static final String FIELD_SERVERS_MONIKER = "moniker";
+    private static final String FIELD_SERVERS_STARTFILE = "startfile";
+    private static final String FIELD_SERVERS_STOPCOMMAND = "stopcommand";
+    private static final String FIELD_SERVERS_WARNCOMMAND = "warncommand";
+    private static final String FIELD_SERVERS_PORT = "port";
+    private static final String FIELD_SERVERS_AUTOSTART = "autostart";
+
+    private static final String FIELD_EVENTS_EID = "eid";
+    private static final String FIELD_EVENTS_SID = "sid";
+    private static final String FIELD_EVENTS_TIME = "time";
+    private static final String FIELD_EVENTS_ETYPE = "etype";
+    private static final String FIELD_EVENTS_ARGS = "args";
+
+    private static final String FIELD_HISTORY_EID = "eid";
+    private static final String FIELD_HISTORY_SID = "sid";
+    private static final String FIELD_HISTORY_ETYPE = "etype";
+    private static final String FIELD_HISTORY_SCHEDULED = "scheduled";
+    private static final String FIELD_HISTORY_ACTUAL = "actual";
+    private static final String FIELD_HISTORY_DURATION = "duration";
+    private static final String FIELD_HISTORY_RESULT = "result";
+
+    // Datetimes in the event_history table are stored as strings in this format. It is lexicographically sortable, and SQLite's date and time functions understand it.
+    private static final DateTimeFormatter FORMAT_HISTORY_DATETIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+    // Absolute path to the SQLite database file
+    private final String databasePath;
+
+    // Whether the schema has been brought up to date during this run of the program. This is checked on every connect() so that the migrations run exactly once, before the first query.
+    private boolean migrated;
+
+    /**
+     * Creates a repository backed by the SQLite database at the given path. Note that this does not touch the database: ASCProperties creates the repository while it is still being constructed itself, so the migrations are deferred until the first connect().
+     *
+     * @param databasePath The absolute path to the SQLite database file. The file must exist by the time the repository is first used.
+     */
+    public SQLiteRepository(String databasePath) {
+
+        if (databasePath == null)
+            throw new IllegalArgumentException("The databasePath argument cannot be null!");
+
+        this.databasePath = databasePath;
+        this.migrated = false;
+
+    }
+
+    /**
+     * Connects to the database using the DBLocation string and returns a Connection object.
+     * The caller must handle both exceptions and MUST close the connection when done. This method is meant to be used on demand -- that is, whenever a database method from this class is called, the function must call connect(), do its work, and call connection.close().
+     * The reason that this approach is chosen as opposed to keeping a single connection object alive for the duration of the enclosing class is that the DB operations that are actually run are very few and very far between (mostly running once a day) so it would not make much sense to keep a connection object alive for eighteen hours for example, only for the application to close it on exit.
+     *
+     * @return Returns the connection object that the caller can use to connect to the database.
+     * @throws SQLException Thrown if the connection to the database fails somehow other than it not being there
+     */
+    private Connection connect() throws SQLException {
+
+        // TODO: 2020-07-21 Proper Integrity check for DB
+        // Check if the DB exists in the location specified. The reason that this is a separate check is that as far as I can tell, the default behaviour for the DriverManager.getConnection() method when ONLY the DB is missing (and NOT other folders in its path) is that it creates an empty DB which shouldn't technically be allowed. Therefore, if we don't do this check and you happen to delete the DB and run the program again, you will encounter other errors down the line since the schema would be empty. Obviously this is not a foolproof solution but it serves as an extra check
+        if (!new File(this.databasePath).exists())
+            throw new DatabaseNotFoundException(String.format("[CRITICAL] Database file not found (%s)! Please generate it before running the base program.", this.databasePath));
+
+        // According to the sqlite tutorial for java, in order to use jdbc you must have the following string be prepended to the path.
+        Connection connection = DriverManager.getConnection("jdbc:sqlite:" + this.databasePath);
+
+        this.migrateOnce(connection);
+
+        return connection;
+
+    }
+
+    /**
+     * Upgrades the schema of the database to the latest version the first time it is called, and does nothing afterwards. This is synchronized as multiple threads (the scheduler and the history writer, for example) can connect at the same time.
+     *
+     * @param connection An open connection to the database.
+     * @throws SQLException If one of the migrations fails. The connection is closed in this case, since the caller will not get a chance to.
+     */
+    private synchronized void migrateOnce(Connection connection) throws SQLException {
+
+        if (this.migrated)
+            return;
+
+        try {
+
+            // The properties are only needed for logging, so a database that is already up to date can be used before (or without) them
+            for (Migration migration : SchemaMigrator.migrate(connection))
+                ASCProperties.getInstance().LOGGER.logInfo("Migrated database to schema version %d (%s).", migration.getVersion(), migration.getDescription());
+
+        } catch (SQLException e) {
+
+            connection.close();
+            throw e;
+
+        } catch (IllegalStateException e) {
+
+            connection.close();
+
+            System.err.println("[CRITICAL] " + e.getMessage());
+            System.exit(1);
+
+        }
+
+        this.migrated = true;
+
+    }
+
+    // Actual DB Methods //
+
+    /**
+     * This method queries the database for all the game servers stored in the servers table. The intention is that the caller will sort through the results and get what they need.
+     *
+     * @return A List object holding all the model GameServer objects in the table
+     */
+    @Override
+    public List<GameServer> getAllGameServers() {
+
+        // Get all the game servers in the table. Using * may break the query later on if the database is updated with new columns so all columns are explicitly written
+        // Readable SQL statement:
+        //      SELECT sid, description, game, moniker, startfile, stopcommand, warncommand, port, autostart FROM servers
+        String query = String.format("SELECT %s, %s, %s, %s, %s, %s, %s, %s, %s FROM %s",
+                SQLiteRepository.FIELD_SERVERS_SID,
+                SQLiteRepository.FIELD_SERVERS_DESCRIPTION,
+                SQLiteRepository.FIELD_SERVERS_GAME,
+                SQLiteRepository.FIELD_SERVERS_MONIKER,
+                SQLiteRepository.FIELD_SERVERS_STARTFILE,
+                SQLiteRepository.FIELD_SERVERS_STOPCOMMAND,
+                SQLiteRepository.FIELD_SERVERS_WARNCOMMAND,
+                SQLiteRepository.FIELD_SERVERS_PORT,
+                SQLiteRepository.FIELD_SERVERS_AUTOSTART,
+                SQLiteRepository.TABLE_SERVERS
+        );
+
+        List<GameServer> serverList = new ArrayList<>();
+
+        RepositoryQueryEvent event = new RepositoryQueryEvent();
+        event.begin();
+
+        long startNanos = System.nanoTime();
+
+        // https://www.sqlitetutorial.net/sqlite-java/select/
+        // All of `connection`, `statement`, and `results` are resources that in such a try block structure will automatically get closed -- avoiding a finally statement at the end
+        try (Connection connection = connect();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(query)) {
+
+            // Loop through all the elements of the result set
+            while (resultSet.next()) {
+
+                // Create a model GameServer object with all the parameters in the database and add it to the list
+                serverList.add(new GameServer(
+                        resultSet.getInt(SQLiteRepository.FIELD_SERVERS_SID),
+                        resultSet.getString(SQLiteRepository.FIELD_SERVERS_DESCRIPTION),
+                        resultSet.getString(SQLiteRepository.FIELD_SERVERS_GAME),
+                        resultSet.getString(SQLiteRepository.FIELD_SERVERS_MONIKER),
+                        resultSet.getString(SQLiteRepository.FIELD_SERVERS_STARTFILE),
+                        resultSet.getString(SQLiteRepository.FIELD_SERVERS_STOPCOMMAND),
+                        resultSet.getString(SQLiteRepository.FIELD_SERVERS_WARNCOMMAND),
+                        resultSet.getInt(SQLiteRepository.FIELD_SERVERS_PORT),
+                        resultSet.getBoolean(SQLiteRepository.FIELD_SERVERS_AUTOSTART)
+                ));
+
+            }
+
+        } catch (SQLException e) {
+
+            System.err.println(SQLiteRepository.SQL_EXCEPTION_ERROR);
+            e.printStackTrace();
+            System.exit(1);
+
+        }
+
+        event.finish(SQLiteRepository.REPOSITORY_NAME, "getAllGameServers", serverList.size());
+        ClientMetrics.getInstance().recordRepositoryQuery(SQLiteRepository.REPOSITORY_NAME, "getAllGameServers", System.nanoTime() - startNanos);
+
+        return serverList;
+
+    }
+
+    /**
+     * This method queries the database for all the events for a given GameServer as a parameter. The events are not built, only described.
+     *
+     * @param server The GameServer object to get all the events for.
+     * @return A List of the descriptors of all the events associated with the particular GameServer, ordered by time.
+     */
+    @Override
+    public List<EventDescriptor> getEventDescriptors(GameServer server) {
+
+        List<EventDescriptor> eventList = new ArrayList<>();
+
+        this.queryEvents("getEventDescriptors", server, (eid, eventType, gameServer, secondOfDay, args) -> eventList.add(new EventDescriptor(eid, eventType, gameServer, secondOfDay, args)));
+
+        return eventList;
+
+    }
+
+    /**
+     * This method queries the database for all the events for a given GameServer, and hands them to the handler as they are read, without making a descriptor for any of them.
+     *
+     * @param server  The GameServer object to get all the events for.
+     * @param handler What to do with every event, in time order.
+     */
+    @Override
+    public void forEachEvent(GameServer server, EventHandler handler) {
+
+        this.queryEvents("forEachEvent", server, handler);
+
+    }
+
+    /**
+     * Runs the query for the events of a server and hands every row to a handler.
+     *
+     * @param caller  The name of the public method running the query, for Flight Recorder and the metrics.
+     * @param server  The GameServer object to get all the events for.
+     * @param handler What to do with every event, in time order.
+     */
+    private void queryEvents(String caller, GameServer server, EventHandler handler) {
+
+        // Get all the events for the server. Using * may break the query later on if the database is updated with new columns so all columns are explicitly written. We don't need to join with the servers table since we already have the server, and this way the query is answered entirely from the idx_events_sid_time index instead of scanning the whole table.
+        // Readable SQL statement:
+        //      SELECT eid, time, etype, args FROM events WHERE sid = ? ORDER BY time
+        String query = String.format("SELECT %s, %s, %s, %s FROM %s WHERE %s = ? ORDER BY %s",
+                SQLiteRepository.FIELD_EVENTS_EID,
+                SQLiteRepository.FIELD_EVENTS_TIME,
+                SQLiteRepository.FIELD_EVENTS_ETYPE,
+                SQLiteRepository.FIELD_EVENTS_ARGS,
+                SQLiteRepository.TABLE_EVENTS,
+                SQLiteRepository.FIELD_EVENTS_SID,
+                SQLiteRepository.FIELD_EVENTS_TIME
+        );
+
+        int count = 0;
+
+        RepositoryQueryEvent event = new RepositoryQueryEvent();
+        event.begin();
+
+        long startNanos = System.nanoTime();
+
+        // We use a PreparedStatement in conjunction with its set*() methods to avoid SQL injection attacks.
+        try (Connection connection = connect();
+             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+
+            // According to the Java sql docs, "A ResultSet object is automatically closed when the Statement object that generated it is closed, ..." therefore not closing this should be safe because the try-with-resources block will attempt to close the prepared statement.
+            preparedStatement.setInt(1, server.getSid());
+            ResultSet resultSet = preparedStatement.executeQuery();
+
+            Gson gson = new Gson();
+
+            // Most events of a server have the same few argument lists (most of them none at all), so each distinct args field is only deserialized once, and the events that share it share the array.
+            Map<String, String[]> parsedArgs = new HashMap<>();
+
+            // Loop through all the elements of the result set
+            while (resultSet.next()) {
+
+                String argsField = resultSet.getString(SQLiteRepository.FIELD_EVENTS_ARGS);
+
+                try {
+
+                    // We deserialize the JSON string that is held in the args field.
+                    // https://stackoverflow.com/questions/5554217/google-gson-deserialize-listclass-object-generic-type/17300003#17300003
+                    String[] args = parsedArgs.get(argsField);
+
+                    if (args == null) {
+
+                        args = gson.fromJson(argsField, String[].class);
+                        parsedArgs.put(argsField, args);
+
+                    }
+
+                    // Hand over a description of the event, to be built later by EventFactory based on its etype.
+                    handler.accept(
+                            resultSet.getInt(SQLiteRepository.FIELD_EVENTS_EID),
+                            resultSet.getInt(SQLiteRepository.FIELD_EVENTS_ETYPE),
+                            server,
+
+                            // Since SQLite does not support storing an actual time type, we have to store it as a string. Therefore, we have to retrieve it as a string and use the java.sql.Time.valueOf() method to convert the string to a Time object. Further, since descriptors store the time as seconds since midnight, we convert the SQL Time object to a LocalTime object and take its second of day.
+                            Time.valueOf(resultSet.getString(SQLiteRepository.FIELD_EVENTS_TIME)).toLocalTime().toSecondOfDay(),
+                            args
+                    );
+
+                    count++;
+
+                } catch (JsonSyntaxException e) {
+
+                    System.err.printf("There was an issue parsing Json data from the args field! Got (%s)%n", argsField);
+                    e.printStackTrace();
+                    System.exit(1);
+
+                }
+
+            }
+
+        } catch (SQLException e) {
+
+            System.err.println(SQLiteRepository.SQL_EXCEPTION_ERROR);
+            e.printStackTrace();
+            System.exit(1);
+
+        }
+
+        event.finish(SQLiteRepository.REPOSITORY_NAME, caller, count);
+        ClientMetrics.getInstance().recordRepositoryQuery(SQLiteRepository.REPOSITORY_NAME, caller, System.nanoTime() - startNanos);
+
+    }
+
+    /**
+     * Inserts a batch of event history records into the event_history table. All of the records are inserted in a single transaction, so either all of them make it to the database or none of them do. This is meant to be called by EventHistoryWriter, which groups records together in order to avoid paying the cost of a transaction per event.
+     * <p>
+     * Unlike the other methods in this class, this one does not exit on an SQLException. Losing some history is not worth taking down the entire program, so it is up to the caller to decide what to do.
+     *
+     * @param records The records to insert. If this is empty, nothing happens.
+     * @throws SQLException If the batch could not be inserted. In this case the transaction is rolled back.
+     */
+    public void insertEventHistory(List<EventHistoryRecord> records) throws SQLException {
+
+        if (records.isEmpty())
+            return;
+
+        // Readable SQL statement:
+        //      INSERT INTO event_history (eid, sid, etype, scheduled, actual, duration, result) VALUES (?, ?, ?, ?, ?, ?, ?)
+        String query = String.format("INSERT INTO %s (%s, %s, %s, %s, %s, %s, %s) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                SQLiteRepository.TABLE_EVENT_HISTORY,
+                SQLiteRepository.FIELD_HISTORY_EID,
+                SQLiteRepository.FIELD_HISTORY_SID,
+                SQLiteRepository.FIELD_HISTORY_ETYPE,
+                SQLiteRepository.FIELD_HISTORY_SCHEDULED,
+                SQLiteRepository.FIELD_HISTORY_ACTUAL,
+                SQLiteRepository.FIELD_HISTORY_DURATION,
+                SQLiteRepository.FIELD_HISTORY_RESULT
+        );
+
+        RepositoryQueryEvent event = new RepositoryQueryEvent();
+        event.begin();
+
+        long startNanos = System.nanoTime();
+
+        try (Connection connection = connect()) {
+
+            // By default every statement is committed on its own, which in SQLite means one fsync per row. Turning off auto commit allows us to commit the entire batch at once.
+            connection.setAutoCommit(false);
+
+            try (PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+
+                for (EventHistoryRecord record : records) {
+
+                    // Manual events do not have an eid, so we store NULL for those.
+                    if (record.getEid() == Event.EID_NONE)
+                        preparedStatement.setNull(1, Types.INTEGER);
+                    else
+                        preparedStatement.setInt(1, record.getEid());
+
+                    preparedStatement.setInt(2, record.getSid());
+                    preparedStatement.setInt(3, record.getEventType());
+                    preparedStatement.setString(4, record.getScheduledTime().format(SQLiteRepository.FORMAT_HISTORY_DATETIME));
+                    preparedStatement.setString(5, record.getActualTime().format(SQLiteRepository.FORMAT_HISTORY_DATETIME));
+                    preparedStatement.setLong(6, record.getDurationMillis());
+                    preparedStatement.setInt(7, record.getResult().getId());
+
+                    preparedStatement.addBatch();
+
+                }
+
+                preparedStatement.executeBatch();
+                connection.commit();
+
+            } catch (SQLException e) {
+
+                connection.rollback();
+                throw e;
+
+            }
+
+        }
+
+        event.finish(SQLiteRepository.REPOSITORY_NAME, "insertEventHistory", records.size());
+        ClientMetrics.getInstance().recordRepositoryQuery(SQLiteRepository.REPOSITORY_NAME, "insertEventHistory", System.nanoTime() - startNanos);
+
+    }
+
+    /**
+     * Deletes all the event history records that were recorded before a certain point in time.
+     *
+     * @param cutoff Records whose actual time is strictly before this are deleted.
+     * @return The number of records that were deleted.
+     * @throws SQLException If the records could not be deleted. Like insertEventHistory(), this does not exit.
+     */
+    public int pruneEventHistory(LocalDateTime cutoff) throws SQLException {
+
+        // Readable SQL statement:
+        //      DELETE FROM event_history WHERE actual < ?
+        String query = String.format("DELETE FROM %s WHERE %s < ?",
+                SQLiteRepository.TABLE_EVENT_HISTORY,
+                SQLiteRepository.FIELD_HISTORY_ACTUAL
+        );
+
+        RepositoryQueryEvent event = new RepositoryQueryEvent();
+        event.begin();
+
+        long startNanos = System.nanoTime();
+
+        try (Connection connection = connect();
+             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+
+            preparedStatement.setString(1, cutoff.format(SQLiteRepository.FORMAT_HISTORY_DATETIME));
+            int deleted = preparedStatement.executeUpdate();
+
+            event.finish(SQLiteRepository.REPOSITORY_NAME, "pruneEventHistory", deleted);
+            ClientMetrics.getInstance().recordRepositoryQuery(SQLiteRepository.REPOSITORY_NAME, "pruneEventHistory", System.nanoTime() - startNanos);
+
+            return deleted;
+
+        }
+
+    }
+
+    /**
+     * This method queries the database for the most recent history of a given GameServer, newest first.
+     *
+     * @param server The GameServer object to get the history for.
+     * @param limit  The maximum number of records to return.
+     * @return A List of at most `limit` history records, ordered from newest to oldest.
+     */
+    public List<EventHistoryRecord> getEventHistory(GameServer server, int limit) {
+
+        if (limit < 0)
+            throw new IllegalArgumentException("The limit cannot be negative!");
+
+        // Readable SQL statement:
+        //      SELECT eid, sid, etype, scheduled, actual, duration, result FROM event_history WHERE sid = ? ORDER BY actual DESC LIMIT ?
+        String query = String.format("SELECT %s, %s, %s, %s, %s, %s, %s FROM %s WHERE %s = ? ORDER BY %s DESC LIMIT ?",
+                SQLiteRepository.FIELD_HISTORY_EID,
+                SQLiteRepository.FIELD_HISTORY_SID,
+                SQLiteRepository.FIELD_HISTORY_ETYPE,
+                SQLiteRepository.FIELD_HISTORY_SCHEDULED,
+                SQLiteRepository.FIELD_HISTORY_ACTUAL,
+                SQLiteRepository.FIELD_HISTORY_DURATION,
+                SQLiteRepository.FIELD_HISTORY_RESULT,
+                SQLiteRepository.TABLE_EVENT_HISTORY,
+                SQLiteRepository.FIELD_HISTORY_SID,
+                SQLiteRepository.FIELD_HISTORY_ACTUAL
+        );
+
+        return this.queryEventHistory("getEventHistory", query, server.getSid(), limit);
+
+    }
+
+    /**
+     * This method queries the database for the last time an event of a certain type ran for a given GameServer with a certain result. For example, this answers questions like "when did this server last start successfully?"
+     *
+     * @param server    The GameServer object to get the history for.
+     * @param eventType The eventType id of the event, as defined in EventFactory.
+     * @param result    The result that the event must have had.
+     * @return The most recent history record that matches, or null if there is none.
+     */
+    public EventHistoryRecord getLastEventHistory(GameServer server, int eventType, EventResult result) {
+
+        // Readable SQL statement:
+        //      SELECT eid, sid, etype, scheduled, actual, duration, result FROM event_history WHERE sid = ? AND etype = ? AND result = ? ORDER BY actual DESC LIMIT 1
+        String query = String.format("SELECT %s, %s, %s, %s, %s, %s, %s FROM %s WHERE %s = ? AND %s = ? AND %s = ? ORDER BY %s DESC LIMIT 1",
+                SQLiteRepository.FIELD_HISTORY_EID,
+                SQLiteRepository.FIELD_HISTORY_SID,
+                SQLiteRepository.FIELD_HISTORY_ETYPE,
+                SQLiteRepository.FIELD_HISTORY_SCHEDULED,
+                SQLiteRepository.FIELD_HISTORY_ACTUAL,
+                SQLiteRepository.FIELD_HISTORY_DURATION,
+                SQLiteRepository.FIELD_HISTORY_RESULT,
+                SQLiteRepository.TABLE_EVENT_HISTORY,
+                SQLiteRepository.FIELD_HISTORY_SID,
+                SQLiteRepository.FIELD_HISTORY_ETYPE,
+                SQLiteRepository.FIELD_HISTORY_RESULT,
+                SQLiteRepository.FIELD_HISTORY_ACTUAL
+        );
+
+        List<EventHistoryRecord> history = this.queryEventHistory("getLastEventHistory", query, server.getSid(), eventType, result.getId());
+
+        return history.isEmpty() ? null : history.get(0);
+
+    }
+
+    /**
+     * Runs a query against the event_history table and converts every row to an EventHistoryRecord. The query must select all of the columns of the table, and all of its parameters must be integers.
+     *
+     * @param caller     The name of the public method running the query, for Flight Recorder.
+     * @param query      The query to run, with `?` placeholders.
+     * @param parameters The values of the placeholders, in order.
+     * @return A List of the history records returned by the query, in the order the query returned them.
+     */
+    private List<EventHistoryRecord> queryEventHistory(String caller, String query, int... parameters) {
+
+        List<EventHistoryRecord> history = new ArrayList<>();
+
+        RepositoryQueryEvent event = new RepositoryQueryEvent();
+        event.begin();
+
+        long startNanos = System.nanoTime();
+
+        try (Connection connection = connect();
+             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+
+            for (int i = 0; i < parameters.length; i++)
+                preparedStatement.setInt(i + 1, parameters[i]);
+
+            ResultSet resultSet = preparedStatement.executeQuery();
+
+            while (resultSet.next()) {
+
+                // getInt() returns 0 for NULL, so we have to check explicitly in order to get EID_NONE back for manual events.
+                int eid = resultSet.getInt(SQLiteRepository.FIELD_HISTORY_EID);
+
+                if (resultSet.wasNull())
+                    eid = Event.EID_NONE;
+
+                history.add(new EventHistoryRecord(
+                        eid,
+                        resultSet.getInt(SQLiteRepository.FIELD_HISTORY_SID),
+                        resultSet.getInt(SQLiteRepository.FIELD_HISTORY_ETYPE),
+                        LocalDateTime.parse(resultSet.getString(SQLiteRepository.FIELD_HISTORY_SCHEDULED), SQLiteRepository.FORMAT_HISTORY_DATETIME),
+                        LocalDateTime.parse(resultSet.getString(SQLiteRepository.FIELD_HISTORY_ACTUAL), SQLiteRepository.FORMAT_HISTORY_DATETIME),
+                        resultSet.getLong(SQLiteRepository.FIELD_HISTORY_DURATION),
+                        EventResult.fromId(resultSet.getInt(SQLiteRepository.FIELD_HISTORY_RESULT))
+                ));
+
+            }
+
+        } catch (SQLException e) {
+
+            System.err.println(SQLiteRepository.SQL_EXCEPTION_ERROR);
+            e.printStackTrace();
+            System.exit(1);
+
+        }
+
+        event.finish(SQLiteRepository.REPOSITORY_NAME, caller, history.size());
+        ClientMetrics.getInstance().recordRepositoryQuery(SQLiteRepository.REPOSITORY_NAME, caller, System.nanoTime() - startNanos);
+
+        return history;
+
+    }
+
+}
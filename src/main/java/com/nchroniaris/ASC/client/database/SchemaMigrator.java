@@ -0,0 +1,138 @@
+package com.nchroniaris.ASC.client.database;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class upgrades an existing ASC database to the latest schema version in place, so that schema changes no longer require rebuilding (and wiping) the database. The current version of a database is tracked with SQLite's {@code PRAGMA user_version}, which is 0 for a database that has never been migrated.
+ * <p>
+ * Migrations are applied in order, each one in its own transaction along with the bump to user_version. If a migration fails it is rolled back entirely and the database is left at the previous version.
+ */
+public class SchemaMigrator {
+
+    // All migrations, in order. NEVER modify or reorder a migration that has already been released, since existing databases will not run it again. Add a new one at the end instead, and update the user_version at the end of createdb.sql to match.
+    private static final List<Migration> MIGRATIONS = Collections.unmodifiableList(Arrays.asList(
+
+            // getAllEvents() looks up events by sid and the schedule is processed in time order. Both indexes include every column those scans read (eid is the rowid, which every index already contains), so SQLite never has to go back to the table.
+            new Migration(1, "Add covering indexes for per-server and time-ordered event scans",
+                    "CREATE INDEX IF NOT EXISTS idx_events_sid_time ON events (sid, time, etype, args)",
+                    "CREATE INDEX IF NOT EXISTS idx_events_time ON events (time, sid, etype, args)",
+                    "ANALYZE events"
+            ),
+
+            // Databases created before the event history existed need the tables in order for EventHistoryWriter to work.
+            new Migration(2, "Add the event history tables",
+                    "CREATE TABLE IF NOT EXISTS eventResult (rid INTEGER PRIMARY KEY, label TEXT)",
+                    "INSERT OR IGNORE INTO eventResult VALUES (0, 'SUCCESS'), (1, 'SKIPPED'), (2, 'FAILED')",
+                    "CREATE TABLE IF NOT EXISTS event_history (hid INTEGER PRIMARY KEY NOT NULL, eid INTEGER, sid INTEGER NOT NULL, etype INTEGER NOT NULL REFERENCES eventType (etid), scheduled TEXT NOT NULL, actual TEXT NOT NULL, duration INTEGER NOT NULL, result INTEGER NOT NULL REFERENCES eventResult (rid))"
+            ),
+
+            // These match the history queries in SQLiteRepository: the newest records for a server, the newest record for a server with a given type and result, and pruning by age.
+            new Migration(3, "Add indexes for event history queries",
+                    "CREATE INDEX IF NOT EXISTS idx_event_history_sid_actual ON event_history (sid, actual)",
+                    "CREATE INDEX IF NOT EXISTS idx_event_history_sid_etype_result ON event_history (sid, etype, result, actual)",
+                    "CREATE INDEX IF NOT EXISTS idx_event_history_actual ON event_history (actual)"
+            ),
+
+            // Stop countdowns are rows of their own in the events table, so their type has to exist for the foreign key.
+            new Migration(4, "Add the stop countdown event type",
+                    "INSERT OR IGNORE INTO eventType VALUES (5, 'STOP_COUNTDOWN')"
+            )
+
+    ));
+
+    /**
+     * Returns the schema version that the database will be at after all migrations are applied.
+     *
+     * @return The latest schema version.
+     */
+    public static int latestVersion() {
+
+        return SchemaMigrator.MIGRATIONS.get(SchemaMigrator.MIGRATIONS.size() - 1).getVersion();
+
+    }
+
+    /**
+     * Reads the schema version of the database.
+     *
+     * @param connection An open connection to the database.
+     * @return The value of user_version for the database.
+     * @throws SQLException If the pragma could not be read.
+     */
+    public static int currentVersion(Connection connection) throws SQLException {
+
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("PRAGMA user_version")) {
+
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+
+        }
+
+    }
+
+    /**
+     * Applies every migration whose version is greater than the current version of the database, in order. Migrations that were already applied are skipped, so calling this on an up to date database does nothing.
+     *
+     * @param connection An open connection to the database. Its auto commit setting is restored before returning.
+     * @return A List of the migrations that were applied, which is empty if the database was already up to date.
+     * @throws SQLException          If a migration fails. Migrations before it stay applied, the failed one is rolled back.
+     * @throws IllegalStateException If the database is at a version newer than this program knows about.
+     */
+    public static List<Migration> migrate(Connection connection) throws SQLException, IllegalStateException {
+
+        int version = SchemaMigrator.currentVersion(connection);
+
+        // A newer database might have columns or constraints that this version of the program does not expect, so it is not safe to continue.
+        if (version > SchemaMigrator.latestVersion())
+            throw new IllegalStateException(String.format("The database is at schema version %d, but this version of ASC only supports up to version %d! Please update ASC.", version, SchemaMigrator.latestVersion()));
+
+        List<Migration> applied = new ArrayList<>();
+        boolean autoCommit = connection.getAutoCommit();
+
+        try {
+
+            connection.setAutoCommit(false);
+
+            for (Migration migration : SchemaMigrator.MIGRATIONS) {
+
+                if (migration.getVersion() <= version)
+                    continue;
+
+                try (Statement statement = connection.createStatement()) {
+
+                    for (String sql : migration.getStatements())
+                        statement.executeUpdate(sql);
+
+                    // user_version lives in the database header, which SQLite updates as part of the transaction. This means that the version bump is committed if and only if the migration itself is.
+                    statement.executeUpdate("PRAGMA user_version = " + migration.getVersion());
+
+                    connection.commit();
+
+                } catch (SQLException e) {
+
+                    connection.rollback();
+                    throw e;
+
+                }
+
+                applied.add(migration);
+
+            }
+
+        } finally {
+
+            connection.setAutoCommit(autoCommit);
+
+        }
+
+        return applied;
+
+    }
+
+}
@@ -0,0 +1,577 @@
+package com.nchroniaris.ASC.client.database;
+
+import com.nchroniaris.ASC.client.core.ASCProperties;
+import com.nchroniaris.ASC.client.exception.DatabaseNotFoundException;
+import com.nchroniaris.ASC.client.jfr.RepositoryQueryEvent;
+import com.nchroniaris.ASC.client.metrics.ClientMetrics;
+import com.nchroniaris.ASC.client.model.EventDescriptor;
+import com.nchroniaris.ASC.util.model.GameServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * A read-only repository backed by a compact binary snapshot of the servers and events tables. The snapshot is memory-mapped, and records are only decoded when they are asked for, so loading a schedule does not involve SQLite, JDBC, or JSON at all. The snapshot is generated from the SQLite database with writeSnapshot(), which should be re-run whenever the database changes.
+ * <p>
+ * The layout of the file is as follows (all integers are 32 bit big endian):
+ * <pre>
+ *   header       magic, version, serverCount, eventCount, serverTableOffset, eventTableOffset, stringPoolOffset, length, checksum
+ *   server table serverCount entries sorted by sid: sid, port, autostart, description, game, moniker, startfile, stopcommand, warncommand, firstEvent, eventCount
+ *   event table  eventCount entries grouped by server and sorted by time: eid, secondOfDay, etype, args
+ *   string pool  strings (length, UTF-8 bytes) and string arrays (count, string references)
+ * </pre>
+ * References to strings and string arrays are offsets relative to the start of the string pool. Identical strings and argument lists are only stored once.
+ * <p>
+ * Since records are decoded lazily, a truncated or corrupt file would otherwise only show up as garbage (or an exception) halfway through a load. Every time the file is mapped, the header is checked against the size of the file and the counts of the sections (see validate()), which only reads the header, so a file that was cut short is caught without touching the rest of it. The checksum is the CRC32 of everything after the header. Checking it means reading every page of the file, which would undo the point of mapping it, so it is only checked right after the snapshot is written (see verifyChecksum()).
+ */
+public class SnapshotRepository implements ASCRepository {
+
+    // How this repository is identified in Flight Recorder events and metrics
+    private static final String REPOSITORY_NAME = "snapshot";
+
+    // "ASCS" in ASCII
+    private static final int MAGIC = 0x41534353;
+    // Version 1 did not have a checksum, and version 2 did not have the length
+    private static final int VERSION = 3;
+
+    private static final int HEADER_SIZE = 9 * Integer.BYTES;
+
+    // Offsets of the fields of the header that are only used to check the file
+    private static final int HEADER_LENGTH = 28;
+    private static final int HEADER_CHECKSUM = 32;
+    private static final int SERVER_ENTRY_SIZE = 11 * Integer.BYTES;
+    private static final int EVENT_ENTRY_SIZE = 4 * Integer.BYTES;
+
+    // Offsets of the fields within a server entry
+    private static final int SERVER_SID = 0;
+    private static final int SERVER_PORT = 4;
+    private static final int SERVER_AUTOSTART = 8;
+    private static final int SERVER_DESCRIPTION = 12;
+    private static final int SERVER_GAME = 16;
+    private static final int SERVER_MONIKER = 20;
+    private static final int SERVER_STARTFILE = 24;
+    private static final int SERVER_STOPCOMMAND = 28;
+    private static final int SERVER_WARNCOMMAND = 32;
+    private static final int SERVER_FIRST_EVENT = 36;
+    private static final int SERVER_EVENT_COUNT = 40;
+
+    // Offsets of the fields within an event entry
+    private static final int EVENT_EID = 0;
+    private static final int EVENT_SECOND_OF_DAY = 4;
+    private static final int EVENT_ETYPE = 8;
+    private static final int EVENT_ARGS = 12;
+
+    private static final String ERROR_INVALID = "[CRITICAL] The snapshot file (%s) is not valid! Please regenerate it from the database with the -r option.";
+
+    private final String snapshotPath;
+
+    // Path to the database the snapshot was generated from. This is only used to warn about outdated snapshots, and can be null.
+    private final String databasePath;
+
+    // The mapped snapshot, along with the values read from its header. These are replaced whenever the file on disk changes, which is checked at the start of every load (see getAllGameServers()).
+    private MappedByteBuffer buffer;
+    private long mappedLastModified;
+    private int serverCount;
+    private int serverTableOffset;
+    private int eventTableOffset;
+    private int stringPoolOffset;
+
+    /**
+     * Creates a repository backed by the snapshot at the given path. The file is not read until the repository is first used.
+     *
+     * @param snapshotPath The absolute path to the snapshot file.
+     * @param databasePath The absolute path to the database the snapshot is generated from, or null. If the database is newer than the snapshot, a warning is logged when the snapshot is loaded.
+     */
+    public SnapshotRepository(String snapshotPath, String databasePath) {
+
+        if (snapshotPath == null)
+            throw new IllegalArgumentException("The snapshotPath argument cannot be null!");
+
+        this.snapshotPath = snapshotPath;
+        this.databasePath = databasePath;
+
+        this.buffer = null;
+        this.mappedLastModified = 0;
+
+    }
+
+    /**
+     * Maps the snapshot file into memory and validates its header, unless the file has not changed since the last time it was mapped.
+     */
+    private synchronized void map() {
+
+        File snapshotFile = new File(this.snapshotPath);
+
+        if (!snapshotFile.exists())
+            throw new DatabaseNotFoundException(String.format("[CRITICAL] Snapshot file not found (%s)! Please generate it from the database with the -r option.", this.snapshotPath));
+
+        // Snapshots are replaced with an atomic rename, so a changed modification time means a whole new file.
+        if (this.buffer != null && snapshotFile.lastModified() == this.mappedLastModified)
+            return;
+
+        if (this.databasePath != null && new File(this.databasePath).lastModified() > snapshotFile.lastModified())
+            ASCProperties.getInstance().LOGGER.logWarning("The database has been modified since the snapshot (%s) was generated! Regenerate it with the -r option to pick up the changes.", this.snapshotPath);
+
+        // The mapping stays valid after the channel is closed, and is released when the buffer is garbage collected.
+        try (FileChannel channel = FileChannel.open(snapshotFile.toPath(), StandardOpenOption.READ)) {
+
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            this.mappedLastModified = snapshotFile.lastModified();
+
+        } catch (IOException e) {
+
+            System.err.printf("[CRITICAL] There was an issue reading the snapshot file (%s)!%n", this.snapshotPath);
+            e.printStackTrace();
+            System.exit(1);
+
+        }
+
+        try {
+
+            SnapshotRepository.validate(this.buffer);
+
+        } catch (IOException e) {
+
+            System.err.printf(SnapshotRepository.ERROR_INVALID + " (%s)%n", this.snapshotPath, e.getMessage());
+            System.exit(1);
+
+        }
+
+        this.serverCount = this.buffer.getInt(8);
+        this.serverTableOffset = this.buffer.getInt(16);
+        this.eventTableOffset = this.buffer.getInt(20);
+        this.stringPoolOffset = this.buffer.getInt(24);
+
+    }
+
+    /**
+     * Checks that a snapshot is whole and was written by this version of the format, before anything is decoded from it. This only reads the header, and compares it with the size of the buffer, so that it can be done every time the snapshot is mapped. It does not check the checksum, see verifyChecksum().
+     *
+     * @param buffer The contents of the snapshot file.
+     * @throws IOException If the snapshot is not valid, with the reason as its message.
+     */
+    static void validate(ByteBuffer buffer) throws IOException {
+
+        if (buffer.capacity() < SnapshotRepository.HEADER_SIZE || buffer.getInt(0) != SnapshotRepository.MAGIC)
+            throw new IOException("it is not a snapshot");
+
+        if (buffer.getInt(4) != SnapshotRepository.VERSION)
+            throw new IOException(String.format("it is version %d of the format, but version %d is needed", buffer.getInt(4), SnapshotRepository.VERSION));
+
+        long serverCount = buffer.getInt(8);
+        long eventCount = buffer.getInt(12);
+
+        // The sections are written one after the other, so each offset follows from the counts. This is checked in longs, so that a corrupt count cannot overflow into a valid looking offset.
+        long eventTableOffset = SnapshotRepository.HEADER_SIZE + serverCount * SnapshotRepository.SERVER_ENTRY_SIZE;
+        long stringPoolOffset = eventTableOffset + eventCount * SnapshotRepository.EVENT_ENTRY_SIZE;
+
+        if (serverCount < 0 || eventCount < 0 || buffer.getInt(16) != SnapshotRepository.HEADER_SIZE || buffer.getInt(20) != eventTableOffset || buffer.getInt(24) != stringPoolOffset || stringPoolOffset > buffer.capacity())
+            throw new IOException("its sections do not add up, so it is truncated or corrupt");
+
+        if (buffer.getInt(SnapshotRepository.HEADER_LENGTH) != buffer.capacity())
+            throw new IOException(String.format("it is %d bytes long, but it should be %d bytes, so it is truncated or corrupt", buffer.capacity(), buffer.getInt(SnapshotRepository.HEADER_LENGTH)));
+
+    }
+
+    /**
+     * Checks the checksum of a snapshot, which is the CRC32 of everything after the header. This reads the whole snapshot, so it is not done when a snapshot is mapped, only when one is written (see writeSnapshot()). The snapshot should have passed validate() first.
+     *
+     * @param buffer The contents of the snapshot file.
+     * @throws IOException If the checksum does not match.
+     */
+    static void verifyChecksum(ByteBuffer buffer) throws IOException {
+
+        CRC32 checksum = new CRC32();
+
+        // A duplicate, so that the position of the buffer is not modified
+        ByteBuffer body = buffer.duplicate();
+        body.position(SnapshotRepository.HEADER_SIZE);
+        checksum.update(body);
+
+        if ((int) checksum.getValue() != buffer.getInt(SnapshotRepository.HEADER_CHECKSUM))
+            throw new IOException("its checksum does not match, so it is truncated or corrupt");
+
+    }
+
+    /**
+     * Decodes all the server entries in the snapshot. This also remaps the snapshot if it has been regenerated since it was last read, so that every daily load picks up the newest version.
+     *
+     * @return A List object holding all the model GameServer objects in the snapshot, ordered by sid
+     */
+    @Override
+    public synchronized List<GameServer> getAllGameServers() {
+
+        RepositoryQueryEvent queryEvent = new RepositoryQueryEvent();
+        queryEvent.begin();
+
+        long startNanos = System.nanoTime();
+
+        this.map();
+
+        List<GameServer> serverList = new ArrayList<>(this.serverCount);
+
+        for (int i = 0; i < this.serverCount; i++) {
+
+            int entry = this.serverTableOffset + i * SnapshotRepository.SERVER_ENTRY_SIZE;
+
+            serverList.add(new GameServer(
+                    this.buffer.getInt(entry + SnapshotRepository.SERVER_SID),
+                    this.readString(this.buffer.getInt(entry + SnapshotRepository.SERVER_DESCRIPTION)),
+                    this.readString(this.buffer.getInt(entry + SnapshotRepository.SERVER_GAME)),
+                    this.readString(this.buffer.getInt(entry + SnapshotRepository.SERVER_MONIKER)),
+                    this.readString(this.buffer.getInt(entry + SnapshotRepository.SERVER_STARTFILE)),
+                    this.readString(this.buffer.getInt(entry + SnapshotRepository.SERVER_STOPCOMMAND)),
+                    this.readString(this.buffer.getInt(entry + SnapshotRepository.SERVER_WARNCOMMAND)),
+                    this.buffer.getInt(entry + SnapshotRepository.SERVER_PORT),
+                    this.buffer.getInt(entry + SnapshotRepository.SERVER_AUTOSTART) != 0
+            ));
+
+        }
+
+        queryEvent.finish(SnapshotRepository.REPOSITORY_NAME, "getAllGameServers", serverList.size());
+        ClientMetrics.getInstance().recordRepositoryQuery(SnapshotRepository.REPOSITORY_NAME, "getAllGameServers", System.nanoTime() - startNanos);
+
+        return serverList;
+
+    }
+
+    /**
+     * Decodes the event entries of a single server. Only the entries of that server are touched, since they are stored contiguously and the server table records where they start.
+     *
+     * @param server The GameServer object to get all the events for.
+     * @return A List of the descriptors of all the events associated with the particular GameServer, ordered by time. This is empty if the server is not in the snapshot.
+     */
+    @Override
+    public List<EventDescriptor> getEventDescriptors(GameServer server) {
+
+        List<EventDescriptor> eventList = new ArrayList<>();
+
+        this.decodeEvents("getEventDescriptors", server, (eid, eventType, gameServer, secondOfDay, args) -> eventList.add(new EventDescriptor(eid, eventType, gameServer, secondOfDay, args)));
+
+        return eventList;
+
+    }
+
+    /**
+     * Decodes the event entries of a single server straight into a handler, without making a descriptor for any of them.
+     *
+     * @param server  The GameServer object to get all the events for.
+     * @param handler What to do with every event, in time order. It is not called at all if the server is not in the snapshot.
+     */
+    @Override
+    public void forEachEvent(GameServer server, EventHandler handler) {
+
+        this.decodeEvents("forEachEvent", server, handler);
+
+    }
+
+    /**
+     * Decodes the event entries of a single server and hands every one of them to a handler.
+     *
+     * @param caller  The name of the public method decoding the events, for Flight Recorder and the metrics.
+     * @param server  The GameServer object to get all the events for.
+     * @param handler What to do with every event, in time order.
+     */
+    private synchronized void decodeEvents(String caller, GameServer server, EventHandler handler) {
+
+        RepositoryQueryEvent queryEvent = new RepositoryQueryEvent();
+        queryEvent.begin();
+
+        long startNanos = System.nanoTime();
+
+        if (this.buffer == null)
+            this.map();
+
+        int entry = this.findServerEntry(server.getSid());
+
+        if (entry < 0)
+            return;
+
+        int firstEvent = this.buffer.getInt(entry + SnapshotRepository.SERVER_FIRST_EVENT);
+        int eventCount = this.buffer.getInt(entry + SnapshotRepository.SERVER_EVENT_COUNT);
+
+        // Identical argument lists are only stored once in the string pool, so their offset tells them apart, and each one is only decoded once
+        Map<Integer, String[]> decodedArgs = new HashMap<>();
+
+        for (int i = firstEvent; i < firstEvent + eventCount; i++) {
+
+            int event = this.eventTableOffset + i * SnapshotRepository.EVENT_ENTRY_SIZE;
+            int argsOffset = this.buffer.getInt(event + SnapshotRepository.EVENT_ARGS);
+
+            String[] args = decodedArgs.get(argsOffset);
+
+            if (args == null) {
+
+                args = this.readStringArray(argsOffset);
+                decodedArgs.put(argsOffset, args);
+
+            }
+
+            handler.accept(
+                    this.buffer.getInt(event + SnapshotRepository.EVENT_EID),
+                    this.buffer.getInt(event + SnapshotRepository.EVENT_ETYPE),
+                    server,
+                    this.buffer.getInt(event + SnapshotRepository.EVENT_SECOND_OF_DAY),
+                    args
+            );
+
+        }
+
+        queryEvent.finish(SnapshotRepository.REPOSITORY_NAME, caller, eventCount);
+        ClientMetrics.getInstance().recordRepositoryQuery(SnapshotRepository.REPOSITORY_NAME, caller, System.nanoTime() - startNanos);
+
+    }
+
+    /**
+     * Binary searches the server table (which is sorted by sid) for a server.
+     *
+     * @param sid The sid of the server to find.
+     * @return The absolute offset of the server's entry, or -1 if the server is not in the snapshot.
+     */
+    private int findServerEntry(int sid) {
+
+        int low = 0;
+        int high = this.serverCount - 1;
+
+        while (low <= high) {
+
+            int middle = (low + high) >>> 1;
+            int entry = this.serverTableOffset + middle * SnapshotRepository.SERVER_ENTRY_SIZE;
+            int middleSid = this.buffer.getInt(entry + SnapshotRepository.SERVER_SID);
+
+            if (middleSid < sid)
+                low = middle + 1;
+            else if (middleSid > sid)
+                high = middle - 1;
+            else
+                return entry;
+
+        }
+
+        return -1;
+
+    }
+
+    /**
+     * Decodes a string from the string pool.
+     *
+     * @param reference The offset of the string relative to the start of the string pool.
+     * @return The decoded string.
+     */
+    private String readString(int reference) {
+
+        int offset = this.stringPoolOffset + reference;
+        byte[] bytes = new byte[this.buffer.getInt(offset)];
+
+        // We use a duplicate so that the position of the shared buffer is never modified
+        ByteBuffer view = this.buffer.duplicate();
+        view.position(offset + Integer.BYTES);
+        view.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+
+    }
+
+    /**
+     * Decodes a string array from the string pool.
+     *
+     * @param reference The offset of the array relative to the start of the string pool.
+     * @return The decoded array, which is empty (but not null) if the array has no elements.
+     */
+    private String[] readStringArray(int reference) {
+
+        int offset = this.stringPoolOffset + reference;
+        String[] strings = new String[this.buffer.getInt(offset)];
+
+        for (int i = 0; i < strings.length; i++)
+            strings[i] = this.readString(this.buffer.getInt(offset + Integer.BYTES * (i + 1)));
+
+        return strings;
+
+    }
+
+    /**
+     * Generates a snapshot of all the servers and events in a repository (normally the SQLite database) and writes it to a file. The snapshot is first written to a temporary file which is then renamed over the old one, so a client reading the old snapshot never sees a partially written file.
+     *
+     * @param source       The repository to take the snapshot of.
+     * @param snapshotPath The path that the snapshot will be written to.
+     * @throws IOException If the snapshot could not be written.
+     */
+    public static void writeSnapshot(ASCRepository source, String snapshotPath) throws IOException {
+
+        List<GameServer> serverList = new ArrayList<>(source.getAllGameServers());
+        serverList.sort(Comparator.comparingInt(GameServer::getSid));
+
+        StringPool pool = new StringPool();
+
+        ByteArrayOutputStream serverBytes = new ByteArrayOutputStream();
+        DataOutputStream serverTable = new DataOutputStream(serverBytes);
+
+        ByteArrayOutputStream eventBytes = new ByteArrayOutputStream();
+        DataOutputStream eventTable = new DataOutputStream(eventBytes);
+
+        int eventCount = 0;
+
+        for (GameServer server : serverList) {
+
+            List<EventDescriptor> eventList = new ArrayList<>(source.getEventDescriptors(server));
+            eventList.sort(Comparator.comparingInt(EventDescriptor::getSecondOfDay));
+
+            serverTable.writeInt(server.getSid());
+            serverTable.writeInt(server.getPort());
+            serverTable.writeInt(server.isAutostart() ? 1 : 0);
+            serverTable.writeInt(pool.addString(server.getDescription()));
+            serverTable.writeInt(pool.addString(server.getGame()));
+            serverTable.writeInt(pool.addString(server.getMoniker()));
+            serverTable.writeInt(pool.addString(server.getStartFile()));
+            serverTable.writeInt(pool.addString(server.getStopCommand()));
+            serverTable.writeInt(pool.addString(server.getWarnCommand()));
+            serverTable.writeInt(eventCount);
+            serverTable.writeInt(eventList.size());
+
+            for (EventDescriptor descriptor : eventList) {
+
+                eventTable.writeInt(descriptor.getEid());
+                eventTable.writeInt(descriptor.getSecondOfDay());
+                eventTable.writeInt(descriptor.getEventType());
+                eventTable.writeInt(pool.addStringArray(descriptor.getArgs()));
+
+            }
+
+            eventCount += eventList.size();
+
+        }
+
+        byte[] serverTableBytes = serverBytes.toByteArray();
+        byte[] eventTableBytes = eventBytes.toByteArray();
+        byte[] poolBytes = pool.toByteArray();
+
+        CRC32 checksum = new CRC32();
+        checksum.update(serverTableBytes);
+        checksum.update(eventTableBytes);
+        checksum.update(poolBytes);
+
+        ByteBuffer header = ByteBuffer.allocate(SnapshotRepository.HEADER_SIZE);
+
+        header.putInt(SnapshotRepository.MAGIC);
+        header.putInt(SnapshotRepository.VERSION);
+        header.putInt(serverList.size());
+        header.putInt(eventCount);
+        header.putInt(SnapshotRepository.HEADER_SIZE);
+        header.putInt(SnapshotRepository.HEADER_SIZE + serverBytes.size());
+        header.putInt(SnapshotRepository.HEADER_SIZE + serverBytes.size() + eventBytes.size());
+        header.putInt(SnapshotRepository.HEADER_SIZE + serverBytes.size() + eventBytes.size() + poolBytes.length);
+        header.putInt((int) checksum.getValue());
+        header.flip();
+
+        Path target = Paths.get(snapshotPath);
+        Path temporary = Paths.get(snapshotPath + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+            channel.write(header);
+            channel.write(ByteBuffer.wrap(serverTableBytes));
+            channel.write(ByteBuffer.wrap(eventTableBytes));
+            channel.write(ByteBuffer.wrap(poolBytes));
+
+            // Make sure the contents are on disk before the rename makes them visible
+            channel.force(true);
+
+            // Clients only check the header when they map the snapshot, so this is the one time the whole file is read back and checked
+            ByteBuffer written = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            SnapshotRepository.validate(written);
+            SnapshotRepository.verifyChecksum(written);
+
+        }
+
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+    }
+
+    /**
+     * Builds the string pool section of a snapshot, storing each distinct string and string array only once.
+     */
+    private static class StringPool {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream output = new DataOutputStream(this.bytes);
+
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final Map<List<String>, Integer> stringArrays = new HashMap<>();
+
+        /**
+         * Adds a string to the pool if it is not already there.
+         *
+         * @param string The string to add.
+         * @return The reference to the string.
+         */
+        private int addString(String string) throws IOException {
+
+            Integer reference = this.strings.get(string);
+
+            if (reference != null)
+                return reference;
+
+            byte[] encoded = string.getBytes(StandardCharsets.UTF_8);
+
+            reference = this.output.size();
+            this.output.writeInt(encoded.length);
+            this.output.write(encoded);
+
+            this.strings.put(string, reference);
+            return reference;
+
+        }
+
+        /**
+         * Adds a string array (and all of its strings) to the pool if it is not already there.
+         *
+         * @param stringArray The string array to add.
+         * @return The reference to the string array.
+         */
+        private int addStringArray(String[] stringArray) throws IOException {
+
+            List<String> key = Arrays.asList(stringArray);
+            Integer reference = this.stringArrays.get(key);
+
+            if (reference != null)
+                return reference;
+
+            // The strings have to be added first, since the array is written contiguously
+            int[] elements = new int[stringArray.length];
+
+            for (int i = 0; i < stringArray.length; i++)
+                elements[i] = this.addString(stringArray[i]);
+
+            reference = this.output.size();
+            this.output.writeInt(elements.length);
+
+            for (int element : elements)
+                this.output.writeInt(element);
+
+            this.stringArrays.put(key, reference);
+            return reference;
+
+        }
+
+        private byte[] toByteArray() {
+            return this.bytes.toByteArray();
+        }
+
+    }
+
+}
@@ -0,0 +1,40 @@
+package com.nchroniaris.ASC.client.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for an event running, from the moment it fires until it has started its session or sent its command. Events that could not be built are recorded too, with no duration.
+ */
+@Name("com.nchroniaris.ASC.EventFired")
+@Label("Event Fired")
+@Category({"ASC", "Scheduler"})
+@Description("An event ran")
+@StackTrace(false)
+public final class EventFiredEvent extends jdk.jfr.Event {
+
+    @Label("Event Id")
+    public int eid;
+
+    @Label("Server Id")
+    public int sid;
+
+    @Label("Event Type")
+    public int eventType;
+
+    @Label("Session")
+    public String session;
+
+    @Label("Lateness")
+    @Description("How long after its scheduled time the event fired")
+    @Timespan(Timespan.MILLISECONDS)
+    public long lateness;
+
+    @Label("Result")
+    public String result;
+
+}
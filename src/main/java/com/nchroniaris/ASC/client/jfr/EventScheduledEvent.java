@@ -0,0 +1,34 @@
+package com.nchroniaris.ASC.client.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for an event being handed to the scheduler's executor. For a ScheduleTable this happens when the event is armed, a few minutes before it fires, rather than when the table is loaded.
+ */
+@Name("com.nchroniaris.ASC.EventScheduled")
+@Label("Event Scheduled")
+@Category({"ASC", "Scheduler"})
+@Description("An event was handed to the scheduler's executor")
+@StackTrace(false)
+public final class EventScheduledEvent extends jdk.jfr.Event {
+
+    @Label("Event Id")
+    public int eid;
+
+    @Label("Server Id")
+    public int sid;
+
+    @Label("Event Type")
+    public int eventType;
+
+    @Label("Delay")
+    @Description("How long the executor will wait before firing the event")
+    @Timespan(Timespan.MILLISECONDS)
+    public long delay;
+
+}
@@ -0,0 +1,81 @@
+package com.nchroniaris.ASC.client.jfr;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Starts the client's always-on Flight Recorder recording. The recording keeps a rolling window of the JDK's default events plus the client's own (see ASC.jfc, next to this class) on disk, and can be dumped at any time with `jcmd <pid> JFR.dump name=ASC filename=incident.jfr`. It is also dumped when the JVM exits, so that a crash leaves a recording behind.
+ */
+public final class FlightRecording {
+
+    /**
+     * The name of the recording, which is what jcmd refers to it by.
+     */
+    public static final String NAME = "ASC";
+
+    private static final String SETTINGS_RESOURCE = "ASC.jfc";
+
+    private FlightRecording() {
+
+    }
+
+    /**
+     * Starts the recording.
+     *
+     * @param maxAge       How far back the recording goes. Anything older is discarded.
+     * @param maxSizeBytes How big the recording can get on disk before the oldest parts of it are discarded, or 0 for no limit.
+     * @param dumpPath     Where the recording is written to when the JVM exits.
+     * @return The running recording.
+     * @throws IOException              If the settings could not be read, or the recording could not be started.
+     * @throws ParseException           If the settings in ASC.jfc are invalid, which would be a bug.
+     * @throws IllegalStateException    If Flight Recorder is not available in this JVM.
+     * @throws IllegalArgumentException If the maximum age or size are negative.
+     */
+    public static Recording start(Duration maxAge, long maxSizeBytes, String dumpPath) throws IOException, ParseException {
+
+        if (maxAge.isNegative() || maxSizeBytes < 0)
+            throw new IllegalArgumentException("The maximum age and size of the recording cannot be negative!");
+
+        // The client's settings only cover the client's events, so they go on top of the JDK's default settings (which are designed to be left on in production)
+        Map<String, String> settings = new HashMap<>(Configuration.getConfiguration("default").getSettings());
+
+        try (InputStream stream = FlightRecording.class.getResourceAsStream(FlightRecording.SETTINGS_RESOURCE)) {
+
+            if (stream == null)
+                throw new IOException(String.format("The Flight Recorder settings (%s) are missing from the jar!", FlightRecording.SETTINGS_RESOURCE));
+
+            try (Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8)) {
+
+                settings.putAll(Configuration.create(reader).getSettings());
+
+            }
+
+        }
+
+        Recording recording = new Recording(settings);
+
+        recording.setName(FlightRecording.NAME);
+        recording.setToDisk(true);
+        recording.setMaxAge(maxAge);
+        recording.setMaxSize(maxSizeBytes);
+        recording.setDestination(Paths.get(dumpPath));
+        recording.setDumpOnExit(true);
+
+        recording.start();
+
+        return recording;
+
+    }
+
+}
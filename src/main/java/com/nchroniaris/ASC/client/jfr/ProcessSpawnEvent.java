@@ -0,0 +1,26 @@
+package com.nchroniaris.ASC.client.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for a process spawned by a multiplexer, from the moment it is started until it exits. This does not include any delay that the multiplexer adds after the process exits.
+ */
+@Name("com.nchroniaris.ASC.ProcessSpawn")
+@Label("Process Spawn")
+@Category({"ASC", "Multiplexer"})
+@Description("A multiplexer ran an external process")
+@StackTrace(false)
+public final class ProcessSpawnEvent extends jdk.jfr.Event {
+
+    @Label("Command")
+    public String command;
+
+    @Label("Exit Code")
+    @Description("The exit code of the process, or -1 if it could not be started or waited for")
+    public int exitCode;
+
+}
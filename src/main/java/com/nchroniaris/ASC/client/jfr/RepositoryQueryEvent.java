@@ -0,0 +1,52 @@
+package com.nchroniaris.ASC.client.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for a single query against a repository (the database or the snapshot), including turning the results into objects.
+ */
+@Name("com.nchroniaris.ASC.RepositoryQuery")
+@Label("Repository Query")
+@Category({"ASC", "Repository"})
+@Description("A repository was queried")
+@StackTrace(false)
+public final class RepositoryQueryEvent extends jdk.jfr.Event {
+
+    @Label("Repository")
+    public String repository;
+
+    @Label("Query")
+    @Description("The repository method that was called")
+    public String query;
+
+    @Label("Rows")
+    @Description("The number of rows read or written")
+    public int rows;
+
+    /**
+     * Ends the event and commits it, if it is enabled. The fields are only filled in if the event is actually recorded.
+     *
+     * @param repository The kind of repository, such as "sqlite".
+     * @param query      The repository method that was called.
+     * @param rows       The number of rows read or written.
+     */
+    public void finish(String repository, String query, int rows) {
+
+        this.end();
+
+        if (this.shouldCommit()) {
+
+            this.repository = repository;
+            this.query = query;
+            this.rows = rows;
+            this.commit();
+
+        }
+
+    }
+
+}
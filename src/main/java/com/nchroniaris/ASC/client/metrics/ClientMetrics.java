@@ -0,0 +1,236 @@
+package com.nchroniaris.ASC.client.metrics;
+
+import com.nchroniaris.ASC.client.model.EventResult;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The counters and histograms that the client keeps about itself, for MetricsServer to serve to Prometheus. They are always kept, whether or not the server is running, since recording anything is only a LongAdder increment (or two) that never takes a lock: the instrumented paths are the ones every event goes through, and they should not get any slower for it.
+ * <p>
+ * Gauges (the number of sessions, queue depths, ...) are not kept here. They are read from the client when the metrics are scraped, through a MetricsCallback.
+ */
+public final class ClientMetrics {
+
+    // The label of every eventType id, by id. Event types that are not in here (which would be a bug) are counted under UNKNOWN_TYPE.
+    private static final String[] TYPE_LABELS = {"execute", "start", "command", "stop", "warn", "stop_countdown"};
+    private static final String UNKNOWN_TYPE = "unknown";
+
+    private static final double[] LATENESS_BOUNDS_MILLIS = {1, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000};
+    private static final double[] SPAWN_BOUNDS_MILLIS = {1, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+    private static final double[] QUERY_BOUNDS_MILLIS = {0.1, 0.5, 1, 5, 10, 50, 100, 500, 1000, 5000};
+    private static final double[] START_DELAY_BOUNDS_MILLIS = {100, 1000, 5000, 15000, 30000, 60000, 120000, 300000, 600000, 1800000};
+
+    private static final ClientMetrics INSTANCE = new ClientMetrics();
+
+    // Indexed by [type][result id] and [type], where the last type is the unknown one
+    private final LongAdder[][] eventsFired;
+    private final LongAdder[] eventsCancelled;
+    private final LongAdder[] eventsDeferred;
+    private final Histogram[] lateness;
+
+    private final Histogram processSpawns;
+    private final Histogram startDelays;
+
+    // By repository and query, joined with a space. These only get created the first time a query runs, and there are only a handful of them.
+    private final ConcurrentMap<String, Histogram> repositoryQueries;
+
+    /**
+     * This gets the instance of the class as it is implemented as a singleton. Unlike most singletons in the client, the instance is created eagerly, so that getting it on the hot paths does not take a lock.
+     *
+     * @return The ClientMetrics instance
+     */
+    public static ClientMetrics getInstance() {
+
+        return ClientMetrics.INSTANCE;
+
+    }
+
+    private ClientMetrics() {
+
+        int types = ClientMetrics.TYPE_LABELS.length + 1;
+
+        this.eventsFired = new LongAdder[types][EventResult.values().length];
+        this.eventsCancelled = new LongAdder[types];
+        this.eventsDeferred = new LongAdder[types];
+        this.lateness = new Histogram[types];
+
+        for (int type = 0; type < types; type++) {
+
+            for (int result = 0; result < this.eventsFired[type].length; result++)
+                this.eventsFired[type][result] = new LongAdder();
+
+            this.eventsCancelled[type] = new LongAdder();
+            this.eventsDeferred[type] = new LongAdder();
+            this.lateness[type] = new Histogram(ClientMetrics.LATENESS_BOUNDS_MILLIS);
+
+        }
+
+        this.processSpawns = new Histogram(ClientMetrics.SPAWN_BOUNDS_MILLIS);
+        this.startDelays = new Histogram(ClientMetrics.START_DELAY_BOUNDS_MILLIS);
+        this.repositoryQueries = new ConcurrentHashMap<>();
+
+    }
+
+    private static int typeIndex(int eventType) {
+
+        return (eventType >= 0 && eventType < ClientMetrics.TYPE_LABELS.length) ? eventType : ClientMetrics.TYPE_LABELS.length;
+
+    }
+
+    private static String typeLabel(int index) {
+
+        return (index < ClientMetrics.TYPE_LABELS.length) ? ClientMetrics.TYPE_LABELS[index] : ClientMetrics.UNKNOWN_TYPE;
+
+    }
+
+    /**
+     * Records the outcome of an event, whether it ran or could not even be built.
+     *
+     * @param eventType The eventType id of the event.
+     * @param result    The outcome of the event.
+     */
+    public void recordFired(int eventType, EventResult result) {
+
+        this.eventsFired[ClientMetrics.typeIndex(eventType)][result.ordinal()].increment();
+
+    }
+
+    /**
+     * Records how late a scheduled event fired. Manual events should not be recorded here, since they do not have a scheduled time to be late for.
+     *
+     * @param eventType      The eventType id of the event.
+     * @param latenessMillis How long after its scheduled time the event fired, in milliseconds.
+     */
+    public void recordLateness(int eventType, long latenessMillis) {
+
+        this.lateness[ClientMetrics.typeIndex(eventType)].observeNanos(latenessMillis * 1_000_000);
+
+    }
+
+    /**
+     * Records that scheduled events were cancelled before they ran.
+     *
+     * @param eventType The eventType id of the events.
+     * @param count     The number of events.
+     */
+    public void recordCancelled(int eventType, long count) {
+
+        this.eventsCancelled[ClientMetrics.typeIndex(eventType)].add(count);
+
+    }
+
+    /**
+     * Records that a scheduled event was deferred because the host was under pressure. An event is only counted once, however many times it is put off.
+     *
+     * @param eventType The eventType id of the event.
+     */
+    public void recordDeferred(int eventType) {
+
+        this.eventsDeferred[ClientMetrics.typeIndex(eventType)].increment();
+
+    }
+
+    /**
+     * Records a process that was spawned by the multiplexer.
+     *
+     * @param nanos How long the process took, from starting it to its exit.
+     */
+    public void recordProcessSpawn(long nanos) {
+
+        this.processSpawns.observeNanos(nanos);
+
+    }
+
+    /**
+     * Records how long a scheduled start was held back by a StartAdmission, through its jitter and waiting for a slot.
+     *
+     * @param delayMillis How long after its scheduled time the start got its slot, in milliseconds.
+     */
+    public void recordStartDelay(long delayMillis) {
+
+        this.startDelays.observeNanos(delayMillis * 1_000_000);
+
+    }
+
+    /**
+     * Records a query against a repository.
+     *
+     * @param repository The kind of repository, such as "sqlite".
+     * @param query      The repository method that was called.
+     * @param nanos      How long the query took, including turning the results into objects.
+     */
+    public void recordRepositoryQuery(String repository, String query, long nanos) {
+
+        String key = repository + ' ' + query;
+
+        // get() never locks, so only the very first query of each kind goes through computeIfAbsent()
+        Histogram histogram = this.repositoryQueries.get(key);
+
+        if (histogram == null)
+            histogram = this.repositoryQueries.computeIfAbsent(key, k -> new Histogram(ClientMetrics.QUERY_BOUNDS_MILLIS));
+
+        histogram.observeNanos(nanos);
+
+    }
+
+    /**
+     * Writes every counter and histogram in the Prometheus text format.
+     *
+     * @param out Where to write the metrics.
+     */
+    void write(StringBuilder out) {
+
+        EventResult[] results = EventResult.values();
+
+        out.append("# HELP asc_events_fired_total Events that fired, by event type and outcome.\n");
+        out.append("# TYPE asc_events_fired_total counter\n");
+
+        for (int type = 0; type < this.eventsFired.length; type++)
+            for (EventResult result : results)
+                out.append("asc_events_fired_total{type=\"").append(ClientMetrics.typeLabel(type)).append("\",result=\"").append(result.name().toLowerCase(Locale.ROOT)).append("\"} ").append(this.eventsFired[type][result.ordinal()].sum()).append('\n');
+
+        out.append("# HELP asc_events_cancelled_total Scheduled events that were cancelled before they fired, by a reload or a shutdown.\n");
+        out.append("# TYPE asc_events_cancelled_total counter\n");
+
+        for (int type = 0; type < this.eventsCancelled.length; type++)
+            out.append("asc_events_cancelled_total{type=\"").append(ClientMetrics.typeLabel(type)).append("\"} ").append(this.eventsCancelled[type].sum()).append('\n');
+
+        out.append("# HELP asc_events_deferred_total Scheduled events that were deferred because the host was under pressure.\n");
+        out.append("# TYPE asc_events_deferred_total counter\n");
+
+        for (int type = 0; type < this.eventsDeferred.length; type++)
+            out.append("asc_events_deferred_total{type=\"").append(ClientMetrics.typeLabel(type)).append("\"} ").append(this.eventsDeferred[type].sum()).append('\n');
+
+        out.append("# HELP asc_event_lateness_seconds How long after their scheduled time events fired, by event type.\n");
+        out.append("# TYPE asc_event_lateness_seconds histogram\n");
+
+        for (int type = 0; type < this.lateness.length; type++)
+            this.lateness[type].writeSamples(out, "asc_event_lateness_seconds", "type=\"" + ClientMetrics.typeLabel(type) + "\"");
+
+        out.append("# HELP asc_process_spawn_seconds How long the processes spawned by the multiplexer took to exit.\n");
+        out.append("# TYPE asc_process_spawn_seconds histogram\n");
+        this.processSpawns.writeSamples(out, "asc_process_spawn_seconds", "");
+
+        out.append("# HELP asc_start_delay_seconds How long scheduled starts were held back to stagger them, from their scheduled time until they could start.\n");
+        out.append("# TYPE asc_start_delay_seconds histogram\n");
+        this.startDelays.writeSamples(out, "asc_start_delay_seconds", "");
+
+        out.append("# HELP asc_repository_query_seconds How long repository queries took, by repository and query.\n");
+        out.append("# TYPE asc_repository_query_seconds histogram\n");
+
+        // Sorted so that the output does not move around between scrapes
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(this.repositoryQueries).entrySet()) {
+
+            String[] key = entry.getKey().split(" ", 2);
+            entry.getValue().writeSamples(out, "asc_repository_query_seconds", "repository=\"" + key[0] + "\",query=\"" + key[1] + "\"");
+
+        }
+
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.nchroniaris.ASC.client.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations with fixed buckets, in the shape that Prometheus expects. Observing a value is a short scan for its bucket and two LongAdder increments, so any number of threads can observe values at the same time without ever waiting on each other.
+ * <p>
+ * Unlike a Prometheus histogram, the counts are kept per bucket rather than cumulatively, so that an observation only touches one bucket. They are summed up when the histogram is written out, which happens far less often.
+ */
+public class Histogram {
+
+    // The upper bound of every bucket, in nanoseconds, in increasing order. Everything above the last bound goes into an extra bucket (+Inf).
+    private final long[] boundsNanos;
+    private final LongAdder[] buckets;
+    private final LongAdder sumNanos;
+
+    /**
+     * Creates an empty histogram.
+     *
+     * @param boundsMillis The upper bound of every bucket in milliseconds, in increasing order. Cannot be null or empty.
+     */
+    public Histogram(double... boundsMillis) {
+
+        if (boundsMillis == null || boundsMillis.length == 0)
+            throw new IllegalArgumentException("The boundsMillis argument should NOT be null or empty!");
+
+        this.boundsNanos = new long[boundsMillis.length];
+
+        for (int i = 0; i < boundsMillis.length; i++) {
+
+            this.boundsNanos[i] = (long) (boundsMillis[i] * 1_000_000);
+
+            if (i > 0 && this.boundsNanos[i] <= this.boundsNanos[i - 1])
+                throw new IllegalArgumentException("The bucket bounds must be in increasing order!");
+
+        }
+
+        this.buckets = new LongAdder[boundsMillis.length + 1];
+
+        for (int i = 0; i < this.buckets.length; i++)
+            this.buckets[i] = new LongAdder();
+
+        this.sumNanos = new LongAdder();
+
+    }
+
+    /**
+     * Records a single duration.
+     *
+     * @param nanos The duration, in nanoseconds. Negative durations are counted as 0.
+     */
+    public void observeNanos(long nanos) {
+
+        nanos = Math.max(nanos, 0);
+
+        // There are only a dozen or so buckets, so a linear scan is as fast as a binary search and predicts better, since most values land in the first few
+        int bucket = 0;
+
+        while (bucket < this.boundsNanos.length && nanos > this.boundsNanos[bucket])
+            bucket++;
+
+        this.buckets[bucket].increment();
+        this.sumNanos.add(nanos);
+
+    }
+
+    /**
+     * Writes the histogram as the samples of a Prometheus histogram: a cumulative `_bucket` line per bucket, then `_sum` (in seconds) and `_count`. The HELP and TYPE lines are left to the caller, since several histograms can share them with different labels.
+     *
+     * @param out    Where to write the samples.
+     * @param name   The name of the metric, without any suffix.
+     * @param labels The labels of the histogram, formatted like `key="value",key="value"`, or an empty string for none.
+     */
+    void writeSamples(StringBuilder out, String name, String labels) {
+
+        String separator = labels.isEmpty() ? "" : ",";
+        long cumulative = 0;
+
+        for (int i = 0; i < this.buckets.length; i++) {
+
+            cumulative += this.buckets[i].sum();
+
+            String bound = (i < this.boundsNanos.length) ? Histogram.formatSeconds(this.boundsNanos[i]) : "+Inf";
+            out.append(name).append("_bucket{").append(labels).append(separator).append("le=\"").append(bound).append("\"} ").append(cumulative).append('\n');
+
+        }
+
+        String braces = labels.isEmpty() ? "" : "{" + labels + "}";
+
+        // The count is the same as the +Inf bucket. Reading the buckets again could give a different total if values were observed in the meantime, which Prometheus would complain about.
+        out.append(name).append("_sum").append(braces).append(' ').append(Histogram.formatSeconds(this.sumNanos.sum())).append('\n');
+        out.append(name).append("_count").append(braces).append(' ').append(cumulative).append('\n');
+
+    }
+
+    private static String formatSeconds(long nanos) {
+
+        return Double.toString(nanos / 1e9);
+
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.nchroniaris.ASC.client.metrics;
+
+/**
+ * This interface serves as a callback for the metrics server, much like ControlCallback does for the control server. Each method is a gauge that is read from the ASCClient whenever the metrics are scraped.
+ */
+public interface MetricsCallback {
+
+    /**
+     * Gets the number of sessions that are currently running in the multiplexer. This can take a while, since the multiplexer might have to spawn a process to find out.
+     *
+     * @return The number of running sessions.
+     */
+    int getSessionCount();
+
+    /**
+     * Gets the number of tasks waiting in the scheduler. See EventScheduler.getQueueDepth().
+     *
+     * @return The number of queued tasks, or 0 if the scheduler has not been started.
+     */
+    int getQueueDepth();
+
+    /**
+     * Gets the number of lines waiting to be written to the log. See ASCLogger.getQueueDepth().
+     *
+     * @return The number of queued lines.
+     */
+    int getLogQueueDepth();
+
+}
@@ -0,0 +1,178 @@
+package com.nchroniaris.ASC.client.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A local HTTP endpoint that serves the client's metrics (see ClientMetrics) in the Prometheus text format, at /metrics. It listens on the loopback interface only, like the control server, and uses the HTTP server that comes with the JDK, so it does not need any dependencies.
+ * <p>
+ * Scrapes are served one at a time from a single thread. Prometheus only scrapes every few seconds, and a scrape only reads a few hundred counters (plus the gauges from the MetricsCallback), so there is nothing to gain from more.
+ */
+public class MetricsServer implements AutoCloseable {
+
+    private static final String PATH = "/metrics";
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final MetricsCallback callback;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private volatile boolean closed;
+
+    /**
+     * Creates a metrics server on the loopback interface and starts serving scrapes.
+     *
+     * @param port     The port to listen on. If 0, any free port is used (see getPort()).
+     * @param callback A valid MetricsCallback implementation, which the gauges are read from.
+     * @throws IOException If the port could not be bound.
+     */
+    public MetricsServer(int port, MetricsCallback callback) throws IOException {
+
+        if (callback == null)
+            throw new IllegalArgumentException("The callback must have some implementation!");
+
+        if (port < 0 || port > 65535)
+            throw new IllegalArgumentException(String.format("The port must be between 0 and 65535! Got %d", port));
+
+        this.callback = callback;
+
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+
+            Thread thread = new Thread(runnable, "ASC-metrics");
+            thread.setDaemon(true);
+
+            return thread;
+
+        });
+
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.createContext(MetricsServer.PATH, this::handle);
+        this.server.setExecutor(this.executor);
+        this.server.start();
+
+        this.closed = false;
+
+    }
+
+    /**
+     * Gets the port the server is listening on, which is useful if it was created with port 0.
+     *
+     * @return The local port.
+     */
+    public int getPort() {
+
+        return this.server.getAddress().getPort();
+
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+
+        // HttpExchange is only AutoCloseable from Java 18 onwards, so it is closed by hand
+        try {
+
+            String method = exchange.getRequestMethod();
+
+            if (!method.equals("GET") && !method.equals("HEAD")) {
+
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+
+            }
+
+            // The context matches every path that starts with /metrics, but only /metrics itself is served
+            if (!exchange.getRequestURI().getPath().equals(MetricsServer.PATH)) {
+
+                exchange.sendResponseHeaders(404, -1);
+                return;
+
+            }
+
+            byte[] body = this.scrape().getBytes(StandardCharsets.UTF_8);
+
+            exchange.getResponseHeaders().set("Content-Type", MetricsServer.CONTENT_TYPE);
+
+            if (method.equals("HEAD")) {
+
+                exchange.sendResponseHeaders(200, -1);
+                return;
+
+            }
+
+            exchange.sendResponseHeaders(200, body.length);
+
+            try (OutputStream out = exchange.getResponseBody()) {
+
+                out.write(body);
+
+            }
+
+        } finally {
+
+            exchange.close();
+
+        }
+
+    }
+
+    /**
+     * Puts together every metric in the Prometheus text format. This is package-private so that the format can be tested without going through HTTP.
+     *
+     * @return The body of a scrape.
+     */
+    String scrape() {
+
+        StringBuilder out = new StringBuilder(16 * 1024);
+
+        ClientMetrics.getInstance().write(out);
+
+        MetricsServer.writeGauge(out, "asc_scheduler_queue_depth", "Tasks waiting in the scheduler, including every armed event.", this.callback.getQueueDepth());
+        MetricsServer.writeGauge(out, "asc_log_queue_depth", "Lines waiting to be written to the log by the writer thread.", this.callback.getLogQueueDepth());
+
+        // The multiplexer can fail (if screen has been uninstalled, for example), in which case the rest of the metrics are still worth serving
+        try {
+
+            MetricsServer.writeGauge(out, "asc_sessions", "Sessions running in the multiplexer.", this.callback.getSessionCount());
+
+        } catch (RuntimeException ignored) {
+
+        }
+
+        return out.toString();
+
+    }
+
+    private static void writeGauge(StringBuilder out, String name, String help, long value) {
+
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" gauge\n");
+        out.append(name).append(' ').append(value).append('\n');
+
+    }
+
+    /**
+     * Stops the server. A scrape that is in progress is cut off, since the client is usually shutting down when this is called and a scrape is not worth waiting for. Calling this more than once has no additional effect.
+     */
+    @Override
+    public synchronized void close() {
+
+        if (this.closed)
+            return;
+
+        this.closed = true;
+
+        this.server.stop(0);
+        this.executor.shutdownNow();
+
+    }
+
+}
@@ -1,6 +1,12 @@
 package com.nchroniaris.ASC.client.model;
 
+import com.nchroniaris.ASC.client.core.ASCProperties;
+import com.nchroniaris.ASC.client.jfr.EventFiredEvent;
+import com.nchroniaris.ASC.client.metrics.ClientMetrics;
 import com.nchroniaris.ASC.client.multiplexer.TerminalMultiplexer;
+import com.nchroniaris.ASC.client.trace.Span;
+import com.nchroniaris.ASC.client.trace.Tracer;
+import com.nchroniaris.ASC.util.logger.EventJournal;
 import com.nchroniaris.ASC.util.model.GameServer;
 
 import java.time.LocalTime;
@@ -10,10 +16,18 @@ import java.time.LocalTime;
  */
 public abstract class Event implements Runnable {
 
+    // Placeholder eid for events that do not correspond to a row in the events table, such as manual events spawned from the console.
+    public static final int EID_NONE = -1;
+
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
     protected final TerminalMultiplexer multiplexer;
     protected final GameServer gameServer;
     protected final LocalTime time;
 
+    // This is not final because the subclass constructors do not know about it. It is set by EventFactory right after construction, which is why the setter is package-private.
+    private int eid;
+
     /**
      * Protected constructor for any Event. Since `Event` is abstract, this constructor cannot be used directly. Instead, it is merely used to explicitly instantiate both instance variables when instantiating a subclass of `Event`
      *
@@ -35,6 +49,8 @@ public abstract class Event implements Runnable {
         this.gameServer = gameServer;
         this.time = time;
 
+        this.eid = Event.EID_NONE;
+
     }
 
     /**
@@ -46,6 +62,19 @@ public abstract class Event implements Runnable {
         return time;
     }
 
+    /**
+     * Gets the id of the row in the events table that this event was built from.
+     *
+     * @return The eid of the event, or {@code Event.EID_NONE} if it was not built from the database.
+     */
+    public final int getEid() {
+        return eid;
+    }
+
+    final void setEid(int eid) {
+        this.eid = eid;
+    }
+
     /**
      * Returns the string representation of the event's main function. This is meant for logging purposes.
      *
@@ -53,10 +82,151 @@ public abstract class Event implements Runnable {
      */
     protected abstract String eventString();
 
+    /**
+     * Returns the eventType id of this event, as defined in EventFactory and the eventType table. This is meant for recording the event's history.
+     *
+     * @return The eventType id of the event.
+     */
+    public abstract int eventType();
+
     /**
      * A method that allows the event to actually take place. Every event subclass must implement such a method.
+     *
+     * @return The outcome of the event. This is recorded in the event history.
+     */
+    protected abstract EventResult execute();
+
+    /**
+     * Runs the event and records its outcome to the event history. This is an implementation of the Template pattern, where execute() is the swappable step. Recording the outcome is a non-blocking call, so this does not add any latency to the event itself.
+     * <p>
+     * Outside of execute(), this does not allocate anything unless something is listening (a sampled trace, a Flight Recorder recording, the journal, or a log level low enough for the trace line). Times are kept as milliseconds since the epoch, and only turned into dates by the history writer.
      */
     @Override
-    public abstract void run();
+    public final void run() {
+
+        // Scheduled events already have a trace (see EventScheduler), so this is usually a child span. Manual events start their own trace here.
+        try (Span span = Tracer.getInstance().startTrace(this.eventString())) {
+
+            long actualMillis = System.currentTimeMillis();
+            long startNanos = System.nanoTime();
+
+            EventFiredEvent firedEvent = new EventFiredEvent();
+            firedEvent.begin();
+
+            // If execute() throws, this is the result that gets recorded. The exception still propagates so that the executor (and eventually SynchronizedFutureList) can report it.
+            EventResult result = EventResult.FAILED;
+
+            // This is on the path of every event, so the message is parameterized: unless the level is TRACE, it is never formatted.
+            ASCProperties.getInstance().LOGGER.logTrace("Event [%s] - Firing for session '%s'.", this.eventString(), this.gameServer.getSessionName());
+
+            try {
+
+                result = this.execute();
+
+            } finally {
+
+                ASCProperties properties = ASCProperties.getInstance();
+
+                if (span.isRecording())
+                    span.arg("eid", this.eid).arg("sid", this.gameServer.getSid()).arg("session", this.gameServer.getSessionName()).arg("result", result.name());
+
+                long latenessMillis = Event.latenessMillis(this.time, actualMillis);
+
+                firedEvent.end();
+
+                if (firedEvent.shouldCommit())
+                    this.commitFiredEvent(firedEvent, latenessMillis, result);
+
+                // Manual events fire whenever they are asked to, so they are never late
+                ClientMetrics metrics = ClientMetrics.getInstance();
+                metrics.recordFired(this.eventType(), result);
+
+                if (this.eid != Event.EID_NONE)
+                    metrics.recordLateness(this.eventType(), Math.max(latenessMillis, 0));
+
+                properties.LOGGER.journalEvent(Event.journalLevel(result), this.gameServer.getSid(), this.eventType(), result.getId(), "%s - Session '%s'", this.eventString(), this.gameServer.getSessionName());
+
+                properties.HISTORY.record(
+                        this.eid,
+                        this.gameServer.getSid(),
+                        this.eventType(),
+                        actualMillis - latenessMillis,
+                        actualMillis,
+                        (System.nanoTime() - startNanos) / 1_000_000,
+                        result
+                );
+
+            }
+
+        }
+
+    }
+
+    private void commitFiredEvent(EventFiredEvent firedEvent, long latenessMillis, EventResult result) {
+
+        firedEvent.eid = this.eid;
+        firedEvent.sid = this.gameServer.getSid();
+        firedEvent.eventType = this.eventType();
+        firedEvent.session = this.gameServer.getSessionName();
+        firedEvent.lateness = Math.max(latenessMillis, 0);
+        firedEvent.result = result.name();
+        firedEvent.commit();
+
+    }
+
+    /**
+     * Runs the event without journalling it or recording it in the event history, and returns its outcome instead. This is meant for ScheduleSimulator, where events run against a multiplexer that only records what it is asked to do, and a simulated day must not leave any trace in the history.
+     *
+     * @return The outcome of the event.
+     */
+    public final EventResult simulate() {
+
+        return this.execute();
+
+    }
+
+    /**
+     * Maps the outcome of an event to the level of its journal record, so that failed events stand out in the journal the same way they do in the log.
+     *
+     * @param result The outcome of the event.
+     * @return One of the EventJournal.LEVEL constants.
+     */
+    static byte journalLevel(EventResult result) {
+
+        switch (result) {
+
+            case SKIPPED:
+                return EventJournal.LEVEL_WARN;
+
+            case FAILED:
+                return EventJournal.LEVEL_ERROR;
+
+            default:
+                return EventJournal.LEVEL_INFO;
+
+        }
+
+    }
+
+    /**
+     * Events only know the time of day they are supposed to run, so this works out how late an event is based on when it actually ran. Since an event never runs more than a few seconds late (and manual events run more or less "now"), we assume that the scheduled instant is the one closest to the actual time.
+     *
+     * @param scheduledTime The time of day the event was supposed to run
+     * @param actualMillis  When the event actually ran, in milliseconds since the epoch
+     * @return How many milliseconds after the scheduled instant the event ran. This is negative if it ran early.
+     */
+    static long latenessMillis(LocalTime scheduledTime, long actualMillis) {
+
+        long lateness = LocalOffset.millisOfDay(actualMillis) - scheduledTime.toNanoOfDay() / 1_000_000;
+
+        // If the event was scheduled for just before midnight and ran just after, the difference would be almost -24h, so the scheduled instant is actually the day before. The opposite case (scheduled just after midnight, but it ran before) is handled similarly.
+        if (lateness < -Event.MILLIS_PER_DAY / 2)
+            lateness += Event.MILLIS_PER_DAY;
+        else if (lateness > Event.MILLIS_PER_DAY / 2)
+            lateness -= Event.MILLIS_PER_DAY;
+
+        return lateness;
+
+    }
 
 }
@@ -0,0 +1,177 @@
+package com.nchroniaris.ASC.client.model;
+
+import com.nchroniaris.ASC.client.core.ASCProperties;
+import com.nchroniaris.ASC.client.jfr.EventFiredEvent;
+import com.nchroniaris.ASC.client.metrics.ClientMetrics;
+import com.nchroniaris.ASC.client.trace.Span;
+import com.nchroniaris.ASC.client.trace.Tracer;
+import com.nchroniaris.ASC.client.multiplexer.TerminalMultiplexer;
+import com.nchroniaris.ASC.util.model.CommandTemplate;
+import com.nchroniaris.ASC.util.model.GameServer;
+
+import java.time.LocalTime;
+
+/**
+ * This is a data class that holds the raw contents of a single row of the events table, without turning it into an Event. This is what repositories hand out, and it is what the snapshot file stores. Unlike an Event, building one of these does not validate anything against the filesystem.
+ * <p>
+ * Descriptors are also what gets scheduled: running a descriptor builds the concrete Event and runs it right away. This way the schedule only holds these small objects, and the work of building an event (including checking that its files exist) is only done for events that actually fire.
+ */
+public class EventDescriptor implements Runnable {
+
+    // Most events have no arguments, so they all share this array instead of each holding an empty one.
+    private static final String[] NO_ARGS = new String[0];
+
+    private final int eid;
+    private final int eventType;
+    private final GameServer gameServer;
+
+    // The time of day is stored as a number of seconds since midnight, since that is all the precision the events table has and it is much smaller than a LocalTime.
+    private final int secondOfDay;
+
+    private final String[] args;
+
+    // The compiled command of an EVENT_COMMAND, if whoever made the descriptor has one (see ScheduleTable). Otherwise it is null, and the command is compiled when the event is built.
+    private final CommandTemplate command;
+
+    /**
+     * Creates a new descriptor.
+     *
+     * @param eid         The id of the event in the events table.
+     * @param eventType   The eventType id of the event.
+     * @param gameServer  The GameServer that the event belongs to.
+     * @param secondOfDay The time of day that the event should run, as a number of seconds since midnight.
+     * @param args        The arguments of the event, already decoded. This should NOT be null, only empty at the very least.
+     */
+    public EventDescriptor(int eid, int eventType, GameServer gameServer, int secondOfDay, String[] args) {
+
+        this(eid, eventType, gameServer, secondOfDay, args, null);
+
+    }
+
+    /**
+     * Creates a new descriptor, whose command has already been compiled.
+     *
+     * @param eid         The id of the event in the events table.
+     * @param eventType   The eventType id of the event.
+     * @param gameServer  The GameServer that the event belongs to.
+     * @param secondOfDay The time of day that the event should run, as a number of seconds since midnight.
+     * @param args        The arguments of the event, already decoded. This should NOT be null, only empty at the very least.
+     * @param command     The compiled args[0] if the event is an EVENT_COMMAND, or null.
+     */
+    public EventDescriptor(int eid, int eventType, GameServer gameServer, int secondOfDay, String[] args, CommandTemplate command) {
+
+        if (gameServer == null)
+            throw new IllegalArgumentException("The gameServer argument should NOT be null!");
+
+        if (secondOfDay < 0 || secondOfDay >= 24 * 60 * 60)
+            throw new IllegalArgumentException(String.format("The time of an event must be within a day! Got %d seconds.", secondOfDay));
+
+        if (args == null)
+            throw new IllegalArgumentException("The args argument should NOT be null!");
+
+        this.eid = eid;
+        this.eventType = eventType;
+        this.gameServer = gameServer;
+        this.secondOfDay = secondOfDay;
+        this.args = (args.length == 0) ? EventDescriptor.NO_ARGS : args;
+        this.command = command;
+
+    }
+
+    public int getEid() {
+        return eid;
+    }
+
+    public int getEventType() {
+        return eventType;
+    }
+
+    public GameServer getGameServer() {
+        return gameServer;
+    }
+
+    public int getSecondOfDay() {
+        return secondOfDay;
+    }
+
+    public LocalTime getTime() {
+        return LocalTime.ofSecondOfDay(secondOfDay);
+    }
+
+    public String[] getArgs() {
+        return args;
+    }
+
+    /**
+     * Builds the concrete Event that this descriptor describes, using EventFactory.
+     *
+     * @return A correctly instantiated subclass of Event.
+     * @throws UnsupportedOperationException If the eventType id is unrecognized.
+     * @throws IllegalArgumentException      If the arguments are not valid for the event type.
+     */
+    public Event buildEvent() throws UnsupportedOperationException, IllegalArgumentException {
+
+        return EventFactory.buildEvent(ASCProperties.getInstance().MULTIPLEXER, this.eid, this.eventType, this.gameServer, this.getTime(), this.args, this.command);
+
+    }
+
+    /**
+     * Builds the event and runs it, with the multiplexer from the properties file. See run(TerminalMultiplexer).
+     */
+    @Override
+    public void run() {
+
+        this.run(ASCProperties.getInstance().MULTIPLEXER);
+
+    }
+
+    /**
+     * Builds the event and runs it. If the event cannot be built (for example if its executable has been deleted since the schedule was loaded), the error is logged and recorded in the event history as a failure, but it does not propagate.
+     *
+     * @param multiplexer The multiplexer that the event will start sessions or send commands with.
+     */
+    public void run(TerminalMultiplexer multiplexer) {
+
+        Event event;
+
+        // Building an event can touch the filesystem (to check that an executable exists), so it gets its own span
+        try (Span span = Tracer.getInstance().startSpan("Build event")) {
+
+            if (span.isRecording())
+                span.arg("eventType", EventFactory.eventTypeName(this.eventType));
+
+            event = EventFactory.buildEvent(multiplexer, this.eid, this.eventType, this.gameServer, this.getTime(), this.args, this.command);
+
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+
+            ASCProperties properties = ASCProperties.getInstance();
+            long now = System.currentTimeMillis();
+
+            properties.LOGGER.logError("Event %d for session '%s' could not be built: %s", this.eid, this.gameServer.getSessionName(), e.getMessage());
+            properties.LOGGER.journalEvent(Event.journalLevel(EventResult.FAILED), this.gameServer.getSid(), this.eventType, EventResult.FAILED.getId(), "Event %d could not be built - Session '%s'", this.eid, this.gameServer.getSessionName());
+            properties.HISTORY.record(this.eid, this.gameServer.getSid(), this.eventType, now - Event.latenessMillis(this.getTime(), now), now, 0, EventResult.FAILED);
+
+            EventFiredEvent firedEvent = new EventFiredEvent();
+
+            if (firedEvent.shouldCommit()) {
+
+                firedEvent.eid = this.eid;
+                firedEvent.sid = this.gameServer.getSid();
+                firedEvent.eventType = this.eventType;
+                firedEvent.session = this.gameServer.getSessionName();
+                firedEvent.result = EventResult.FAILED.name();
+                firedEvent.commit();
+
+            }
+
+            ClientMetrics.getInstance().recordFired(this.eventType, EventResult.FAILED);
+
+            return;
+
+        }
+
+        event.run();
+
+    }
+
+}
@@ -2,6 +2,7 @@ package com.nchroniaris.ASC.client.model;
 
 import com.nchroniaris.ASC.client.core.ASCProperties;
 import com.nchroniaris.ASC.client.multiplexer.TerminalMultiplexer;
+import com.nchroniaris.ASC.util.model.CommandTemplate;
 import com.nchroniaris.ASC.util.model.GameServer;
 
 import java.time.LocalTime;
@@ -13,14 +14,167 @@ import java.util.Arrays;
 public class EventFactory {
 
     // TODO: 2020-12-28 consider enum or some other implementation
-    private static final int EVENT_EXECUTE = 0;
-    private static final int EVENT_START = 1;
-    private static final int EVENT_COMMAND = 2;
-    private static final int EVENT_STOP = 3;
-    private static final int EVENT_WARN = 4;
+    public static final int EVENT_EXECUTE = 0;
+    public static final int EVENT_START = 1;
+    public static final int EVENT_COMMAND = 2;
+    public static final int EVENT_STOP = 3;
+    public static final int EVENT_WARN = 4;
+    public static final int EVENT_STOP_COUNTDOWN = 5;
 
     /**
-     * Given an event type id, this method will return the correctly instantiated Event.
+     * Checks that an event could be built from the given event type and arguments, without actually building it. This only checks the structure of the event (a known event type with enough arguments), and it never touches the filesystem, so it is cheap enough to run on every event when the schedule is loaded. Anything else (such as whether an executable exists) is checked when the event is built, right before it fires.
+     *
+     * @param eventType The eventType id (integer) based on the eventType table in the DB.
+     * @param args      A String array representing the arguments used for different event types.
+     * @throws UnsupportedOperationException This is thrown when the eventType id is unrecognized.
+     * @throws IllegalArgumentException      This is thrown when args is null or does not have enough elements for the event type.
+     */
+    public static void validate(int eventType, String[] args) throws UnsupportedOperationException, IllegalArgumentException {
+
+        if (args == null)
+            throw new IllegalArgumentException("The args argument should NOT be null! Please check the database for the event you are building, there might be a null value where there shouldn't be.");
+
+        int requiredArgs;
+
+        switch (eventType) {
+
+            case EVENT_START:
+            case EVENT_STOP:
+                requiredArgs = 0;
+                break;
+
+            case EVENT_EXECUTE:
+            case EVENT_COMMAND:
+            case EVENT_WARN:
+                requiredArgs = 1;
+                break;
+
+            case EVENT_STOP_COUNTDOWN:
+                // The intervals are checked as well, since a countdown with a bad interval would only fail once its first warning is due
+                StopCountdown.parse(args);
+                requiredArgs = 1;
+                break;
+
+            default:
+                throw new UnsupportedOperationException(String.format("An event with the id (%d) does not exist! Consider rebuilding the database.", eventType));
+
+        }
+
+        // This mirrors the ArrayIndexOutOfBoundsException case in buildEvent()
+        if (args.length < requiredArgs)
+            throw new IllegalArgumentException("The args parameter is valid, but does not have enough elements for the operation. Please verify that the args field in the database has the correct data for the event you are trying to run.");
+
+    }
+
+    /**
+     * Checks whether events of a certain type can be deferred while the host is under pressure (see LoadAdmission). These are the heavy events that start processes of their own: executing a file and starting a server. Commands, stops and warnings are cheap, and players are told when stops happen, so they always run on time.
+     *
+     * @param eventType The eventType id (integer) based on the eventType table in the DB.
+     * @return True if events of this type can be deferred.
+     */
+    public static boolean isDeferrable(int eventType) {
+
+        return eventType == EventFactory.EVENT_EXECUTE || eventType == EventFactory.EVENT_START;
+
+    }
+
+    /**
+     * Gets a short, human readable name for an event type, for showing it to the user without building an event. These match the names the events log themselves with.
+     *
+     * @param eventType The eventType id (integer) based on the eventType table in the DB.
+     * @return The name of the event type, or "Unknown" if it is not recognized.
+     */
+    public static String eventTypeName(int eventType) {
+
+        switch (eventType) {
+
+            case EVENT_EXECUTE:
+                return "Execute File";
+
+            case EVENT_START:
+                return "Start Server";
+
+            case EVENT_COMMAND:
+                return "Run Command";
+
+            case EVENT_STOP:
+                return "Stop Command";
+
+            case EVENT_WARN:
+                return "Warn Command";
+
+            case EVENT_STOP_COUNTDOWN:
+                return "Stop Countdown";
+
+            default:
+                return "Unknown";
+
+        }
+
+    }
+
+    /**
+     * Given an event id and an event type id, this method will return the correctly instantiated Event, using the multiplexer from the properties file. The event will remember its eid, which is used for recording its history.
+     *
+     * @param eid       The id of the event in the events table.
+     * @param eventType The eventType id (integer) based on the eventType table in the DB.
+     * @param server    The GameServer object for which this event is associated with
+     * @param time      A LocalTime object describing when exactly this event should be run.
+     * @param args      A String array representing the arguments used for different event types. This value should NOT be null, only empty at the very least.
+     * @return A correctly instantiated subclass of Event that is appropriate for the previous parameters given.
+     * @throws UnsupportedOperationException This is thrown when the eventType id is unrecognized.
+     * @throws IllegalArgumentException      This is thrown when certain parameters are null.
+     */
+    public static Event buildEvent(int eid, int eventType, GameServer server, LocalTime time, String[] args) throws UnsupportedOperationException, IllegalArgumentException {
+
+        return EventFactory.buildEvent(ASCProperties.getInstance().MULTIPLEXER, eid, eventType, server, time, args);
+
+    }
+
+    /**
+     * Same as buildEvent(int, int, GameServer, LocalTime, String[]), but the event runs through the given multiplexer instead of the one from the properties file.
+     *
+     * @param multiplexer The multiplexer that the event will start sessions or send commands with.
+     * @param eid         The id of the event in the events table.
+     * @param eventType   The eventType id (integer) based on the eventType table in the DB.
+     * @param server      The GameServer object for which this event is associated with
+     * @param time        A LocalTime object describing when exactly this event should be run.
+     * @param args        A String array representing the arguments used for different event types. This value should NOT be null, only empty at the very least.
+     * @return A correctly instantiated subclass of Event that is appropriate for the previous parameters given.
+     * @throws UnsupportedOperationException This is thrown when the eventType id is unrecognized.
+     * @throws IllegalArgumentException      This is thrown when certain parameters are null.
+     */
+    public static Event buildEvent(TerminalMultiplexer multiplexer, int eid, int eventType, GameServer server, LocalTime time, String[] args) throws UnsupportedOperationException, IllegalArgumentException {
+
+        return EventFactory.buildEvent(multiplexer, eid, eventType, server, time, args, null);
+
+    }
+
+    /**
+     * Same as buildEvent(TerminalMultiplexer, int, int, GameServer, LocalTime, String[]), but the command of an EVENT_COMMAND has already been compiled. ScheduleTable compiles every distinct command once when the schedule is loaded, so that firing its events does not parse the command every time.
+     *
+     * @param multiplexer The multiplexer that the event will start sessions or send commands with.
+     * @param eid         The id of the event in the events table.
+     * @param eventType   The eventType id (integer) based on the eventType table in the DB.
+     * @param server      The GameServer object for which this event is associated with
+     * @param time        A LocalTime object describing when exactly this event should be run.
+     * @param args        A String array representing the arguments used for different event types. This value should NOT be null, only empty at the very least.
+     * @param command     The compiled args[0] of an EVENT_COMMAND, or null to compile it here. This is ignored for every other event type.
+     * @return A correctly instantiated subclass of Event that is appropriate for the previous parameters given.
+     * @throws UnsupportedOperationException This is thrown when the eventType id is unrecognized.
+     * @throws IllegalArgumentException      This is thrown when certain parameters are null.
+     */
+    public static Event buildEvent(TerminalMultiplexer multiplexer, int eid, int eventType, GameServer server, LocalTime time, String[] args, CommandTemplate command) throws UnsupportedOperationException, IllegalArgumentException {
+
+        Event event = EventFactory.build(multiplexer, eventType, server, time, args, command);
+        event.setEid(eid);
+
+        return event;
+
+    }
+
+    /**
+     * Given an event type id, this method will return the correctly instantiated Event, using the multiplexer from the properties file.
      *
      * @param eventType The eventType id (integer) based on the eventType table in the DB.
      * @param server    The GameServer object for which this event is associated with
@@ -32,7 +186,35 @@ public class EventFactory {
      */
     public static Event buildEvent(int eventType, GameServer server, LocalTime time, String[] args) throws UnsupportedOperationException, IllegalArgumentException {
 
-        if (server == null)
+        // Get multiplexer from properties file which would have already been instantiated based on the configuration
+        return EventFactory.buildEvent(ASCProperties.getInstance().MULTIPLEXER, eventType, server, time, args);
+
+    }
+
+    /**
+     * Same as buildEvent(int, GameServer, LocalTime, String[]), but the event runs through the given multiplexer instead of the one from the properties file.
+     *
+     * @param multiplexer The multiplexer that the event will start sessions or send commands with.
+     * @param eventType   The eventType id (integer) based on the eventType table in the DB.
+     * @param server      The GameServer object for which this event is associated with
+     * @param time        A LocalTime object describing when exactly this event should be run.
+     * @param args        A String array representing the arguments used for different event types. This value should NOT be null, only empty at the very least.
+     * @return A correctly instantiated subclass of Event that is appropriate for the previous parameters given.
+     * @throws UnsupportedOperationException This is thrown when the eventType id is unrecognized.
+     * @throws IllegalArgumentException      This is thrown when certain parameters are null.
+     */
+    public static Event buildEvent(TerminalMultiplexer multiplexer, int eventType, GameServer server, LocalTime time, String[] args) throws UnsupportedOperationException, IllegalArgumentException {
+
+        return EventFactory.build(multiplexer, eventType, server, time, args, null);
+
+    }
+
+    private static Event build(TerminalMultiplexer multiplexer, int eventType, GameServer server, LocalTime time, String[] args, CommandTemplate command) throws UnsupportedOperationException, IllegalArgumentException {
+
+        if (multiplexer == null)
+            throw new IllegalArgumentException("The multiplexer argument should NOT be null!");
+
+        else if (server == null)
             throw new IllegalArgumentException("The server argument should NOT be null! Please check the database for the event you are building, there might be a null value where there shouldn't be.");
 
         else if (time == null)
@@ -41,9 +223,6 @@ public class EventFactory {
         else if (args == null)
             throw new IllegalArgumentException("The args argument should NOT be null! Please check the database for the event you are building, there might be a null value where there shouldn't be.");
 
-        // Get multiplexer from properties file which would have already been instantiated based on the configuration
-        TerminalMultiplexer multiplexer = ASCProperties.getInstance().MULTIPLEXER;
-
         try {
 
             switch (eventType) {
@@ -55,7 +234,7 @@ public class EventFactory {
                     return new StartServerEvent(multiplexer, server, time);
 
                 case EVENT_COMMAND:
-                    return new RunCommandEvent(multiplexer, server, time, args[0]);
+                    return (command != null) ? new RunCommandEvent(multiplexer, server, time, command) : new RunCommandEvent(multiplexer, server, time, args[0]);
 
                 case EVENT_STOP:
                     return new StopCommandEvent(multiplexer, server, time);
@@ -63,6 +242,11 @@ public class EventFactory {
                 case EVENT_WARN:
                     return new WarnCommandEvent(multiplexer, server, time, args[0]);
 
+                case EVENT_STOP_COUNTDOWN:
+                    // Built on its own, a countdown is just its stop. Its warnings are only sent when it is scheduled by EventScheduler, which builds every step with StopCountdown.buildStep() as it becomes due
+                    StopCountdown.parse(args);
+                    return new StopCommandEvent(multiplexer, server, time);
+
                 default:
                     throw new UnsupportedOperationException(String.format("An event with the id (%d) does not exist! Consider rebuilding the database.", eventType));
 
@@ -0,0 +1,83 @@
+package com.nchroniaris.ASC.client.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * This is a data class that represents a single row of the event_history table. One is created every time an Event finishes running, and it describes when the event was supposed to run, when it actually ran, how long it took, and how it went.
+ */
+public class EventHistoryRecord {
+
+    private final int eid;
+    private final int sid;
+    private final int eventType;
+
+    private final LocalDateTime scheduledTime;
+    private final LocalDateTime actualTime;
+    private final long durationMillis;
+
+    private final EventResult result;
+
+    /**
+     * Creates a new history record. All fields are final as a record describes something that has already happened.
+     *
+     * @param eid            The id of the event in the events table. Use {@code Event.EID_NONE} for events that did not come from the database (manual events from the console for example).
+     * @param sid            The id of the game server that the event belongs to.
+     * @param eventType      The eventType id of the event.
+     * @param scheduledTime  The date and time the event was supposed to run.
+     * @param actualTime     The date and time the event actually started running.
+     * @param durationMillis How long the event took to run, in milliseconds.
+     * @param result         The outcome of the event.
+     */
+    public EventHistoryRecord(int eid, int sid, int eventType, LocalDateTime scheduledTime, LocalDateTime actualTime, long durationMillis, EventResult result) {
+
+        if (scheduledTime == null)
+            throw new IllegalArgumentException("The scheduledTime argument should NOT be null!");
+
+        if (actualTime == null)
+            throw new IllegalArgumentException("The actualTime argument should NOT be null!");
+
+        if (durationMillis < 0)
+            throw new IllegalArgumentException("The duration cannot be negative!");
+
+        if (result == null)
+            throw new IllegalArgumentException("The result argument should NOT be null!");
+
+        this.eid = eid;
+        this.sid = sid;
+        this.eventType = eventType;
+        this.scheduledTime = scheduledTime;
+        this.actualTime = actualTime;
+        this.durationMillis = durationMillis;
+        this.result = result;
+
+    }
+
+    public int getEid() {
+        return eid;
+    }
+
+    public int getSid() {
+        return sid;
+    }
+
+    public int getEventType() {
+        return eventType;
+    }
+
+    public LocalDateTime getScheduledTime() {
+        return scheduledTime;
+    }
+
+    public LocalDateTime getActualTime() {
+        return actualTime;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public EventResult getResult() {
+        return result;
+    }
+
+}
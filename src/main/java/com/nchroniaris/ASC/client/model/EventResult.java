@@ -0,0 +1,44 @@
+package com.nchroniaris.ASC.client.model;
+
+/**
+ * Represents the outcome of a single execution of an Event. The ids match the rows of the eventResult table in the DB, so the order of these constants should never change.
+ */
+public enum EventResult {
+
+    // The event did what it was supposed to do (session started, command sent, etc.)
+    SUCCESS(0),
+
+    // The event ran, but did nothing because the session was in the wrong state (already running for a start, not running for a command)
+    SKIPPED(1),
+
+    // The event threw an exception or was otherwise unable to complete
+    FAILED(2);
+
+    private final int id;
+
+    EventResult(int id) {
+        this.id = id;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns the EventResult associated with the id stored in the database.
+     *
+     * @param id The id of the result, as stored in the eventResult table.
+     * @return The matching EventResult
+     * @throws IllegalArgumentException If the id does not correspond to any known result.
+     */
+    public static EventResult fromId(int id) {
+
+        for (EventResult result : EventResult.values())
+            if (result.id == id)
+                return result;
+
+        throw new IllegalArgumentException(String.format("An event result with the id (%d) does not exist! Consider rebuilding the database.", id));
+
+    }
+
+}
@@ -3,9 +3,9 @@ package com.nchroniaris.ASC.client.model;
 import com.nchroniaris.ASC.client.core.ASCProperties;
 import com.nchroniaris.ASC.client.exception.SessionExistsException;
 import com.nchroniaris.ASC.client.multiplexer.TerminalMultiplexer;
+import com.nchroniaris.ASC.util.file.FileStatCache;
 import com.nchroniaris.ASC.util.model.GameServer;
 
-import java.io.File;
 import java.time.LocalTime;
 
 /**
@@ -29,7 +29,8 @@ public class ExecuteFileEvent extends Event {
 
         super(multiplexer, gameServer, time);
 
-        if (!new File(executablePath).exists())
+        // Events are built right before they fire, and many of them share the same executable, so we use the stat cache instead of hitting the filesystem every time.
+        if (!FileStatCache.exists(executablePath))
             throw new IllegalArgumentException(String.format("File (%s) does not exist! Please specify an existing file with the correct permissions", executablePath));
 
         this.executablePath = executablePath;
@@ -62,17 +63,26 @@ public class ExecuteFileEvent extends Event {
     }
 
     @Override
-    public void run() {
+    public int eventType() {
+        return EventFactory.EVENT_EXECUTE;
+    }
+
+    @Override
+    protected EventResult execute() {
 
         try {
 
             // Use the multiplexer to start a session using the executable and any additional args. Keep in mind that additionalArgs can be empty, but not null. This is enforced in startSession().
             super.multiplexer.startSession(super.gameServer.getSessionName(), this.executablePath, this.additionalArgs);
-            ASCProperties.getInstance().LOGGER.logInfo(String.format("Event [%s] - Session '%s' started.", this.eventString(), super.gameServer.getSessionName()));
+            ASCProperties.getInstance().LOGGER.logInfo("Event [%s] - Session '%s' started.", this.eventString(), super.gameServer.getSessionName());
+
+            return EventResult.SUCCESS;
 
         } catch (SessionExistsException e) {
 
-            ASCProperties.getInstance().LOGGER.logWarning(String.format("Event [%s] - The session '%s' was not started because it is already active!", this.eventString(), super.gameServer.getSessionName()));
+            ASCProperties.getInstance().LOGGER.logWarning("Event [%s] - The session '%s' was not started because it is already active!", this.eventString(), super.gameServer.getSessionName());
+
+            return EventResult.SKIPPED;
 
         }
 
@@ -0,0 +1,76 @@
+package com.nchroniaris.ASC.client.model;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+/**
+ * Turns instants into times of day in the system's time zone without creating any date or time objects, which is what lets an event work out how late it is every time it fires without allocating. The offset of the time zone only changes at its transitions (daylight saving time, for example), so it is looked up once and kept until the next one.
+ */
+final class LocalOffset {
+
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+    private static final ZoneRules RULES = ZoneId.systemDefault().getRules();
+
+    // The offset that is valid between two transitions. The whole period is replaced at once, so that threads never see the offset of one period with the bounds of another.
+    private static volatile Period current = LocalOffset.lookup(System.currentTimeMillis());
+
+    private LocalOffset() {
+    }
+
+    /**
+     * Gets the time of day at an instant, in the system's time zone.
+     *
+     * @param epochMillis The instant, in milliseconds since the epoch.
+     * @return The number of milliseconds since the last midnight, from 0 to 86399999.
+     */
+    static long millisOfDay(long epochMillis) {
+
+        Period period = LocalOffset.current;
+
+        if (epochMillis < period.fromMillis || epochMillis >= period.untilMillis) {
+
+            period = LocalOffset.lookup(epochMillis);
+            LocalOffset.current = period;
+
+        }
+
+        return Math.floorMod(epochMillis + period.offsetMillis, LocalOffset.MILLIS_PER_DAY);
+
+    }
+
+    private static Period lookup(long epochMillis) {
+
+        Instant instant = Instant.ofEpochMilli(epochMillis);
+
+        // previousTransition() only looks strictly before the instant, and the instant itself might be a transition
+        ZoneOffsetTransition previous = LocalOffset.RULES.previousTransition(instant.plusMillis(1));
+        ZoneOffsetTransition next = LocalOffset.RULES.nextTransition(instant);
+
+        return new Period(
+                LocalOffset.RULES.getOffset(instant).getTotalSeconds() * 1000L,
+                (previous == null) ? Long.MIN_VALUE : previous.toEpochSecond() * 1000,
+                (next == null) ? Long.MAX_VALUE : next.toEpochSecond() * 1000
+        );
+
+    }
+
+    private static final class Period {
+
+        private final long offsetMillis;
+        private final long fromMillis;
+        private final long untilMillis;
+
+        private Period(long offsetMillis, long fromMillis, long untilMillis) {
+
+            this.offsetMillis = offsetMillis;
+            this.fromMillis = fromMillis;
+            this.untilMillis = untilMillis;
+
+        }
+
+    }
+
+}
@@ -1,8 +1,8 @@
 package com.nchroniaris.ASC.client.model;
 
 import com.nchroniaris.ASC.client.core.ASCProperties;
-import com.nchroniaris.ASC.client.exception.SessionDoesNotExistException;
 import com.nchroniaris.ASC.client.multiplexer.TerminalMultiplexer;
+import com.nchroniaris.ASC.util.model.CommandTemplate;
 import com.nchroniaris.ASC.util.model.GameServer;
 
 import java.time.LocalTime;
@@ -12,7 +12,8 @@ import java.time.LocalTime;
  */
 public class RunCommandEvent extends Event {
 
-    private final String commandToRun;
+    // The command, which is only filled in for the server when the event fires. This is null in subclasses that override assembleCommand().
+    private final CommandTemplate command;
 
     /**
      * The main constructor for RunCommandEvent. As required by the superclass we must get a GameServer and a LocalTime. We additionally get a command to run in string form.
@@ -20,20 +21,43 @@ public class RunCommandEvent extends Event {
      * @param multiplexer    A TerminalMultiplexer object offered as dependency injection. This can be any one of the classes that implements this interface.
      * @param gameServer   A GameServer object that describes the particular details of the game server that the event belongs to.
      * @param time         A LocalTime object that describes the exact time of day that the event should run.
-     * @param commandToRun A string that represents the particular command to run.
+     * @param commandToRun A string that represents the particular command to run. It can contain the variables of a CommandTemplate, except for $TIME, which are filled in from the game server.
      */
     public RunCommandEvent(TerminalMultiplexer multiplexer, GameServer gameServer, LocalTime time, String commandToRun) {
 
+        this(multiplexer, gameServer, time, RunCommandEvent.compile(commandToRun));
+
+    }
+
+    /**
+     * Same as RunCommandEvent(TerminalMultiplexer, GameServer, LocalTime, String), but with a command that has already been compiled. This is how scheduled events are built, since ScheduleTable compiles every distinct command once, and the events that run it share the template.
+     *
+     * @param multiplexer A TerminalMultiplexer object offered as dependency injection. This can be any one of the classes that implements this interface.
+     * @param gameServer  A GameServer object that describes the particular details of the game server that the event belongs to.
+     * @param time        A LocalTime object that describes the exact time of day that the event should run.
+     * @param command     The command to run, which is filled in for the game server when the event fires.
+     */
+    public RunCommandEvent(TerminalMultiplexer multiplexer, GameServer gameServer, LocalTime time, CommandTemplate command) {
+
         super(multiplexer, gameServer, time);
 
-        // This is to elegantly handle the case for which the command is null or if the command is empty.
-        if (commandToRun == null)
+        if (command == null)
             throw new IllegalArgumentException("The command cannot be null! If you are extending this class, make sure to override assembleCommand()!");
 
-        if (commandToRun.equals(""))
+        if (command.toString().isEmpty())
             throw new IllegalArgumentException("The command cannot be empty!");
 
-        this.commandToRun = commandToRun;
+        this.command = command;
+
+    }
+
+    private static CommandTemplate compile(String commandToRun) {
+
+        // This is to elegantly handle the case for which the command is null, before it gets to CommandTemplate.
+        if (commandToRun == null)
+            throw new IllegalArgumentException("The command cannot be null! If you are extending this class, make sure to override assembleCommand()!");
+
+        return CommandTemplate.compile(commandToRun);
 
     }
 
@@ -48,18 +72,18 @@ public class RunCommandEvent extends Event {
 
         super(multiplexer, gameServer, time);
 
-        this.commandToRun = null;
+        this.command = null;
 
     }
 
     /**
-     * This function is part of the template pattern implementation of this class. This is meant to be overridden in subclasses to provide a unique command to run. By default it just regurgitates the instance variable set in the constructor.
+     * This function is part of the template pattern implementation of this class. This is meant to be overridden in subclasses to provide a unique command to run. By default it fills in the command given in the constructor for the game server, which returns a command without any variables as it is.
      *
      * @return A command meant to be run for the game server that is associated with this event.
      */
     protected String assembleCommand() {
 
-        return this.commandToRun;
+        return (this.command == null) ? null : this.command.render(super.gameServer, null);
 
     }
 
@@ -69,27 +93,33 @@ public class RunCommandEvent extends Event {
     }
 
     @Override
-    public final void run() {
+    public int eventType() {
+        return EventFactory.EVENT_COMMAND;
+    }
+
+    @Override
+    protected final EventResult execute() {
 
-        // Implementation of the Template pattern. In this case run() is the overarching algorithm and assembleCommand() is the swappable step.
+        // Implementation of the Template pattern. In this case execute() is the overarching algorithm and assembleCommand() is the swappable step.
         String command = this.assembleCommand();
 
         // This check is for extra safety. If it is the case that a new subclass is created and does NOT override the default assembleCommand() behaviour, it can happen that we end up with a null or an empty string here. This can also happen if the subclass does not provide any actual command in assembleCommand().
-        if (command == null || command.equals(""))
+        if (command == null || command.isEmpty())
             throw new IllegalArgumentException("The command cannot be empty or null!");
 
-        try {
-
-            // Use the multiplexer to send a command to a session using the command
-            super.multiplexer.sendCommand(super.gameServer.getSessionName(), command);
-            ASCProperties.getInstance().LOGGER.logInfo(String.format("Event [%s] - Command sent to session '%s'.", this.eventString(), super.gameServer.getSessionName()));
+        // A session that is not running is an expected outcome here, so it is not reported with an exception. This keeps a fire that goes through an in-memory multiplexer free of allocations.
+        if (!super.multiplexer.trySendCommand(super.gameServer.getSessionName(), command)) {
 
-        } catch (SessionDoesNotExistException e) {
+            ASCProperties.getInstance().LOGGER.logWarning("Event [%s] - The command to '%s' was not sent because it is not active!", this.eventString(), super.gameServer.getSessionName());
 
-            ASCProperties.getInstance().LOGGER.logWarning(String.format("Event [%s] - The command to '%s' was not sent because it is not active!", this.eventString(), super.gameServer.getSessionName()));
+            return EventResult.SKIPPED;
 
         }
 
+        ASCProperties.getInstance().LOGGER.logInfo("Event [%s] - Command sent to session '%s'.", this.eventString(), super.gameServer.getSessionName());
+
+        return EventResult.SUCCESS;
+
     }
 
 }
@@ -0,0 +1,220 @@
+package com.nchroniaris.ASC.client.model;
+
+import com.nchroniaris.ASC.util.model.GameServer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An in-memory index of the game servers, built once whenever the servers are loaded, so that looking one up never goes back to the repository. Servers can be found by sid, by session name, or by the first few letters of their session name (which is what tab completion uses). Every lookup takes time proportional to the length of what is being looked up, not to the number of servers.
+ * <p>
+ * The index never changes after it is built, so it can be shared between threads freely. When the servers are reloaded, a new index replaces the old one.
+ */
+public class ServerIndex {
+
+    /**
+     * A node of the prefix trie over session names. Every node knows how many names pass through it, so that finding out whether a prefix is unique does not require walking the subtree.
+     */
+    private static final class Node {
+
+        // Sorted, so that walking the trie gives the names in alphabetical order
+        private final TreeMap<Character, Node> children = new TreeMap<>();
+
+        // The server whose session name ends at this node, if any
+        private GameServer server;
+
+        private int count;
+
+    }
+
+    private final List<GameServer> servers;
+    private final Map<Integer, GameServer> bySid;
+    private final Map<String, GameServer> bySessionName;
+    private final Node root;
+
+    /**
+     * Builds the index.
+     *
+     * @param servers The game servers to index. If two servers have the same sid or session name, the last one wins.
+     */
+    public ServerIndex(Collection<GameServer> servers) {
+
+        if (servers == null)
+            throw new IllegalArgumentException("The servers argument should NOT be null!");
+
+        List<GameServer> sorted = new ArrayList<>(servers);
+        sorted.sort((first, second) -> Integer.compare(first.getSid(), second.getSid()));
+
+        this.servers = Collections.unmodifiableList(sorted);
+        this.bySid = new HashMap<>();
+        this.bySessionName = new HashMap<>();
+        this.root = new Node();
+
+        for (GameServer server : sorted) {
+
+            this.bySid.put(server.getSid(), server);
+
+            // Only new names are added to the trie, so that the counts stay correct if a name shows up twice
+            if (this.bySessionName.put(server.getSessionName(), server) == null)
+                this.insert(server);
+            else
+                this.find(server.getSessionName()).server = server;
+
+        }
+
+    }
+
+    private void insert(GameServer server) {
+
+        Node node = this.root;
+        node.count++;
+
+        for (char c : server.getSessionName().toCharArray()) {
+
+            node = node.children.computeIfAbsent(c, key -> new Node());
+            node.count++;
+
+        }
+
+        node.server = server;
+
+    }
+
+    /**
+     * Walks the trie along a prefix.
+     *
+     * @return The node the prefix ends at, or null if no name starts with it.
+     */
+    private Node find(String prefix) {
+
+        Node node = this.root;
+
+        for (int i = 0; i < prefix.length() && node != null; i++)
+            node = node.children.get(prefix.charAt(i));
+
+        return node;
+
+    }
+
+    /**
+     * Gets every indexed server.
+     *
+     * @return The servers, sorted by sid.
+     */
+    public List<GameServer> getAll() {
+
+        return this.servers;
+
+    }
+
+    public int size() {
+
+        return this.servers.size();
+
+    }
+
+    /**
+     * Looks up a server by its sid.
+     *
+     * @param sid The sid of the server.
+     * @return The server, or null if there is none with that sid.
+     */
+    public GameServer bySid(int sid) {
+
+        return this.bySid.get(sid);
+
+    }
+
+    /**
+     * Looks up a server by its exact session name.
+     *
+     * @param sessionName The session name of the server, such as "minecraft_survival".
+     * @return The server, or null if there is none with that session name.
+     */
+    public GameServer bySessionName(String sessionName) {
+
+        return this.bySessionName.get(sessionName);
+
+    }
+
+    /**
+     * Finds the session names that start with a prefix.
+     *
+     * @param prefix The start of the session name. An empty prefix matches every server.
+     * @param limit  The maximum number of names to return.
+     * @return The matching session names, in alphabetical order.
+     */
+    public List<String> sessionNamesWithPrefix(String prefix, int limit) {
+
+        List<String> names = new ArrayList<>();
+        Node node = this.find(prefix);
+
+        if (node != null)
+            ServerIndex.collect(node, names, limit);
+
+        return names;
+
+    }
+
+    private static void collect(Node node, List<String> names, int limit) {
+
+        if (names.size() >= limit)
+            return;
+
+        if (node.server != null)
+            names.add(node.server.getSessionName());
+
+        for (Node child : node.children.values())
+            ServerIndex.collect(child, names, limit);
+
+    }
+
+    /**
+     * Resolves what a user typed to refer to a server. This can be a sid, a full session name, or the start of a session name, as long as only one server's name starts with it.
+     *
+     * @param reference The sid, session name or session name prefix.
+     * @return The server that was referred to.
+     * @throws IllegalArgumentException If no server matches, or if a prefix matches more than one server. The message is meant to be shown to the user.
+     */
+    public GameServer resolve(String reference) throws IllegalArgumentException {
+
+        if (reference == null || reference.isEmpty())
+            throw new IllegalArgumentException("No server was given!");
+
+        // A number is a sid. Session names can contain digits, so a name that is all digits still gets a chance below.
+        if (reference.chars().allMatch(Character::isDigit) && reference.length() < 10) {
+
+            GameServer server = this.bySid(Integer.parseInt(reference));
+
+            if (server != null)
+                return server;
+
+        }
+
+        GameServer server = this.bySessionName(reference);
+
+        if (server != null)
+            return server;
+
+        Node node = this.find(reference);
+
+        if (node == null)
+            throw new IllegalArgumentException(String.format("There is no server '%s'!", reference));
+
+        if (node.count > 1)
+            throw new IllegalArgumentException(String.format("'%s' could be any of %d servers! Please be more specific.", reference, node.count));
+
+        // Only one name passes through this node, so follow the only path down to it
+        while (node.server == null)
+            node = node.children.firstEntry().getValue();
+
+        return node.server;
+
+    }
+
+}
@@ -22,6 +22,11 @@ public class StartServerEvent extends ExecuteFileEvent {
 
     }
 
+    @Override
+    public int eventType() {
+        return EventFactory.EVENT_START;
+    }
+
     @Override
     protected String eventString() {
         return "Start Server";
@@ -10,6 +10,9 @@ import java.time.LocalTime;
  */
 public class StopCommandEvent extends RunCommandEvent {
 
+    // The stop command with its variables filled in, which is done once when the event is built
+    private final String stopCommand;
+
     /**
      * Since the stop command is known ahead of time, there is no need to specify a command to run during instantiation
      *
@@ -21,20 +24,27 @@ public class StopCommandEvent extends RunCommandEvent {
 
         super(multiplexer, gameServer, time);
 
+        this.stopCommand = gameServer.getStopTemplate().render(gameServer, null);
+
     }
 
     /**
-     * Returns the stop command that is defined in the particular GameServer instance that is associated with the event.
+     * Returns the stop command that is defined in the particular GameServer instance that is associated with the event, with its variables filled in (see CommandTemplate).
      *
      * @return A stop command as a string specific to the game server
      */
     @Override
     protected String assembleCommand() {
 
-        return super.gameServer.getStopCommand();
+        return this.stopCommand;
 
     }
 
+    @Override
+    public int eventType() {
+        return EventFactory.EVENT_STOP;
+    }
+
     @Override
     protected String eventString() {
         return "Stop Command";
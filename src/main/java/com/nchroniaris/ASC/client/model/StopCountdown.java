@@ -0,0 +1,130 @@
+package com.nchroniaris.ASC.client.model;
+
+import com.nchroniaris.ASC.client.multiplexer.TerminalMultiplexer;
+import com.nchroniaris.ASC.util.model.GameServer;
+
+import java.time.LocalTime;
+import java.util.Arrays;
+
+/**
+ * The steps of a stop countdown event: a warning for every interval in its arguments (in minutes before the stop, such as ["30", "15", "5", "1"]), followed by the stop itself at the time of the event. A countdown is a single row in the events table, no matter how many warnings it has.
+ * <p>
+ * The steps are not events of their own until they are due. EventScheduler only arms the next step of a countdown at a time, and builds it with buildStep() when it fires, so a countdown takes up a single spot in the scheduler's queue. Every step is recorded in the history under the eid of the countdown, as the warn or stop event that it is.
+ */
+public final class StopCountdown {
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    // The intervals of the warnings, from the earliest warning to the last one, both in seconds before the stop and as they were written (which is what $TIME is replaced with)
+    private final int[] leadSeconds;
+    private final String[] minutes;
+
+    private StopCountdown(int[] leadSeconds, String[] minutes) {
+
+        this.leadSeconds = leadSeconds;
+        this.minutes = minutes;
+
+    }
+
+    /**
+     * Parses the arguments of a stop countdown event. The intervals can be in any order, and repeated ones are only warned about once.
+     *
+     * @param args The intervals of the warnings, in minutes before the stop. Every one must be a whole number between 1 and 1439.
+     * @return The countdown.
+     * @throws IllegalArgumentException If there are no intervals, or one of them is not a valid number of minutes.
+     */
+    public static StopCountdown parse(String[] args) throws IllegalArgumentException {
+
+        if (args == null || args.length == 0)
+            throw new IllegalArgumentException("A stop countdown needs at least one warning interval, in minutes! For example [\"15\", \"5\", \"1\"]");
+
+        int[] sorted = new int[args.length];
+
+        for (int i = 0; i < args.length; i++) {
+
+            int interval;
+
+            try {
+
+                interval = Integer.parseInt(args[i].trim());
+
+            } catch (NumberFormatException | NullPointerException e) {
+
+                throw new IllegalArgumentException(String.format("The warning intervals of a stop countdown must be whole numbers of minutes! Got '%s'", args[i]));
+
+            }
+
+            if (interval < 1 || interval >= StopCountdown.MINUTES_PER_DAY)
+                throw new IllegalArgumentException(String.format("The warning intervals of a stop countdown must be between 1 and %d minutes! Got %d", StopCountdown.MINUTES_PER_DAY - 1, interval));
+
+            sorted[i] = interval;
+
+        }
+
+        Arrays.sort(sorted);
+
+        // Going from the biggest interval to the smallest one is going from the earliest warning to the latest one
+        int count = 0;
+        int[] leadSeconds = new int[sorted.length];
+        String[] minutes = new String[sorted.length];
+
+        for (int i = sorted.length - 1; i >= 0; i--) {
+
+            if (count > 0 && leadSeconds[count - 1] == sorted[i] * 60)
+                continue;
+
+            leadSeconds[count] = sorted[i] * 60;
+            minutes[count] = Integer.toString(sorted[i]);
+            count++;
+
+        }
+
+        return new StopCountdown(Arrays.copyOf(leadSeconds, count), Arrays.copyOf(minutes, count));
+
+    }
+
+    /**
+     * Gets the number of steps, which is every warning plus the stop.
+     *
+     * @return The number of steps.
+     */
+    public int steps() {
+
+        return this.leadSeconds.length + 1;
+
+    }
+
+    /**
+     * Gets how long before the stop a step is.
+     *
+     * @param step The step, from 0 (the earliest warning) to steps() - 1 (the stop).
+     * @return The number of seconds between the step and the stop, which is 0 for the stop itself.
+     */
+    public int leadSeconds(int step) {
+
+        return (step < this.leadSeconds.length) ? this.leadSeconds[step] : 0;
+
+    }
+
+    /**
+     * Builds the event of a step.
+     *
+     * @param multiplexer     The multiplexer that the event will send its command with.
+     * @param eid             The eid of the countdown.
+     * @param server          The server that the countdown stops.
+     * @param stopSecondOfDay The time of the stop, in seconds since midnight.
+     * @param step            The step, from 0 (the earliest warning) to steps() - 1 (the stop).
+     * @return A WarnCommandEvent for the warnings, or a StopCommandEvent for the stop.
+     */
+    public Event buildStep(TerminalMultiplexer multiplexer, int eid, GameServer server, int stopSecondOfDay, int step) {
+
+        LocalTime time = LocalTime.ofSecondOfDay(Math.floorMod(stopSecondOfDay - this.leadSeconds(step), 24 * 60 * 60));
+
+        if (step < this.leadSeconds.length)
+            return EventFactory.buildEvent(multiplexer, eid, EventFactory.EVENT_WARN, server, time, new String[]{this.minutes[step]});
+
+        return EventFactory.buildEvent(multiplexer, eid, EventFactory.EVENT_STOP, server, time, new String[0]);
+
+    }
+
+}
@@ -10,16 +10,15 @@ import java.time.LocalTime;
  */
 public class WarnCommandEvent extends RunCommandEvent {
 
-    public static final String REPLACE_STRING = "$TIME";
-
-    private final String timeIntervalMinutes;
+    // The warn command with the time already filled in. It is put together once when the event is built, rather than every time it runs.
+    private final String warnCommand;
 
     /**
      * Since the warn command is known ahead of time, the only thing that needs to be specified during instantiation is the number of minutes left until server shutdown.
      * @param multiplexer    A TerminalMultiplexer object offered as dependency injection. This can be any one of the classes that implements this interface.
      * @param gameServer          A GameServer object that describes the particular details of the game server that the event belongs to.
      * @param time                A LocalTime object that describes the exact time of day that the event should run.
-     * @param timeIntervalMinutes A string representation of the number of minutes left. This will replace every occurrence of $TIME in the warn command with this exact string.
+     * @param timeIntervalMinutes A string representation of the number of minutes left. This will replace every occurrence of $TIME in the warn command with this exact string. The other variables of the warn command (see CommandTemplate) are filled in from the game server.
      */
     public WarnCommandEvent(TerminalMultiplexer multiplexer, GameServer gameServer, LocalTime time, String timeIntervalMinutes) {
 
@@ -28,20 +27,25 @@ public class WarnCommandEvent extends RunCommandEvent {
         if (timeIntervalMinutes == null || timeIntervalMinutes.equals(""))
             throw new IllegalArgumentException("timeInterval cannot be null or empty!");
 
-        this.timeIntervalMinutes = timeIntervalMinutes;
+        this.warnCommand = gameServer.getWarnTemplate().render(gameServer, timeIntervalMinutes);
 
     }
 
     /**
-     * Returns the warn text that is defined in the particular GameServer instance that is associated with the event and replaces any occurrence of $TIME with the actual number passed into the constructor.
+     * Returns the warn text that is defined in the particular GameServer instance that is associated with the event with its variables filled in, and $TIME replaced with the actual number passed into the constructor.
      *
      * @return A warn command as a string specific to the game server
      */
     @Override
     protected String assembleCommand() {
 
-        return gameServer.getWarnCommand().replace(WarnCommandEvent.REPLACE_STRING, this.timeIntervalMinutes);
+        return this.warnCommand;
+
+    }
 
+    @Override
+    public int eventType() {
+        return EventFactory.EVENT_WARN;
     }
 
     @Override
@@ -0,0 +1,210 @@
+package com.nchroniaris.ASC.client.multiplexer;
+
+import com.nchroniaris.ASC.client.exception.SessionDoesNotExistException;
+import com.nchroniaris.ASC.client.exception.SessionExistsException;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A multiplexer that never runs anything. It keeps track of which sessions exist like a real one would, and records every session it is asked to start and every command it is asked to send, along with the time on its clock. This is what ScheduleSimulator runs a schedule against, with a VirtualClock.
+ * <p>
+ * Sessions only go away when endSession() is called, since this multiplexer has no idea which commands stop a server.
+ */
+public class RecordingMultiplexer extends TerminalMultiplexer {
+
+    /**
+     * A single call to startSession() or sendCommand().
+     */
+    public static final class Call {
+
+        private final Instant time;
+        private final String sessionName;
+        private final String command;
+        private final boolean startSession;
+        private final boolean failed;
+
+        private Call(Instant time, String sessionName, String command, boolean startSession, boolean failed) {
+
+            this.time = time;
+            this.sessionName = sessionName;
+            this.command = command;
+            this.startSession = startSession;
+            this.failed = failed;
+
+        }
+
+        public Instant getTime() {
+            return time;
+        }
+
+        public String getSessionName() {
+            return sessionName;
+        }
+
+        /**
+         * @return The command that was sent, or the executable and its arguments (separated by spaces) for a started session.
+         */
+        public String getCommand() {
+            return command;
+        }
+
+        public boolean isStartSession() {
+            return startSession;
+        }
+
+        /**
+         * @return Whether the call failed because the session was (or was not) there already.
+         */
+        public boolean isFailed() {
+            return failed;
+        }
+
+    }
+
+    private final Clock clock;
+    private final Set<String> sessions;
+    private final List<Call> calls;
+
+    private int sessionsStarted;
+    private int commandsSent;
+
+    /**
+     * Creates a multiplexer with no sessions.
+     *
+     * @param clock The clock that the calls are timestamped with. Cannot be null.
+     */
+    public RecordingMultiplexer(Clock clock) {
+
+        super();
+
+        if (clock == null)
+            throw new IllegalArgumentException("The clock argument cannot be null!");
+
+        this.clock = clock;
+        this.sessions = new HashSet<>();
+        this.calls = new ArrayList<>();
+
+        this.sessionsStarted = 0;
+        this.commandsSent = 0;
+
+    }
+
+    @Override
+    public synchronized void startSession(String sessionName, String executable, String[] additionalArgs) throws SessionExistsException {
+
+        if (additionalArgs == null)
+            throw new IllegalArgumentException("The additionalArgs argument cannot be null!");
+
+        boolean failed = !this.sessions.add(sessionName);
+        String command = (additionalArgs.length == 0) ? executable : executable + " " + String.join(" ", additionalArgs);
+
+        this.calls.add(new Call(this.clock.instant(), sessionName, command, true, failed));
+
+        if (failed)
+            throw new SessionExistsException(String.format("Session '%s' is already active!", sessionName));
+
+        this.sessionsStarted++;
+
+    }
+
+    @Override
+    public void startSession(String sessionName, String executable) throws SessionExistsException {
+
+        this.startSession(sessionName, executable, new String[0]);
+
+    }
+
+    @Override
+    public void sendCommand(String sessionName, String command) throws SessionDoesNotExistException {
+
+        if (!this.trySendCommand(sessionName, command))
+            throw new SessionDoesNotExistException(String.format("Session '%s' is not active!", sessionName));
+
+    }
+
+    @Override
+    public synchronized boolean trySendCommand(String sessionName, String command) {
+
+        boolean failed = !this.sessions.contains(sessionName);
+
+        this.calls.add(new Call(this.clock.instant(), sessionName, command, false, failed));
+
+        if (!failed)
+            this.commandsSent++;
+
+        return !failed;
+
+    }
+
+    @Override
+    public synchronized boolean sessionExists(String sessionName) {
+
+        return this.sessions.contains(sessionName);
+
+    }
+
+    @Override
+    public synchronized Set<String> listSessions() {
+
+        return Collections.unmodifiableSet(new HashSet<>(this.sessions));
+
+    }
+
+    /**
+     * Adds a session without recording a call, as if it had been started before the recording began.
+     *
+     * @param sessionName The name of the session.
+     */
+    public synchronized void addSession(String sessionName) {
+
+        this.sessions.add(sessionName);
+
+    }
+
+    /**
+     * Removes a session without recording a call, as if whatever was running in it had exited.
+     *
+     * @param sessionName The name of the session.
+     */
+    public synchronized void endSession(String sessionName) {
+
+        this.sessions.remove(sessionName);
+
+    }
+
+    public synchronized int getSessionCount() {
+        return this.sessions.size();
+    }
+
+    /**
+     * @return The number of sessions that were started successfully.
+     */
+    public synchronized int getSessionsStarted() {
+        return sessionsStarted;
+    }
+
+    /**
+     * @return The number of commands that were sent successfully.
+     */
+    public synchronized int getCommandsSent() {
+        return commandsSent;
+    }
+
+    /**
+     * Gets every call so far, including the ones that failed.
+     *
+     * @return The calls, in the order they were made.
+     */
+    public synchronized List<Call> getCalls() {
+
+        return new ArrayList<>(this.calls);
+
+    }
+
+}
@@ -3,16 +3,32 @@ package com.nchroniaris.ASC.client.multiplexer;
 import com.nchroniaris.ASC.client.exception.SessionDoesNotExistException;
 import com.nchroniaris.ASC.client.exception.SessionExistsException;
 
+import com.nchroniaris.ASC.client.core.ASCProperties;
+import com.nchroniaris.ASC.client.jfr.ProcessSpawnEvent;
+import com.nchroniaris.ASC.client.metrics.ClientMetrics;
+import com.nchroniaris.ASC.client.trace.Span;
+import com.nchroniaris.ASC.client.trace.Tracer;
+
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * This is a concrete implementation of the TerminalMultiplexer interface. This class implements methods of interacting with the host OS's GNU screen implementation. Keep in mind that the path.screen property must be set to a VALID installation of GNU screen (not FAU or any others) or else some of these commands may not work.
  */
 public class ScreenMultiplexer extends TerminalMultiplexer {
 
+    // Matches a session in the output of `screen -ls`, which looks like "<tab>12345.sessionName<tab>(Detached)". The first group is the session name.
+    private static final Pattern PATTERN_SESSION = Pattern.compile("^\\s+\\d+\\.(\\S+)\\s+\\(");
+
     /**
      * Creates a new ScreenMultiplexer() instance. Calling this constructor will check if the property value in ASCProperties.PATH_SCREEN leads to a valid executable (not necessarily a screen executable)
      */
@@ -25,30 +41,37 @@ public class ScreenMultiplexer extends TerminalMultiplexer {
     @Override
     public void startSession(String sessionName, String executable, String[] additionalArgs) throws SessionExistsException {
 
-        // additionalArgs cannot be null because of the .addAll() call later
-        if (additionalArgs == null)
-            throw new IllegalArgumentException("The additionalArgs argument cannot be null!");
+        try (Span span = Tracer.getInstance().startSpan("Start session").arg("session", sessionName)) {
 
-        // If the session by the same name ALREADY exists, it makes no sense to make a new one. Therefore we throw an error.
-        if (this.sessionExists(sessionName))
-            throw new SessionExistsException(String.format("Screen session '%s' exists already! Please make sure to exit this session properly before starting a new one!", sessionName));
+            // additionalArgs cannot be null because of the .addAll() call later
+            if (additionalArgs == null)
+                throw new IllegalArgumentException("The additionalArgs argument cannot be null!");
 
-        // Build command by adding all the required commands, flags, and finally additional arguments
-        List<String> command = new ArrayList<>();
+            // If the session by the same name ALREADY exists, it makes no sense to make a new one. Therefore we throw an error.
+            if (this.sessionExists(sessionName))
+                throw new SessionExistsException(String.format("Screen session '%s' exists already! Please make sure to exit this session properly before starting a new one!", sessionName));
 
-        command.add(super.PATH_EXECUTABLE);
-        command.add("-AdmS");
-        command.add(sessionName);
-        command.add(executable);
-        command.addAll(Arrays.asList(additionalArgs));
+            // Build command by adding all the required commands, flags, and finally additional arguments
+            List<String> command = new ArrayList<>();
 
-        ProcessBuilder builder = new ProcessBuilder();
+            command.add(super.PATH_EXECUTABLE);
+            command.add("-AdmS");
+            command.add(sessionName);
+            command.add(executable);
+            command.addAll(Arrays.asList(additionalArgs));
+
+            if (span.isRecording())
+                span.arg("executable", executable);
+
+            ProcessBuilder builder = new ProcessBuilder();
 
-        // Set up command. This uses screen and creates a detached session (-dm) whose window is adaptable (-A) with a session name (-S). It runs the executable in that screen session with any number (0 or more) additional arguments. Whether this executable works or not will not be reflected in this method call -- barring any issues that will be thrown as an IOException such as invalid run perms
-        builder.command(command);
+            // Set up command. This uses screen and creates a detached session (-dm) whose window is adaptable (-A) with a session name (-S). It runs the executable in that screen session with any number (0 or more) additional arguments. Whether this executable works or not will not be reflected in this method call -- barring any issues that will be thrown as an IOException such as invalid run perms
+            builder.command(command);
 
-        // Attempt to run the command to start up a new session in screen with the executable. We don't care about the exit code (as in most cases the exit code of the SCREEN command is not representative of any actual errors created WITHIN the session), so we ignore the return value. Recall that this method blocks the calling thread until the command has completed execution.
-        this.runProcess(builder);
+            // Attempt to run the command to start up a new session in screen with the executable. We don't care about the exit code (as in most cases the exit code of the SCREEN command is not representative of any actual errors created WITHIN the session), so we ignore the return value. Recall that this method blocks the calling thread until the command has completed execution.
+            this.runProcess(builder);
+
+        }
 
     }
 
@@ -63,17 +86,36 @@ public class ScreenMultiplexer extends TerminalMultiplexer {
     public void sendCommand(String sessionName, String command) throws SessionDoesNotExistException {
 
         // If the session by the same name DOES NOT exist, it makes no sense to send a command to a non existent session. Therefore we throw an error.
-        if (!this.sessionExists(sessionName))
+        if (!this.trySendCommand(sessionName, command))
             throw new SessionDoesNotExistException(String.format("Screen session '%s' does NOT exist! Please make sure to start this session before sending any commands to it!", sessionName));
 
-        ProcessBuilder builder = new ProcessBuilder();
+    }
+
+    @Override
+    public boolean trySendCommand(String sessionName, String command) {
+
+        try (Span span = Tracer.getInstance().startSpan("Send command").arg("session", sessionName)) {
+
+            boolean exists = this.sessionExists(sessionName);
+
+            if (span.isRecording())
+                span.arg("exists", exists);
+
+            if (!exists)
+                return false;
 
-        // Set up command. The screen executable preselects the 0th window (-p0) of the session `sessionName` (-S) and sends the screen command (-X) "stuff" to the session which 'stuffs' the string `command + "^M" (enter key)` into the standard input of the application in the session.
-        // Adapted from https://raymii.org/s/snippets/Sending_commands_or_input_to_a_screen_session.html
-        builder.command(super.PATH_EXECUTABLE, "-p0", "-S", sessionName, "-X", "stuff", command + "^M");
+            ProcessBuilder builder = new ProcessBuilder();
 
-        // Attempt to run the command in a particular session. We don't care about the exit code (as in most cases the exit code of the SCREEN command is not representative of any actual errors created WITHIN the session), so we ignore the return value. Recall that this method blocks the calling thread until the command has completed execution.
-        this.runProcess(builder);
+            // Set up command. The screen executable preselects the 0th window (-p0) of the session `sessionName` (-S) and sends the screen command (-X) "stuff" to the session which 'stuffs' the string `command + "^M" (enter key)` into the standard input of the application in the session.
+            // Adapted from https://raymii.org/s/snippets/Sending_commands_or_input_to_a_screen_session.html
+            builder.command(super.PATH_EXECUTABLE, "-p0", "-S", sessionName, "-X", "stuff", command + "^M");
+
+            // Attempt to run the command in a particular session. We don't care about the exit code (as in most cases the exit code of the SCREEN command is not representative of any actual errors created WITHIN the session), so we ignore the return value. Recall that this method blocks the calling thread until the command has completed execution.
+            this.runProcess(builder);
+
+            return true;
+
+        }
 
     }
 
@@ -83,17 +125,81 @@ public class ScreenMultiplexer extends TerminalMultiplexer {
      * @param sessionName The name of the session to check. Note that due to the way that screen handles session name matching if `sessionName` is a "left" substring of a larger session name then it may match a larger session name and may produce an unexpected result. For example, if the sessionName is 'ABC' then it will match 'ABCD' but not 'ZABC'
      * @return A boolean representing if the session exists or not.
      */
-    private boolean sessionExists(String sessionName) {
+    @Override
+    public boolean sessionExists(String sessionName) {
+
+        try (Span span = Tracer.getInstance().startSpan("Check session").arg("session", sessionName)) {
+
+            ProcessBuilder builder = new ProcessBuilder();
+
+            // Set up command. This particular one queries the session with the specified name and tells it to select the current window. If this fails, we get a non-zero
+            builder.command(super.PATH_EXECUTABLE, "-S", sessionName, "-Q", "select", ".");
+
+            // Attempt to run the command and get the return code which will tell us if the session exists or not. Recall that this method blocks the calling thread until the command has completed execution.
+            int returnCode = this.runProcess(builder);
+
+            if (span.isRecording())
+                span.arg("exists", returnCode == 0);
+
+            return (returnCode == 0);
+
+        }
+
+    }
+
+    @Override
+    public Set<String> listSessions() {
+
+        Set<String> sessions = new HashSet<>();
 
         ProcessBuilder builder = new ProcessBuilder();
 
-        // Set up command. This particular one queries the session with the specified name and tells it to select the current window. If this fails, we get a non-zero
-        builder.command(super.PATH_EXECUTABLE, "-S", sessionName, "-Q", "select", ".");
+        // Set up command. This lists every session of the current user. The exit code is not useful here (screen returns non-zero whenever there are sessions at all, on most versions), so only the output is looked at.
+        builder.command(super.PATH_EXECUTABLE, "-ls");
+        builder.redirectErrorStream(true);
+
+        ProcessSpawnEvent event = new ProcessSpawnEvent();
+        event.exitCode = -1;
+        event.begin();
+
+        long startNanos = System.nanoTime();
+
+        // Unlike runProcess(), this only reads the state of screen, so it does not need the artificial delay and is cheap enough to call every second.
+        try {
+
+            Process process = builder.start();
+
+            try (BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+
+                String line;
+
+                while ((line = output.readLine()) != null) {
+
+                    Matcher matcher = ScreenMultiplexer.PATTERN_SESSION.matcher(line);
+
+                    if (matcher.find())
+                        sessions.add(matcher.group(1));
+
+                }
+
+            }
+
+            event.exitCode = process.waitFor();
+
+        } catch (IOException e) {
+
+            ASCProperties.getInstance().LOGGER.logWarning("Could not list the screen sessions: %s", e.getMessage());
+
+        } catch (InterruptedException e) {
+
+            // Whatever was read so far is still returned, but the caller should know it was interrupted
+            Thread.currentThread().interrupt();
+
+        }
 
-        // Attempt to run the command and get the return code which will tell us if the session exists or not. Recall that this method blocks the calling thread until the command has completed execution.
-        int returnCode = this.runProcess(builder);
+        ScreenMultiplexer.commitSpawnEvent(event, builder, startNanos);
 
-        return (returnCode == 0);
+        return sessions;
 
     }
 
@@ -108,6 +214,14 @@ public class ScreenMultiplexer extends TerminalMultiplexer {
         // Define return code. This will be updated in the following try block. We set it up as non zero to avoid a compiler error.
         int returnCode = 1;
 
+        ProcessSpawnEvent event = new ProcessSpawnEvent();
+        event.begin();
+
+        long startNanos = System.nanoTime();
+
+        // This is closed by hand rather than with try-with-resources, since it should not include the delay below
+        Span processSpan = Tracer.getInstance().startSpan("Process");
+
         // Run command and get returnCode
         try {
 
@@ -117,8 +231,27 @@ public class ScreenMultiplexer extends TerminalMultiplexer {
             // Blocks the executing thread and eventually returns the exit code of the process.
             returnCode = process.waitFor();
 
+            // The event ends here, so that it shows how long the process itself took
+            event.exitCode = returnCode;
+            ScreenMultiplexer.commitSpawnEvent(event, builder, startNanos);
+
+            if (processSpan.isRecording())
+                processSpan.arg("command", String.join(" ", builder.command())).arg("exitCode", returnCode);
+
+            processSpan.close();
+
             // I am inserting this artificial delay in order to deal with some weirdness with screen when two screen commands are run very close to each other in terms of time. Given the scale of the project's usage, this should really not impact much in the long run. The only thing is that clusters of commands may run a bit slower.
-            Thread.sleep(1000);
+            Span delaySpan = Tracer.getInstance().startSpan("Delay");
+
+            try {
+
+                Thread.sleep(1000);
+
+            } finally {
+
+                delaySpan.close();
+
+            }
 
         } catch (IOException e) {
 
@@ -138,4 +271,26 @@ public class ScreenMultiplexer extends TerminalMultiplexer {
 
     }
 
+    /**
+     * Records a spawned process in the metrics, then ends its ProcessSpawnEvent and commits it if it is enabled. The command line is only put together if the event is actually recorded, so this costs next to nothing otherwise.
+     *
+     * @param event      The event, which was begun right before the process was started.
+     * @param builder    The ProcessBuilder that started the process.
+     * @param startNanos The value of System.nanoTime() right before the process was started.
+     */
+    private static void commitSpawnEvent(ProcessSpawnEvent event, ProcessBuilder builder, long startNanos) {
+
+        ClientMetrics.getInstance().recordProcessSpawn(System.nanoTime() - startNanos);
+
+        event.end();
+
+        if (event.shouldCommit()) {
+
+            event.command = String.join(" ", builder.command());
+            event.commit();
+
+        }
+
+    }
+
 }
@@ -5,6 +5,7 @@ import com.nchroniaris.ASC.client.exception.SessionDoesNotExistException;
 import com.nchroniaris.ASC.client.exception.SessionExistsException;
 
 import java.io.File;
+import java.util.Set;
 
 /**
  * This abstract class defines the set of interactions that must be made for any terminal multiplexer. I've defined this early on to make it possible to extend the functionality to other terminal multiplexers (which would be configurable)
@@ -25,6 +26,15 @@ public abstract class TerminalMultiplexer {
 
     }
 
+    /**
+     * For multiplexers that do not run an executable of their own, such as ones that only exist in memory for testing and benchmarking. PATH_EXECUTABLE is null for these.
+     */
+    protected TerminalMultiplexer() {
+
+        this.PATH_EXECUTABLE = null;
+
+    }
+
     /**
      * Starts a multiplexer session using a name and an executable
      *
@@ -53,4 +63,41 @@ public abstract class TerminalMultiplexer {
      */
     public abstract void sendCommand(String sessionName, String command) throws SessionDoesNotExistException;
 
+    /**
+     * Same as sendCommand(), but a missing session is reported through the return value instead of an exception. This is what events use, since a server that is not running is an expected outcome for them rather than an error. Multiplexers that can tell whether a session exists without creating an exception should override this, so that skipping a command costs nothing more than checking the session.
+     *
+     * @param sessionName The name of the session. This will be used to direct the command to a specific session.
+     * @param command     The contents of the command to run inside the aforementioned session
+     * @return true if the command was sent, false if the session does NOT exist.
+     */
+    public boolean trySendCommand(String sessionName, String command) {
+
+        try {
+
+            this.sendCommand(sessionName, command);
+            return true;
+
+        } catch (SessionDoesNotExistException e) {
+
+            return false;
+
+        }
+
+    }
+
+    /**
+     * Checks if a specific multiplexer session exists, which for a game server means that it is running.
+     *
+     * @param sessionName The name of the session to check.
+     * @return A boolean representing if the session exists or not.
+     */
+    public abstract boolean sessionExists(String sessionName);
+
+    /**
+     * Lists the names of every session that currently exists. This is a single call to the multiplexer no matter how many sessions there are, so it is the way to check the state of many servers at once.
+     *
+     * @return The names of the sessions. This is empty if there are none, or if the multiplexer could not be queried.
+     */
+    public abstract Set<String> listSessions();
+
 }
@@ -1,15 +1,26 @@
 package com.nchroniaris.ASC.client.schedule;
 
+import com.nchroniaris.ASC.client.core.ASCProperties;
+import com.nchroniaris.ASC.client.jfr.EventScheduledEvent;
+import com.nchroniaris.ASC.client.metrics.ClientMetrics;
 import com.nchroniaris.ASC.client.model.Event;
-
+import com.nchroniaris.ASC.client.model.EventDescriptor;
+import com.nchroniaris.ASC.client.model.EventFactory;
+import com.nchroniaris.ASC.client.model.StopCountdown;
+import com.nchroniaris.ASC.client.multiplexer.TerminalMultiplexer;
+import com.nchroniaris.ASC.client.trace.Span;
+import com.nchroniaris.ASC.client.trace.Tracer;
+import com.nchroniaris.ASC.util.model.GameServer;
+
+import java.time.Clock;
 import java.time.Duration;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class handles scheduling events to a particular Java thread pool using the LocalTime as a reference for when that particular event must execute.
@@ -18,7 +29,26 @@ public class EventScheduler {
 
     private static final Duration DURATION_24H = Duration.ofHours(24);
 
-    private final ScheduledExecutorService executorService;
+    // When scheduling a ScheduleTable, events are only handed to the executor once they are this close to running. Everything further out than this stays a row in the table.
+    private static final long ARMING_WINDOW_MILLIS = Duration.ofMinutes(5).toMillis();
+
+    // How many of the most recent events the scheduler remembers the timing of, see getRecentEvents()
+    private static final int RECENT_EVENTS = 64;
+
+    private final ScheduledThreadPoolExecutor executorService;
+    private final RecentEvents recentEvents;
+
+    // The multiplexer that scheduled events run through. If this is null the one in the properties file is used, which is looked up as each event fires.
+    private final TerminalMultiplexer multiplexer;
+
+    // Where "now" comes from when events are scheduled. This only decides the time of day that a schedule starts from: the waiting itself is done by the executor, in real time.
+    private final Clock clock;
+
+    // Staggers the scheduled start events, if it is set. See setStartAdmission().
+    private volatile StartAdmission startAdmission;
+
+    // Defers heavy events while the host is busy, if it is set. See setLoadAdmission().
+    private volatile LoadAdmission loadAdmission;
 
     // TODO: 2020-08-22 add synchronization to shutdown -- perhaps create a lock on this object to work with synchronized methods
 
@@ -27,36 +57,121 @@ public class EventScheduler {
      */
     public EventScheduler() {
 
+        this(null);
+
+    }
+
+    /**
+     * Creates a new EventScheduler whose scheduled events run through a specific multiplexer, instead of the one configured in the properties file. This is mostly useful for testing and benchmarking. Events given to submitEventNow() are already built, so they keep whatever multiplexer they were built with.
+     *
+     * @param multiplexer The multiplexer to run scheduled events through. If null, the multiplexer configured in the properties file is used.
+     */
+    public EventScheduler(TerminalMultiplexer multiplexer) {
+
+        this(multiplexer, Clock.systemDefaultZone());
+
+    }
+
+    /**
+     * Creates a new EventScheduler that reads the current time of day from a specific clock. With a fixed clock, the delay of every scheduled event is known ahead of time, which is what makes the scheduler testable. To run a whole day without waiting for it, see ScheduleSimulator instead.
+     *
+     * @param multiplexer The multiplexer to run scheduled events through. If null, the multiplexer configured in the properties file is used.
+     * @param clock       The clock that the current time of day is read from. Cannot be null.
+     */
+    public EventScheduler(TerminalMultiplexer multiplexer, Clock clock) {
+
+        if (clock == null)
+            throw new IllegalArgumentException("The clock argument should NOT be null!");
+
+        this.multiplexer = multiplexer;
+        this.clock = clock;
+
         // We get a **single thread** scheduled executor in order to facilitate the events that we have to run. The reason why I chose this option over any other thread pool is because the events that we are running are generally few and far between. Since you cannot instantiate a scheduled version of a cached thread pool, it does not make much sense to keep many threads alive. This may change later, but given that most if not all events (even custom ones by the user) can finish in under a second one thread should be plenty.
         // The more important part is having some sort of structure to *schedule* tasks.
-        this.executorService = Executors.newSingleThreadScheduledExecutor();
+        this.executorService = new ScheduledThreadPoolExecutor(1);
+
+        // Cancelled events (such as the rest of a schedule that was reloaded) are dropped from the queue right away, instead of sitting there until the time they would have run. This also keeps getQueueDepth() honest.
+        this.executorService.setRemoveOnCancelPolicy(true);
+
+        this.recentEvents = new RecentEvents(EventScheduler.RECENT_EVENTS);
 
     }
 
     /**
-     * This is the main function of the class: That being to take in a list of events and schedule them using a previously instantiated thread pool.
+     * This is the main function of the class: That being to take in a list of events and schedule them using a previously instantiated thread pool. The events are scheduled as descriptors, and are only built into actual Event objects when they fire.
      *
-     * @param eventList List of Event objects to schedule
+     * @param eventList List of EventDescriptor objects to schedule
      */
-    public List<Future<?>> scheduleEvents(List<Event> eventList) {
+    public List<Future<?>> scheduleEvents(List<EventDescriptor> eventList) {
 
-        List<Future<?>> futureList = new ArrayList<>();
+        List<Future<?>> futureList = new ArrayList<>(eventList.size());
 
-        for (Event event : eventList) {
+        // Every event is scheduled relative to the same instant, so that events at the same time of day stay in order regardless of how long this loop takes.
+        LocalTime now = LocalTime.now(this.clock);
 
-            // We call the executorService and schedule each event (which implements Runnable) using the LocalTime in the event to calculate the precise duration (to the millisecond) between now and the time specified in the LocalTime. We also save the ScheduledFuture returned by the executor.
+        for (EventDescriptor event : eventList) {
+
+            long delay = this.calculateDelay(event.getTime(), now);
+
+            // We call the executorService and schedule each event using the LocalTime in the event to calculate the precise duration (to the millisecond) between now and the time specified in the LocalTime. We also save the ScheduledFuture returned by the executor.
             futureList.add(this.executorService.schedule(
-                    event,
-                    this.calculateDelay(event.getTime(), LocalTime.now()),
+                    () -> event.run(this.getMultiplexer()),
+                    delay,
                     TimeUnit.MILLISECONDS
             ));
 
+            EventScheduler.recordScheduled(event.getEid(), event.getGameServer().getSid(), event.getEventType(), delay);
+
         }
 
         return futureList;
 
     }
 
+    /**
+     * Schedules every event in a ScheduleTable for the next 24 hour period. Unlike scheduleEvents(), this does not hand every event to the executor at once: only the events in the near future (see ARMING_WINDOW_MILLIS) are armed, and a task on the executor arms the next ones as time goes on. This keeps the number of objects alive at any time proportional to the number of events in the window, rather than the number of events in the day.
+     * <p>
+     * Stop countdown events (see StopCountdown) are expanded into their warnings and stop here, one step at a time: a countdown is armed when its first warning enters the window, and every step arms the next one once it has fired. A countdown only ever has one task in the executor, however many warnings it has, and cancelling the cycle cancels the steps it has left. Warnings that would have been sent before the start of the cycle are skipped.
+     *
+     * @param table The schedule to run.
+     * @return A single {@code Future} representing the whole 24 hour cycle. It completes when every event in the table has run, and cancelling it cancels every event that has not yet run (and, if {@code mayInterruptIfRunning} is true, interrupts the ones that are running).
+     */
+    public Future<?> scheduleTable(ScheduleTable table) {
+
+        if (table == null)
+            throw new IllegalArgumentException("The table argument should NOT be null!");
+
+        ScheduleCycle cycle = new ScheduleCycle(table, LocalTime.now(this.clock));
+
+        // The first window is armed on the executor as well, so that arming never races with the events it arms. If the cycle is cancelled before this runs, it simply does nothing.
+        this.executorService.execute(cycle);
+
+        return cycle;
+
+    }
+
+    /**
+     * Sends the start events of every ScheduleTable scheduled from now on through a StartAdmission, which limits how many servers can be starting at a time and spreads their starts out. The scheduler takes care of closing it when it is shut down.
+     *
+     * @param startAdmission The admission controller, or null to start servers as soon as they are due.
+     */
+    public void setStartAdmission(StartAdmission startAdmission) {
+
+        this.startAdmission = startAdmission;
+
+    }
+
+    /**
+     * Defers the deferrable events (see EventFactory.isDeferrable()) of every ScheduleTable scheduled from now on while the host is under pressure, as decided by a LoadAdmission. A deferred event is checked again every so often, and runs anyway once it has been deferred for the maximum delay. This happens before a start asks the StartAdmission for a slot, so a deferred start does not hold one.
+     *
+     * @param loadAdmission The admission layer, or null to run events on time whatever the load.
+     */
+    public void setLoadAdmission(LoadAdmission loadAdmission) {
+
+        this.loadAdmission = loadAdmission;
+
+    }
+
     /**
      * Call this method if you want to immediately execute a particular event using the scheduler. Cannot guarantee that the passed event will start executing at the time of the call, as there could be other jobs in the queue. This behaviour should be very rare though
      *
@@ -70,13 +185,61 @@ public class EventScheduler {
     }
 
     /**
-     * Calculates the amount of time (in ms) between `currentTime` and `scheduledTime`, "rounded" (see comment in function) to the next day. In other words, this is the shortest duration possible that you can ADD to `currentTime` which will make it will run at `scheduledTime`.
+     * Gets the number of tasks waiting in the executor. This includes every armed event (see scheduleTable()), manual events that have not started yet, and the task that arms the next window.
+     *
+     * @return The number of queued tasks.
+     */
+    public int getQueueDepth() {
+
+        return this.executorService.getQueue().size();
+
+    }
+
+    /**
+     * Gets the timing of the scheduled events that fired most recently. Manual events are not included, since they do not have a scheduled time to be late for.
+     *
+     * @param limit The maximum number of events to return.
+     * @return The events, newest first.
+     */
+    public List<RecentEvents.Entry> getRecentEvents(int limit) {
+
+        return this.recentEvents.newest(limit);
+
+    }
+
+    /**
+     * Records that an event was handed to the executor, if the EventScheduled Flight Recorder event is enabled.
+     */
+    private static void recordScheduled(int eid, int sid, int eventType, long delayMillis) {
+
+        EventScheduledEvent scheduledEvent = new EventScheduledEvent();
+
+        if (scheduledEvent.shouldCommit()) {
+
+            scheduledEvent.eid = eid;
+            scheduledEvent.sid = sid;
+            scheduledEvent.eventType = eventType;
+            scheduledEvent.delay = delayMillis;
+            scheduledEvent.commit();
+
+        }
+
+    }
+
+    private TerminalMultiplexer getMultiplexer() {
+
+        return (this.multiplexer != null) ? this.multiplexer : ASCProperties.getInstance().MULTIPLEXER;
+
+    }
+
+    /**
+     * Calculates the amount of time (in ms) between `currentTime` and `scheduledTime`, "rounded" (see comment in function) to the next day. In other words, this is the shortest duration possible that you can ADD to `currentTime` which will make it will run at `scheduledTime`. This is package-private so that it can be benchmarked on its own.
      *
      * @param scheduledTime LocalTime object that represents at what hour/minute/second of the day the event has to run.
      * @param currentTime   LocalTime object that represents the hour/minute/second at the time of the call
      * @return A long representing the number of milliseconds between the two events.
      */
-    private long calculateDelay(LocalTime scheduledTime, LocalTime currentTime) {
+    long calculateDelay(LocalTime scheduledTime, LocalTime currentTime) {
 
         /*
 
@@ -142,6 +305,8 @@ public class EventScheduler {
         this.executorService.shutdown();
         this.executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
 
+        this.closeStartAdmission();
+
     }
 
     /**
@@ -150,6 +315,16 @@ public class EventScheduler {
     public void shutdownNow() {
 
         this.executorService.shutdownNow();
+        this.closeStartAdmission();
+
+    }
+
+    private void closeStartAdmission() {
+
+        StartAdmission admission = this.startAdmission;
+
+        if (admission != null)
+            admission.close();
 
     }
 
@@ -168,4 +343,602 @@ public class EventScheduler {
 
     }
 
+    /**
+     * One 24 hour run through a ScheduleTable. This is both the task that arms the events in the table a window at a time (as a Runnable) and the handle that the caller uses to wait for or cancel the whole run (as a Future).
+     */
+    private class ScheduleCycle implements Runnable, Future<Void> {
+
+        private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000;
+
+        private final ScheduleTable table;
+
+        // The cycle starts at startMillisOfDay (time of day) and elapsed time is measured from startNanos, so a change of the system clock during the day does not move events around.
+        private final long startMillisOfDay;
+        private final long startNanos;
+
+        // The row of the first event of the cycle. Rows are armed in order from this one, wrapping around midnight to row 0, which is the order they run in.
+        private final int firstRow;
+        private int armedCount;
+        private volatile boolean armingDone;
+
+        // Stop countdowns are armed from their first warning rather than from their row, which can be well before the events around their stop. They are taken out of the rows above and armed in the order of their first warning instead.
+        private final ArmedCountdown[] countdowns;
+        private int armedCountdowns;
+
+        private final AtomicInteger outstanding;
+        private final Set<ArmedEvent> armedEvents;
+        private final CompletableFuture<Void> completion;
+
+        private volatile Future<?> nextArming;
+        private volatile boolean cancelled;
+
+        // The admissions at the time the cycle was scheduled, which it keeps for the whole day
+        private final StartAdmission startAdmission;
+        private final LoadAdmission loadAdmission;
+
+        private ScheduleCycle(ScheduleTable table, LocalTime start) {
+
+            this.table = table;
+            this.startAdmission = EventScheduler.this.startAdmission;
+            this.loadAdmission = EventScheduler.this.loadAdmission;
+            this.startMillisOfDay = start.toNanoOfDay() / 1_000_000;
+            this.startNanos = System.nanoTime();
+
+            // An event that is scheduled for a whole second before the start (even by a fraction of a second) runs tomorrow, just like in calculateDelay(). If every event is before the start, the cycle starts with the first one tomorrow.
+            int firstSecond = (int) ((this.startMillisOfDay + 999) / 1000);
+            int first = table.firstRowAtOrAfter(firstSecond);
+            this.firstRow = (first == table.size()) ? 0 : first;
+
+            this.armedCount = 0;
+            this.armingDone = false;
+
+            this.countdowns = this.findCountdowns();
+            this.armedCountdowns = 0;
+
+            this.outstanding = new AtomicInteger();
+            this.armedEvents = ConcurrentHashMap.newKeySet();
+            this.completion = new CompletableFuture<>();
+
+            this.nextArming = null;
+            this.cancelled = false;
+
+        }
+
+        /**
+         * Calculates how long after the start of the cycle a row should run. This is the same arithmetic as calculateDelay(), but with plain numbers so that arming many rows does not allocate anything.
+         *
+         * @param row The row of the event.
+         * @return The delay in milliseconds between the start of the cycle and the event.
+         */
+        private long offsetMillis(int row) {
+
+            return Math.floorMod(this.table.getSecondOfDay(row) * 1000L - this.startMillisOfDay, ScheduleCycle.MILLIS_PER_DAY);
+
+        }
+
+        /**
+         * Finds every stop countdown in the table, and sorts them by the time of their first step. Most tables have few of these if any, so this is only a pass over the event type column.
+         *
+         * @return The countdowns, none of which are armed yet.
+         */
+        private ArmedCountdown[] findCountdowns() {
+
+            List<ArmedCountdown> countdowns = new ArrayList<>();
+            int size = this.table.size();
+
+            for (int i = 0; i < size; i++) {
+
+                int row = (this.firstRow + i) % size;
+
+                if (this.table.getEventType(row) == EventFactory.EVENT_STOP_COUNTDOWN)
+                    countdowns.add(new ArmedCountdown(row, StopCountdown.parse(this.table.getArgs(row))));
+
+            }
+
+            // The sort is stable, so countdowns whose first steps are at the same time stay in the order of their rows
+            countdowns.sort(Comparator.comparingLong(ArmedCountdown::offset));
+
+            return countdowns.toArray(new ArmedCountdown[0]);
+
+        }
+
+        private long elapsedMillis() {
+
+            return (System.nanoTime() - this.startNanos) / 1_000_000;
+
+        }
+
+        /**
+         * Arms every event that runs within the next window, then schedules itself to run again just as the next event enters the window. This way the armer only wakes up when there is something to do, no matter how sparse the schedule is.
+         */
+        @Override
+        public synchronized void run() {
+
+            if (this.cancelled)
+                return;
+
+            int size = this.table.size();
+            long elapsed = this.elapsedMillis();
+
+            while (this.armedCount < size) {
+
+                int row = (this.firstRow + this.armedCount) % size;
+
+                // These are armed from the countdowns below
+                if (this.table.getEventType(row) == EventFactory.EVENT_STOP_COUNTDOWN) {
+
+                    this.armedCount++;
+                    continue;
+
+                }
+
+                long offset = this.offsetMillis(row);
+
+                if (offset > elapsed + EventScheduler.ARMING_WINDOW_MILLIS)
+                    break;
+
+                ArmedEvent event = new ArmedEvent(row);
+                long delay = Math.max(offset - elapsed, 0);
+
+                // Starts are pushed back by the jitter of their server, before they even ask for a slot
+                if (this.startAdmission != null && this.table.getEventType(row) == EventFactory.EVENT_START)
+                    delay += this.startAdmission.jitterMillis(this.table.getGameServer(row).getSid());
+
+                this.outstanding.incrementAndGet();
+                this.armedEvents.add(event);
+                event.future = EventScheduler.this.executorService.schedule(event, delay, TimeUnit.MILLISECONDS);
+
+                EventScheduler.recordScheduled(this.table.getEid(row), this.table.getGameServer(row).getSid(), this.table.getEventType(row), delay);
+
+                this.armedCount++;
+
+            }
+
+            while (this.armedCountdowns < this.countdowns.length) {
+
+                ArmedCountdown countdown = this.countdowns[this.armedCountdowns];
+                long offset = countdown.offset();
+
+                if (offset > elapsed + EventScheduler.ARMING_WINDOW_MILLIS)
+                    break;
+
+                this.outstanding.incrementAndGet();
+                this.armedEvents.add(countdown);
+                countdown.arm(elapsed);
+
+                this.armedCountdowns++;
+
+            }
+
+            if (this.armedCount < size || this.armedCountdowns < this.countdowns.length) {
+
+                // Whichever comes first of the next row and the next countdown
+                long offset = Long.MAX_VALUE;
+
+                if (this.armedCount < size)
+                    offset = this.offsetMillis((this.firstRow + this.armedCount) % size);
+
+                if (this.armedCountdowns < this.countdowns.length)
+                    offset = Math.min(offset, this.countdowns[this.armedCountdowns].offset());
+
+                this.nextArming = EventScheduler.this.executorService.schedule(this, Math.max(offset - EventScheduler.ARMING_WINDOW_MILLIS - this.elapsedMillis(), 0), TimeUnit.MILLISECONDS);
+
+            } else {
+
+                this.armingDone = true;
+                this.completeIfFinished();
+
+            }
+
+        }
+
+        private void completeIfFinished() {
+
+            if (this.armingDone && this.outstanding.get() == 0)
+                this.completion.complete(null);
+
+        }
+
+        @Override
+        public synchronized boolean cancel(boolean mayInterruptIfRunning) {
+
+            // If this returns false, the cycle had already completed (or was already cancelled), so there is nothing left to cancel.
+            if (!this.completion.cancel(false))
+                return false;
+
+            this.cancelled = true;
+
+            Future<?> arming = this.nextArming;
+
+            if (arming != null)
+                arming.cancel(false);
+
+            ClientMetrics metrics = ClientMetrics.getInstance();
+
+            for (ArmedEvent event : this.armedEvents)
+                event.cancel(metrics, mayInterruptIfRunning);
+
+            // The rows that were never armed are cancelled too. This runs at most once a cycle, so going through them one by one is fine.
+            int size = this.table.size();
+
+            for (int i = this.armedCount; i < size; i++) {
+
+                int eventType = this.table.getEventType((this.firstRow + i) % size);
+
+                if (eventType != EventFactory.EVENT_STOP_COUNTDOWN)
+                    metrics.recordCancelled(eventType, 1);
+
+            }
+
+            for (int i = this.armedCountdowns; i < this.countdowns.length; i++)
+                this.countdowns[i].recordCancelled(metrics, this.countdowns[i].step);
+
+            return true;
+
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return this.completion.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return this.completion.isDone();
+        }
+
+        @Override
+        public Void get() throws InterruptedException, ExecutionException {
+            return this.completion.get();
+        }
+
+        @Override
+        public Void get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            return this.completion.get(timeout, unit);
+        }
+
+        /**
+         * A single event that has been handed to the executor. The event only becomes an object (an EventDescriptor, then an Event) when this runs.
+         */
+        private class ArmedEvent implements Runnable {
+
+            final int row;
+            volatile Future<?> future;
+
+            // When the event was first deferred, if it has been. This is only touched from the executor.
+            private boolean deferred;
+            private long deferredSinceNanos;
+
+            private ArmedEvent(int row) {
+
+                this.row = row;
+                this.future = null;
+
+                this.deferred = false;
+                this.deferredSinceNanos = 0;
+
+            }
+
+            /**
+             * Gets how long after the start of the cycle this should run.
+             */
+            long offset() {
+
+                return ScheduleCycle.this.offsetMillis(this.row);
+
+            }
+
+            int eventType() {
+
+                return ScheduleCycle.this.table.getEventType(this.row);
+
+            }
+
+            void fire(TerminalMultiplexer multiplexer) {
+
+                ScheduleCycle.this.table.describe(this.row).run(multiplexer);
+
+            }
+
+            /**
+             * Called after every run. If there is more to run, this arms it and returns true, in which case the event is not finished yet.
+             */
+            boolean rearm() {
+
+                return false;
+
+            }
+
+            /**
+             * Cancels the event, counting it as cancelled if it had not started running. Events that are already running are not counted, since they still fire (or get interrupted while firing).
+             */
+            void cancel(ClientMetrics metrics, boolean mayInterruptIfRunning) {
+
+                Future<?> future = this.future;
+
+                if (future != null && future.cancel(mayInterruptIfRunning))
+                    metrics.recordCancelled(this.eventType(), 1);
+
+            }
+
+            @Override
+            public void run() {
+
+                if (ScheduleCycle.this.cancelled)
+                    return;
+
+                LoadAdmission loadAdmission = ScheduleCycle.this.loadAdmission;
+
+                if (loadAdmission != null && EventFactory.isDeferrable(this.eventType()) && this.defer(loadAdmission))
+                    return;
+
+                StartAdmission admission = ScheduleCycle.this.startAdmission;
+
+                if (admission == null || this.eventType() != EventFactory.EVENT_START) {
+
+                    this.runNow(null);
+                    return;
+
+                }
+
+                // A start that has to wait for a slot is run again by the admission once it gets one, so the executor never waits on it
+                if (admission.admit(() -> this.runAdmitted(admission), EventScheduler.this.executorService))
+                    this.runNow(admission);
+
+            }
+
+            /**
+             * Puts the event off if the host is under pressure, by arming it again a little later.
+             *
+             * @param admission The admission layer that decides whether the host is under pressure.
+             * @return True if the event was deferred, in which case it must not run now.
+             */
+            private boolean defer(LoadAdmission admission) {
+
+                ASCProperties properties = ASCProperties.getInstance();
+                ScheduleTable table = ScheduleCycle.this.table;
+
+                String reason = admission.overloadReason();
+                long now = System.nanoTime();
+
+                if (reason == null) {
+
+                    if (this.deferred)
+                        properties.LOGGER.logInfo("Event %d for session '%s' runs after being deferred for %d ms.", table.getEid(this.row), table.getGameServer(this.row).getSessionName(), (now - this.deferredSinceNanos) / 1_000_000);
+
+                    return false;
+
+                }
+
+                if (!this.deferred) {
+
+                    this.deferred = true;
+                    this.deferredSinceNanos = now;
+
+                    ClientMetrics.getInstance().recordDeferred(this.eventType());
+                    properties.LOGGER.logInfo("Event %d for session '%s' is deferred, the host is under pressure (%s).", table.getEid(this.row), table.getGameServer(this.row).getSessionName(), reason);
+
+                }
+
+                long deferredMillis = (now - this.deferredSinceNanos) / 1_000_000;
+                long retryMillis = admission.retryMillis(deferredMillis);
+
+                if (retryMillis <= 0) {
+
+                    properties.LOGGER.logWarning("Event %d for session '%s' runs anyway after being deferred for %d ms, the host is still under pressure.", table.getEid(this.row), table.getGameServer(this.row).getSessionName(), deferredMillis);
+                    return false;
+
+                }
+
+                // Like a countdown arming its next step, this holds the lock of the cycle so that it cannot arm the event again while the cycle is being cancelled
+                synchronized (ScheduleCycle.this) {
+
+                    if (!ScheduleCycle.this.cancelled)
+                        this.future = EventScheduler.this.executorService.schedule(this, retryMillis, TimeUnit.MILLISECONDS);
+                    else
+                        ClientMetrics.getInstance().recordCancelled(this.eventType(), 1);
+
+                }
+
+                return true;
+
+            }
+
+            private void runAdmitted(StartAdmission admission) {
+
+                if (!ScheduleCycle.this.cancelled) {
+
+                    this.runNow(admission);
+                    return;
+
+                }
+
+                // The cycle was cancelled while this waited for its slot. Its future had already run, so cancel() did not count it.
+                ClientMetrics.getInstance().recordCancelled(this.eventType(), 1);
+                admission.release();
+
+            }
+
+            /**
+             * Fires the event.
+             *
+             * @param admission The admission that gave this start its slot, or null if the event did not need one.
+             */
+            private void runNow(StartAdmission admission) {
+
+                long firedAt = System.currentTimeMillis();
+                long late = ScheduleCycle.this.elapsedMillis() - this.offset();
+                long startNanos = System.nanoTime();
+
+                // The trace starts here rather than in Event.run(), so that it also covers the time the event spent waiting for a thread and being built
+                try (Span span = Tracer.getInstance().startTrace("Scheduled event")) {
+
+                    if (span.isRecording()) {
+
+                        span.arg("eid", ScheduleCycle.this.table.getEid(this.row)).arg("lateMillis", Math.max(late, 0));
+                        Tracer.getInstance().recordSpan("Queued", ScheduleCycle.this.startNanos + this.offset() * 1_000_000, startNanos);
+
+                    }
+
+                    if (admission != null)
+                        this.reportStartDelay(admission, Math.max(late, 0));
+
+                    this.fire(EventScheduler.this.getMultiplexer());
+
+                } catch (RuntimeException e) {
+
+                    // The cycle future only represents the cycle as a whole, so a failing event is reported here instead of through it. This is the same report that SynchronizedFutureList makes for events scheduled one by one.
+                    e.printStackTrace();
+                    ASCProperties.getInstance().LOGGER.logError("An event threw an exception! The stacktrace has been printed.");
+
+                } finally {
+
+                    ScheduleTable table = ScheduleCycle.this.table;
+
+                    // The server keeps its slot until it is ready, even if the event failed: whether it is ready is up to the server
+                    if (admission != null)
+                        admission.started(table.getGameServer(this.row), EventScheduler.this.getMultiplexer());
+
+                    EventScheduler.this.recentEvents.record(table.getGameServer(this.row).getSid(), this.eventType(), firedAt, Math.max(late, 0), (System.nanoTime() - startNanos) / 1_000_000);
+
+                    if (!this.rearm()) {
+
+                        ScheduleCycle.this.armedEvents.remove(this);
+                        ScheduleCycle.this.outstanding.decrementAndGet();
+                        ScheduleCycle.this.completeIfFinished();
+
+                    }
+
+                }
+
+            }
+
+            /**
+             * Logs and records how long a start was pushed back by, from the time it was scheduled for until it got its slot.
+             */
+            private void reportStartDelay(StartAdmission admission, long delayMillis) {
+
+                GameServer server = ScheduleCycle.this.table.getGameServer(this.row);
+                long jitterMillis = Math.min(admission.jitterMillis(server.getSid()), delayMillis);
+
+                ClientMetrics.getInstance().recordStartDelay(delayMillis);
+                ASCProperties.getInstance().LOGGER.logInfo("Event [Start Server] - The start of session '%s' was held back by %d ms of jitter and %d ms waiting for a slot.", server.getSessionName(), jitterMillis, delayMillis - jitterMillis);
+
+            }
+
+        }
+
+        /**
+         * A stop countdown, which runs as one step at a time: each step is built when it fires, and arms the next one once it is done. Every step is recorded as the warn or stop event that it is, under the eid of the countdown.
+         */
+        private class ArmedCountdown extends ArmedEvent {
+
+            private final StopCountdown countdown;
+            private volatile int step;
+
+            private ArmedCountdown(int row, StopCountdown countdown) {
+
+                super(row);
+                this.countdown = countdown;
+
+                // Skip the warnings that would have been sent before the start of the cycle. The stop itself never is, since its offset is at least 0.
+                int step = 0;
+
+                while (this.offset(step) < 0)
+                    step++;
+
+                this.step = step;
+
+            }
+
+            private long offset(int step) {
+
+                return ScheduleCycle.this.offsetMillis(this.row) - this.countdown.leadSeconds(step) * 1000L;
+
+            }
+
+            @Override
+            long offset() {
+
+                return this.offset(this.step);
+
+            }
+
+            @Override
+            int eventType() {
+
+                return (this.step < this.countdown.steps() - 1) ? EventFactory.EVENT_WARN : EventFactory.EVENT_STOP;
+
+            }
+
+            @Override
+            void fire(TerminalMultiplexer multiplexer) {
+
+                ScheduleTable table = ScheduleCycle.this.table;
+                this.countdown.buildStep(multiplexer, table.getEid(this.row), table.getGameServer(this.row), table.getSecondOfDay(this.row), this.step).run();
+
+            }
+
+            /**
+             * Hands the current step to the executor.
+             */
+            private void arm(long elapsed) {
+
+                long delay = Math.max(this.offset() - elapsed, 0);
+                this.future = EventScheduler.this.executorService.schedule(this, delay, TimeUnit.MILLISECONDS);
+
+                EventScheduler.recordScheduled(ScheduleCycle.this.table.getEid(this.row), ScheduleCycle.this.table.getGameServer(this.row).getSid(), this.eventType(), delay);
+
+            }
+
+            @Override
+            boolean rearm() {
+
+                // This holds the lock of the cycle so that it cannot arm a step while the cycle is being cancelled, after cancel() has gone past this countdown
+                synchronized (ScheduleCycle.this) {
+
+                    if (ScheduleCycle.this.cancelled || this.step == this.countdown.steps() - 1)
+                        return false;
+
+                    this.step++;
+                    this.arm(ScheduleCycle.this.elapsedMillis());
+
+                    return true;
+
+                }
+
+            }
+
+            @Override
+            void cancel(ClientMetrics metrics, boolean mayInterruptIfRunning) {
+
+                Future<?> future = this.future;
+
+                // If the current step is already running (or has just finished), it is not counted but the ones after it are, since it will not arm them
+                if (future != null && future.cancel(mayInterruptIfRunning))
+                    this.recordCancelled(metrics, this.step);
+                else
+                    this.recordCancelled(metrics, this.step + 1);
+
+            }
+
+            /**
+             * Counts every step from a certain one onwards as cancelled.
+             */
+            private void recordCancelled(ClientMetrics metrics, int fromStep) {
+
+                int stop = this.countdown.steps() - 1;
+
+                if (fromStep < stop)
+                    metrics.recordCancelled(EventFactory.EVENT_WARN, stop - fromStep);
+
+                if (fromStep <= stop)
+                    metrics.recordCancelled(EventFactory.EVENT_STOP, 1);
+
+            }
+
+        }
+
+    }
+
 }
@@ -0,0 +1,280 @@
+package com.nchroniaris.ASC.client.schedule;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads how busy the host is from /proc: the load average, the pressure stall information (PSI) of the CPU, IO and memory, and how much memory is available. Reading these takes a handful of small file reads, so the last sample is kept and shared: however many events ask, /proc is read at most once a second, by whichever thread asks first once the sample is stale.
+ * <p>
+ * Anything that cannot be read is reported as NaN. A file that does not exist (PSI needs Linux 4.20, and none of it exists outside of Linux) is not read again, while a file that exists but could not be read or parsed is tried again with the next sample.
+ */
+public final class HostPressure {
+
+    private static final long SAMPLE_INTERVAL_NANOS = 1_000_000_000;
+
+    private static final HostPressure INSTANCE = new HostPressure(Paths.get("/proc"));
+
+    private final Path loadavg;
+    private final Path cpuPressure;
+    private final Path ioPressure;
+    private final Path memoryPressure;
+    private final Path meminfo;
+
+    private final int processors;
+
+    // Whether each file exists. A file that is missing stays missing, so it is not read again.
+    private volatile boolean loadavgAvailable;
+    private volatile boolean pressureAvailable;
+    private volatile boolean meminfoAvailable;
+
+    private volatile Sample sample;
+
+    // The System.nanoTime() after which the sample is stale. The thread that moves this forward is the one that takes the next sample.
+    private final AtomicLong nextSampleNanos;
+
+    /**
+     * This gets the instance of the class, which reads the /proc of the host. Like ClientMetrics, it is created eagerly, so that getting it does not take a lock.
+     *
+     * @return The HostPressure instance
+     */
+    public static HostPressure getInstance() {
+
+        return HostPressure.INSTANCE;
+
+    }
+
+    /**
+     * Creates a reader for a /proc directory other than the host's, which is only useful for testing.
+     *
+     * @param proc The directory to read loadavg, meminfo and pressure/* from.
+     */
+    HostPressure(Path proc) {
+
+        this.loadavg = proc.resolve("loadavg");
+        this.cpuPressure = proc.resolve("pressure").resolve("cpu");
+        this.ioPressure = proc.resolve("pressure").resolve("io");
+        this.memoryPressure = proc.resolve("pressure").resolve("memory");
+        this.meminfo = proc.resolve("meminfo");
+
+        this.processors = Runtime.getRuntime().availableProcessors();
+
+        this.loadavgAvailable = true;
+        this.pressureAvailable = true;
+        this.meminfoAvailable = true;
+
+        this.sample = null;
+        this.nextSampleNanos = new AtomicLong(System.nanoTime());
+
+    }
+
+    /**
+     * Gets how busy the host is. This is at most a second old.
+     *
+     * @return The latest sample.
+     */
+    public Sample sample() {
+
+        long next = this.nextSampleNanos.get();
+        long now = System.nanoTime();
+
+        // Only one thread wins this, and the others keep using the previous sample in the meantime, unless there is none yet
+        if (now - next >= 0 && this.nextSampleNanos.compareAndSet(next, now + HostPressure.SAMPLE_INTERVAL_NANOS))
+            this.sample = this.read();
+
+        Sample sample = this.sample;
+
+        while (sample == null) {
+
+            Thread.onSpinWait();
+            sample = this.sample;
+
+        }
+
+        return sample;
+
+    }
+
+    /**
+     * Reads every file that has not been found missing. This is what sample() does at most once a second.
+     *
+     * @return A new sample.
+     */
+    Sample read() {
+
+        double loadPerCpu = Double.NaN;
+        double cpu = Double.NaN;
+        double io = Double.NaN;
+        double memory = Double.NaN;
+        double memoryAvailablePercent = Double.NaN;
+
+        if (this.loadavgAvailable) {
+
+            try {
+
+                // "0.52 0.58 0.59 1/467 12345", where the first one is the average over the last minute
+                String content = HostPressure.readFile(this.loadavg);
+                loadPerCpu = Double.parseDouble(content.substring(0, content.indexOf(' '))) / this.processors;
+
+            } catch (NoSuchFileException e) {
+
+                this.loadavgAvailable = false;
+
+            } catch (IOException | RuntimeException e) {
+
+                // Most likely a read that raced with the kernel, or a format this does not know about. Either way, this sample goes without it.
+
+            }
+
+        }
+
+        if (this.pressureAvailable) {
+
+            try {
+
+                cpu = HostPressure.someAvg10(HostPressure.readFile(this.cpuPressure));
+                io = HostPressure.someAvg10(HostPressure.readFile(this.ioPressure));
+                memory = HostPressure.someAvg10(HostPressure.readFile(this.memoryPressure));
+
+            } catch (NoSuchFileException e) {
+
+                this.pressureAvailable = false;
+                cpu = io = memory = Double.NaN;
+
+            } catch (IOException | RuntimeException e) {
+
+                // Tried again with the next sample, like loadavg
+                cpu = io = memory = Double.NaN;
+
+            }
+
+        }
+
+        if (this.meminfoAvailable) {
+
+            try {
+
+                String content = HostPressure.readFile(this.meminfo);
+                long total = HostPressure.meminfoKilobytes(content, "MemTotal:");
+                long available = HostPressure.meminfoKilobytes(content, "MemAvailable:");
+
+                memoryAvailablePercent = available * 100.0 / total;
+
+            } catch (NoSuchFileException e) {
+
+                this.meminfoAvailable = false;
+
+            } catch (IOException | RuntimeException e) {
+
+                // Tried again with the next sample, like loadavg
+
+            }
+
+        }
+
+        return new Sample(loadPerCpu, cpu, io, memory, memoryAvailablePercent);
+
+    }
+
+    private static String readFile(Path path) throws IOException {
+
+        return new String(Files.readAllBytes(path), StandardCharsets.US_ASCII);
+
+    }
+
+    /**
+     * Gets the share of the last 10 seconds in which at least one task was stalled, from a PSI file such as "some avg10=1.23 avg60=0.87 avg300=0.40 total=123456".
+     */
+    private static double someAvg10(String content) {
+
+        int start = content.indexOf("some avg10=") + "some avg10=".length();
+
+        if (start < "some avg10=".length())
+            throw new IllegalArgumentException("The pressure file has no 'some' line!");
+
+        return Double.parseDouble(content.substring(start, content.indexOf(' ', start)));
+
+    }
+
+    /**
+     * Gets a field of /proc/meminfo, such as "MemAvailable:   12345678 kB".
+     */
+    private static long meminfoKilobytes(String content, String field) {
+
+        int start = content.indexOf(field);
+
+        if (start < 0)
+            throw new IllegalArgumentException(String.format("/proc/meminfo has no %s field!", field));
+
+        start += field.length();
+
+        while (content.charAt(start) == ' ')
+            start++;
+
+        return Long.parseLong(content.substring(start, content.indexOf(' ', start)));
+
+    }
+
+    /**
+     * How busy the host was at one point. Every value is NaN if it could not be read.
+     */
+    public static final class Sample {
+
+        private final double loadPerCpu;
+        private final double cpuPressure;
+        private final double ioPressure;
+        private final double memoryPressure;
+        private final double memoryAvailablePercent;
+
+        Sample(double loadPerCpu, double cpuPressure, double ioPressure, double memoryPressure, double memoryAvailablePercent) {
+
+            this.loadPerCpu = loadPerCpu;
+            this.cpuPressure = cpuPressure;
+            this.ioPressure = ioPressure;
+            this.memoryPressure = memoryPressure;
+            this.memoryAvailablePercent = memoryAvailablePercent;
+
+        }
+
+        /**
+         * @return The load average over the last minute, divided by the number of processors.
+         */
+        public double getLoadPerCpu() {
+            return loadPerCpu;
+        }
+
+        /**
+         * @return The percentage of the last 10 seconds in which some task was waiting for a CPU.
+         */
+        public double getCpuPressure() {
+            return cpuPressure;
+        }
+
+        /**
+         * @return The percentage of the last 10 seconds in which some task was waiting for IO.
+         */
+        public double getIoPressure() {
+            return ioPressure;
+        }
+
+        /**
+         * @return The percentage of the last 10 seconds in which some task was waiting for memory.
+         */
+        public double getMemoryPressure() {
+            return memoryPressure;
+        }
+
+        /**
+         * @return The percentage of the memory that is available to start new programs with, without swapping.
+         */
+        public double getMemoryAvailablePercent() {
+            return memoryAvailablePercent;
+        }
+
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.nchroniaris.ASC.client.schedule;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Decides whether the host is too busy to run heavy events right now. EventScheduler asks this before every scheduled event that can be deferred (see EventFactory.isDeferrable()), and puts the event off for a while if the host is under pressure, up to a maximum delay after which the event runs anyway. Stops and warnings are never deferred, since players were told when they would happen.
+ * <p>
+ * The host is under pressure if any of these is over its limit, as read by HostPressure. A limit whose value cannot be read on this host is ignored.
+ * <ul>
+ *     <li>The load average over the last minute, per processor.</li>
+ *     <li>The share of the last 10 seconds in which some task was stalled on the CPU, IO or memory (PSI).</li>
+ *     <li>The share of the memory that is still available, which is a lower limit.</li>
+ * </ul>
+ */
+public class LoadAdmission {
+
+    // How long a deferred event waits before the host is checked again
+    private static final long RETRY_MILLIS = 15_000;
+
+    private final HostPressure pressure;
+
+    private final double maxLoadPerCpu;
+    private final double maxPressurePercent;
+    private final double minMemoryAvailablePercent;
+    private final long maxDeferralMillis;
+
+    /**
+     * Creates a new admission layer on top of a HostPressure.
+     *
+     * @param pressure                  Where to read how busy the host is from.
+     * @param maxLoadPerCpu             The highest load average per processor at which events still run.
+     * @param maxPressurePercent        The highest PSI "some avg10" (of the CPU, IO or memory) at which events still run, as a percentage.
+     * @param minMemoryAvailablePercent The lowest share of available memory at which events still run, as a percentage.
+     * @param maxDeferral               The longest that an event can be deferred for. Must be positive.
+     */
+    public LoadAdmission(HostPressure pressure, double maxLoadPerCpu, double maxPressurePercent, double minMemoryAvailablePercent, Duration maxDeferral) {
+
+        if (pressure == null)
+            throw new IllegalArgumentException("The pressure argument should NOT be null!");
+
+        if (maxDeferral == null || maxDeferral.isNegative() || maxDeferral.isZero())
+            throw new IllegalArgumentException("The maxDeferral argument should NOT be null, and must be positive!");
+
+        this.pressure = pressure;
+        this.maxLoadPerCpu = maxLoadPerCpu;
+        this.maxPressurePercent = maxPressurePercent;
+        this.minMemoryAvailablePercent = minMemoryAvailablePercent;
+        this.maxDeferralMillis = maxDeferral.toMillis();
+
+    }
+
+    /**
+     * Checks whether the host is under pressure. This is cheap enough to call for every event, since the sample it checks is shared.
+     *
+     * @return Why the host is under pressure, for the log, or null if it is not.
+     */
+    String overloadReason() {
+
+        HostPressure.Sample sample = this.pressure.sample();
+
+        // Every comparison with NaN is false, so values that could not be read never count as pressure
+        if (sample.getLoadPerCpu() > this.maxLoadPerCpu)
+            return String.format(Locale.ROOT, "a load of %.2f per CPU", sample.getLoadPerCpu());
+
+        if (sample.getCpuPressure() > this.maxPressurePercent)
+            return String.format(Locale.ROOT, "CPU pressure of %.1f%%", sample.getCpuPressure());
+
+        if (sample.getIoPressure() > this.maxPressurePercent)
+            return String.format(Locale.ROOT, "IO pressure of %.1f%%", sample.getIoPressure());
+
+        if (sample.getMemoryPressure() > this.maxPressurePercent)
+            return String.format(Locale.ROOT, "memory pressure of %.1f%%", sample.getMemoryPressure());
+
+        if (sample.getMemoryAvailablePercent() < this.minMemoryAvailablePercent)
+            return String.format(Locale.ROOT, "only %.1f%% of the memory available", sample.getMemoryAvailablePercent());
+
+        return null;
+
+    }
+
+    /**
+     * Gets how long a deferred event should wait before checking again.
+     *
+     * @param deferredMillis How long the event has been deferred for already.
+     * @return The time to wait, which is 0 or less if the event has been deferred for as long as it can be.
+     */
+    long retryMillis(long deferredMillis) {
+
+        return Math.min(LoadAdmission.RETRY_MILLIS, this.maxDeferralMillis - deferredMillis);
+
+    }
+
+}
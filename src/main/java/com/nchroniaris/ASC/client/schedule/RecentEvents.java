@@ -0,0 +1,117 @@
+package com.nchroniaris.ASC.client.schedule;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Remembers the timing of the last few events that the scheduler fired: how late they started compared to when they were scheduled, and how long they took. This is only meant for showing the recent state of the scheduler to the user, so it keeps a fixed number of entries and forgets the older ones.
+ */
+public class RecentEvents {
+
+    /**
+     * The timing of a single event that has fired.
+     */
+    public static final class Entry {
+
+        private final int sid;
+        private final int eventType;
+        private final long firedAtMillis;
+        private final long lateMillis;
+        private final long durationMillis;
+
+        private Entry(int sid, int eventType, long firedAtMillis, long lateMillis, long durationMillis) {
+
+            this.sid = sid;
+            this.eventType = eventType;
+            this.firedAtMillis = firedAtMillis;
+            this.lateMillis = lateMillis;
+            this.durationMillis = durationMillis;
+
+        }
+
+        public int getSid() {
+            return sid;
+        }
+
+        public int getEventType() {
+            return eventType;
+        }
+
+        /**
+         * @return When the event started, in milliseconds since the epoch.
+         */
+        public long getFiredAtMillis() {
+            return firedAtMillis;
+        }
+
+        /**
+         * @return How long after its scheduled time the event started, in milliseconds.
+         */
+        public long getLateMillis() {
+            return lateMillis;
+        }
+
+        /**
+         * @return How long the event took to run, in milliseconds.
+         */
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+    }
+
+    private final Entry[] entries;
+
+    // The total number of entries ever recorded. The newest entry is at (count - 1) % capacity.
+    private long count;
+
+    /**
+     * Creates an empty history.
+     *
+     * @param capacity The number of entries to keep. Must be positive.
+     */
+    public RecentEvents(int capacity) {
+
+        if (capacity <= 0)
+            throw new IllegalArgumentException(String.format("The capacity must be positive! Got %d", capacity));
+
+        this.entries = new Entry[capacity];
+        this.count = 0;
+
+    }
+
+    /**
+     * Records an event that has just finished. This is called once per event, so a lock is cheap enough here.
+     *
+     * @param sid            The sid of the event's server.
+     * @param eventType      The eventType id of the event.
+     * @param firedAtMillis  When the event started, in milliseconds since the epoch.
+     * @param lateMillis     How long after its scheduled time the event started.
+     * @param durationMillis How long the event took to run.
+     */
+    public synchronized void record(int sid, int eventType, long firedAtMillis, long lateMillis, long durationMillis) {
+
+        this.entries[(int) (this.count % this.entries.length)] = new Entry(sid, eventType, firedAtMillis, lateMillis, durationMillis);
+        this.count++;
+
+    }
+
+    /**
+     * Gets the entries that are currently remembered.
+     *
+     * @param limit The maximum number of entries to return.
+     * @return The entries, newest first.
+     */
+    public synchronized List<Entry> newest(int limit) {
+
+        int size = (int) Math.min(Math.min(this.count, this.entries.length), Math.max(limit, 0));
+        List<Entry> newest = new ArrayList<>(size);
+
+        for (int i = 1; i <= size; i++)
+            newest.add(this.entries[(int) ((this.count - i) % this.entries.length)]);
+
+        return newest;
+
+    }
+
+}
@@ -0,0 +1,263 @@
+package com.nchroniaris.ASC.client.schedule;
+
+import com.nchroniaris.ASC.client.model.Event;
+import com.nchroniaris.ASC.client.model.EventFactory;
+import com.nchroniaris.ASC.client.model.EventResult;
+import com.nchroniaris.ASC.client.model.StopCountdown;
+import com.nchroniaris.ASC.client.multiplexer.RecordingMultiplexer;
+import com.nchroniaris.ASC.util.model.GameServer;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replays a whole day of a ScheduleTable without waiting for it. Every event is built and run exactly like the scheduler would, in the same order, but against a RecordingMultiplexer whose VirtualClock jumps straight to the next event instead of waiting for it. A day of thousands of servers takes seconds, which makes this useful for checking a schedule before it goes live (missing files, commands sent to servers that will not be running, ...) and for seeing how the load is spread over the day.
+ * <p>
+ * The simulation makes a few assumptions, since nothing actually runs:
+ * <ul>
+ *     <li>Events take no time, so the events of a second all run at once.</li>
+ *     <li>A successful stop event ends its session right away.</li>
+ *     <li>A server is running at the start of the day if the last event of the day that starts or stops it starts it, since that is the state that the previous day left it in. Servers that are never started or stopped by the schedule are assumed to be running.</li>
+ *     <li>Stop countdowns run as their separate warnings and stop, at the times that the scheduler would send them. Each one is reported as a warn or stop event under the eid of the countdown.</li>
+ * </ul>
+ * Events are not logged to the history or the journal, but they still log their usual lines, so callers should turn the log level down while simulating.
+ */
+public class ScheduleSimulator {
+
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000;
+
+    private final ScheduleTable table;
+
+    /**
+     * Creates a simulator for a schedule.
+     *
+     * @param table The schedule to simulate. Cannot be null.
+     */
+    public ScheduleSimulator(ScheduleTable table) {
+
+        if (table == null)
+            throw new IllegalArgumentException("The table argument should NOT be null!");
+
+        this.table = table;
+
+    }
+
+    /**
+     * Simulates the 24 hours after a given instant, the same way EventScheduler.scheduleTable() would have run them had it been called then.
+     *
+     * @param start The date and time the simulated day starts at. Cannot be null.
+     * @param zone  The time zone that the schedule runs in. Cannot be null.
+     * @return The timeline of the simulated day.
+     */
+    public SimulationReport simulate(LocalDateTime start, ZoneId zone) {
+
+        if (start == null)
+            throw new IllegalArgumentException("The start argument should NOT be null!");
+
+        if (zone == null)
+            throw new IllegalArgumentException("The zone argument should NOT be null!");
+
+        long wallStartNanos = System.nanoTime();
+
+        Instant startInstant = start.atZone(zone).toInstant();
+        VirtualClock clock = new VirtualClock(startInstant, zone);
+        RecordingMultiplexer multiplexer = new RecordingMultiplexer(clock);
+
+        int size = this.table.size();
+        long startMillisOfDay = start.toLocalTime().toNanoOfDay() / 1_000_000;
+
+        // Same as ScheduleCycle: an event a fraction of a second before the start runs tomorrow
+        int first = this.table.firstRowAtOrAfter((int) ((startMillisOfDay + 999) / 1000));
+
+        if (first == size)
+            first = 0;
+
+        this.addRunningSessions(multiplexer, first);
+
+        List<Step> steps = this.steps(first, startMillisOfDay);
+
+        SimulationReport report = new SimulationReport(start, steps.size(), this.table.getGameServers().size(), multiplexer.getSessionCount());
+
+        for (Step step : steps) {
+
+            int row = step.row;
+            int secondOfDay = this.table.getSecondOfDay(row);
+            int eventType = step.eventType;
+            GameServer server = this.table.getGameServer(row);
+
+            long offset = step.offset;
+            clock.setInstant(startInstant.plusMillis(offset));
+
+            EventResult result;
+            String reason = null;
+
+            try {
+
+                Event event;
+
+                if (step.countdown != null)
+                    event = step.countdown.buildStep(multiplexer, this.table.getEid(row), server, secondOfDay, step.step);
+                else
+                    event = EventFactory.buildEvent(multiplexer, this.table.getEid(row), eventType, server, LocalTime.ofSecondOfDay(secondOfDay), this.table.getArgs(row), this.table.getCommand(row));
+
+                result = event.simulate();
+
+                if (result == EventResult.SKIPPED)
+                    reason = ScheduleSimulator.startsSession(eventType) ? "The session was already active." : "The session was not active.";
+                else if (result == EventResult.SUCCESS && ScheduleSimulator.stopsSession(eventType))
+                    multiplexer.endSession(server.getSessionName());
+
+            } catch (RuntimeException e) {
+
+                // This is what would have been logged (and recorded as a failure) had the event fired for real, whether it could not be built or it threw while running
+                result = EventResult.FAILED;
+                reason = e.getMessage();
+
+            }
+
+            report.record(offset, this.table.getEid(row), eventType, server.getSessionName(), result, reason, ScheduleSimulator.startsSession(eventType), multiplexer.getSessionCount());
+
+        }
+
+        report.finish(System.nanoTime() - wallStartNanos);
+
+        return report;
+
+    }
+
+    /**
+     * Lists everything that runs during the simulated day, in the order the scheduler would run it. This is every row, except that stop countdowns are replaced by their steps, which go in between the other rows by time. Steps that would have been before the start of the day are left out, like they are in EventScheduler.
+     *
+     * @param first            The row of the first event of the simulated day.
+     * @param startMillisOfDay The time of day the simulated day starts at, in milliseconds.
+     * @return The steps of the day.
+     */
+    private List<Step> steps(int first, long startMillisOfDay) {
+
+        int size = this.table.size();
+        List<Step> steps = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+
+            int row = (first + i) % size;
+            int eventType = this.table.getEventType(row);
+            long offset = Math.floorMod(this.table.getSecondOfDay(row) * 1000L - startMillisOfDay, ScheduleSimulator.MILLIS_PER_DAY);
+
+            if (eventType != EventFactory.EVENT_STOP_COUNTDOWN) {
+
+                steps.add(new Step(row, eventType, offset, null, 0));
+                continue;
+
+            }
+
+            StopCountdown countdown;
+
+            try {
+
+                countdown = StopCountdown.parse(this.table.getArgs(row));
+
+            } catch (IllegalArgumentException e) {
+
+                // Building the row reports the problem, just like the scheduler would when the schedule is loaded
+                steps.add(new Step(row, eventType, offset, null, 0));
+                continue;
+
+            }
+
+            for (int step = 0; step < countdown.steps(); step++) {
+
+                long stepOffset = offset - countdown.leadSeconds(step) * 1000L;
+
+                if (stepOffset >= 0)
+                    steps.add(new Step(row, (step < countdown.steps() - 1) ? EventFactory.EVENT_WARN : EventFactory.EVENT_STOP, stepOffset, countdown, step));
+
+            }
+
+        }
+
+        // The sort is stable, so steps at the same time stay in the order of their rows. Without any countdowns the list is already sorted, which the sort goes through in a single pass.
+        steps.sort(Comparator.comparingLong(step -> step.offset));
+
+        return steps;
+
+    }
+
+    /**
+     * Adds the sessions that are running at the start of the simulated day to the multiplexer. See the class description for how that is decided.
+     *
+     * @param multiplexer The multiplexer to add the sessions to.
+     * @param first       The row of the first event of the simulated day.
+     */
+    private void addRunningSessions(RecordingMultiplexer multiplexer, int first) {
+
+        int size = this.table.size();
+
+        // The last event (in the order of the simulated day) that starts or stops each server, by sid
+        Map<Integer, Integer> lastLifecycleEvent = new HashMap<>();
+
+        for (int i = 0; i < size; i++) {
+
+            int row = (first + i) % size;
+            int eventType = this.table.getEventType(row);
+
+            if (ScheduleSimulator.startsSession(eventType) || ScheduleSimulator.stopsSession(eventType))
+                lastLifecycleEvent.put(this.table.getGameServer(row).getSid(), eventType);
+
+        }
+
+        for (GameServer server : this.table.getGameServers()) {
+
+            Integer eventType = lastLifecycleEvent.get(server.getSid());
+
+            if (eventType == null || ScheduleSimulator.startsSession(eventType))
+                multiplexer.addSession(server.getSessionName());
+
+        }
+
+    }
+
+    private static boolean startsSession(int eventType) {
+
+        return eventType == EventFactory.EVENT_EXECUTE || eventType == EventFactory.EVENT_START;
+
+    }
+
+    private static boolean stopsSession(int eventType) {
+
+        return eventType == EventFactory.EVENT_STOP || eventType == EventFactory.EVENT_STOP_COUNTDOWN;
+
+    }
+
+    /**
+     * A single thing that runs during the simulated day: either a row of the table, or one step of a stop countdown.
+     */
+    private static class Step {
+
+        private final int row;
+        private final int eventType;
+        private final long offset;
+
+        // Only set for the steps of a stop countdown
+        private final StopCountdown countdown;
+        private final int step;
+
+        private Step(int row, int eventType, long offset, StopCountdown countdown, int step) {
+
+            this.row = row;
+            this.eventType = eventType;
+            this.offset = offset;
+            this.countdown = countdown;
+            this.step = step;
+
+        }
+
+    }
+
+}
@@ -0,0 +1,394 @@
+package com.nchroniaris.ASC.client.schedule;
+
+import com.nchroniaris.ASC.client.model.EventDescriptor;
+import com.nchroniaris.ASC.client.model.EventFactory;
+import com.nchroniaris.ASC.util.model.CommandTemplate;
+import com.nchroniaris.ASC.util.model.GameServer;
+
+import java.util.*;
+
+/**
+ * An immutable, column oriented copy of a day's schedule. Instead of one object per event, every attribute of the events is stored in its own primitive array (the "columns"), and an event is simply an index into those arrays (a "row"). Rows are sorted by time of day, which makes finding the next events after a given time a binary search. A second index groups the rows by server.
+ * <p>
+ * Game servers and argument lists are shared: the table stores an index into a small array of each instead of a reference per event. The command of every distinct argument list that is run as a command is compiled once, next to it, so that firing the events does not parse it again every time. Altogether this costs a few tens of bytes per event, compared to the hundreds taken up by an Event (or even an EventDescriptor) and the future that wraps it in the executor. Events are only turned back into objects (see describe()) right before they fire.
+ */
+public class ScheduleTable {
+
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+
+    // The columns. Every array has exactly one element per row, and rows are sorted by secondOfDay.
+    private final int[] secondOfDay;
+    private final byte[] eventType;
+    private final int[] server;
+    private final int[] eid;
+    private final int[] args;
+
+    // Distinct game servers and argument lists. The server and args columns are indices into these.
+    private final GameServer[] servers;
+    private final String[][] argsPool;
+
+    // The compiled commands of the argument lists, at the same index. This is only set for the ones that are run as commands by at least one EVENT_COMMAND, and null for the rest.
+    private final CommandTemplate[] commandPool;
+
+    // Index by server: the rows of servers[i] are serverRows[serverStart[i]] to serverRows[serverStart[i + 1] - 1], in time order. This is the same layout as a CSR sparse matrix.
+    private final int[] serverRows;
+    private final int[] serverStart;
+
+    // Maps a sid to its index in `servers`. There are far fewer servers than events, so a regular map is fine here. This is the map of the builder, which is not touched again after build().
+    private final Map<Integer, Integer> serverIndex;
+
+    /**
+     * Builds a table out of a list of events. The descriptors are copied into the table, so the list can be discarded afterwards. To load a large schedule without first having a descriptor for every one of its events, use a Builder instead.
+     *
+     * @param eventList The events to put in the table, in any order.
+     * @throws IllegalArgumentException If an event type does not fit in a byte, which would mean the database is corrupt.
+     */
+    public ScheduleTable(List<EventDescriptor> eventList) {
+
+        this(ScheduleTable.builderOf(eventList));
+
+    }
+
+    private static Builder builderOf(List<EventDescriptor> eventList) {
+
+        if (eventList == null)
+            throw new IllegalArgumentException("The eventList argument should NOT be null!");
+
+        Builder builder = new Builder(eventList.size());
+
+        for (EventDescriptor descriptor : eventList)
+            builder.add(descriptor.getEid(), descriptor.getEventType(), descriptor.getGameServer(), descriptor.getSecondOfDay(), descriptor.getArgs());
+
+        return builder;
+
+    }
+
+    private ScheduleTable(Builder builder) {
+
+        int size = builder.size;
+
+        // Sort the rows by time with a counting sort, since there are only so many seconds in a day. Like any counting sort it is stable, so events at the same time stay in the order they were added.
+        int[] position = new int[ScheduleTable.SECONDS_PER_DAY + 1];
+
+        for (int i = 0; i < size; i++)
+            position[builder.secondOfDay[i] + 1]++;
+
+        for (int second = 0; second < ScheduleTable.SECONDS_PER_DAY; second++)
+            position[second + 1] += position[second];
+
+        this.secondOfDay = new int[size];
+        this.eventType = new byte[size];
+        this.server = new int[size];
+        this.eid = new int[size];
+        this.args = new int[size];
+
+        for (int i = 0; i < size; i++) {
+
+            int row = position[builder.secondOfDay[i]]++;
+
+            this.secondOfDay[row] = builder.secondOfDay[i];
+            this.eventType[row] = builder.eventType[i];
+            this.server[row] = builder.server[i];
+            this.eid[row] = builder.eid[i];
+            this.args[row] = builder.args[i];
+
+        }
+
+        this.servers = builder.serverList.toArray(new GameServer[0]);
+        this.argsPool = builder.argsList.toArray(new String[0][]);
+        this.commandPool = builder.commandList.toArray(new CommandTemplate[0]);
+        this.serverIndex = builder.serverIndex;
+
+        // Build the server index with a counting sort. Since we go through the rows in time order, the rows of each server end up in time order too.
+        this.serverStart = new int[this.servers.length + 1];
+
+        for (int row = 0; row < size; row++)
+            this.serverStart[this.server[row] + 1]++;
+
+        for (int i = 0; i < this.servers.length; i++)
+            this.serverStart[i + 1] += this.serverStart[i];
+
+        this.serverRows = new int[size];
+        int[] next = Arrays.copyOf(this.serverStart, this.servers.length);
+
+        for (int row = 0; row < size; row++)
+            this.serverRows[next[this.server[row]]++] = row;
+
+    }
+
+    /**
+     * Returns the number of events (rows) in the table.
+     *
+     * @return The number of rows.
+     */
+    public int size() {
+        return this.secondOfDay.length;
+    }
+
+    public int getSecondOfDay(int row) {
+        return this.secondOfDay[row];
+    }
+
+    public int getEventType(int row) {
+        return this.eventType[row];
+    }
+
+    public int getEid(int row) {
+        return this.eid[row];
+    }
+
+    public GameServer getGameServer(int row) {
+        return this.servers[this.server[row]];
+    }
+
+    public String[] getArgs(int row) {
+        return this.argsPool[this.args[row]];
+    }
+
+    /**
+     * Gets the compiled command of a row, which all the rows with the same arguments share.
+     *
+     * @param row The row of the event.
+     * @return The compiled args[0] if the row is an EVENT_COMMAND, or null if it is not (or its command could not be compiled).
+     */
+    public CommandTemplate getCommand(int row) {
+        return this.commandPool[this.args[row]];
+    }
+
+    /**
+     * Finds the first row that is scheduled at or after a certain time of day. Since rows are sorted by time, that row and every one after it are the "next" events after that time (until the end of the day, after which the schedule wraps around to row 0).
+     *
+     * @param secondOfDay The time of day, in seconds since midnight.
+     * @return The index of the first row at or after the time, or size() if there is none.
+     */
+    public int firstRowAtOrAfter(int secondOfDay) {
+
+        int low = 0;
+        int high = this.secondOfDay.length;
+
+        // Lower bound binary search
+        while (low < high) {
+
+            int middle = (low + high) >>> 1;
+
+            if (this.secondOfDay[middle] < secondOfDay)
+                low = middle + 1;
+            else
+                high = middle;
+
+        }
+
+        return low;
+
+    }
+
+    /**
+     * Gets the next events after a certain time of day, wrapping around midnight.
+     *
+     * @param secondOfDay The time of day, in seconds since midnight.
+     * @param limit       The maximum number of rows to return.
+     * @return The rows of the next (at most) `limit` events, in the order they will run.
+     */
+    public int[] nextRows(int secondOfDay, int limit) {
+
+        int count = Math.min(Math.max(limit, 0), this.size());
+        int[] rows = new int[count];
+
+        int first = this.firstRowAtOrAfter(Math.floorMod(secondOfDay, ScheduleTable.SECONDS_PER_DAY));
+
+        for (int i = 0; i < count; i++)
+            rows[i] = (first + i) % this.size();
+
+        return rows;
+
+    }
+
+    /**
+     * Gets all the events of a single server.
+     *
+     * @param sid The sid of the server.
+     * @return The rows of the server's events, in time order. This is empty if the server has no events in the table.
+     */
+    public int[] rowsForServer(int sid) {
+
+        Integer position = this.serverIndex.get(sid);
+
+        if (position == null)
+            return new int[0];
+
+        return Arrays.copyOfRange(this.serverRows, this.serverStart[position], this.serverStart[position + 1]);
+
+    }
+
+    /**
+     * Gets all the distinct game servers that have at least one event in the table.
+     *
+     * @return A List of the game servers, in no particular order.
+     */
+    public List<GameServer> getGameServers() {
+
+        return Collections.unmodifiableList(Arrays.asList(this.servers));
+
+    }
+
+    /**
+     * Turns a row back into an EventDescriptor, which can then be run. This is meant to be called right before the event fires, so that only the events in the near future exist as objects.
+     *
+     * @param row The row of the event.
+     * @return A new descriptor of the event.
+     */
+    public EventDescriptor describe(int row) {
+
+        return new EventDescriptor(this.eid[row], this.eventType[row], this.getGameServer(row), this.secondOfDay[row], this.getArgs(row), this.getCommand(row));
+
+    }
+
+    /**
+     * Builds a table one event at a time, straight into the columns. Paired with ASCRepository.forEachEvent(), this loads a schedule without ever having an object per event: the only thing kept per event while loading is its row, so loading takes about as much memory as the finished table.
+     * <p>
+     * The events can be added in any order. A builder should be discarded once build() has been called.
+     */
+    public static final class Builder {
+
+        // The columns, in the order the events were added. They grow as needed, like an ArrayList.
+        private int[] secondOfDay;
+        private byte[] eventType;
+        private int[] server;
+        private int[] eid;
+        private int[] args;
+
+        private int size;
+
+        private final List<GameServer> serverList;
+        private final Map<Integer, Integer> serverIndex;
+
+        private final List<String[]> argsList;
+        private final Map<List<String>, Integer> argsIndex;
+        private final List<CommandTemplate> commandList;
+
+        /**
+         * Creates an empty builder.
+         */
+        public Builder() {
+
+            this(16);
+
+        }
+
+        private Builder(int capacity) {
+
+            capacity = Math.max(capacity, 1);
+
+            this.secondOfDay = new int[capacity];
+            this.eventType = new byte[capacity];
+            this.server = new int[capacity];
+            this.eid = new int[capacity];
+            this.args = new int[capacity];
+
+            this.size = 0;
+
+            this.serverList = new ArrayList<>();
+            this.serverIndex = new HashMap<>();
+
+            this.argsList = new ArrayList<>();
+            this.argsIndex = new HashMap<>();
+            this.commandList = new ArrayList<>();
+
+        }
+
+        /**
+         * Adds an event to the table. The fields are the same as the ones of EventDescriptor, which the event is turned back into by describe().
+         *
+         * @param eid         The id of the event in the events table.
+         * @param eventType   The eventType id of the event.
+         * @param gameServer  The GameServer that the event belongs to. Servers are told apart by their sid, and the first one added for a sid is the one that is kept.
+         * @param secondOfDay The time of day that the event should run, as a number of seconds since midnight.
+         * @param args        The arguments of the event, which are kept as they are, so they should not be modified afterwards.
+         * @throws IllegalArgumentException If an event type does not fit in a byte, which would mean the database is corrupt.
+         */
+        public void add(int eid, int eventType, GameServer gameServer, int secondOfDay, String[] args) {
+
+            if (gameServer == null)
+                throw new IllegalArgumentException("The gameServer argument should NOT be null!");
+
+            if (args == null)
+                throw new IllegalArgumentException("The args argument should NOT be null!");
+
+            if (secondOfDay < 0 || secondOfDay >= ScheduleTable.SECONDS_PER_DAY)
+                throw new IllegalArgumentException(String.format("The time of an event must be within a day! Got %d seconds.", secondOfDay));
+
+            if (eventType < Byte.MIN_VALUE || eventType > Byte.MAX_VALUE)
+                throw new IllegalArgumentException(String.format("An event with the id (%d) does not exist! Consider rebuilding the database.", eventType));
+
+            if (this.size == this.secondOfDay.length) {
+
+                int capacity = this.size * 2;
+
+                this.secondOfDay = Arrays.copyOf(this.secondOfDay, capacity);
+                this.eventType = Arrays.copyOf(this.eventType, capacity);
+                this.server = Arrays.copyOf(this.server, capacity);
+                this.eid = Arrays.copyOf(this.eid, capacity);
+                this.args = Arrays.copyOf(this.args, capacity);
+
+            }
+
+            Integer serverPosition = this.serverIndex.get(gameServer.getSid());
+
+            if (serverPosition == null) {
+
+                serverPosition = this.serverList.size();
+                this.serverList.add(gameServer);
+                this.serverIndex.put(gameServer.getSid(), serverPosition);
+
+            }
+
+            // Identical argument lists (such as the countless empty ones) are only stored once
+            List<String> argsKey = Arrays.asList(args);
+            Integer argsPosition = this.argsIndex.get(argsKey);
+
+            if (argsPosition == null) {
+
+                argsPosition = this.argsList.size();
+                this.argsList.add(args);
+                this.argsIndex.put(argsKey, argsPosition);
+                this.commandList.add(null);
+
+            }
+
+            // A null command is left for the event to report when it is built, like it would be without a table
+            if (eventType == EventFactory.EVENT_COMMAND && args.length > 0 && args[0] != null && this.commandList.get(argsPosition) == null)
+                this.commandList.set(argsPosition, CommandTemplate.compile(args[0]));
+
+            this.secondOfDay[this.size] = secondOfDay;
+            this.eventType[this.size] = (byte) eventType;
+            this.server[this.size] = serverPosition;
+            this.eid[this.size] = eid;
+            this.args[this.size] = argsPosition;
+
+            this.size++;
+
+        }
+
+        /**
+         * Gets the number of events that have been added so far.
+         *
+         * @return The number of events.
+         */
+        public int size() {
+            return this.size;
+        }
+
+        /**
+         * Sorts the events that have been added by time, and builds the table out of them.
+         *
+         * @return The finished table.
+         */
+        public ScheduleTable build() {
+
+            return new ScheduleTable(this);
+
+        }
+
+    }
+
+}
@@ -0,0 +1,318 @@
+package com.nchroniaris.ASC.client.schedule;
+
+import com.nchroniaris.ASC.client.model.EventFactory;
+import com.nchroniaris.ASC.client.model.EventResult;
+
+import java.io.PrintStream;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The timeline of a day simulated by ScheduleSimulator: what happened in every hour of the day, when the schedule is the busiest, and every event that would not have succeeded.
+ */
+public class SimulationReport {
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss");
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final int HOURS = 24;
+    private static final long MILLIS_PER_HOUR = 60 * 60 * 1000;
+
+    /**
+     * An event that was skipped or failed during the simulation.
+     */
+    public static final class Problem {
+
+        private final LocalDateTime time;
+        private final int eid;
+        private final int eventType;
+        private final String sessionName;
+        private final EventResult result;
+        private final String reason;
+
+        private Problem(LocalDateTime time, int eid, int eventType, String sessionName, EventResult result, String reason) {
+
+            this.time = time;
+            this.eid = eid;
+            this.eventType = eventType;
+            this.sessionName = sessionName;
+            this.result = result;
+            this.reason = reason;
+
+        }
+
+        public LocalDateTime getTime() {
+            return time;
+        }
+
+        public int getEid() {
+            return eid;
+        }
+
+        public int getEventType() {
+            return eventType;
+        }
+
+        public String getSessionName() {
+            return sessionName;
+        }
+
+        public EventResult getResult() {
+            return result;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+    }
+
+    private final LocalDateTime start;
+    private final int eventCount;
+    private final int serverCount;
+    private final int initialSessions;
+
+    // Everything per hour is indexed by the number of hours since the start of the simulation
+    private final int[] hourEvents;
+    private final int[] hourStarted;
+    private final int[] hourCommands;
+    private final int[] hourSkipped;
+    private final int[] hourFailed;
+
+    // The number of running sessions at the end of every hour, or -1 if nothing happened in that hour (in which case it is the same as the hour before)
+    private final int[] hourSessions;
+
+    private final List<Problem> problems;
+
+    private long busiestOffset;
+    private int busiestCount;
+    private long currentOffset;
+    private int currentCount;
+
+    private long peakSessionsOffset;
+    private int peakSessions;
+
+    private int skipped;
+    private int failed;
+    private long wallNanos;
+
+    SimulationReport(LocalDateTime start, int eventCount, int serverCount, int initialSessions) {
+
+        this.start = start;
+        this.eventCount = eventCount;
+        this.serverCount = serverCount;
+        this.initialSessions = initialSessions;
+
+        this.hourEvents = new int[SimulationReport.HOURS];
+        this.hourStarted = new int[SimulationReport.HOURS];
+        this.hourCommands = new int[SimulationReport.HOURS];
+        this.hourSkipped = new int[SimulationReport.HOURS];
+        this.hourFailed = new int[SimulationReport.HOURS];
+        this.hourSessions = new int[SimulationReport.HOURS];
+
+        for (int i = 0; i < SimulationReport.HOURS; i++)
+            this.hourSessions[i] = -1;
+
+        this.problems = new ArrayList<>();
+
+        this.busiestOffset = 0;
+        this.busiestCount = 0;
+        this.currentOffset = -1;
+        this.currentCount = 0;
+
+        this.peakSessionsOffset = 0;
+        this.peakSessions = initialSessions;
+
+        this.skipped = 0;
+        this.failed = 0;
+        this.wallNanos = 0;
+
+    }
+
+    /**
+     * Records the outcome of a single event. Events must be recorded in the order they ran.
+     *
+     * @param offsetMillis  How long after the start of the simulation the event ran.
+     * @param eid           The eid of the event.
+     * @param eventType     The eventType id of the event.
+     * @param sessionName   The session of the event's server.
+     * @param result        The outcome of the event.
+     * @param reason        Why the event did not succeed, or null if it did.
+     * @param startsSession Whether the event starts a session (as opposed to sending a command).
+     * @param sessions      The number of running sessions right after the event.
+     */
+    void record(long offsetMillis, int eid, int eventType, String sessionName, EventResult result, String reason, boolean startsSession, int sessions) {
+
+        int hour = (int) Math.min(offsetMillis / SimulationReport.MILLIS_PER_HOUR, SimulationReport.HOURS - 1);
+
+        this.hourEvents[hour]++;
+        this.hourSessions[hour] = sessions;
+
+        switch (result) {
+
+            case SUCCESS:
+
+                if (startsSession)
+                    this.hourStarted[hour]++;
+                else
+                    this.hourCommands[hour]++;
+
+                break;
+
+            case SKIPPED:
+                this.hourSkipped[hour]++;
+                this.skipped++;
+                break;
+
+            default:
+                this.hourFailed[hour]++;
+                this.failed++;
+
+        }
+
+        if (result != EventResult.SUCCESS)
+            this.problems.add(new Problem(this.timeOf(offsetMillis), eid, eventType, sessionName, result, reason));
+
+        // Events arrive in order, so the events of a second are always next to each other
+        long second = offsetMillis / 1000;
+
+        if (second != this.currentOffset) {
+
+            this.currentOffset = second;
+            this.currentCount = 0;
+
+        }
+
+        if (++this.currentCount > this.busiestCount) {
+
+            this.busiestCount = this.currentCount;
+            this.busiestOffset = second * 1000;
+
+        }
+
+        if (sessions > this.peakSessions) {
+
+            this.peakSessions = sessions;
+            this.peakSessionsOffset = offsetMillis;
+
+        }
+
+    }
+
+    void finish(long wallNanos) {
+
+        this.wallNanos = wallNanos;
+
+    }
+
+    private LocalDateTime timeOf(long offsetMillis) {
+
+        return this.start.plusNanos(offsetMillis * 1_000_000);
+
+    }
+
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    public int getSkippedCount() {
+        return skipped;
+    }
+
+    public int getFailedCount() {
+        return failed;
+    }
+
+    public int getBusiestSecondCount() {
+        return busiestCount;
+    }
+
+    public int getPeakSessions() {
+        return peakSessions;
+    }
+
+    /**
+     * @return Every event that was skipped or failed, in the order they ran.
+     */
+    public List<Problem> getProblems() {
+        return Collections.unmodifiableList(problems);
+    }
+
+    /**
+     * Prints the timeline in a human readable format.
+     *
+     * @param out         Where to print the timeline.
+     * @param maxProblems The maximum number of problems to list one by one. The rest are only counted.
+     */
+    public void print(PrintStream out, int maxProblems) {
+
+        out.printf("Simulated 24 hours of %d events for %d servers, starting %s (took %d ms).%n", this.eventCount, this.serverCount, SimulationReport.DATE_TIME_FORMATTER.format(this.start), this.wallNanos / 1_000_000);
+        out.printf("%d of %d sessions were running at the start.%n%n", this.initialSessions, this.serverCount);
+
+        out.printf("%-10s%10s%10s%10s%10s%10s%10s%n", "Hour", "Events", "Started", "Commands", "Skipped", "Failed", "Sessions");
+
+        int sessions = this.initialSessions;
+
+        for (int hour = 0; hour < SimulationReport.HOURS; hour++) {
+
+            if (this.hourSessions[hour] >= 0)
+                sessions = this.hourSessions[hour];
+
+            out.printf("%-10s%10d%10d%10d%10d%10d%10d%n", SimulationReport.TIME_FORMATTER.format(this.timeOf(hour * SimulationReport.MILLIS_PER_HOUR)), this.hourEvents[hour], this.hourStarted[hour], this.hourCommands[hour], this.hourSkipped[hour], this.hourFailed[hour], sessions);
+
+        }
+
+        out.println();
+
+        if (this.busiestCount > 0)
+            out.printf("Busiest second: %s, with %d events.%n", SimulationReport.TIME_FORMATTER.format(this.timeOf(this.busiestOffset)), this.busiestCount);
+
+        out.printf("Most sessions running: %d, at %s.%n", this.peakSessions, SimulationReport.TIME_FORMATTER.format(this.timeOf(this.peakSessionsOffset)));
+        out.printf("%d events skipped, %d failed.%n", this.skipped, this.failed);
+
+        if (this.problems.isEmpty())
+            return;
+
+        out.println();
+
+        int limit = Math.max(maxProblems, 0);
+
+        // Failures are listed before the (usually far more numerous) skipped events, so that they are never cut off by them
+        int shown = this.printProblems(out, EventResult.FAILED, limit, true);
+        shown += this.printProblems(out, EventResult.FAILED, limit - shown, false);
+
+        if (shown < this.problems.size())
+            out.printf("... and %d more.%n", this.problems.size() - shown);
+
+    }
+
+    /**
+     * Prints the problems that either have or do not have a certain result, in the order they ran.
+     *
+     * @return The number of problems printed.
+     */
+    private int printProblems(PrintStream out, EventResult result, int limit, boolean matching) {
+
+        int shown = 0;
+
+        for (Problem problem : this.problems) {
+
+            if (shown >= limit)
+                break;
+
+            if ((problem.result == result) != matching)
+                continue;
+
+            out.printf("%-10s%-8s%-8d%-24s%-14s%s%n", SimulationReport.TIME_FORMATTER.format(problem.time), problem.result, problem.eid, problem.sessionName, EventFactory.eventTypeName(problem.eventType), problem.reason);
+            shown++;
+
+        }
+
+        return shown;
+
+    }
+
+}
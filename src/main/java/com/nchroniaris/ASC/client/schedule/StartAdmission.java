@@ -0,0 +1,378 @@
+package com.nchroniaris.ASC.client.schedule;
+
+import com.nchroniaris.ASC.client.core.ASCProperties;
+import com.nchroniaris.ASC.client.metrics.ClientMetrics;
+import com.nchroniaris.ASC.client.model.EventFactory;
+import com.nchroniaris.ASC.client.multiplexer.TerminalMultiplexer;
+import com.nchroniaris.ASC.util.model.GameServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Staggers the scheduled start events of many servers that are due at the same time (such as a nightly restart), so that they do not all load at once and slow each other down. EventScheduler asks this for a slot before every scheduled start, and only so many servers can be starting at a time: the rest wait their turn in the order they were due. A server stops taking up its slot as soon as it is ready (its port accepts connections), its session goes away, or it has been starting for too long.
+ * <p>
+ * On top of that, every start can be pushed back by a jitter of up to a certain amount. The jitter of a server is derived from its sid, so it is the same every day, and servers that are due at the same time are spread out over the jitter instead of all asking for a slot at once.
+ * <p>
+ * None of this blocks the scheduler's thread: a start that has to wait is handed back to the executor once it gets its slot. Manual starts do not go through here, since they are something the user asked for right now.
+ */
+public class StartAdmission {
+
+    // How often the servers that are starting are checked on
+    private static final long POLL_MILLIS = 1000;
+
+    // How long a connection to the port of a server can take before the server is taken to not be ready yet. The server is on the same host, so a connection either succeeds or is refused right away.
+    private static final int PROBE_TIMEOUT_MILLIS = 250;
+
+    // How long close() waits for a check that is in progress
+    private static final long CLOSE_TIMEOUT_MILLIS = 2000;
+
+    private final int maxStarting;
+    private final long jitterMillis;
+    private final long readyTimeoutNanos;
+
+    // Starts that are waiting for a slot, in the order they were due. Both of these are guarded by the lock of this object.
+    private final Queue<Waiting> waiting;
+    private int starting;
+
+    // Only touched by the monitor thread, apart from started() adding to it, so it is guarded by its own lock
+    private final List<Starting> watched;
+
+    private final ScheduledExecutorService monitor;
+
+    /**
+     * Creates a new admission controller, whose monitor thread starts right away.
+     *
+     * @param maxStarting  The maximum number of servers that can be starting at the same time. Must be at least 1.
+     * @param jitter       The maximum amount of time a start is pushed back by. Zero turns the jitter off.
+     * @param readyTimeout How long a server can take to become ready before the next one is allowed to start anyway.
+     */
+    public StartAdmission(int maxStarting, Duration jitter, Duration readyTimeout) {
+
+        if (maxStarting < 1)
+            throw new IllegalArgumentException("At least one server must be allowed to start at a time!");
+
+        if (jitter == null || jitter.isNegative())
+            throw new IllegalArgumentException("The jitter argument should NOT be null or negative!");
+
+        if (readyTimeout == null || readyTimeout.isNegative() || readyTimeout.isZero())
+            throw new IllegalArgumentException("The readyTimeout argument should NOT be null, and must be positive!");
+
+        this.maxStarting = maxStarting;
+        this.jitterMillis = jitter.toMillis();
+        this.readyTimeoutNanos = readyTimeout.toNanos();
+
+        this.waiting = new ArrayDeque<>();
+        this.starting = 0;
+        this.watched = new ArrayList<>();
+
+        this.monitor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+
+            Thread thread = new Thread(runnable, "ASC-start-admission");
+            thread.setDaemon(true);
+
+            return thread;
+
+        });
+
+        this.monitor.scheduleWithFixedDelay(this::poll, StartAdmission.POLL_MILLIS, StartAdmission.POLL_MILLIS, TimeUnit.MILLISECONDS);
+
+    }
+
+    /**
+     * Gets how long the starts of a server are pushed back by. This is a pure function of the sid, so that the servers are spread out the same way every day.
+     *
+     * @param sid The sid of the server.
+     * @return The jitter of the server, in milliseconds.
+     */
+    public long jitterMillis(int sid) {
+
+        if (this.jitterMillis == 0)
+            return 0;
+
+        // A multiplicative hash, so that consecutive sids end up far apart
+        long hash = sid * 0x9E3779B97F4A7C15L;
+        hash ^= hash >>> 32;
+
+        return Math.floorMod(hash, this.jitterMillis + 1);
+
+    }
+
+    /**
+     * Takes a slot for a start that is due. If there is no slot free (or other starts are already waiting for one), the start has to wait: it is executed on the given executor once it gets a slot, and this returns false.
+     *
+     * @param start    The start to run once it has a slot, if it cannot run now.
+     * @param executor The executor to run it on.
+     * @return True if the start has a slot and can run right away.
+     */
+    synchronized boolean admit(Runnable start, Executor executor) {
+
+        if (this.starting < this.maxStarting && this.waiting.isEmpty()) {
+
+            this.starting++;
+            return true;
+
+        }
+
+        this.waiting.add(new Waiting(start, executor));
+
+        return false;
+
+    }
+
+    /**
+     * Watches a server that has just been started with a slot, so that its slot is released once it is ready.
+     *
+     * @param server      The server that was started.
+     * @param multiplexer The multiplexer that it was started with, which is used to notice that its session has gone away.
+     */
+    void started(GameServer server, TerminalMultiplexer multiplexer) {
+
+        synchronized (this.watched) {
+
+            this.watched.add(new Starting(server, multiplexer, System.nanoTime() + this.readyTimeoutNanos));
+
+        }
+
+    }
+
+    /**
+     * Gives up a slot without having started anything with it, such as when its start was cancelled while it waited.
+     */
+    void release() {
+
+        Waiting next;
+
+        // The slot goes straight to the start that has been waiting the longest, if there is one, so that a start that is due right now cannot take it first
+        synchronized (this) {
+
+            next = this.waiting.poll();
+
+            if (next == null)
+                this.starting--;
+
+        }
+
+        if (next == null)
+            return;
+
+        try {
+
+            next.executor.execute(next.start);
+
+        } catch (RejectedExecutionException e) {
+
+            // The scheduler is shutting down, so this start will never run. Its slot is passed on in case another scheduler is still using this.
+            this.release();
+
+        }
+
+    }
+
+    /**
+     * Gets the number of servers that are starting, meaning that they have a slot.
+     *
+     * @return The number of slots taken.
+     */
+    public synchronized int getStarting() {
+
+        return this.starting;
+
+    }
+
+    /**
+     * Gets the number of starts that are due but waiting for a slot.
+     *
+     * @return The number of waiting starts.
+     */
+    public synchronized int getWaiting() {
+
+        return this.waiting.size();
+
+    }
+
+    /**
+     * Checks on every server that is starting, and releases the slots of the ones that are done. This runs on the monitor thread every POLL_MILLIS.
+     */
+    private void poll() {
+
+        // An exception would cancel the periodic task, and every slot that is taken would then stay taken for good
+        try {
+
+            List<Starting> entries;
+
+            synchronized (this.watched) {
+
+                entries = new ArrayList<>(this.watched);
+
+            }
+
+            if (entries.isEmpty())
+                return;
+
+            // The sessions are listed at most once per multiplexer and poll, however many servers are starting
+            Map<TerminalMultiplexer, Set<String>> sessions = new IdentityHashMap<>();
+            List<Starting> done = new ArrayList<>();
+
+            for (Starting entry : entries) {
+
+                if (entry.isDone(sessions))
+                    done.add(entry);
+
+            }
+
+            synchronized (this.watched) {
+
+                this.watched.removeAll(done);
+
+            }
+
+            for (int i = 0; i < done.size(); i++)
+                this.release();
+
+        } catch (RuntimeException e) {
+
+            ASCProperties.getInstance().LOGGER.logError("Checking on the servers that are starting failed: %s", e.toString());
+
+        }
+
+    }
+
+    /**
+     * Stops the monitor thread, waiting a little for a check that is in progress to finish. Starts that are still waiting for a slot are dropped, and counted as cancelled.
+     */
+    public void close() {
+
+        this.monitor.shutdown();
+
+        try {
+
+            if (!this.monitor.awaitTermination(StartAdmission.CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS))
+                ASCProperties.getInstance().LOGGER.logWarning("The start admission monitor did not stop within %d ms.", StartAdmission.CLOSE_TIMEOUT_MILLIS);
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+
+        }
+
+        int dropped;
+
+        synchronized (this) {
+
+            dropped = this.waiting.size();
+            this.waiting.clear();
+
+        }
+
+        if (dropped > 0) {
+
+            ClientMetrics.getInstance().recordCancelled(EventFactory.EVENT_START, dropped);
+            ASCProperties.getInstance().LOGGER.logWarning("%d scheduled starts were still waiting for a slot, and will not run.", dropped);
+
+        }
+
+    }
+
+    private static final class Waiting {
+
+        private final Runnable start;
+        private final Executor executor;
+
+        private Waiting(Runnable start, Executor executor) {
+
+            this.start = start;
+            this.executor = executor;
+
+        }
+
+    }
+
+    /**
+     * A server that has a slot, which it keeps until it is ready.
+     */
+    private static final class Starting {
+
+        private final GameServer server;
+        private final TerminalMultiplexer multiplexer;
+        private final long startNanos;
+        private final long deadlineNanos;
+
+        private Starting(GameServer server, TerminalMultiplexer multiplexer, long deadlineNanos) {
+
+            this.server = server;
+            this.multiplexer = multiplexer;
+            this.startNanos = System.nanoTime();
+            this.deadlineNanos = deadlineNanos;
+
+        }
+
+        /**
+         * Checks whether the server is done starting, logging why if it is.
+         *
+         * @param sessions The sessions of every multiplexer that has been listed during this poll, which this adds to if it needs to list them.
+         */
+        private boolean isDone(Map<TerminalMultiplexer, Set<String>> sessions) {
+
+            ASCProperties properties = ASCProperties.getInstance();
+            long now = System.nanoTime();
+
+            if (this.server.getPort() > 0 && StartAdmission.accepts(this.server.getPort())) {
+
+                properties.LOGGER.logInfo("Session '%s' is ready after %d ms, its port (%d) is open.", this.server.getSessionName(), (now - this.startNanos) / 1_000_000, this.server.getPort());
+                return true;
+
+            }
+
+            if (now - this.deadlineNanos >= 0) {
+
+                properties.LOGGER.logWarning("Session '%s' has not opened its port (%d) after %d ms, letting the next server start anyway.", this.server.getSessionName(), this.server.getPort(), (now - this.startNanos) / 1_000_000);
+                return true;
+
+            }
+
+            // This is the most expensive check (it spawns a process), so it goes last. A server that failed to start would otherwise hold its slot until the timeout. Listing the sessions does not wait or exit on an interrupt like sessionExists() does.
+            if (!sessions.computeIfAbsent(this.multiplexer, TerminalMultiplexer::listSessions).contains(this.server.getSessionName())) {
+
+                properties.LOGGER.logWarning("Session '%s' ended before its port (%d) was open.", this.server.getSessionName(), this.server.getPort());
+                return true;
+
+            }
+
+            return false;
+
+        }
+
+    }
+
+    private static boolean accepts(int port) {
+
+        try (Socket socket = new Socket()) {
+
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), StartAdmission.PROBE_TIMEOUT_MILLIS);
+            return true;
+
+        } catch (IOException e) {
+
+            return false;
+
+        }
+
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.nchroniaris.ASC.client.schedule;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+
+/**
+ * A clock that only moves when it is told to. ScheduleSimulator moves it to each event as it replays a schedule, so that anything reading the time during the simulation (such as RecordingMultiplexer) sees the simulated time instead of the real one.
+ */
+public class VirtualClock extends Clock {
+
+    private final ZoneId zone;
+    private volatile Instant instant;
+
+    /**
+     * Creates a clock that is stopped at a certain instant.
+     *
+     * @param instant The instant the clock starts at. Cannot be null.
+     * @param zone    The time zone of the clock. Cannot be null.
+     */
+    public VirtualClock(Instant instant, ZoneId zone) {
+
+        if (instant == null)
+            throw new IllegalArgumentException("The instant argument should NOT be null!");
+
+        if (zone == null)
+            throw new IllegalArgumentException("The zone argument should NOT be null!");
+
+        this.instant = instant;
+        this.zone = zone;
+
+    }
+
+    /**
+     * Moves the clock to a certain instant. The clock is allowed to go backwards, though the simulator never does that.
+     *
+     * @param instant The new instant. Cannot be null.
+     */
+    public void setInstant(Instant instant) {
+
+        if (instant == null)
+            throw new IllegalArgumentException("The instant argument should NOT be null!");
+
+        this.instant = instant;
+
+    }
+
+    /**
+     * Moves the clock forward.
+     *
+     * @param duration How far to move the clock.
+     */
+    public void advance(Duration duration) {
+
+        this.setInstant(this.instant.plus(duration));
+
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    /**
+     * Returns a copy of this clock in a different time zone. The copy is stopped at the current instant of this clock, and does not move along with it.
+     */
+    @Override
+    public Clock withZone(ZoneId zone) {
+
+        return new VirtualClock(this.instant, zone);
+
+    }
+
+    @Override
+    public Instant instant() {
+        return instant;
+    }
+
+}
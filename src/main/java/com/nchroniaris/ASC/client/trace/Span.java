@@ -0,0 +1,147 @@
+package com.nchroniaris.ASC.client.trace;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A timed section of a trace, such as an event firing or a process that the multiplexer ran. Spans are created by the Tracer and are meant to be used with try-with-resources, so that they always end (and the span that was current before them becomes current again) no matter how the section exits.
+ * <p>
+ * Events that are not sampled get Span.NOOP, which records nothing. Anything that takes effort to put together (such as a command line) should only be added with arg() after checking isRecording().
+ */
+public final class Span implements AutoCloseable {
+
+    /**
+     * The span of everything that is not traced. It has no parent, no arguments, and closing it does nothing.
+     */
+    public static final Span NOOP = new Span(null, null, 0, 0, null, 0);
+
+    private final Tracer tracer;
+    private final Span parent;
+
+    private final long traceId;
+    private final long spanId;
+    private final String name;
+
+    private final long threadId;
+    private final String threadName;
+
+    private final long startNanos;
+    private long endNanos;
+
+    // Argument names and values, one after the other. This is null until the first argument is added, since most spans do not have any.
+    private List<Object> args;
+
+    Span(Tracer tracer, Span parent, long traceId, long spanId, String name, long startNanos) {
+
+        this.tracer = tracer;
+        this.parent = parent;
+
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.name = name;
+
+        Thread thread = Thread.currentThread();
+        this.threadId = thread.getId();
+        this.threadName = thread.getName();
+
+        this.startNanos = startNanos;
+        this.endNanos = startNanos;
+
+        this.args = null;
+
+    }
+
+    /**
+     * Whether this span is actually being recorded, as opposed to being Span.NOOP.
+     *
+     * @return true if arguments added to this span end up in the trace.
+     */
+    public boolean isRecording() {
+
+        return this.tracer != null;
+
+    }
+
+    /**
+     * Adds an argument to the span, which shows up next to it in the trace viewer. This does nothing if the span is not being recorded.
+     *
+     * @param key   The name of the argument.
+     * @param value The value of the argument. Numbers and booleans are written as such, and anything else as a string.
+     * @return This span, so that calls can be chained.
+     */
+    public Span arg(String key, Object value) {
+
+        if (this.tracer == null)
+            return this;
+
+        if (this.args == null)
+            this.args = new ArrayList<>(4);
+
+        this.args.add(key);
+        this.args.add(value);
+
+        return this;
+
+    }
+
+    /**
+     * Ends the span and hands it to the trace writer. The span that was current when this one started becomes current again.
+     */
+    @Override
+    public void close() {
+
+        if (this.tracer == null)
+            return;
+
+        this.endNanos = System.nanoTime();
+        this.tracer.end(this);
+
+    }
+
+    /**
+     * Ends a span that was created after the fact, with a known end time. It does not change which span is current, since it never was.
+     */
+    void closeAt(long endNanos) {
+
+        this.endNanos = endNanos;
+        this.tracer.submit(this);
+
+    }
+
+    Span getParent() {
+        return parent;
+    }
+
+    long getTraceId() {
+        return traceId;
+    }
+
+    long getSpanId() {
+        return spanId;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    long getThreadId() {
+        return threadId;
+    }
+
+    String getThreadName() {
+        return threadName;
+    }
+
+    long getStartNanos() {
+        return startNanos;
+    }
+
+    long getEndNanos() {
+        return endNanos;
+    }
+
+    List<Object> getArgs() {
+        return args;
+    }
+
+}
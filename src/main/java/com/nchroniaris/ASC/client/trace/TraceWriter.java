@@ -0,0 +1,303 @@
+package com.nchroniaris.ASC.client.trace;
+
+import com.nchroniaris.ASC.client.core.ASCProperties;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes ended spans to a file on a background thread, in the Trace Event Format (the JSON format of chrome://tracing, which Perfetto and most other trace viewers can also open). Every span is a "complete" event, and its trace and span ids are in its arguments, so the spans of a single event can be found by searching for its trace id.
+ * <p>
+ * The file is a JSON array that is only closed when the writer is. The format allows the closing bracket to be missing, so a file left behind by a crash can still be opened.
+ */
+class TraceWriter implements AutoCloseable {
+
+    // Maximum number of spans that can be waiting to be written. Past this, spans are dropped rather than blocking the event that ended them.
+    private static final int QUEUE_CAPACITY = 8192;
+
+    // Maximum number of spans written before the file is flushed
+    private static final int BATCH_SIZE = 512;
+
+    // How long the background thread waits for a span before checking if it should stop
+    private static final long POLL_TIMEOUT_MS = 1000;
+
+    // How long close() waits for the background thread to write out the remaining spans
+    private static final long CLOSE_TIMEOUT_MS = 5000;
+
+    private final Writer out;
+    private final BlockingQueue<Span> queue;
+    private final Thread writerThread;
+
+    // Spans are timed with System.nanoTime(), but the file uses wall clock time so that it can be compared to the log. These are the two clocks at the same instant.
+    private final long baseEpochNanos;
+    private final long baseNanos;
+
+    // The threads that have already been named in the file. This is only touched by the writer thread.
+    private final Set<Long> namedThreads;
+    private final long pid;
+
+    private final AtomicLong droppedSpans;
+
+    private boolean first;
+    private volatile boolean closed;
+
+    /**
+     * Opens the trace file and starts the background thread.
+     *
+     * @param path The file to write the traces to. An existing file is moved out of the way first (see Tracer.start()).
+     * @throws IOException If the file could not be opened.
+     */
+    TraceWriter(String path) throws IOException {
+
+        Path file = Paths.get(path);
+
+        if (Files.exists(file))
+            Files.move(file, Paths.get(path + ".old"), StandardCopyOption.REPLACE_EXISTING);
+
+        this.out = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8));
+        this.out.write("[");
+
+        this.queue = new ArrayBlockingQueue<>(TraceWriter.QUEUE_CAPACITY);
+
+        this.baseEpochNanos = System.currentTimeMillis() * 1_000_000;
+        this.baseNanos = System.nanoTime();
+
+        this.namedThreads = new HashSet<>();
+        this.pid = ProcessHandle.current().pid();
+
+        this.droppedSpans = new AtomicLong(0);
+
+        this.first = true;
+        this.closed = false;
+
+        // Like the history writer, this is a daemon so that it does not keep the JVM alive if nobody closes it.
+        this.writerThread = new Thread(this::writeLoop, "ASC-trace-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+
+    }
+
+    /**
+     * Queues a span to be written. This never blocks; if the queue is full or the writer is closed, the span is dropped.
+     *
+     * @param span The span, which has already ended.
+     */
+    void write(Span span) {
+
+        if (this.closed || !this.queue.offer(span))
+            this.droppedSpans.incrementAndGet();
+
+    }
+
+    private void writeLoop() {
+
+        List<Span> batch = new ArrayList<>(TraceWriter.BATCH_SIZE);
+        StringBuilder builder = new StringBuilder(256);
+
+        // We keep going after close() until the queue is empty, so that the spans of events that finished right before shutdown are not lost.
+        while (!this.closed || !this.queue.isEmpty()) {
+
+            try {
+
+                Span span = this.queue.poll(TraceWriter.POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+                if (span == null)
+                    continue;
+
+                batch.add(span);
+                this.queue.drainTo(batch, TraceWriter.BATCH_SIZE - 1);
+
+                for (Span s : batch) {
+
+                    builder.setLength(0);
+                    this.append(builder, s);
+                    this.out.write(builder.toString());
+
+                }
+
+                batch.clear();
+                this.out.flush();
+
+            } catch (InterruptedException e) {
+
+                // close() interrupts the thread if it takes too long. At that point we just give up on the remaining spans.
+                break;
+
+            } catch (IOException e) {
+
+                ASCProperties.getInstance().LOGGER.logError("Could not write to the trace file, so tracing has stopped: %s", e.getMessage());
+                break;
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Formats a span as a complete ("X") event. The first span of every thread is preceded by a metadata event with the name of the thread, which the viewer labels its track with.
+     */
+    private void append(StringBuilder builder, Span span) {
+
+        if (this.namedThreads.add(span.getThreadId())) {
+
+            this.appendSeparator(builder);
+            builder.append("{\"ph\":\"M\",\"name\":\"thread_name\",\"pid\":").append(this.pid).append(",\"tid\":").append(span.getThreadId()).append(",\"args\":{\"name\":");
+            TraceWriter.appendString(builder, span.getThreadName());
+            builder.append("}}");
+
+        }
+
+        this.appendSeparator(builder);
+
+        builder.append("{\"ph\":\"X\",\"cat\":\"ASC\",\"name\":");
+        TraceWriter.appendString(builder, span.getName());
+
+        builder.append(",\"pid\":").append(this.pid).append(",\"tid\":").append(span.getThreadId());
+
+        builder.append(",\"ts\":");
+        TraceWriter.appendMicros(builder, this.baseEpochNanos + (span.getStartNanos() - this.baseNanos));
+
+        builder.append(",\"dur\":");
+        TraceWriter.appendMicros(builder, Math.max(span.getEndNanos() - span.getStartNanos(), 0));
+
+        builder.append(",\"args\":{\"trace\":\"").append(String.format("%016x", span.getTraceId())).append("\",\"span\":").append(span.getSpanId());
+
+        if (span.getParent() != null)
+            builder.append(",\"parent\":").append(span.getParent().getSpanId());
+
+        List<Object> args = span.getArgs();
+
+        if (args != null) {
+
+            for (int i = 0; i + 1 < args.size(); i += 2) {
+
+                builder.append(',');
+                TraceWriter.appendString(builder, String.valueOf(args.get(i)));
+                builder.append(':');
+
+                Object value = args.get(i + 1);
+
+                if (value instanceof Number || value instanceof Boolean)
+                    builder.append(value);
+                else
+                    TraceWriter.appendString(builder, String.valueOf(value));
+
+            }
+
+        }
+
+        builder.append("}}");
+
+    }
+
+    private void appendSeparator(StringBuilder builder) {
+
+        builder.append(this.first ? "\n" : ",\n");
+        this.first = false;
+
+    }
+
+    /**
+     * Appends a duration or a timestamp in microseconds (the unit of the format), keeping the nanoseconds as a fraction.
+     */
+    private static void appendMicros(StringBuilder builder, long nanos) {
+
+        long fraction = nanos % 1000;
+
+        builder.append(nanos / 1000).append('.');
+
+        if (fraction < 100)
+            builder.append('0');
+
+        if (fraction < 10)
+            builder.append('0');
+
+        builder.append(fraction);
+
+    }
+
+    private static void appendString(StringBuilder builder, String value) {
+
+        builder.append('"');
+
+        for (int i = 0; i < value.length(); i++) {
+
+            char c = value.charAt(i);
+
+            if (c == '"' || c == '\\')
+                builder.append('\\').append(c);
+            else if (c < 0x20)
+                builder.append(String.format("\\u%04x", (int) c));
+            else
+                builder.append(c);
+
+        }
+
+        builder.append('"');
+
+    }
+
+    /**
+     * Stops accepting new spans, waits (for a bounded amount of time) for the background thread to write the ones that are still queued, then closes the JSON array and the file. Calling this more than once has no additional effect.
+     */
+    @Override
+    public synchronized void close() {
+
+        if (this.closed)
+            return;
+
+        this.closed = true;
+
+        try {
+
+            this.writerThread.join(TraceWriter.CLOSE_TIMEOUT_MS);
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+
+        }
+
+        // If the disk is hanging, we don't want to hang the shutdown with it. The array is then left open, which the format allows, since the thread might still be writing to the file.
+        if (this.writerThread.isAlive()) {
+
+            this.writerThread.interrupt();
+
+        } else {
+
+            try {
+
+                this.out.write("\n]\n");
+                this.out.close();
+
+            } catch (IOException e) {
+
+                ASCProperties.getInstance().LOGGER.logError("Could not close the trace file: %s", e.getMessage());
+
+            }
+
+        }
+
+        long dropped = this.droppedSpans.get();
+
+        if (dropped > 0)
+            ASCProperties.getInstance().LOGGER.logWarning("%d spans were dropped because the trace file could not keep up!", dropped);
+
+    }
+
+}
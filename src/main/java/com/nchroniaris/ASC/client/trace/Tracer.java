@@ -0,0 +1,171 @@
+package com.nchroniaris.ASC.client.trace;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Traces events from the moment they are due to fire until their last process exits: how long they waited in the scheduler, how long building them took, and every call they made to the multiplexer along with the processes behind it (including the delay after every screen command). Every fired event is a trace with its own id, made of nested spans, and a configurable fraction of them are written to a file by a TraceWriter, in a format that trace viewers such as Perfetto or chrome://tracing can open.
+ * <p>
+ * The span that is currently open is kept per thread, and new spans become its children. Since an event runs start to finish on a single thread, nothing has to be passed around for the multiplexer's spans to end up in the right trace. When tracing is off, or an event is not sampled, every span is Span.NOOP, so the traced paths do not allocate anything or read the clock for it.
+ */
+public final class Tracer {
+
+    private static final Tracer INSTANCE = new Tracer();
+
+    private final ThreadLocal<Span> current;
+    private final AtomicLong nextSpanId;
+
+    // These are set once by start(), but are volatile since the threads that trace events are usually already running by then
+    private volatile double sampleRate;
+    private volatile TraceWriter writer;
+
+    /**
+     * This gets the instance of the class as it is implemented as a singleton. Like ClientMetrics, the instance is created eagerly, so that getting it on the hot paths does not take a lock.
+     *
+     * @return The Tracer instance
+     */
+    public static Tracer getInstance() {
+
+        return Tracer.INSTANCE;
+
+    }
+
+    private Tracer() {
+
+        this.current = new ThreadLocal<>();
+        this.nextSpanId = new AtomicLong(1);
+
+        this.sampleRate = 0;
+        this.writer = null;
+
+    }
+
+    /**
+     * Starts writing a fraction of the traces to a file. Until this is called, nothing is traced.
+     *
+     * @param sampleRate The fraction of traces to write, between 0 (none) and 1 (all of them).
+     * @param path       The file to write the traces to. An existing file is kept next to it, with ".old" added to its name, so that restarting the client does not lose the trace of whatever made it restart.
+     * @throws IOException              If the file could not be opened.
+     * @throws IllegalArgumentException If the sample rate is not between 0 and 1.
+     * @throws IllegalStateException    If tracing has already been started.
+     */
+    public synchronized void start(double sampleRate, String path) throws IOException {
+
+        if (!(sampleRate >= 0 && sampleRate <= 1))
+            throw new IllegalArgumentException(String.format("The trace sample rate must be between 0 and 1! Got %s", sampleRate));
+
+        if (this.writer != null)
+            throw new IllegalStateException("Tracing has already been started!");
+
+        this.writer = new TraceWriter(path);
+        this.sampleRate = sampleRate;
+
+    }
+
+    /**
+     * Stops tracing, and waits (for a bounded amount of time) for the spans that have ended to be written out. Spans that end after this are dropped. Calling this more than once, or without calling start(), has no additional effect.
+     */
+    public synchronized void close() {
+
+        TraceWriter writer = this.writer;
+
+        this.sampleRate = 0;
+
+        if (writer != null)
+            writer.close();
+
+    }
+
+    /**
+     * Starts the span of an event. If a span is already open on this thread (because the scheduler already started a trace for the event), the new span becomes its child. Otherwise, this is the start of a new trace, which is only recorded if it is sampled.
+     *
+     * @param name The name of the span.
+     * @return The new span, or Span.NOOP if it is not being recorded.
+     */
+    public Span startTrace(String name) {
+
+        Span parent = this.current.get();
+
+        if (parent != null)
+            return this.open(parent, parent.getTraceId(), name, System.nanoTime());
+
+        double sampleRate = this.sampleRate;
+
+        if (sampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate)
+            return Span.NOOP;
+
+        return this.open(null, ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, name, System.nanoTime());
+
+    }
+
+    /**
+     * Starts a span inside the trace that is open on this thread. If no trace is open (or it is not sampled), nothing is recorded.
+     *
+     * @param name The name of the span.
+     * @return The new span, or Span.NOOP if it is not being recorded.
+     */
+    public Span startSpan(String name) {
+
+        Span parent = this.current.get();
+
+        if (parent == null)
+            return Span.NOOP;
+
+        return this.open(parent, parent.getTraceId(), name, System.nanoTime());
+
+    }
+
+    /**
+     * Records a span that has already happened inside the trace that is open on this thread, such as the time an event spent waiting in the scheduler's queue before it started running. If no trace is open, nothing is recorded.
+     *
+     * @param name       The name of the span.
+     * @param startNanos When the span started, according to System.nanoTime().
+     * @param endNanos   When the span ended, according to System.nanoTime().
+     */
+    public void recordSpan(String name, long startNanos, long endNanos) {
+
+        Span parent = this.current.get();
+
+        if (parent == null)
+            return;
+
+        new Span(this, parent, parent.getTraceId(), this.nextSpanId.getAndIncrement(), name, startNanos).closeAt(endNanos);
+
+    }
+
+    private Span open(Span parent, long traceId, String name, long startNanos) {
+
+        Span span = new Span(this, parent, traceId, this.nextSpanId.getAndIncrement(), name, startNanos);
+        this.current.set(span);
+
+        return span;
+
+    }
+
+    /**
+     * Called by Span.close(). The span's parent becomes the current span again, and the span is handed to the writer.
+     */
+    void end(Span span) {
+
+        Span parent = span.getParent();
+
+        if (parent != null)
+            this.current.set(parent);
+        else
+            this.current.remove();
+
+        this.submit(span);
+
+    }
+
+    void submit(Span span) {
+
+        TraceWriter writer = this.writer;
+
+        if (writer != null)
+            writer.write(span);
+
+    }
+
+}
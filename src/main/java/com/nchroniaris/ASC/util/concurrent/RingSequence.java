@@ -0,0 +1,151 @@
+package com.nchroniaris.ASC.util.concurrent;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The positions of a bounded ring buffer that any number of threads put things into and a single thread takes them out of (MPSC), without a lock. This only keeps track of which slot holds what: the things themselves are kept by the user of this class, usually in plain arrays of primitives indexed by slot(), so that putting something in does not allocate.
+ * <p>
+ * This is the bounded queue described by Dmitry Vyukov: every slot has a sequence number that tells producers whether the slot is free for a given position, and tells the consumer whether the slot has been filled. A producer does this:
+ * <pre>
+ * long position = sequence.claim();     // -1 if the buffer is full
+ * array[sequence.slot(position)] = ...;
+ * sequence.publish(position);
+ * </pre>
+ * The consumer keeps its own position (head), which only it touches, and does this:
+ * <pre>
+ * while (sequence.isPublished(head)) {
+ *     ... = array[sequence.slot(head)];
+ *     sequence.release(head++);
+ * }
+ * </pre>
+ */
+public final class RingSequence {
+
+    private final int capacity;
+    private final int mask;
+
+    // A slot at index i is free for position p when sequence[i] == p, and holds the item for position p when sequence[i] == p + 1.
+    private final AtomicLongArray sequence;
+
+    // The next position to be claimed by a producer
+    private final AtomicLong tail;
+
+    /**
+     * Creates the sequence of an empty ring buffer.
+     *
+     * @param capacity The number of slots. This must be a power of two so that positions can be mapped to slots with a mask.
+     */
+    public RingSequence(int capacity) {
+
+        if (capacity < 1 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException(String.format("The capacity must be a power of two! Got %d", capacity));
+
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+
+        this.sequence = new AtomicLongArray(capacity);
+
+        for (int i = 0; i < capacity; i++)
+            this.sequence.set(i, i);
+
+        this.tail = new AtomicLong(0);
+
+    }
+
+    /**
+     * Claims the next position for a producer. The producer has to fill the slot of the position and then publish() it.
+     *
+     * @return The position, or -1 if the buffer is full.
+     */
+    public long claim() {
+
+        long position = this.tail.get();
+
+        while (true) {
+
+            int slot = this.slot(position);
+            long difference = this.sequence.get(slot) - position;
+
+            if (difference == 0) {
+
+                // The slot is free for this position, so try to claim it
+                if (this.tail.compareAndSet(position, position + 1))
+                    return position;
+
+                position = this.tail.get();
+
+            } else if (difference < 0) {
+
+                // The slot still holds an item from one lap ago, which means the buffer is full
+                return -1;
+
+            } else {
+
+                // Another producer claimed this position first
+                position = this.tail.get();
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Hands a claimed position over to the consumer. This is a release store, so the consumer sees everything that was stored in the slot before this once it sees the position as published.
+     *
+     * @param position A position returned by claim().
+     */
+    public void publish(long position) {
+
+        this.sequence.lazySet(this.slot(position), position + 1);
+
+    }
+
+    /**
+     * Checks whether the item at a position has been published. Only the consumer should call this.
+     *
+     * @param position The consumer's position.
+     * @return true if the slot of the position holds its item.
+     */
+    public boolean isPublished(long position) {
+
+        return this.sequence.get(this.slot(position)) == position + 1;
+
+    }
+
+    /**
+     * Frees the slot of a position that the consumer is done with, for the producers one lap ahead. The consumer should clear any references it keeps in the slot first.
+     *
+     * @param position The consumer's position.
+     */
+    public void release(long position) {
+
+        this.sequence.lazySet(this.slot(position), position + this.capacity);
+
+    }
+
+    /**
+     * Maps a position to the index of its slot.
+     *
+     * @param position Any position.
+     * @return The index of the slot, between 0 and the capacity.
+     */
+    public int slot(long position) {
+
+        return (int) (position & this.mask);
+
+    }
+
+    /**
+     * Gets the next position to be claimed, which is also the number of positions that have been claimed so far. Along with the consumer's position, this tells how full the buffer is.
+     *
+     * @return The next position.
+     */
+    public long getTail() {
+
+        return this.tail.get();
+
+    }
+
+}
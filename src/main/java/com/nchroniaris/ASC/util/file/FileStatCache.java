@@ -0,0 +1,81 @@
+package com.nchroniaris.ASC.util.file;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class memoizes checks for the existence of files for a short amount of time. Many events refer to the same file (every start event of a server uses its start file, for example), and events often fire in clusters, so this avoids hitting the filesystem for the same path over and over again. The results are only kept for a few seconds, so a file that is created or deleted is noticed almost right away.
+ */
+public final class FileStatCache {
+
+    // How long a result is trusted for
+    private static final long TTL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    // If the cache grows past this many paths, expired entries are cleared out. The number of distinct paths is normally tiny (a handful per server), so this is just a safety net.
+    private static final int MAX_ENTRIES = 4096;
+
+    private static final Map<String, Entry> CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * An immutable cached result.
+     */
+    private static class Entry {
+
+        private final boolean exists;
+        private final long expiresAt;
+
+        private Entry(boolean exists, long expiresAt) {
+
+            this.exists = exists;
+            this.expiresAt = expiresAt;
+
+        }
+
+    }
+
+    /**
+     * This class only has static methods, so it should not be instantiated.
+     */
+    private FileStatCache() {
+    }
+
+    /**
+     * Checks whether a file exists, using a cached result if one was obtained in the last few seconds.
+     *
+     * @param path The path of the file to check.
+     * @return true if the file existed as of the last check, false otherwise.
+     */
+    public static boolean exists(String path) {
+
+        if (path == null)
+            throw new IllegalArgumentException("The path argument cannot be null!");
+
+        long now = System.nanoTime();
+        Entry entry = FileStatCache.CACHE.get(path);
+
+        // The subtraction handles nanoTime() overflowing, as recommended by its documentation
+        if (entry != null && now - entry.expiresAt < 0)
+            return entry.exists;
+
+        if (FileStatCache.CACHE.size() >= FileStatCache.MAX_ENTRIES)
+            FileStatCache.CACHE.values().removeIf(stale -> now - stale.expiresAt >= 0);
+
+        boolean exists = new File(path).exists();
+        FileStatCache.CACHE.put(path, new Entry(exists, now + FileStatCache.TTL_NANOS));
+
+        return exists;
+
+    }
+
+    /**
+     * Forgets all cached results, so that the next check of every path hits the filesystem.
+     */
+    public static void clear() {
+
+        FileStatCache.CACHE.clear();
+
+    }
+
+}
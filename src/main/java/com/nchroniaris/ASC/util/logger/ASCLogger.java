@@ -2,23 +2,39 @@ package com.nchroniaris.ASC.util.logger;
 
 import com.nchroniaris.ASC.util.terminal.ASCTerminal;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.function.Supplier;
 
 /**
  * This class interacts with the filesystem and the standard output to log certain classes of events.
+ * <p>
+ * By default every line is written to the file before the log call returns. In asynchronous mode, lines are instead handed to an AsyncLogWriter, which writes them out in batches on its own thread. In that mode the caller is REQUIRED to close the logger when finished via <code>ASCLogger.close()</code>, otherwise the last lines might not make it to the file.
  */
-public class ASCLogger {
+public class ASCLogger implements AutoCloseable {
 
     private static final String DATETIME_FORMAT = "yyyy-MM-dd  HH:mm:ss";
 
+    // DateTimeFormatter is immutable and thread safe, so there is no need to build one for every line.
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern(ASCLogger.DATETIME_FORMAT);
+
     private final File logFile;
+    private final LogFileWriter fileWriter;
+
+    // This is null unless the logger is in asynchronous mode.
+    private final AsyncLogWriter asyncWriter;
+
+    // Messages below this level are dropped. Volatile so that it can be changed while the program is running.
+    private volatile LogLevel level;
 
-    private ASCTerminal terminal;
+    // An optional binary sink that gets a structured copy of every line, see setJournal(). Volatile for the same reason as the terminal.
+    private volatile EventJournal journal;
+
+    // Volatile instead of guarded by the lock, so that printing to the terminal does not hold up (or wait on) writing to the file.
+    private volatile ASCTerminal terminal;
 
     /**
      * This creates an ASCLogger class that will interact with whatever file is specified by logFilePath
@@ -39,6 +55,35 @@ public class ASCLogger {
      */
     public ASCLogger(String logFilePath, ASCTerminal terminal) {
 
+        this(logFilePath, terminal, false);
+
+    }
+
+    /**
+     * This creates an ASCLogger class that will interact with whatever file is specified by logFilePath, optionally in asynchronous mode.
+     *
+     * @param logFilePath A valid file path that determines the location of a log file. This file need not exist as it will be created if not present.
+     * @param terminal    An ASCTerminal instance that output will be mirrored to. If at any point the terminal is null or closed, mirroring will not occur.
+     * @param async       Whether lines should be written to the file on a background thread instead of by the caller.
+     */
+    public ASCLogger(String logFilePath, ASCTerminal terminal, boolean async) {
+
+        this(logFilePath, terminal, async, 0, false, 0);
+
+    }
+
+    /**
+     * This creates an ASCLogger class that will interact with whatever file is specified by logFilePath, and rotate that file when it gets too big or when the day changes. Rotated files are compressed in the background, and only the newest ones are kept.
+     *
+     * @param logFilePath    A valid file path that determines the location of a log file. This file need not exist as it will be created if not present.
+     * @param terminal       An ASCTerminal instance that output will be mirrored to. If at any point the terminal is null or closed, mirroring will not occur.
+     * @param async          Whether lines should be written to the file on a background thread instead of by the caller.
+     * @param rotateBytes    The size (in bytes) at which the log file is rotated. Use 0 to never rotate by size.
+     * @param rotateDaily    Whether the log file should be rotated when the day changes.
+     * @param retentionCount How many rotated log files to keep. Use 0 to keep all of them.
+     */
+    public ASCLogger(String logFilePath, ASCTerminal terminal, boolean async, long rotateBytes, boolean rotateDaily, int retentionCount) {
+
         if (logFilePath == null)
             throw new IllegalArgumentException("The file path cannot be null!");
 
@@ -57,6 +102,20 @@ public class ASCLogger {
 
         this.terminal = terminal;
 
+        try {
+
+            this.fileWriter = new LogFileWriter(this.logFile, rotateBytes, rotateDaily, retentionCount);
+
+        } catch (IOException e) {
+
+            throw new IllegalArgumentException(String.format("The file path specified (%s) could not be opened for writing: %s", logFilePath, e.getMessage()));
+
+        }
+
+        this.asyncWriter = async ? new AsyncLogWriter(this.fileWriter, ASCLogger.FORMATTER) : null;
+        this.journal = null;
+        this.level = LogLevel.INFO;
+
     }
 
     /**
@@ -64,7 +123,7 @@ public class ASCLogger {
      *
      * @param terminal A valid terminal instance. Cannot be null or closed.
      */
-    public synchronized void setTerminal(ASCTerminal terminal) {
+    public void setTerminal(ASCTerminal terminal) {
 
         if (terminal == null || terminal.isClosed())
             throw new IllegalArgumentException("Specified terminal cannot be null or closed! Please specify a valid open ASCTerminal instance.");
@@ -73,34 +132,110 @@ public class ASCLogger {
 
     }
 
+    /**
+     * Sets the minimum level of the messages that are output. Messages below this level cost next to nothing, especially when logged through the Supplier or parameterized overloads.
+     *
+     * @param level The new level. Cannot be null.
+     */
+    public void setLevel(LogLevel level) {
+
+        if (level == null)
+            throw new IllegalArgumentException("The level argument should NOT be null!");
+
+        this.level = level;
+
+    }
+
+    public LogLevel getLevel() {
+        return level;
+    }
+
+    /**
+     * Attaches an event journal to the logger. From then on, every line that is logged is also appended to the journal, as are the outcomes of events (see journalEvent()). The journal is closed along with the logger.
+     *
+     * @param journal An open EventJournal, or null to detach the current one.
+     */
+    public void setJournal(EventJournal journal) {
+
+        this.journal = journal;
+
+    }
+
+    /**
+     * Appends a structured record about an event to the journal, if one is attached. Nothing is written to the log file or the terminal, since events log their own human readable lines.
+     *
+     * @param level     One of the EventJournal.LEVEL constants.
+     * @param sid       The sid of the server the event belongs to.
+     * @param eventType The eventType id of the event.
+     * @param outcome   The id of the outcome of the event.
+     * @param message   A short description of the event.
+     */
+    public void journalEvent(byte level, int sid, int eventType, int outcome, String message) {
+
+        EventJournal journal = this.journal;
+
+        if (journal != null)
+            journal.append(level, sid, eventType, outcome, message);
+
+    }
+
+    /**
+     * Same as journalEvent(byte, int, int, int, String), but the message is only formatted if a journal is attached. This keeps the event fire path free of formatting when the journal is off.
+     */
+    public void journalEvent(byte level, int sid, int eventType, int outcome, String format, Object arg1, Object arg2) {
+
+        EventJournal journal = this.journal;
+
+        if (journal != null)
+            journal.append(level, sid, eventType, outcome, String.format(format, arg1, arg2));
+
+    }
+
     /**
      * Queries whether the terminal is able to be used. Cases include null, a closed terminal, or an open one. The only case that that terminal is able to be used is when it is NOT null AND open.
      *
-     * @return Status of the terminal object
+     * @return The terminal if it can be used, otherwise null.
      */
-    private synchronized boolean terminalAvailable() {
+    private ASCTerminal availableTerminal() {
+
+        // The field is read once, so that another thread swapping the terminal in between the checks cannot produce a NullPointerException.
+        ASCTerminal terminal = this.terminal;
 
-        // NullPointerException is avoided via the short circuit
-        return (this.terminal != null && !this.terminal.isClosed());
+        return (terminal != null && !terminal.isClosed()) ? terminal : null;
 
     }
 
     /**
-     * General purpose log command that logs to the file specified in construction. This is synchronized to prevent potential weirdness with multiple threads writing to a file at once.
+     * Writes a line to the file specified in construction. In asynchronous mode the line is only published to the writer thread; if the writer has already been closed (for example by a log call during shutdown) the line is written synchronously instead so that it is not lost.
      *
      * @param message The message to output, as a string.
      */
-    private synchronized void log(String message) {
+    private void write(String message) {
 
-        // Each message will have a datetime readout in a particular format, followed by the message
-        message = LocalDateTime.now().format(DateTimeFormatter.ofPattern(ASCLogger.DATETIME_FORMAT)) + " - " + message;
+        if (this.asyncWriter != null && !this.asyncWriter.isClosed()) {
 
-        // Use try with-resources block to create a BufferedWriter using the File object created upon instantiation. We want to append to this file, so we set the append flag to true.
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(this.logFile, true))) {
+            this.asyncWriter.publish(System.currentTimeMillis(), message);
+            return;
 
-            // Since write() just writes the contents of the string to the buffer, we have to call newLine() to output a \n.
-            bw.write(message);
-            bw.newLine();
+        }
+
+        this.logSync(message);
+
+    }
+
+    /**
+     * Writes a line to the log file before returning. The file writer is synchronized, so there is no weirdness with multiple threads writing (or rotating) the file at once.
+     *
+     * @param message The message to output, as a string.
+     */
+    private void logSync(String message) {
+
+        // Each message will have a datetime readout in a particular format, followed by the message. The line separator is part of the same write, so a line is never split across two files by a rotation.
+        message = LocalDateTime.now().format(ASCLogger.FORMATTER) + " - " + message + System.lineSeparator();
+
+        try {
+
+            this.fileWriter.write(message.getBytes(StandardCharsets.UTF_8));
 
         } catch (IOException e) {
 
@@ -111,21 +246,238 @@ public class ASCLogger {
     }
 
     /**
-     * Logs an info style message to the file and standard output. These messages are prepended with "[INFO]". These messages are typically informational, useful for keeping track of what events executed at what time.
+     * Queries whether messages at a certain level are currently output. This is useful to skip expensive work that is only needed for a message, although the Supplier and parameterized overloads of the log methods usually make this unnecessary.
      *
+     * @param level The level to check.
+     * @return true if messages at the level are output, false if they are dropped.
+     */
+    public boolean isEnabled(LogLevel level) {
+
+        return level.compareTo(this.level) >= 0;
+
+    }
+
+    /**
+     * Logs a message at the given level to the file, the journal and the terminal, unless the level is below the logger's level. All the other log methods end up here.
+     *
+     * @param level   The level of the message.
      * @param message The contents of the message.
      */
-    public synchronized void logInfo(String message) {
+    public void log(LogLevel level, String message) {
+
+        if (!this.isEnabled(level))
+            return;
+
+        // The journal gets the message without the prefix, since the level is a field of its own there
+        this.journalEvent(level.getJournalLevel(), EventJournal.NONE, EventJournal.NONE, EventJournal.NONE, message);
 
         // Prepend proper prefix for the message
-        message = "[INFO]:\t" + message;
+        message = level.getPrefix() + message;
 
         // Log to the file
-        this.log(message);
+        this.write(message);
 
         // Print the message using the proper style to the terminal, IF available.
-        if (this.terminalAvailable())
-            this.terminal.printDefault(message);
+        ASCTerminal terminal = this.availableTerminal();
+
+        if (terminal == null)
+            return;
+
+        switch (level) {
+
+            case WARN:
+                terminal.printWarning(message);
+                break;
+
+            case ERROR:
+                terminal.printError(message);
+                break;
+
+            default:
+                terminal.printDefault(message);
+
+        }
+
+    }
+
+    /**
+     * The parameterized log methods end up here. In asynchronous mode, when the line only goes to the file, the format string and its arguments are handed to the writer thread as they are, so the caller does not format (or allocate) anything. Otherwise the message is formatted right away and logged like any other.
+     */
+    private void logFormat(LogLevel level, String format, Object arg1, Object arg2, Object arg3) {
+
+        if (!this.isEnabled(level))
+            return;
+
+        AsyncLogWriter asyncWriter = this.asyncWriter;
+
+        // The journal and the terminal need the finished message, so formatting can only be left to the writer thread if neither of them is there
+        if (asyncWriter != null && !asyncWriter.isClosed() && this.journal == null && this.availableTerminal() == null) {
+
+            asyncWriter.publishFormat(System.currentTimeMillis(), level.getPrefix(), format, arg1, arg2, arg3);
+            return;
+
+        }
+
+        this.log(level, String.format(format, arg1, arg2, arg3));
+
+    }
+
+    /**
+     * Logs a trace style message to the file and standard output. These messages are prepended with "[TRACE]". These messages describe the inner workings of the program in great detail (such as every event that fires), and are off by default.
+     *
+     * @param message The contents of the message.
+     */
+    public void logTrace(String message) {
+
+        this.log(LogLevel.TRACE, message);
+
+    }
+
+    /**
+     * Same as logTrace(String), but the message is only built (by calling the supplier) if it is going to be output.
+     *
+     * @param message A supplier of the contents of the message.
+     */
+    public void logTrace(Supplier<String> message) {
+
+        if (this.isEnabled(LogLevel.TRACE))
+            this.log(LogLevel.TRACE, message.get());
+
+    }
+
+    /**
+     * Same as logTrace(String), but the message is only formatted (using String.format()) if it is going to be output. There are separate overloads for one, two and three arguments, so that no varargs array is allocated for a message that is dropped.
+     *
+     * @param format The format string of the message.
+     * @param arg1   The argument of the format string.
+     */
+    public void logTrace(String format, Object arg1) {
+
+        this.logFormat(LogLevel.TRACE, format, arg1, null, null);
+
+    }
+
+    /**
+     * See logTrace(String, Object).
+     */
+    public void logTrace(String format, Object arg1, Object arg2) {
+
+        this.logFormat(LogLevel.TRACE, format, arg1, arg2, null);
+
+    }
+
+    /**
+     * See logTrace(String, Object).
+     */
+    public void logTrace(String format, Object arg1, Object arg2, Object arg3) {
+
+        this.logFormat(LogLevel.TRACE, format, arg1, arg2, arg3);
+
+    }
+
+    /**
+     * Logs a debug style message to the file and standard output. These messages are prepended with "[DEBUG]". These messages are useful to diagnose a problem, but are too noisy for everyday use, so they are off by default.
+     *
+     * @param message The contents of the message.
+     */
+    public void logDebug(String message) {
+
+        this.log(LogLevel.DEBUG, message);
+
+    }
+
+    /**
+     * Same as logDebug(String), but the message is only built (by calling the supplier) if it is going to be output.
+     *
+     * @param message A supplier of the contents of the message.
+     */
+    public void logDebug(Supplier<String> message) {
+
+        if (this.isEnabled(LogLevel.DEBUG))
+            this.log(LogLevel.DEBUG, message.get());
+
+    }
+
+    /**
+     * Same as logDebug(String), but the message is only formatted (using String.format()) if it is going to be output. There are separate overloads for one, two and three arguments, so that no varargs array is allocated for a message that is dropped.
+     *
+     * @param format The format string of the message.
+     * @param arg1   The argument of the format string.
+     */
+    public void logDebug(String format, Object arg1) {
+
+        this.logFormat(LogLevel.DEBUG, format, arg1, null, null);
+
+    }
+
+    /**
+     * See logDebug(String, Object).
+     */
+    public void logDebug(String format, Object arg1, Object arg2) {
+
+        this.logFormat(LogLevel.DEBUG, format, arg1, arg2, null);
+
+    }
+
+    /**
+     * See logDebug(String, Object).
+     */
+    public void logDebug(String format, Object arg1, Object arg2, Object arg3) {
+
+        this.logFormat(LogLevel.DEBUG, format, arg1, arg2, arg3);
+
+    }
+
+    /**
+     * Logs an info style message to the file and standard output. These messages are prepended with "[INFO]". These messages are typically informational, useful for keeping track of what events executed at what time.
+     *
+     * @param message The contents of the message.
+     */
+    public void logInfo(String message) {
+
+        this.log(LogLevel.INFO, message);
+
+    }
+
+    /**
+     * Same as logInfo(String), but the message is only built (by calling the supplier) if it is going to be output.
+     *
+     * @param message A supplier of the contents of the message.
+     */
+    public void logInfo(Supplier<String> message) {
+
+        if (this.isEnabled(LogLevel.INFO))
+            this.log(LogLevel.INFO, message.get());
+
+    }
+
+    /**
+     * Same as logInfo(String), but the message is only formatted (using String.format()) if it is going to be output. There are separate overloads for one, two and three arguments, so that no varargs array is allocated for a message that is dropped.
+     *
+     * @param format The format string of the message.
+     * @param arg1   The argument of the format string.
+     */
+    public void logInfo(String format, Object arg1) {
+
+        this.logFormat(LogLevel.INFO, format, arg1, null, null);
+
+    }
+
+    /**
+     * See logInfo(String, Object).
+     */
+    public void logInfo(String format, Object arg1, Object arg2) {
+
+        this.logFormat(LogLevel.INFO, format, arg1, arg2, null);
+
+    }
+
+    /**
+     * See logInfo(String, Object).
+     */
+    public void logInfo(String format, Object arg1, Object arg2, Object arg3) {
+
+        this.logFormat(LogLevel.INFO, format, arg1, arg2, arg3);
 
     }
 
@@ -134,17 +486,51 @@ public class ASCLogger {
      *
      * @param message The contents of the message.
      */
-    public synchronized void logWarning(String message) {
+    public void logWarning(String message) {
 
-        // Prepend proper prefix for the message
-        message = "[WARN]:\t" + message;
+        this.log(LogLevel.WARN, message);
 
-        // Log to the file
-        this.log(message);
+    }
 
-        // Print the message using the proper style to the terminal, IF available.
-        if (this.terminalAvailable())
-            this.terminal.printWarning(message);
+    /**
+     * Same as logWarning(String), but the message is only built (by calling the supplier) if it is going to be output.
+     *
+     * @param message A supplier of the contents of the message.
+     */
+    public void logWarning(Supplier<String> message) {
+
+        if (this.isEnabled(LogLevel.WARN))
+            this.log(LogLevel.WARN, message.get());
+
+    }
+
+    /**
+     * Same as logWarning(String), but the message is only formatted (using String.format()) if it is going to be output. There are separate overloads for one, two and three arguments, so that no varargs array is allocated for a message that is dropped.
+     *
+     * @param format The format string of the message.
+     * @param arg1   The argument of the format string.
+     */
+    public void logWarning(String format, Object arg1) {
+
+        this.logFormat(LogLevel.WARN, format, arg1, null, null);
+
+    }
+
+    /**
+     * See logWarning(String, Object).
+     */
+    public void logWarning(String format, Object arg1, Object arg2) {
+
+        this.logFormat(LogLevel.WARN, format, arg1, arg2, null);
+
+    }
+
+    /**
+     * See logWarning(String, Object).
+     */
+    public void logWarning(String format, Object arg1, Object arg2, Object arg3) {
+
+        this.logFormat(LogLevel.WARN, format, arg1, arg2, arg3);
 
     }
 
@@ -153,17 +539,78 @@ public class ASCLogger {
      *
      * @param message The contents of the message.
      */
-    public synchronized void logError(String message) {
+    public void logError(String message) {
 
-        // Prepend proper prefix for the message
-        message = "[CRIT]:\t" + message;
+        this.log(LogLevel.ERROR, message);
 
-        // Log to the file
-        this.log(message);
+    }
 
-        // Print the message using the proper style to the terminal, IF available.
-        if (this.terminalAvailable())
-            this.terminal.printError(message);
+    /**
+     * Same as logError(String), but the message is only built (by calling the supplier) if it is going to be output.
+     *
+     * @param message A supplier of the contents of the message.
+     */
+    public void logError(Supplier<String> message) {
+
+        if (this.isEnabled(LogLevel.ERROR))
+            this.log(LogLevel.ERROR, message.get());
+
+    }
+
+    /**
+     * Same as logError(String), but the message is only formatted (using String.format()) if it is going to be output. There are separate overloads for one, two and three arguments, so that no varargs array is allocated for a message that is dropped.
+     *
+     * @param format The format string of the message.
+     * @param arg1   The argument of the format string.
+     */
+    public void logError(String format, Object arg1) {
+
+        this.logFormat(LogLevel.ERROR, format, arg1, null, null);
+
+    }
+
+    /**
+     * See logError(String, Object).
+     */
+    public void logError(String format, Object arg1, Object arg2) {
+
+        this.logFormat(LogLevel.ERROR, format, arg1, arg2, null);
+
+    }
+
+    /**
+     * See logError(String, Object).
+     */
+    public void logError(String format, Object arg1, Object arg2, Object arg3) {
+
+        this.logFormat(LogLevel.ERROR, format, arg1, arg2, arg3);
+
+    }
+
+    /**
+     * Gets the number of lines waiting to be written by the writer thread. This is meant for monitoring: a queue that keeps growing means that the disk cannot keep up, and lines are about to be dropped.
+     *
+     * @return The approximate number of queued lines, or 0 in synchronous mode.
+     */
+    public int getQueueDepth() {
+
+        return (this.asyncWriter != null) ? this.asyncWriter.getQueueDepth() : 0;
+
+    }
+
+    /**
+     * In asynchronous mode, waits (for a bounded amount of time) for the writer thread to write out the lines that are still queued. Lines logged after this are written synchronously. The journal, if any, is closed, and lines logged after this no longer make it there. Calling this more than once has no additional effect.
+     */
+    @Override
+    public void close() {
+
+        if (this.asyncWriter != null)
+            this.asyncWriter.close();
+
+        EventJournal journal = this.journal;
+
+        if (journal != null)
+            journal.close();
 
     }
 
@@ -0,0 +1,388 @@
+package com.nchroniaris.ASC.util.logger;
+
+import com.nchroniaris.ASC.util.concurrent.RingSequence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.IllegalFormatException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This is the backend of ASCLogger's asynchronous mode. Any number of threads can publish lines into a bounded ring buffer without taking a lock, and a single background thread takes them out, formats them and writes them to the log file (through a LogFileWriter) in batches.
+ * <p>
+ * Publishing is a compare-and-set on a counter and a few array stores, so it never waits on the disk. Lines can also be published as a format string and its arguments, in which case the writer thread does the formatting, and logging a line does not allocate anything on the caller's side. If the disk is so slow that the buffer fills up, lines are dropped (and counted) instead of blocking the caller. The number of dropped lines is written to the log as soon as there is room again.
+ * <p>
+ * The positions of the ring buffer are kept by a RingSequence, and the lines themselves in plain arrays indexed by slot.
+ */
+class AsyncLogWriter implements AutoCloseable {
+
+    // Number of lines the buffer can hold. This must be a power of two (see RingSequence).
+    private static final int CAPACITY = 8192;
+
+    // Formatted lines are gathered in a buffer of this size, which is written out whenever it fills up...
+    private static final int BATCH_BYTES = 64 * 1024;
+
+    // ...or when the oldest line in it has been waiting this long.
+    private static final long FLUSH_INTERVAL_NANOS = 200_000_000L;
+
+    // How long the writer thread sleeps when there is nothing to do. Producers never wake it up, since that would cost them a system call.
+    private static final long IDLE_PARK_NANOS = 10_000_000L;
+
+    // How long close() waits for the writer thread to write out the remaining lines
+    private static final long CLOSE_TIMEOUT_MS = 5000;
+
+    private final DateTimeFormatter formatter;
+    private final LogFileWriter fileWriter;
+
+    // The ring buffer
+    private final RingSequence sequence;
+    private final long[] timestamps;
+    private final String[] messages;
+
+    // For lines published with publishFormat(), the level prefix and the arguments of the format string (which is in messages). The prefix is null for lines that are already formatted.
+    private final String[] prefixes;
+    private final Object[] firstArgs;
+    private final Object[] secondArgs;
+    private final Object[] thirdArgs;
+
+    // The consumer's position, which is only touched by the writer thread, so it does not need to be atomic
+    private long head;
+
+    // A copy of head that other threads can read, for getQueueDepth(). It is only updated once per pass over the buffer, so that the writer thread does not pay for a volatile store on every line.
+    private final AtomicLong published;
+
+    private final AtomicLong droppedLines;
+
+    private final Thread writerThread;
+    private volatile boolean closed;
+
+    /**
+     * Starts the writer thread.
+     *
+     * @param fileWriter The log file to write to. It is shared with the synchronous path, so it is not closed by this class.
+     * @param formatter  The format of the timestamp that every line is prefixed with.
+     */
+    AsyncLogWriter(LogFileWriter fileWriter, DateTimeFormatter formatter) {
+
+        this.formatter = formatter;
+        this.fileWriter = fileWriter;
+
+        this.sequence = new RingSequence(AsyncLogWriter.CAPACITY);
+        this.timestamps = new long[AsyncLogWriter.CAPACITY];
+        this.messages = new String[AsyncLogWriter.CAPACITY];
+
+        this.prefixes = new String[AsyncLogWriter.CAPACITY];
+        this.firstArgs = new Object[AsyncLogWriter.CAPACITY];
+        this.secondArgs = new Object[AsyncLogWriter.CAPACITY];
+        this.thirdArgs = new Object[AsyncLogWriter.CAPACITY];
+
+        this.head = 0;
+        this.published = new AtomicLong(0);
+
+        this.droppedLines = new AtomicLong(0);
+        this.closed = false;
+
+        // Like the history writer, this is a daemon so that it does not keep the JVM alive if nobody closes it.
+        this.writerThread = new Thread(this::writeLoop, "ASC-log-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+
+    }
+
+    /**
+     * Publishes a line to be written. This never blocks.
+     *
+     * @param timestamp The time the line was logged, in milliseconds since the epoch. The line is formatted on the writer thread, so the caller only has to read the clock.
+     * @param message   The line, without a timestamp or line separator.
+     * @return true if the line was accepted, false if it was dropped because the buffer is full.
+     */
+    boolean publish(long timestamp, String message) {
+
+        long position = this.sequence.claim();
+
+        if (position < 0) {
+
+            this.droppedLines.incrementAndGet();
+            return false;
+
+        }
+
+        int slot = this.sequence.slot(position);
+
+        this.timestamps[slot] = timestamp;
+        this.messages[slot] = message;
+
+        // The writer thread sees the stores above once it sees the position as published
+        this.sequence.publish(position);
+
+        return true;
+
+    }
+
+    /**
+     * Publishes a line to be formatted (with String.format()) and written by the writer thread. This never blocks, and does not allocate anything. Since the arguments are only read later, on another thread, they must not change after this call, which is the case for strings and boxed primitives.
+     *
+     * @param timestamp The time the line was logged, in milliseconds since the epoch.
+     * @param prefix    The level prefix that goes in front of the formatted message.
+     * @param format    The format string of the message.
+     * @param arg1      The first argument of the format string, or null.
+     * @param arg2      The second argument of the format string, or null.
+     * @param arg3      The third argument of the format string, or null.
+     * @return true if the line was accepted, false if it was dropped because the buffer is full.
+     */
+    boolean publishFormat(long timestamp, String prefix, String format, Object arg1, Object arg2, Object arg3) {
+
+        long position = this.sequence.claim();
+
+        if (position < 0) {
+
+            this.droppedLines.incrementAndGet();
+            return false;
+
+        }
+
+        int slot = this.sequence.slot(position);
+
+        this.timestamps[slot] = timestamp;
+        this.messages[slot] = format;
+        this.prefixes[slot] = prefix;
+        this.firstArgs[slot] = arg1;
+        this.secondArgs[slot] = arg2;
+        this.thirdArgs[slot] = arg3;
+
+        this.sequence.publish(position);
+
+        return true;
+
+    }
+
+    /**
+     * Gets the number of lines that have been published but not yet taken out of the buffer by the writer thread. This is only approximate, since both ends keep moving while it is read.
+     *
+     * @return The number of queued lines, between 0 and the capacity of the buffer.
+     */
+    int getQueueDepth() {
+
+        return (int) Math.max(this.sequence.getTail() - this.published.get(), 0);
+
+    }
+
+    /**
+     * The main loop of the writer thread. It drains the ring buffer into a byte buffer and writes that out whenever it is full or old enough.
+     */
+    private void writeLoop() {
+
+        ByteBuffer batch = ByteBuffer.allocateDirect(AsyncLogWriter.BATCH_BYTES);
+
+        // When the oldest unwritten line was added to the batch
+        long pendingSince = 0;
+
+        // Timestamps only have a resolution of a second, so consecutive lines usually share the same prefix. We only format it again when the second changes.
+        long prefixSecond = Long.MIN_VALUE;
+        String prefix = "";
+
+        // We keep going after close() until the buffer is empty, so that lines logged right before shutdown are not lost.
+        while (true) {
+
+            boolean drained = false;
+
+            while (this.sequence.isPublished(this.head)) {
+
+                int slot = this.sequence.slot(this.head);
+
+                long second = Math.floorDiv(this.timestamps[slot], 1000L);
+
+                if (second != prefixSecond) {
+
+                    prefixSecond = second;
+                    prefix = LocalDateTime.ofInstant(Instant.ofEpochSecond(second), ZoneId.systemDefault()).format(this.formatter) + " - ";
+
+                }
+
+                String message = this.messages[slot];
+
+                if (this.prefixes[slot] != null)
+                    message = AsyncLogWriter.format(this.prefixes[slot], message, this.firstArgs[slot], this.secondArgs[slot], this.thirdArgs[slot]);
+
+                byte[] line = (prefix + message + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+
+                // Release the slot for the producers, one lap ahead. The references are cleared so that the buffer does not keep the arguments alive.
+                this.messages[slot] = null;
+                this.prefixes[slot] = null;
+                this.firstArgs[slot] = null;
+                this.secondArgs[slot] = null;
+                this.thirdArgs[slot] = null;
+                this.sequence.release(this.head++);
+
+                if (batch.position() == 0)
+                    pendingSince = System.nanoTime();
+
+                this.append(batch, line);
+                drained = true;
+
+            }
+
+            this.published.lazySet(this.head);
+
+            long dropped = this.droppedLines.getAndSet(0);
+
+            if (dropped > 0) {
+
+                if (batch.position() == 0)
+                    pendingSince = System.nanoTime();
+
+                this.append(batch, String.format("%s[WARN]:\t%d log lines were dropped because the log buffer was full!%n", prefix, dropped).getBytes(StandardCharsets.UTF_8));
+
+            }
+
+            if (batch.position() > 0 && (this.closed || System.nanoTime() - pendingSince >= AsyncLogWriter.FLUSH_INTERVAL_NANOS))
+                this.flush(batch);
+
+            if (!drained) {
+
+                // The closed flag is checked after an empty drain, so anything published before close() has been picked up by now.
+                if (this.closed)
+                    break;
+
+                LockSupport.parkNanos(this, AsyncLogWriter.IDLE_PARK_NANOS);
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Formats a line that was published with publishFormat(). This runs on the writer thread, where an exception would stop the logging for good, so a line that cannot be formatted is written with its raw format string and arguments instead, behind a warning.
+     */
+    private static String format(String prefix, String format, Object arg1, Object arg2, Object arg3) {
+
+        try {
+
+            return prefix + String.format(format, arg1, arg2, arg3);
+
+        } catch (IllegalFormatException e) {
+
+            return AsyncLogWriter.unformatted("its format string does not match its arguments (" + e + ")", prefix, format, arg1, arg2, arg3);
+
+        } catch (RuntimeException e) {
+
+            // Such as the toString() of an argument throwing
+            return AsyncLogWriter.unformatted("one of its arguments could not be formatted (" + e + ")", prefix, format, arg1, arg2, arg3);
+
+        }
+
+    }
+
+    private static String unformatted(String reason, String prefix, String format, Object arg1, Object arg2, Object arg3) {
+
+        return "[WARN]:\tA log line could not be formatted because " + reason + ", so here it is as is: " + prefix + format + " [" + AsyncLogWriter.describe(arg1) + ", " + AsyncLogWriter.describe(arg2) + ", " + AsyncLogWriter.describe(arg3) + "]";
+
+    }
+
+    /**
+     * Turns an argument into a string without trusting its toString(), which may be the reason the line could not be formatted in the first place.
+     */
+    private static String describe(Object arg) {
+
+        try {
+
+            return String.valueOf(arg);
+
+        } catch (RuntimeException e) {
+
+            return arg.getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(arg));
+
+        }
+
+    }
+
+    /**
+     * Adds a line to the batch, writing the batch out first if the line does not fit. A line that is bigger than the whole batch is written directly.
+     */
+    private void append(ByteBuffer batch, byte[] line) {
+
+        if (line.length > batch.remaining())
+            this.flush(batch);
+
+        if (line.length > batch.capacity()) {
+
+            this.write(ByteBuffer.wrap(line));
+            return;
+
+        }
+
+        batch.put(line);
+
+    }
+
+    private void flush(ByteBuffer batch) {
+
+        batch.flip();
+        this.write(batch);
+        batch.clear();
+
+    }
+
+    private void write(ByteBuffer buffer) {
+
+        try {
+
+            this.fileWriter.write(buffer);
+
+        } catch (IOException e) {
+
+            // Same as the synchronous path: there is nowhere else to log this to, so it is printed and the batch is lost.
+            e.printStackTrace();
+
+        }
+
+    }
+
+    boolean isClosed() {
+
+        return this.closed;
+
+    }
+
+    /**
+     * Stops the writer thread after it has written out every line that was published before this call, then forces the file to the disk. Calling this more than once has no additional effect.
+     */
+    @Override
+    public synchronized void close() {
+
+        if (this.closed)
+            return;
+
+        this.closed = true;
+        LockSupport.unpark(this.writerThread);
+
+        try {
+
+            this.writerThread.join(AsyncLogWriter.CLOSE_TIMEOUT_MS);
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+
+        }
+
+        try {
+
+            this.fileWriter.force();
+
+        } catch (IOException e) {
+
+            e.printStackTrace();
+
+        }
+
+    }
+
+}
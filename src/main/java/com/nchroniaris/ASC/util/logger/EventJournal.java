@@ -0,0 +1,247 @@
+package com.nchroniaris.ASC.util.logger;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A structured, binary logging sink. Every entry is a fixed size record (timestamp, level, sid, event type, outcome and the location of its message) appended to a memory-mapped record file, while the text of the messages goes to a separate, also memory-mapped, message file. Since every record has the same layout, a tool like JournalReader can filter millions of them by server or time range by looking at a few bytes of each, without parsing any text.
+ * <p>
+ * Appending is a handful of stores into the mapping; the operating system writes the pages out on its own, so no system call is made per entry. Records are always appended in timestamp order, which lets readers binary search by time.
+ * <p>
+ * Record file layout (all values big endian):
+ * <pre>
+ * header (32 bytes):  int magic | int version | int recordBytes | int reserved | long recordCount | long messageBytes
+ * record (32 bytes):  long timestamp (ms since epoch) | long messageOffset | int messageLength | int sid | int eventType | byte level | byte outcome | 2 bytes padding
+ * </pre>
+ * The counts in the header are updated after each record is complete, so a reader never sees a half written record. Fields that do not apply to an entry (such as the sid of a general log line) are set to NONE.
+ */
+public class EventJournal implements AutoCloseable {
+
+    // The verbose levels were added later, which is why they come after the others
+    public static final byte LEVEL_INFO = 1;
+    public static final byte LEVEL_WARN = 2;
+    public static final byte LEVEL_ERROR = 3;
+    public static final byte LEVEL_DEBUG = 4;
+    public static final byte LEVEL_TRACE = 5;
+
+    // Value of the sid, eventType and outcome fields when they do not apply
+    public static final int NONE = -1;
+
+    // Suffix of the message file, which sits next to the record file
+    public static final String SUFFIX_MESSAGES = ".msg";
+
+    static final int MAGIC = 0x41534A4C;
+    static final int VERSION = 1;
+
+    static final int HEADER_BYTES = 32;
+    static final int RECORD_BYTES = 32;
+
+    // Offsets within the header
+    static final int HEADER_MAGIC = 0;
+    static final int HEADER_VERSION = 4;
+    static final int HEADER_RECORD_BYTES = 8;
+    static final int HEADER_RECORD_COUNT = 16;
+    static final int HEADER_MESSAGE_BYTES = 24;
+
+    // Offsets within a record
+    static final int RECORD_TIMESTAMP = 0;
+    static final int RECORD_MESSAGE_OFFSET = 8;
+    static final int RECORD_MESSAGE_LENGTH = 16;
+    static final int RECORD_SID = 20;
+    static final int RECORD_EVENT_TYPE = 24;
+    static final int RECORD_LEVEL = 28;
+    static final int RECORD_OUTCOME = 29;
+
+    // Both files start mapped at these sizes and double whenever they fill up. A single mapping is limited to 2 GiB, which is about 67 million records.
+    private static final long INITIAL_RECORD_MAPPING = EventJournal.HEADER_BYTES + 65536L * EventJournal.RECORD_BYTES;
+    private static final long INITIAL_MESSAGE_MAPPING = 4L * 1024 * 1024;
+    private static final long MAX_MAPPING = Integer.MAX_VALUE;
+
+    private final FileChannel recordChannel;
+    private final FileChannel messageChannel;
+
+    private MappedByteBuffer records;
+    private MappedByteBuffer messages;
+
+    private long recordCount;
+    private long messageBytes;
+    private long lastTimestamp;
+
+    private boolean full;
+    private boolean closed;
+
+    /**
+     * Opens a journal for appending, creating it if it does not exist.
+     *
+     * @param path The path of the record file. The message file is the same path with SUFFIX_MESSAGES appended.
+     * @throws IOException If either file could not be opened or mapped, or if the record file is not a journal.
+     */
+    public EventJournal(String path) throws IOException {
+
+        Path recordPath = Paths.get(path);
+
+        this.recordChannel = FileChannel.open(recordPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.messageChannel = FileChannel.open(Paths.get(path + EventJournal.SUFFIX_MESSAGES), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        boolean existing = this.recordChannel.size() >= EventJournal.HEADER_BYTES;
+
+        this.records = this.map(this.recordChannel, Math.max(this.recordChannel.size(), EventJournal.INITIAL_RECORD_MAPPING));
+        this.messages = this.map(this.messageChannel, Math.max(this.messageChannel.size(), EventJournal.INITIAL_MESSAGE_MAPPING));
+
+        if (existing) {
+
+            if (this.records.getInt(EventJournal.HEADER_MAGIC) != EventJournal.MAGIC || this.records.getInt(EventJournal.HEADER_VERSION) != EventJournal.VERSION || this.records.getInt(EventJournal.HEADER_RECORD_BYTES) != EventJournal.RECORD_BYTES)
+                throw new IOException(String.format("The file %s is not an event journal, or was written by an incompatible version!", path));
+
+            this.recordCount = this.records.getLong(EventJournal.HEADER_RECORD_COUNT);
+            this.messageBytes = this.records.getLong(EventJournal.HEADER_MESSAGE_BYTES);
+
+        } else {
+
+            this.records.putInt(EventJournal.HEADER_MAGIC, EventJournal.MAGIC);
+            this.records.putInt(EventJournal.HEADER_VERSION, EventJournal.VERSION);
+            this.records.putInt(EventJournal.HEADER_RECORD_BYTES, EventJournal.RECORD_BYTES);
+
+            this.recordCount = 0;
+            this.messageBytes = 0;
+
+            this.records.putLong(EventJournal.HEADER_RECORD_COUNT, 0);
+            this.records.putLong(EventJournal.HEADER_MESSAGE_BYTES, 0);
+
+        }
+
+        this.lastTimestamp = (this.recordCount > 0) ? this.records.getLong(this.recordPosition(this.recordCount - 1) + EventJournal.RECORD_TIMESTAMP) : Long.MIN_VALUE;
+
+        this.full = false;
+        this.closed = false;
+
+    }
+
+    private MappedByteBuffer map(FileChannel channel, long size) throws IOException {
+
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.min(size, EventJournal.MAX_MAPPING));
+        buffer.order(ByteOrder.BIG_ENDIAN);
+
+        return buffer;
+
+    }
+
+    private int recordPosition(long index) {
+
+        return (int) (EventJournal.HEADER_BYTES + index * EventJournal.RECORD_BYTES);
+
+    }
+
+    /**
+     * Appends an entry to the journal. If the journal is closed or has reached the maximum mapping size, the entry is silently dropped.
+     *
+     * @param level     One of the LEVEL constants.
+     * @param sid       The sid of the server the entry is about, or NONE.
+     * @param eventType The eventType id of the event the entry is about, or NONE.
+     * @param outcome   The id of the outcome of the event, or NONE.
+     * @param message   A human readable message. This is stored separately, so it does not slow down scanning the records.
+     */
+    public synchronized void append(byte level, int sid, int eventType, int outcome, String message) {
+
+        if (this.closed || this.full)
+            return;
+
+        byte[] text = (message == null) ? new byte[0] : message.getBytes(StandardCharsets.UTF_8);
+
+        try {
+
+            // Grow the mappings if needed. Mapping a region past the end of a file extends the file.
+            while (this.recordPosition(this.recordCount + 1) > this.records.capacity())
+                this.records = this.grow(this.recordChannel, this.records);
+
+            while (this.messageBytes + text.length > this.messages.capacity())
+                this.messages = this.grow(this.messageChannel, this.messages);
+
+        } catch (IOException e) {
+
+            System.err.println("[WARNING] The event journal could not be extended and will stop recording: " + e.getMessage());
+            this.full = true;
+            return;
+
+        }
+
+        // The timestamp is taken while holding the lock and is never allowed to go backwards (for example if the system clock is adjusted), so that the records stay sorted by time.
+        long timestamp = Math.max(System.currentTimeMillis(), this.lastTimestamp);
+        this.lastTimestamp = timestamp;
+
+        this.messages.position((int) this.messageBytes);
+        this.messages.put(text);
+
+        int position = this.recordPosition(this.recordCount);
+
+        this.records.putLong(position + EventJournal.RECORD_TIMESTAMP, timestamp);
+        this.records.putLong(position + EventJournal.RECORD_MESSAGE_OFFSET, this.messageBytes);
+        this.records.putInt(position + EventJournal.RECORD_MESSAGE_LENGTH, text.length);
+        this.records.putInt(position + EventJournal.RECORD_SID, sid);
+        this.records.putInt(position + EventJournal.RECORD_EVENT_TYPE, eventType);
+        this.records.put(position + EventJournal.RECORD_LEVEL, level);
+        this.records.put(position + EventJournal.RECORD_OUTCOME, (byte) outcome);
+
+        this.recordCount++;
+        this.messageBytes += text.length;
+
+        // The counts are published last, so the record (and its message) are complete by the time a reader can see them.
+        this.records.putLong(EventJournal.HEADER_MESSAGE_BYTES, this.messageBytes);
+        this.records.putLong(EventJournal.HEADER_RECORD_COUNT, this.recordCount);
+
+    }
+
+    private MappedByteBuffer grow(FileChannel channel, MappedByteBuffer current) throws IOException {
+
+        if (current.capacity() >= EventJournal.MAX_MAPPING)
+            throw new IOException("the journal has reached its maximum size");
+
+        return this.map(channel, (long) current.capacity() * 2);
+
+    }
+
+    /**
+     * Returns the number of records in the journal.
+     *
+     * @return The number of records.
+     */
+    public synchronized long size() {
+
+        return this.recordCount;
+
+    }
+
+    /**
+     * Writes the mapped pages of both files to the disk and closes the files. Entries appended after this are dropped. Calling this more than once has no additional effect.
+     */
+    @Override
+    public synchronized void close() {
+
+        if (this.closed)
+            return;
+
+        this.closed = true;
+
+        try {
+
+            this.records.force();
+            this.messages.force();
+
+            this.recordChannel.close();
+            this.messageChannel.close();
+
+        } catch (IOException e) {
+
+            e.printStackTrace();
+
+        }
+
+    }
+
+}
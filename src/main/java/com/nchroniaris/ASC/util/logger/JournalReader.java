@@ -0,0 +1,269 @@
+package com.nchroniaris.ASC.util.logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Reads an EventJournal by mapping its files read-only and looking at the records directly. Since the records are sorted by time, the start of a time range is found with a binary search, and filtering by server only has to compare one int per record.
+ * <p>
+ * This class also doubles as a command line tool (see main()), which can be run against the journal of a live client: it only ever sees the records that were complete when it started.
+ */
+public class JournalReader implements AutoCloseable {
+
+    private static final String USAGE_STRING = "java -cp ASC-client.jar com.nchroniaris.ASC.util.logger.JournalReader [--sid <sid>] [--from <datetime>] [--to <datetime>] [--count] <journal>";
+
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd  HH:mm:ss.SSS");
+
+    private final FileChannel recordChannel;
+    private final FileChannel messageChannel;
+
+    private final MappedByteBuffer records;
+    private final MappedByteBuffer messages;
+
+    private final long size;
+
+    /**
+     * Opens a journal for reading.
+     *
+     * @param path The path of the record file, as given to EventJournal.
+     * @throws IOException If either file could not be opened or mapped, or if the record file is not a journal.
+     */
+    public JournalReader(String path) throws IOException {
+
+        this.recordChannel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+        this.messageChannel = FileChannel.open(Paths.get(path + EventJournal.SUFFIX_MESSAGES), StandardOpenOption.READ);
+
+        if (this.recordChannel.size() < EventJournal.HEADER_BYTES)
+            throw new IOException(String.format("The file %s is not an event journal!", path));
+
+        this.records = this.recordChannel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(this.recordChannel.size(), Integer.MAX_VALUE));
+        this.messages = this.messageChannel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(this.messageChannel.size(), Integer.MAX_VALUE));
+
+        this.records.order(ByteOrder.BIG_ENDIAN);
+
+        if (this.records.getInt(EventJournal.HEADER_MAGIC) != EventJournal.MAGIC || this.records.getInt(EventJournal.HEADER_VERSION) != EventJournal.VERSION || this.records.getInt(EventJournal.HEADER_RECORD_BYTES) != EventJournal.RECORD_BYTES)
+            throw new IOException(String.format("The file %s is not an event journal, or was written by an incompatible version!", path));
+
+        // The count is read once, so that records appended by a live writer while we are reading do not change the results halfway through.
+        this.size = this.records.getLong(EventJournal.HEADER_RECORD_COUNT);
+
+    }
+
+    private int position(long index) {
+
+        return (int) (EventJournal.HEADER_BYTES + index * EventJournal.RECORD_BYTES);
+
+    }
+
+    public long size() {
+        return this.size;
+    }
+
+    public long getTimestamp(long index) {
+        return this.records.getLong(this.position(index) + EventJournal.RECORD_TIMESTAMP);
+    }
+
+    public byte getLevel(long index) {
+        return this.records.get(this.position(index) + EventJournal.RECORD_LEVEL);
+    }
+
+    public int getSid(long index) {
+        return this.records.getInt(this.position(index) + EventJournal.RECORD_SID);
+    }
+
+    public int getEventType(long index) {
+        return this.records.getInt(this.position(index) + EventJournal.RECORD_EVENT_TYPE);
+    }
+
+    public int getOutcome(long index) {
+        return this.records.get(this.position(index) + EventJournal.RECORD_OUTCOME);
+    }
+
+    /**
+     * Decodes the message of a record. This is the only accessor that allocates, so filters should be applied before calling it.
+     *
+     * @param index The index of the record.
+     * @return The message of the record.
+     */
+    public String getMessage(long index) {
+
+        int position = this.position(index);
+
+        byte[] text = new byte[this.records.getInt(position + EventJournal.RECORD_MESSAGE_LENGTH)];
+
+        // A duplicate has its own position, so reading through it does not disturb other readers of the mapping
+        ByteBuffer view = this.messages.duplicate();
+        view.position((int) this.records.getLong(position + EventJournal.RECORD_MESSAGE_OFFSET));
+        view.get(text);
+
+        return new String(text, StandardCharsets.UTF_8);
+
+    }
+
+    /**
+     * Finds the first record with a timestamp at or after the given one.
+     *
+     * @param timestamp A time in milliseconds since the epoch.
+     * @return The index of the first record at or after the time, or size() if there is none.
+     */
+    public long firstAtOrAfter(long timestamp) {
+
+        long low = 0;
+        long high = this.size;
+
+        while (low < high) {
+
+            long middle = (low + high) >>> 1;
+
+            if (this.getTimestamp(middle) < timestamp)
+                low = middle + 1;
+            else
+                high = middle;
+
+        }
+
+        return low;
+
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        this.recordChannel.close();
+        this.messageChannel.close();
+
+    }
+
+    /**
+     * Prints the records of a journal that match the given filters, or just the number of them.
+     *
+     * @param args See USAGE_STRING. Date times are in ISO format (2020-08-22T13:00:00), in the local timezone.
+     */
+    public static void main(String[] args) {
+
+        String path = null;
+        int sid = EventJournal.NONE;
+        long from = Long.MIN_VALUE;
+        long to = Long.MAX_VALUE;
+        boolean countOnly = false;
+
+        try {
+
+            for (int i = 0; i < args.length; i++) {
+
+                switch (args[i]) {
+
+                    case "--sid":
+                        sid = Integer.parseInt(args[++i]);
+                        break;
+
+                    case "--from":
+                        from = JournalReader.parseDateTime(args[++i]);
+                        break;
+
+                    case "--to":
+                        to = JournalReader.parseDateTime(args[++i]);
+                        break;
+
+                    case "--count":
+                        countOnly = true;
+                        break;
+
+                    default:
+                        if (path != null || args[i].startsWith("-"))
+                            throw new IllegalArgumentException(String.format("Unrecognized option '%s'", args[i]));
+
+                        path = args[i];
+
+                }
+
+            }
+
+            if (path == null)
+                throw new IllegalArgumentException("No journal was specified");
+
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+
+            System.out.printf("%s%nUsage: %s%n", e.getMessage(), JournalReader.USAGE_STRING);
+            return;
+
+        }
+
+        try (JournalReader reader = new JournalReader(path)) {
+
+            long matches = 0;
+
+            // Start at the first record in the range, and stop at the first one past it. Everything in between is only compared by sid.
+            for (long i = reader.firstAtOrAfter(from); i < reader.size(); i++) {
+
+                long timestamp = reader.getTimestamp(i);
+
+                if (timestamp > to)
+                    break;
+
+                if (sid != EventJournal.NONE && reader.getSid(i) != sid)
+                    continue;
+
+                matches++;
+
+                if (!countOnly)
+                    System.out.printf("%s  %-5s  sid=%d  etype=%d  outcome=%d  %s%n", LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault()).format(JournalReader.FORMATTER), JournalReader.levelString(reader.getLevel(i)), reader.getSid(i), reader.getEventType(i), reader.getOutcome(i), reader.getMessage(i));
+
+            }
+
+            if (countOnly)
+                System.out.println(matches);
+
+        } catch (IOException e) {
+
+            System.err.printf("[CRITICAL] Could not read the journal (%s): %s%n", path, e.getMessage());
+            System.exit(1);
+
+        }
+
+    }
+
+    private static long parseDateTime(String dateTime) {
+
+        return LocalDateTime.parse(dateTime).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+    }
+
+    private static String levelString(byte level) {
+
+        switch (level) {
+
+            case EventJournal.LEVEL_INFO:
+                return "INFO";
+
+            case EventJournal.LEVEL_WARN:
+                return "WARN";
+
+            case EventJournal.LEVEL_ERROR:
+                return "CRIT";
+
+            case EventJournal.LEVEL_DEBUG:
+                return "DEBUG";
+
+            case EventJournal.LEVEL_TRACE:
+                return "TRACE";
+
+            default:
+                return "?";
+
+        }
+
+    }
+
+}
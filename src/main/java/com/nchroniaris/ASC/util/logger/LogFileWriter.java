@@ -0,0 +1,312 @@
+package com.nchroniaris.ASC.util.logger;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This class owns the log file: it keeps it open, appends to it, and rotates it when it gets too big or when the day changes. Both the synchronous and the asynchronous paths of ASCLogger write through here.
+ * <p>
+ * Rotated segments are renamed to {@code <log file>.<date>.<n>}, where the date is the day the segment was started and n counts the segments of that day, and are then gzip compressed on a low priority background thread. Only the newest segments (up to the retention count) are kept.
+ * <p>
+ * Every write and every rotation happens while holding this object's lock, and a rotation only ever happens in between two writes. This means that a line always ends up whole in exactly one segment, no matter how many threads are writing.
+ */
+class LogFileWriter {
+
+    private static final String SUFFIX_GZIP = ".gz";
+    private static final String SUFFIX_TEMP = ".tmp";
+
+    private final Path logFile;
+    private final long maxBytes;
+    private final boolean daily;
+    private final int retentionCount;
+
+    // Matches the name of a rotated segment of this log file, compressed or not. Group 1 is the date, group 2 is the index within that day.
+    private final Pattern segmentPattern;
+
+    // Compression runs on a single low priority thread so that it never competes with the logging path (or the events) for the CPU.
+    private final ExecutorService compressor;
+
+    private FileChannel channel;
+    private long size;
+    private LocalDate day;
+
+    /**
+     * Opens (or creates) the log file for appending. Any rotated segments that were left uncompressed (for example because the program exited in the middle of compressing) are compressed in the background, and the partial files of those compressions are deleted.
+     *
+     * @param logFile        The log file.
+     * @param maxBytes       The size at which the file is rotated. Use 0 to disable rotating by size.
+     * @param daily          Whether the file should be rotated when the day changes.
+     * @param retentionCount How many rotated segments to keep. Use 0 to keep all of them.
+     * @throws IOException If the log file could not be opened.
+     */
+    LogFileWriter(File logFile, long maxBytes, boolean daily, int retentionCount) throws IOException {
+
+        if (maxBytes < 0)
+            throw new IllegalArgumentException("The maximum log size cannot be negative!");
+
+        if (retentionCount < 0)
+            throw new IllegalArgumentException("The log retention count cannot be negative!");
+
+        this.logFile = logFile.getAbsoluteFile().toPath();
+        this.maxBytes = maxBytes;
+        this.daily = daily;
+        this.retentionCount = retentionCount;
+
+        this.segmentPattern = Pattern.compile(Pattern.quote(this.logFile.getFileName().toString()) + "\\.(\\d{4}-\\d{2}-\\d{2})\\.(\\d+)(" + Pattern.quote(LogFileWriter.SUFFIX_GZIP) + ")?");
+
+        this.compressor = Executors.newSingleThreadExecutor(runnable -> {
+
+            Thread thread = new Thread(runnable, "ASC-log-compressor");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+
+            return thread;
+
+        });
+
+        this.open();
+
+        // If the file already has content, it was started on the day it was last modified. Otherwise it starts today.
+        this.day = (this.size > 0) ? LocalDate.from(Files.getLastModifiedTime(this.logFile).toInstant().atZone(ZoneId.systemDefault())) : LocalDate.now();
+
+        // Nothing is being compressed yet, so any temporary file is left over from a previous run
+        this.deleteOrphans();
+
+        for (Path segment : this.listSegments())
+            if (!segment.getFileName().toString().endsWith(LogFileWriter.SUFFIX_GZIP))
+                this.compressor.execute(() -> this.compress(segment));
+
+    }
+
+    private void open() throws IOException {
+
+        this.channel = FileChannel.open(this.logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.size = this.channel.size();
+
+    }
+
+    /**
+     * Appends the contents of a buffer to the log file, rotating it first if needed. The buffer is expected to hold whole lines.
+     *
+     * @param buffer The bytes to write. Its position is advanced to its limit.
+     * @throws IOException If the write (or the rotation) failed.
+     */
+    synchronized void write(ByteBuffer buffer) throws IOException {
+
+        LogFlushEvent event = new LogFlushEvent();
+        event.begin();
+
+        int bytes = buffer.remaining();
+        boolean rotated = this.rotateIfNeeded(bytes);
+
+        while (buffer.hasRemaining())
+            this.size += this.channel.write(buffer);
+
+        event.end();
+
+        if (event.shouldCommit()) {
+
+            event.bytes = bytes;
+            event.rotated = rotated;
+            event.commit();
+
+        }
+
+    }
+
+    /**
+     * Appends bytes to the log file, rotating it first if needed. The bytes are expected to be whole lines.
+     *
+     * @param bytes The bytes to write.
+     * @throws IOException If the write (or the rotation) failed.
+     */
+    void write(byte[] bytes) throws IOException {
+
+        this.write(ByteBuffer.wrap(bytes));
+
+    }
+
+    /**
+     * Forces everything written so far to the disk.
+     *
+     * @throws IOException If the channel could not be forced.
+     */
+    synchronized void force() throws IOException {
+
+        this.channel.force(false);
+
+    }
+
+    private boolean rotateIfNeeded(int incoming) throws IOException {
+
+        // An empty file is never rotated, so a line that is bigger than the maximum size still gets written (to a segment of its own).
+        if (this.size == 0)
+            return false;
+
+        LocalDate today = LocalDate.now();
+
+        boolean tooBig = this.maxBytes > 0 && this.size + incoming > this.maxBytes;
+        boolean newDay = this.daily && !today.equals(this.day);
+
+        if (!tooBig && !newDay)
+            return false;
+
+        this.channel.close();
+
+        // The segment is named after the day its content started on. Renaming is atomic within a directory, so the segment is never seen half-moved.
+        Path segment = this.logFile.resolveSibling(String.format("%s.%s.%d", this.logFile.getFileName(), this.day, this.nextSegmentIndex(this.day)));
+        Files.move(this.logFile, segment, StandardCopyOption.ATOMIC_MOVE);
+
+        this.open();
+        this.day = today;
+
+        this.compressor.execute(() -> this.compress(segment));
+
+        return true;
+
+    }
+
+    private int nextSegmentIndex(LocalDate day) throws IOException {
+
+        int index = 0;
+
+        for (Path segment : this.listSegments()) {
+
+            if (this.segmentGroup(segment, 1).equals(day.toString()))
+                index = Math.max(index, Integer.parseInt(this.segmentGroup(segment, 2)));
+
+        }
+
+        return index + 1;
+
+    }
+
+    /**
+     * Lists the rotated segments of the log file, oldest first.
+     */
+    private List<Path> listSegments() throws IOException {
+
+        List<Path> segments = new ArrayList<>();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.logFile.getParent())) {
+
+            for (Path path : stream)
+                if (this.segmentPattern.matcher(path.getFileName().toString()).matches())
+                    segments.add(path);
+
+        }
+
+        // Sort by date, then by index within the day. Comparing the index as a number keeps segment 10 after segment 9.
+        segments.sort(Comparator.comparing((Path path) -> this.segmentGroup(path, 1)).thenComparingInt(path -> Integer.parseInt(this.segmentGroup(path, 2))));
+
+        return segments;
+
+    }
+
+    private String segmentGroup(Path segment, int group) {
+
+        Matcher matcher = this.segmentPattern.matcher(segment.getFileName().toString());
+
+        // Only called on paths that came out of listSegments(), so this always matches
+        matcher.matches();
+
+        return matcher.group(group);
+
+    }
+
+    /**
+     * Compresses a rotated segment and deletes the original, then deletes the oldest segments past the retention count. This runs on the compressor thread. The compressed file is written under a temporary name and renamed when it is complete, so a crash never leaves a truncated .gz behind.
+     *
+     * @param segment The uncompressed segment.
+     */
+    private void compress(Path segment) {
+
+        Path compressed = segment.resolveSibling(segment.getFileName() + LogFileWriter.SUFFIX_GZIP);
+        Path temporary = segment.resolveSibling(compressed.getFileName() + LogFileWriter.SUFFIX_TEMP);
+
+        // If logs rotate faster than they can be compressed, a segment can be pruned while it is still waiting here.
+        if (!Files.exists(segment))
+            return;
+
+        try {
+
+            try (InputStream in = Files.newInputStream(segment);
+                 OutputStream out = new GZIPOutputStream(Files.newOutputStream(temporary), 64 * 1024)) {
+
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+
+                while ((read = in.read(buffer)) != -1)
+                    out.write(buffer, 0, read);
+
+            }
+
+            Files.move(temporary, compressed, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            Files.delete(segment);
+
+            this.prune();
+
+        } catch (IOException e) {
+
+            // There is nowhere to log this to but the console, since the error is about the log itself.
+            System.err.printf("[WARNING] Could not compress the log segment %s: %s%n", segment, e.getMessage());
+
+            try {
+
+                Files.deleteIfExists(temporary);
+
+            } catch (IOException ignored) {
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Deletes segments that were only partly compressed, such as when the program exited in the middle of compressing, or when a compression failed and could not clean up after itself. This is only called when no compression is in progress: before the compressor thread has anything to do, or on that thread in between two segments.
+     */
+    private void deleteOrphans() throws IOException {
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.logFile.getParent())) {
+
+            for (Path path : stream) {
+
+                String name = path.getFileName().toString();
+
+                if (name.endsWith(LogFileWriter.SUFFIX_TEMP) && this.segmentPattern.matcher(name.substring(0, name.length() - LogFileWriter.SUFFIX_TEMP.length())).matches())
+                    Files.deleteIfExists(path);
+
+            }
+
+        }
+
+    }
+
+    private void prune() throws IOException {
+
+        this.deleteOrphans();
+
+        if (this.retentionCount == 0)
+            return;
+
+        List<Path> segments = this.listSegments();
+
+        for (Path segment : segments.subList(0, Math.max(segments.size() - this.retentionCount, 0)))
+            Files.deleteIfExists(segment);
+
+    }
+
+}
@@ -0,0 +1,28 @@
+package com.nchroniaris.ASC.util.logger;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for a write to the log file: a single line in synchronous mode, or a whole batch of lines from the writer thread in asynchronous mode. This includes rotating the file, if the write caused one.
+ */
+@Name("com.nchroniaris.ASC.LogFlush")
+@Label("Log Flush")
+@Category({"ASC", "Logger"})
+@Description("Lines were written to the log file")
+@StackTrace(false)
+public final class LogFlushEvent extends jdk.jfr.Event {
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    @Label("Rotated")
+    @Description("Whether the log file was rotated before the write")
+    public boolean rotated;
+
+}
@@ -0,0 +1,69 @@
+package com.nchroniaris.ASC.util.logger;
+
+/**
+ * The levels that ASCLogger can log at, from the most verbose to the most severe. A logger only outputs messages at or above its configured level; anything below it is dropped before the message is even built.
+ */
+public enum LogLevel {
+
+    // Very detailed messages about the inner workings of the program, such as every event that fires
+    TRACE("[TRACE]:\t", EventJournal.LEVEL_TRACE),
+
+    // Messages that are useful to diagnose a problem, but too noisy for everyday use
+    DEBUG("[DEBUG]:\t", EventJournal.LEVEL_DEBUG),
+
+    // Messages that keep track of what happened and when. This is the default level.
+    INFO("[INFO]:\t", EventJournal.LEVEL_INFO),
+
+    // Issues that should be resolved but don't currently massively impact the execution of the entire program
+    WARN("[WARN]:\t", EventJournal.LEVEL_WARN),
+
+    // Critical issues or program-wide errors that impact the execution of the program as a whole
+    ERROR("[CRIT]:\t", EventJournal.LEVEL_ERROR);
+
+    private final String prefix;
+    private final byte journalLevel;
+
+    LogLevel(String prefix, byte journalLevel) {
+
+        this.prefix = prefix;
+        this.journalLevel = journalLevel;
+
+    }
+
+    /**
+     * Gets the prefix that is prepended to every message at this level, in the log file and in the terminal.
+     *
+     * @return The prefix, including the separator that follows it.
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * Gets the level that messages at this level are recorded with in the event journal.
+     *
+     * @return One of the EventJournal.LEVEL constants.
+     */
+    public byte getJournalLevel() {
+        return journalLevel;
+    }
+
+    /**
+     * Returns the LogLevel with the given name, ignoring case and surrounding whitespace. This is meant for reading the level from the properties file.
+     *
+     * @param name The name of the level, such as "info" or "DEBUG".
+     * @return The matching LogLevel.
+     * @throws IllegalArgumentException If the name does not correspond to any level.
+     */
+    public static LogLevel fromName(String name) {
+
+        if (name != null)
+            for (LogLevel level : LogLevel.values())
+                if (level.name().equalsIgnoreCase(name.trim()))
+                    return level;
+
+        throw new IllegalArgumentException(String.format("The log level '%s' does not exist! Please use one of TRACE, DEBUG, INFO, WARN or ERROR.", name));
+
+    }
+
+}
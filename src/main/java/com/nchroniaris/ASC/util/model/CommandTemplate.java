@@ -0,0 +1,210 @@
+package com.nchroniaris.ASC.util.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A command with variables in it, such as a warn command ("say The server restarts in $TIME minutes") or a command from the events table. The command is parsed once into the text between the variables and the variables themselves, so that filling it in for a server is a single pass that only appends, no matter how many variables it has. This matters when the same command goes to every server at once.
+ * <p>
+ * The following variables are supported. Anything else that starts with a $ is left as it is.
+ * <ul>
+ *     <li>$TIME - The number of minutes left, for warn commands. Other commands have no time, so it is left as it is in them.</li>
+ *     <li>$SERVER - The description of the server.</li>
+ *     <li>$SESSION - The name of the server's session in the multiplexer.</li>
+ *     <li>$SID - The id of the server.</li>
+ *     <li>$GAME - The game of the server.</li>
+ *     <li>$MONIKER - The moniker of the server.</li>
+ *     <li>$PORT - The port of the server.</li>
+ * </ul>
+ */
+public final class CommandTemplate {
+
+    /**
+     * The variables that can be used in a command, without the leading $.
+     */
+    public enum Variable {
+        TIME,
+        SERVER,
+        SESSION,
+        SID,
+        GAME,
+        MONIKER,
+        PORT;
+
+        private static final Variable[] VALUES = Variable.values();
+
+        /**
+         * Finds the variable whose name starts at a certain position of a string. If more than one does, the longest one wins.
+         */
+        private static Variable at(String template, int offset) {
+
+            Variable match = null;
+
+            for (Variable variable : Variable.VALUES) {
+
+                if (template.startsWith(variable.name(), offset) && (match == null || variable.name().length() > match.name().length()))
+                    match = variable;
+
+            }
+
+            return match;
+
+        }
+
+    }
+
+    private static final char PREFIX = '$';
+
+    // Every thread renders into its own builder, which is kept between calls so that rendering only allocates the resulting string
+    private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    private final String template;
+
+    // The text around the variables. There is always one more of these than there are variables, since the text before the first variable and after the last one can be empty but is still there: literals[0] variables[0] literals[1] ... variables[n - 1] literals[n]
+    private final String[] literals;
+    private final Variable[] variables;
+
+    private CommandTemplate(String template, String[] literals, Variable[] variables) {
+
+        this.template = template;
+        this.literals = literals;
+        this.variables = variables;
+
+    }
+
+    /**
+     * Parses a command into a template.
+     *
+     * @param template The command, with any number of variables in it.
+     * @return The parsed template.
+     */
+    public static CommandTemplate compile(String template) {
+
+        if (template == null)
+            throw new IllegalArgumentException("The template argument should NOT be null!");
+
+        List<String> literals = new ArrayList<>();
+        List<Variable> variables = new ArrayList<>();
+
+        int literalStart = 0;
+        int index = template.indexOf(CommandTemplate.PREFIX);
+
+        while (index >= 0) {
+
+            Variable variable = Variable.at(template, index + 1);
+
+            // A $ that is not followed by a variable is just text
+            if (variable == null) {
+
+                index = template.indexOf(CommandTemplate.PREFIX, index + 1);
+                continue;
+
+            }
+
+            literals.add(template.substring(literalStart, index));
+            variables.add(variable);
+
+            literalStart = index + 1 + variable.name().length();
+            index = template.indexOf(CommandTemplate.PREFIX, literalStart);
+
+        }
+
+        literals.add(template.substring(literalStart));
+
+        return new CommandTemplate(template, literals.toArray(new String[0]), variables.toArray(new Variable[0]));
+
+    }
+
+    /**
+     * Fills in the template for a server. A template without any variables is returned as it is, without copying it.
+     *
+     * @param server The server whose fields the variables are replaced with.
+     * @param time   The value of $TIME, or null to leave $TIME as it is.
+     * @return The finished command.
+     */
+    public String render(GameServer server, String time) {
+
+        if (this.variables.length == 0)
+            return this.template;
+
+        StringBuilder builder = CommandTemplate.BUILDER.get();
+        builder.setLength(0);
+
+        this.render(builder, server, time);
+
+        return builder.toString();
+
+    }
+
+    /**
+     * Fills in the template for a server, appending the result to a builder. This takes time proportional to the length of the result.
+     *
+     * @param out    The builder to append the command to.
+     * @param server The server whose fields the variables are replaced with.
+     * @param time   The value of $TIME, or null to leave $TIME as it is.
+     */
+    public void render(StringBuilder out, GameServer server, String time) {
+
+        if (server == null)
+            throw new IllegalArgumentException("The server argument should NOT be null!");
+
+        out.append(this.literals[0]);
+
+        for (int i = 0; i < this.variables.length; i++) {
+
+            CommandTemplate.appendValue(out, this.variables[i], server, time);
+            out.append(this.literals[i + 1]);
+
+        }
+
+    }
+
+    private static void appendValue(StringBuilder out, Variable variable, GameServer server, String time) {
+
+        switch (variable) {
+
+            case TIME:
+
+                if (time == null)
+                    out.append(CommandTemplate.PREFIX).append(variable.name());
+                else
+                    out.append(time);
+
+                break;
+
+            case SERVER:
+                out.append(server.getDescription());
+                break;
+
+            case SESSION:
+                out.append(server.getSessionName());
+                break;
+
+            case SID:
+                out.append(server.getSid());
+                break;
+
+            case GAME:
+                out.append(server.getGame());
+                break;
+
+            case MONIKER:
+                out.append(server.getMoniker());
+                break;
+
+            case PORT:
+                out.append(server.getPort());
+                break;
+
+        }
+
+    }
+
+    @Override
+    public String toString() {
+
+        return this.template;
+
+    }
+
+}
@@ -11,12 +11,18 @@ public class GameServer {
     private final int sid;
 
     private final String description;
+    private final String game;
+    private final String moniker;
     private final String sessionName;
 
     private final String startFile;
     private final String stopCommand;
     private final String warnCommand;
 
+    // The stop and warn commands, parsed once here since they are filled in every time a stop or warn event is built
+    private final CommandTemplate stopTemplate;
+    private final CommandTemplate warnTemplate;
+
     private final int port;
 
     private final boolean autostart;
@@ -44,6 +50,9 @@ public class GameServer {
         if (!moniker.matches(GameServer.sessionRegex))
             throw new IllegalArgumentException(String.format("Moniker field must be at least one lowercase alphanumeric character with any number of optional dashes. Got '%s'", moniker));
 
+        this.game = game;
+        this.moniker = moniker;
+
         // Assemble moniker string
         this.sessionName = game + "_" + moniker;
 
@@ -56,11 +65,13 @@ public class GameServer {
             throw new IllegalArgumentException("Stop Command field cannot be null!");
 
         this.stopCommand = stopCommand;
+        this.stopTemplate = CommandTemplate.compile(stopCommand);
 
         if (warnCommand == null)
             throw new IllegalArgumentException("Warn Text field cannot be null!");
 
         this.warnCommand = warnCommand;
+        this.warnTemplate = CommandTemplate.compile(warnCommand);
 
         if (port < 0 || port > 65535)
             throw new IllegalArgumentException("Port cannot be outside of the range [0, 65535]");
@@ -78,6 +89,14 @@ public class GameServer {
         return description;
     }
 
+    public String getGame() {
+        return game;
+    }
+
+    public String getMoniker() {
+        return moniker;
+    }
+
     public String getSessionName() {
         return sessionName;
     }
@@ -94,6 +113,14 @@ public class GameServer {
         return warnCommand;
     }
 
+    public CommandTemplate getStopTemplate() {
+        return stopTemplate;
+    }
+
+    public CommandTemplate getWarnTemplate() {
+        return warnTemplate;
+    }
+
     public int getPort() {
         return port;
     }
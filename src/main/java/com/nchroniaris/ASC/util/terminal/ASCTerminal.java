@@ -1,8 +1,10 @@
 package com.nchroniaris.ASC.util.terminal;
 
+import org.jline.reader.Candidate;
 import org.jline.reader.EndOfFileException;
 import org.jline.reader.LineReader;
 import org.jline.reader.LineReaderBuilder;
+import org.jline.reader.ParsedLine;
 import org.jline.reader.UserInterruptException;
 import org.jline.terminal.Terminal;
 import org.jline.terminal.TerminalBuilder;
@@ -10,6 +12,7 @@ import org.jline.utils.AttributedString;
 import org.jline.utils.AttributedStyle;
 
 import java.io.IOException;
+import java.util.List;
 
 /**
  * This class mainly serves as an abstraction for the Jline3 Terminal and LineReader classes. In general, it provides a limited interface for interacting with the JLine3 terminal, but crucially it hides all its implementation details which makes the interactions cleaner and will make it easier to swap out the terminal software via dependency injection if required in the future.
@@ -35,8 +38,14 @@ public class ASCTerminal implements AutoCloseable {
     private Terminal terminal;
     private LineReader reader;
 
-    // This tracks the state of the Terminal object. If it is closed all of the useful instance methods will not work since it is not defined what happens when you run methods on the LineReader of a closed Terminal.
-    private boolean closed;
+    // Where tab completions come from, if anywhere. Volatile since it is set by one thread and used by the one reading lines.
+    private volatile LineCompleter completer;
+
+    // Every line printed goes through here, so that bursts of lines are drawn in a few redraws instead of one each. See TerminalRenderer.
+    private TerminalRenderer renderer;
+
+    // This tracks the state of the Terminal object. If it is closed all of the useful instance methods will not work since it is not defined what happens when you run methods on the LineReader of a closed Terminal. Volatile so that checking it does not need the lock, which close() holds while the last lines are drawn.
+    private volatile boolean closed;
 
     /**
      * Constructs an ASCTerminal instance, and will attempt to spawn a Jline3 system terminal instance. Through this class' interface you will be able to read and log messages with a certain style.
@@ -59,6 +68,7 @@ public class ASCTerminal implements AutoCloseable {
             // Get line reader associated with the terminal to perform I/O operations on
             this.reader = LineReaderBuilder.builder()
                     .terminal(this.terminal)
+                    .completer(this::complete)
                     .build();
 
         } catch (IOException e) {
@@ -73,6 +83,7 @@ public class ASCTerminal implements AutoCloseable {
         if (!allowDumbTerminal && (terminal.getType().equals(Terminal.TYPE_DUMB) || terminal.getType().equals(Terminal.TYPE_DUMB_COLOR)))
             throw new IllegalStateException("A system terminal was not available to attach to! A dumb terminal can be created to avoid this error, but this can introduce some weird behaviour. Use a command line flag to enable such behaviour.");
 
+        this.renderer = new TerminalRenderer(this.reader::printAbove);
         this.closed = false;
 
     }
@@ -82,7 +93,7 @@ public class ASCTerminal implements AutoCloseable {
      *
      * @param content The contents of the message
      */
-    public synchronized void printDefault(String content) {
+    public void printDefault(String content) {
 
         this.printLine(new AttributedString(content, ASCTerminal.STYLE_DEFAULT));
 
@@ -93,7 +104,7 @@ public class ASCTerminal implements AutoCloseable {
      *
      * @param content The contents of the message
      */
-    public synchronized void printSuccess(String content) {
+    public void printSuccess(String content) {
 
         this.printLine(new AttributedString(content, ASCTerminal.STYLE_SUCCESS));
 
@@ -104,7 +115,7 @@ public class ASCTerminal implements AutoCloseable {
      *
      * @param content The contents of the message
      */
-    public synchronized void printWarning(String content) {
+    public void printWarning(String content) {
 
         this.printLine(new AttributedString(content, ASCTerminal.STYLE_WARNING));
 
@@ -115,25 +126,25 @@ public class ASCTerminal implements AutoCloseable {
      *
      * @param content The contents of the message
      */
-    public synchronized void printError(String content) {
+    public void printError(String content) {
 
         this.printLine(new AttributedString(content, ASCTerminal.STYLE_ERROR));
 
     }
 
     /**
-     * This is the actual driver code for printing the line to the terminal. It takes an AttributedString (org.jline.utils) which is a string with a style already attached to it.
+     * This is the actual driver code for printing the line to the terminal. It takes an AttributedString (org.jline.utils) which is a string with a style already attached to it. The line is queued for the renderer thread, so this returns right away.
      *
      * @param content The contents of the message
      */
-    private synchronized void printLine(AttributedString content) {
+    private void printLine(AttributedString content) {
 
         // We can't use the terminal or reader resource if it's closed already
         if (this.isClosed())
             throw new IllegalStateException(ASCTerminal.ERROR_CLOSED);
 
-        // This prints the attributed string's content to the terminal and redraws the entire terminal in order to preserve the readLine() input
-        this.reader.printAbove(content);
+        // The renderer prints the attributed string's content to the terminal and redraws the entire terminal in order to preserve the readLine() input, coalescing it with any other lines printed around the same time
+        this.renderer.print(content);
 
     }
 
@@ -155,12 +166,60 @@ public class ASCTerminal implements AutoCloseable {
 
     }
 
+    /**
+     * Sets where tab completions come from. Until this is called, pressing tab does not suggest anything.
+     *
+     * @param completer The completer to use, or null to turn completion off.
+     */
+    public void setCompleter(LineCompleter completer) {
+
+        this.completer = completer;
+
+    }
+
+    /**
+     * Adapts the LineCompleter (if any) to JLine, which calls this whenever the user presses tab.
+     */
+    private void complete(LineReader reader, ParsedLine line, List<Candidate> candidates) {
+
+        LineCompleter completer = this.completer;
+
+        if (completer == null)
+            return;
+
+        String prefix = line.word().substring(0, line.wordCursor());
+
+        for (String word : completer.complete(line.words().subList(0, line.wordIndex()), prefix))
+            candidates.add(new Candidate(word));
+
+    }
+
+    /**
+     * Takes over the whole terminal for a full screen view. Lines printed while it is open are held back until it is closed, so they do not draw over it. The caller is REQUIRED to close it when done, which gives the terminal back as it was.
+     *
+     * @return A FullScreen instance that owns the terminal until it is closed.
+     * @throws IllegalStateException If this is a dumb terminal, which cannot be drawn on freely.
+     */
+    public FullScreen openFullScreen() throws IllegalStateException {
+
+        if (this.isClosed())
+            throw new IllegalStateException(ASCTerminal.ERROR_CLOSED);
+
+        if (this.terminal.getType().equals(Terminal.TYPE_DUMB) || this.terminal.getType().equals(Terminal.TYPE_DUMB_COLOR))
+            throw new IllegalStateException("Full screen views are not available on a dumb terminal!");
+
+        this.renderer.setPaused(true);
+
+        return new FullScreen(this.terminal, () -> this.renderer.setPaused(false));
+
+    }
+
     /**
      * Returns the status of the resource. This is useful for checking whether to use the resource or not
      *
      * @return true if the resource has been closed, false otherwise.
      */
-    public synchronized boolean isClosed() {
+    public boolean isClosed() {
 
         return this.closed;
 
@@ -173,6 +232,9 @@ public class ASCTerminal implements AutoCloseable {
         if (this.isClosed())
             throw new IllegalStateException("Terminal has already been closed!");
 
+        // Draw whatever is still queued before the terminal goes away
+        this.renderer.close();
+
         this.terminal.close();
         this.closed = true;
     }
@@ -0,0 +1,155 @@
+package com.nchroniaris.ASC.util.terminal;
+
+import org.jline.terminal.Attributes;
+import org.jline.terminal.Size;
+import org.jline.terminal.Terminal;
+import org.jline.utils.AttributedString;
+import org.jline.utils.Display;
+import org.jline.utils.InfoCmp;
+import org.jline.utils.NonBlockingReader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A full screen view on top of an ASCTerminal, like the one `top` or `less` use. The terminal switches to its alternate screen, so whatever was on it before comes back untouched when this is closed. While this is open, lines printed to the ASCTerminal are held back and only drawn after it closes.
+ * <p>
+ * The screen is drawn with JLine's Display, which compares every frame with the previous one and only sends the changes to the terminal. A view that mostly stays the same from one refresh to the next therefore costs very little to redraw, no matter how big it is.
+ */
+public class FullScreen implements AutoCloseable {
+
+    /**
+     * Returned by readKey() if no key was pressed in time.
+     */
+    public static final int KEY_TIMEOUT = NonBlockingReader.READ_EXPIRED;
+
+    /**
+     * Returned by readKey() if the input has been closed.
+     */
+    public static final int KEY_EOF = NonBlockingReader.EOF;
+
+    private final Terminal terminal;
+    private final Display display;
+    private final Attributes originalAttributes;
+    private final Runnable onClose;
+
+    private Size size;
+    private boolean closed;
+
+    /**
+     * Takes over the whole terminal. This is only created by ASCTerminal.openFullScreen().
+     *
+     * @param terminal The terminal to take over.
+     * @param onClose  Called after the terminal has been given back.
+     */
+    FullScreen(Terminal terminal, Runnable onClose) {
+
+        this.terminal = terminal;
+        this.onClose = onClose;
+
+        // Raw mode sends every key right away instead of line by line, and stops them from being echoed
+        this.originalAttributes = terminal.enterRawMode();
+
+        terminal.puts(InfoCmp.Capability.enter_ca_mode);
+        terminal.puts(InfoCmp.Capability.keypad_xmit);
+        terminal.puts(InfoCmp.Capability.cursor_invisible);
+        terminal.flush();
+
+        this.display = new Display(terminal, true);
+        this.size = null;
+        this.closed = false;
+
+    }
+
+    /**
+     * Gets the current height of the terminal. This can change between frames if the user resizes the window.
+     *
+     * @return The number of rows.
+     */
+    public int getRows() {
+
+        return this.terminal.getSize().getRows();
+
+    }
+
+    /**
+     * Gets the current width of the terminal. This can change between frames if the user resizes the window.
+     *
+     * @return The number of columns.
+     */
+    public int getColumns() {
+
+        return this.terminal.getSize().getColumns();
+
+    }
+
+    /**
+     * Draws a frame. Only the parts that are different from the previous frame are actually sent to the terminal. Lines that do not fit are cut off.
+     *
+     * @param lines The lines of the frame, from the top of the screen.
+     */
+    public void update(List<AttributedString> lines) {
+
+        Size current = this.terminal.getSize();
+
+        // If the window was resized, everything has moved and the previous frame cannot be compared against
+        if (!current.equals(this.size)) {
+
+            this.size = new Size(current.getColumns(), current.getRows());
+
+            this.display.clear();
+            this.display.resize(current.getRows(), current.getColumns());
+
+        }
+
+        int rows = Math.min(lines.size(), current.getRows());
+        List<AttributedString> frame = new ArrayList<>(rows);
+
+        for (int i = 0; i < rows; i++) {
+
+            AttributedString line = lines.get(i);
+            frame.add((line.columnLength() > current.getColumns()) ? line.columnSubSequence(0, current.getColumns()) : line);
+
+        }
+
+        this.display.update(frame, -1);
+        this.terminal.flush();
+
+    }
+
+    /**
+     * Waits for a key to be pressed.
+     *
+     * @param timeoutMillis How long to wait, in milliseconds.
+     * @return The character that was typed, KEY_TIMEOUT if nothing was typed in time, or KEY_EOF if the input was closed.
+     * @throws IOException If the terminal could not be read from.
+     */
+    public int readKey(long timeoutMillis) throws IOException {
+
+        return this.terminal.reader().read(timeoutMillis);
+
+    }
+
+    /**
+     * Gives the terminal back, in the same state as it was before. Calling this more than once has no additional effect.
+     */
+    @Override
+    public void close() {
+
+        if (this.closed)
+            return;
+
+        this.closed = true;
+
+        this.terminal.puts(InfoCmp.Capability.cursor_visible);
+        this.terminal.puts(InfoCmp.Capability.keypad_local);
+        this.terminal.puts(InfoCmp.Capability.exit_ca_mode);
+        this.terminal.setAttributes(this.originalAttributes);
+        this.terminal.flush();
+
+        this.onClose.run();
+
+    }
+
+}
@@ -0,0 +1,20 @@
+package com.nchroniaris.ASC.util.terminal;
+
+import java.util.List;
+
+/**
+ * Supplies the tab completion for an ASCTerminal, without the caller having to know about JLine. See ASCTerminal.setCompleter().
+ */
+@FunctionalInterface
+public interface LineCompleter {
+
+    /**
+     * Suggests ways to finish the word that is being typed. This is called on the thread that reads the line, while the user waits, so it should be quick.
+     *
+     * @param words  The complete words on the line before the one being typed.
+     * @param prefix The part of the current word that has been typed so far. This is empty if the user has not started typing it.
+     * @return The possible words. These should all start with the prefix.
+     */
+    List<String> complete(List<String> words, String prefix);
+
+}
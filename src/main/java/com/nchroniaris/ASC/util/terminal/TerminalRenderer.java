@@ -0,0 +1,202 @@
+package com.nchroniaris.ASC.util.terminal;
+
+import org.jline.utils.AttributedString;
+import org.jline.utils.AttributedStringBuilder;
+import org.jline.utils.AttributedStyle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Sits in between the threads that print to the terminal and the terminal itself. Printing a line only puts it in a bounded queue; a dedicated renderer thread takes all the lines that have piled up and hands them to the terminal as one block, at most FRAMES_PER_SECOND times a second.
+ * <p>
+ * This matters because every JLine printAbove() redraws the prompt (and whatever the user is typing). Without this, a burst of a few hundred lines means a few hundred redraws, during which every thread that wants to print (usually through the logger) waits. With it, the same burst costs a handful of redraws and printing threads never wait at all. If lines come in faster than the terminal can take them, the excess is dropped and replaced with a single summary line, since the full output is in the log file anyway.
+ */
+class TerminalRenderer implements AutoCloseable {
+
+    // Maximum number of lines that can be waiting to be drawn. Lines past this are dropped.
+    private static final int QUEUE_CAPACITY = 1024;
+
+    // Maximum number of lines drawn in one frame. Anything past this waits for the next frame.
+    private static final int MAX_LINES_PER_FRAME = 256;
+
+    // Maximum number of redraws per second
+    private static final int FRAMES_PER_SECOND = 30;
+    private static final long FRAME_NANOS = TimeUnit.SECONDS.toNanos(1) / TerminalRenderer.FRAMES_PER_SECOND;
+
+    // How long the renderer waits for a line before checking if it should stop, and how long close() waits for the last frame to be drawn
+    private static final long POLL_TIMEOUT_MS = 100;
+    private static final long CLOSE_TIMEOUT_MS = 1000;
+
+    private static final AttributedStyle STYLE_SUMMARY = new AttributedStyle()
+            .foreground(AttributedStyle.YELLOW)
+            .italic();
+
+    private final Consumer<AttributedString> sink;
+    private final BlockingQueue<AttributedString> queue;
+    private final AtomicLong droppedLines;
+
+    private final Thread renderThread;
+    private volatile boolean closed;
+
+    // While paused (when something else owns the whole screen, see FullScreen) lines keep being queued, up to QUEUE_CAPACITY, but nothing is drawn
+    private volatile boolean paused;
+
+    /**
+     * Creates a renderer and starts its thread.
+     *
+     * @param sink Where frames are drawn, which is usually LineReader.printAbove(). This is only ever called from the renderer thread.
+     */
+    TerminalRenderer(Consumer<AttributedString> sink) {
+
+        this.sink = sink;
+        this.queue = new ArrayBlockingQueue<>(TerminalRenderer.QUEUE_CAPACITY);
+        this.droppedLines = new AtomicLong(0);
+        this.closed = false;
+        this.paused = false;
+
+        this.renderThread = new Thread(this::renderLoop, "ASC-terminal-renderer");
+        this.renderThread.setDaemon(true);
+        this.renderThread.start();
+
+    }
+
+    /**
+     * Queues a line to be drawn. This never blocks; if the queue is full the line is dropped and counted, and the count shows up in the next frame.
+     *
+     * @param line The line to draw, with its style.
+     */
+    void print(AttributedString line) {
+
+        if (!this.queue.offer(line))
+            this.droppedLines.incrementAndGet();
+
+    }
+
+    /**
+     * Stops or resumes drawing. When resumed, the lines queued in the meantime are drawn, along with a summary of the ones that did not fit in the queue.
+     *
+     * @param paused Whether to stop drawing.
+     */
+    void setPaused(boolean paused) {
+
+        this.paused = paused;
+        LockSupport.unpark(this.renderThread);
+
+    }
+
+    private void renderLoop() {
+
+        List<AttributedString> frame = new ArrayList<>(TerminalRenderer.MAX_LINES_PER_FRAME);
+
+        // We keep going after close() until the queue is empty, so that the last lines before the terminal closes still make it to the screen.
+        while (true) {
+
+            if (this.paused && !this.closed) {
+
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(TerminalRenderer.POLL_TIMEOUT_MS));
+                continue;
+
+            }
+
+            AttributedString first;
+
+            try {
+
+                first = this.queue.poll(TerminalRenderer.POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+            } catch (InterruptedException e) {
+
+                break;
+
+            }
+
+            if (first == null) {
+
+                if (this.closed)
+                    break;
+
+                continue;
+
+            }
+
+            long frameStart = System.nanoTime();
+
+            frame.add(first);
+            this.queue.drainTo(frame, TerminalRenderer.MAX_LINES_PER_FRAME - 1);
+
+            this.sink.accept(this.buildFrame(frame, this.droppedLines.getAndSet(0)));
+            frame.clear();
+
+            // Cap the redraw rate by waiting out the rest of the frame. Lines that come in meanwhile pile up and are drawn together in the next one.
+            long remaining = TerminalRenderer.FRAME_NANOS - (System.nanoTime() - frameStart);
+
+            if (remaining > 0 && !this.closed)
+                LockSupport.parkNanos(this, remaining);
+
+        }
+
+    }
+
+    /**
+     * Joins the lines of a frame into one multi-line string, so that it can be drawn with a single redraw.
+     *
+     * @param lines   The lines of the frame.
+     * @param dropped The number of lines dropped since the last frame. If this is not zero, a summary line is added at the end.
+     * @return The whole frame.
+     */
+    private AttributedString buildFrame(List<AttributedString> lines, long dropped) {
+
+        AttributedStringBuilder builder = new AttributedStringBuilder();
+
+        for (int i = 0; i < lines.size(); i++) {
+
+            if (i > 0)
+                builder.append('\n');
+
+            builder.append(lines.get(i));
+
+        }
+
+        if (dropped > 0) {
+
+            builder.append('\n');
+            builder.styled(TerminalRenderer.STYLE_SUMMARY, String.format("(%d lines were not shown because the console could not keep up. See the log file for the full output.)", dropped));
+
+        }
+
+        return builder.toAttributedString();
+
+    }
+
+    /**
+     * Draws whatever is still queued and stops the renderer thread. This waits a bounded amount of time. Calling this more than once has no additional effect.
+     */
+    @Override
+    public void close() {
+
+        if (this.closed)
+            return;
+
+        this.closed = true;
+        LockSupport.unpark(this.renderThread);
+
+        try {
+
+            this.renderThread.join(TerminalRenderer.CLOSE_TIMEOUT_MS);
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+
+        }
+
+    }
+
+}
@@ -0,0 +1,233 @@
+package com.nchroniaris.ASC.client.database;
+
+import com.nchroniaris.ASC.client.model.Event;
+import com.nchroniaris.ASC.client.model.EventHistoryRecord;
+import com.nchroniaris.ASC.client.model.EventResult;
+import com.nchroniaris.ASC.util.model.GameServer;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class EventHistoryWriterTest {
+
+    // More than one batch (EventHistoryWriter.BATCH_SIZE), so that the records go in over more than one transaction
+    private static final int RECORDS = 300;
+
+    // The records are a second apart, starting at noon so that they do not cross a change of daylight saving time
+    private static final LocalDateTime START = LocalDateTime.of(2020, 8, 22, 12, 0);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SQLiteRepository repository;
+
+    private final GameServer survival = new GameServer(1, "Survival world", "minecraft", "mc", "/srv/mc/start.sh", "stop", "say %d", 25565, true);
+    private final GameServer creative = new GameServer(2, "Creative world", "minecraft", "cr", "/srv/cr/start.sh", "stop", "say %d", 25566, false);
+
+    @Before
+    public void setUp() throws SQLException {
+
+        File databaseFile = new File(this.folder.getRoot(), "ASC.db");
+        TestDatabase.create(databaseFile);
+
+        this.repository = new SQLiteRepository(databaseFile.getAbsolutePath());
+
+    }
+
+    private static LocalDateTime time(int i) {
+
+        return EventHistoryWriterTest.START.plusSeconds(i);
+
+    }
+
+    private static long millis(LocalDateTime time) {
+
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+    }
+
+    private static int eventType(int i) {
+
+        return 1 + i % 3;
+
+    }
+
+    private static EventResult result(int i) {
+
+        return EventResult.values()[(i / 3) % EventResult.values().length];
+
+    }
+
+    /**
+     * Records all the records of the survival server, which ran 250 ms late and took i ms each, and one manual event of the creative server a day before all of them.
+     */
+    private void recordAll() {
+
+        // Retention is ZERO so that the writer does not prune anything on its own
+        EventHistoryWriter writer = new EventHistoryWriter(this.repository, Duration.ZERO);
+
+        for (int i = 0; i < EventHistoryWriterTest.RECORDS; i++) {
+
+            long scheduled = EventHistoryWriterTest.millis(EventHistoryWriterTest.time(i));
+            Assert.assertTrue(writer.record(100 + i, this.survival.getSid(), EventHistoryWriterTest.eventType(i), scheduled, scheduled + 250, i, EventHistoryWriterTest.result(i)));
+
+        }
+
+        long manual = EventHistoryWriterTest.millis(EventHistoryWriterTest.START.minusDays(1));
+        Assert.assertTrue(writer.record(Event.EID_NONE, this.creative.getSid(), 2, manual, manual, 5, EventResult.FAILED));
+
+        // Everything that was recorded is written before this returns
+        writer.close();
+
+        Assert.assertEquals(0, writer.getDroppedRecords());
+        Assert.assertFalse(writer.record(1, 1, 1, manual, manual, 0, EventResult.SUCCESS));
+
+    }
+
+    @Test
+    public void testRecordedHistoryIsWritten() {
+
+        this.recordAll();
+
+        List<EventHistoryRecord> history = this.repository.getEventHistory(this.survival, EventHistoryWriterTest.RECORDS * 2);
+
+        Assert.assertEquals(EventHistoryWriterTest.RECORDS, history.size());
+
+        // Newest first
+        for (int j = 0; j < history.size(); j++) {
+
+            int i = EventHistoryWriterTest.RECORDS - 1 - j;
+            EventHistoryRecord record = history.get(j);
+
+            Assert.assertEquals(100 + i, record.getEid());
+            Assert.assertEquals(this.survival.getSid(), record.getSid());
+            Assert.assertEquals(EventHistoryWriterTest.eventType(i), record.getEventType());
+            Assert.assertEquals(EventHistoryWriterTest.time(i), record.getScheduledTime());
+            Assert.assertEquals(EventHistoryWriterTest.time(i).plusNanos(250_000_000L), record.getActualTime());
+            Assert.assertEquals(i, record.getDurationMillis());
+            Assert.assertEquals(EventHistoryWriterTest.result(i), record.getResult());
+
+        }
+
+        Assert.assertEquals(10, this.repository.getEventHistory(this.survival, 10).size());
+
+        // Manual events are stored without an eid, and come back as EID_NONE
+        List<EventHistoryRecord> manual = this.repository.getEventHistory(this.creative, 10);
+
+        Assert.assertEquals(1, manual.size());
+        Assert.assertEquals(Event.EID_NONE, manual.get(0).getEid());
+        Assert.assertEquals(EventResult.FAILED, manual.get(0).getResult());
+
+    }
+
+    @Test
+    public void testLastEventHistory() {
+
+        this.recordAll();
+
+        for (int eventType = 1; eventType <= 3; eventType++) {
+
+            for (EventResult result : EventResult.values()) {
+
+                int last = -1;
+
+                for (int i = 0; i < EventHistoryWriterTest.RECORDS; i++)
+                    if (EventHistoryWriterTest.eventType(i) == eventType && EventHistoryWriterTest.result(i) == result)
+                        last = i;
+
+                EventHistoryRecord record = this.repository.getLastEventHistory(this.survival, eventType, result);
+
+                Assert.assertNotNull(record);
+                Assert.assertEquals(100 + last, record.getEid());
+
+            }
+
+        }
+
+        Assert.assertNull(this.repository.getLastEventHistory(this.survival, 4, EventResult.SUCCESS));
+        Assert.assertNull(this.repository.getLastEventHistory(this.creative, 2, EventResult.SUCCESS));
+
+    }
+
+    @Test
+    public void testPruneCutoff() throws SQLException {
+
+        this.recordAll();
+
+        // Exactly the actual time of record 100. Records before it are deleted, along with the manual event from the day before, and record 100 itself is kept.
+        LocalDateTime cutoff = EventHistoryWriterTest.time(100).plusNanos(250_000_000L);
+
+        Assert.assertEquals(100 + 1, this.repository.pruneEventHistory(cutoff));
+
+        List<EventHistoryRecord> history = this.repository.getEventHistory(this.survival, EventHistoryWriterTest.RECORDS);
+
+        Assert.assertEquals(EventHistoryWriterTest.RECORDS - 100, history.size());
+        Assert.assertEquals(cutoff, history.get(history.size() - 1).getActualTime());
+        Assert.assertTrue(this.repository.getEventHistory(this.creative, 10).isEmpty());
+
+        // Nothing is left before the cutoff, so pruning again does nothing
+        Assert.assertEquals(0, this.repository.pruneEventHistory(cutoff));
+
+    }
+
+    @Test
+    public void testRecordsDuringCloseAreWrittenOrDropped() throws InterruptedException {
+
+        EventHistoryWriter writer = new EventHistoryWriter(this.repository, Duration.ZERO);
+        AtomicBoolean closed = new AtomicBoolean(false);
+
+        long scheduled = EventHistoryWriterTest.millis(EventHistoryWriterTest.START);
+        long[] attempts = new long[4];
+        Thread[] producers = new Thread[attempts.length];
+
+        // The producers keep recording until close() has returned, so some of them are bound to be in the middle of a record() when it is called
+        for (int p = 0; p < producers.length; p++) {
+
+            int producer = p;
+
+            producers[p] = new Thread(() -> {
+
+                while (!closed.get()) {
+
+                    writer.record(producer, this.survival.getSid(), 1, scheduled, scheduled, 0, EventResult.SUCCESS);
+                    attempts[producer]++;
+
+                }
+
+            });
+
+            producers[p].start();
+
+        }
+
+        Thread.sleep(50);
+        writer.close();
+        closed.set(true);
+
+        long total = 0;
+
+        for (int p = 0; p < producers.length; p++) {
+
+            producers[p].join();
+            total += attempts[p];
+
+        }
+
+        // Every record either made it to the database or was counted as dropped, whatever the timing
+        int written = this.repository.getEventHistory(this.survival, (int) Math.min(total + 1, Integer.MAX_VALUE)).size();
+
+        Assert.assertEquals(total, written + writer.getDroppedRecords());
+
+    }
+
+}
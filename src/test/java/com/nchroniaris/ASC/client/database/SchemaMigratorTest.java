@@ -0,0 +1,91 @@
+package com.nchroniaris.ASC.client.database;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+public class SchemaMigratorTest {
+
+    /**
+     * Creates an in-memory database with the schema as it was before any migrations existed (user_version = 0).
+     */
+    private Connection createVersionZeroDatabase() throws SQLException {
+
+        Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+
+        try (Statement statement = connection.createStatement()) {
+
+            statement.executeUpdate("CREATE TABLE servers (sid INTEGER PRIMARY KEY NOT NULL, description TEXT NOT NULL, game TEXT NOT NULL, moniker TEXT NOT NULL, startfile TEXT NOT NULL, stopcommand TEXT NOT NULL, warncommand TEXT NOT NULL, port INTEGER NOT NULL, autostart INTEGER NOT NULL)");
+            statement.executeUpdate("CREATE TABLE eventType (etid INTEGER PRIMARY KEY, label TEXT)");
+            statement.executeUpdate("CREATE TABLE events (eid INTEGER PRIMARY KEY NOT NULL, sid INTEGER NOT NULL REFERENCES servers (sid), time TIME NOT NULL, etype INTEGER NOT NULL REFERENCES eventType (etid), args TEXT NOT NULL DEFAULT '[]')");
+            statement.executeUpdate("INSERT INTO events VALUES (1, 1, '09:15:00', 1, '[]')");
+
+        }
+
+        return connection;
+
+    }
+
+    @Test
+    public void testMigrateFromVersionZero() throws SQLException {
+
+        try (Connection connection = this.createVersionZeroDatabase()) {
+
+            Assert.assertEquals(0, SchemaMigrator.currentVersion(connection));
+            Assert.assertEquals(SchemaMigrator.latestVersion(), SchemaMigrator.migrate(connection).size());
+            Assert.assertEquals(SchemaMigrator.latestVersion(), SchemaMigrator.currentVersion(connection));
+
+            // Existing data must survive the upgrade
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM events")) {
+
+                Assert.assertEquals(1, resultSet.getInt(1));
+
+            }
+
+            // Per-server event lookups should be answered from the covering index instead of a table scan
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("EXPLAIN QUERY PLAN SELECT eid, time, etype, args FROM events WHERE sid = 1 ORDER BY time")) {
+
+                Assert.assertTrue(resultSet.next());
+                Assert.assertTrue(resultSet.getString("detail").contains("COVERING INDEX idx_events_sid_time"));
+
+            }
+
+        }
+
+    }
+
+    @Test
+    public void testMigrateIsIdempotent() throws SQLException {
+
+        try (Connection connection = this.createVersionZeroDatabase()) {
+
+            SchemaMigrator.migrate(connection);
+
+            Assert.assertTrue(SchemaMigrator.migrate(connection).isEmpty());
+            Assert.assertEquals(SchemaMigrator.latestVersion(), SchemaMigrator.currentVersion(connection));
+
+        }
+
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRefusesNewerDatabase() throws SQLException {
+
+        try (Connection connection = this.createVersionZeroDatabase();
+             Statement statement = connection.createStatement()) {
+
+            statement.executeUpdate("PRAGMA user_version = " + (SchemaMigrator.latestVersion() + 1));
+            SchemaMigrator.migrate(connection);
+
+        }
+
+    }
+
+}
@@ -0,0 +1,216 @@
+package com.nchroniaris.ASC.client.database;
+
+import com.nchroniaris.ASC.client.model.EventDescriptor;
+import com.nchroniaris.ASC.util.model.GameServer;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class SnapshotRepositoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SQLiteRepository database;
+    private String snapshotPath;
+
+    @Before
+    public void setUp() throws SQLException, IOException {
+
+        File databaseFile = new File(this.folder.getRoot(), "ASC.db");
+
+        // Server 3 has no events at all, and the same arguments show up more than once so that they are shared in the string pool
+        TestDatabase.create(databaseFile,
+                "INSERT INTO servers VALUES (1, 'Survival world', 'minecraft', 'mc', '/srv/mc/start.sh', 'stop', 'say Restarting in %d minutes', 25565, 1)",
+                "INSERT INTO servers VALUES (2, 'Caf\u00e9 \u2615 server', 'terraria', 'tr', '/srv/tr/start.sh', 'exit', 'say %d', 7777, 0)",
+                "INSERT INTO servers VALUES (3, '', 'factorio', 'fa', '/srv/fa/start.sh', '/quit', '', 34197, 1)",
+                "INSERT INTO events VALUES (10, 1, '23:59:59', 3, '[\"say hi\", \"say \\\"bye\\\"\"]')",
+                "INSERT INTO events VALUES (11, 1, '00:00:00', 1, '[]')",
+                "INSERT INTO events VALUES (12, 1, '04:30:00', 2, '[\"say hi\", \"say \\\"bye\\\"\"]')",
+                "INSERT INTO events VALUES (20, 2, '12:00:00', 3, '[\"\"]')",
+                "INSERT INTO events VALUES (21, 2, '12:00:00', 1, '[]')"
+        );
+
+        this.database = new SQLiteRepository(databaseFile.getAbsolutePath());
+        this.snapshotPath = new File(this.folder.getRoot(), "ASC.snapshot").getAbsolutePath();
+
+        SnapshotRepository.writeSnapshot(this.database, this.snapshotPath);
+
+    }
+
+    private static void assertSameServer(GameServer expected, GameServer actual) {
+
+        Assert.assertEquals(expected.getSid(), actual.getSid());
+        Assert.assertEquals(expected.getDescription(), actual.getDescription());
+        Assert.assertEquals(expected.getGame(), actual.getGame());
+        Assert.assertEquals(expected.getMoniker(), actual.getMoniker());
+        Assert.assertEquals(expected.getStartFile(), actual.getStartFile());
+        Assert.assertEquals(expected.getStopCommand(), actual.getStopCommand());
+        Assert.assertEquals(expected.getWarnCommand(), actual.getWarnCommand());
+        Assert.assertEquals(expected.getPort(), actual.getPort());
+        Assert.assertEquals(expected.isAutostart(), actual.isAutostart());
+
+    }
+
+    @Test
+    public void testRoundTrip() {
+
+        SnapshotRepository snapshot = new SnapshotRepository(this.snapshotPath, null);
+
+        List<GameServer> expectedServers = this.database.getAllGameServers();
+        List<GameServer> actualServers = snapshot.getAllGameServers();
+
+        Assert.assertEquals(3, expectedServers.size());
+        Assert.assertEquals(expectedServers.size(), actualServers.size());
+
+        int events = 0;
+
+        for (int i = 0; i < expectedServers.size(); i++) {
+
+            SnapshotRepositoryTest.assertSameServer(expectedServers.get(i), actualServers.get(i));
+
+            List<EventDescriptor> expectedEvents = this.database.getEventDescriptors(expectedServers.get(i));
+            List<EventDescriptor> actualEvents = snapshot.getEventDescriptors(actualServers.get(i));
+
+            Assert.assertEquals(expectedEvents.size(), actualEvents.size());
+
+            for (int j = 0; j < expectedEvents.size(); j++) {
+
+                // Events at the same time can come out in either order, so they are matched up by eid
+                EventDescriptor expected = expectedEvents.get(j);
+                EventDescriptor actual = actualEvents.stream().filter(descriptor -> descriptor.getEid() == expected.getEid()).findFirst().orElseThrow(AssertionError::new);
+
+                Assert.assertEquals(expected.getEventType(), actual.getEventType());
+                Assert.assertEquals(expected.getSecondOfDay(), actual.getSecondOfDay());
+                Assert.assertArrayEquals(expected.getArgs(), actual.getArgs());
+                Assert.assertSame(actualServers.get(i), actual.getGameServer());
+
+                events++;
+
+            }
+
+        }
+
+        Assert.assertEquals(5, events);
+
+        // The arguments that the round trip has to get right, spelled out instead of only being compared to what SQLite returned
+        List<EventDescriptor> survival = snapshot.getEventDescriptors(actualServers.get(0));
+
+        Assert.assertEquals(0, survival.get(0).getArgs().length);
+        Assert.assertArrayEquals(new String[]{"say hi", "say \"bye\""}, survival.get(1).getArgs());
+        Assert.assertArrayEquals(survival.get(1).getArgs(), survival.get(2).getArgs());
+        Assert.assertEquals("Caf\u00e9 \u2615 server", actualServers.get(1).getDescription());
+        Assert.assertTrue(snapshot.getEventDescriptors(actualServers.get(2)).isEmpty());
+
+    }
+
+    @Test
+    public void testForEachEventMatchesTheDescriptors() {
+
+        for (ASCRepository repository : new ASCRepository[]{this.database, new SnapshotRepository(this.snapshotPath, null)}) {
+
+            for (GameServer server : repository.getAllGameServers()) {
+
+                List<EventDescriptor> descriptors = repository.getEventDescriptors(server);
+                List<String[]> rows = new ArrayList<>();
+
+                repository.forEachEvent(server, (eid, eventType, gameServer, secondOfDay, args) -> {
+
+                    EventDescriptor expected = descriptors.get(rows.size());
+
+                    Assert.assertEquals(expected.getEid(), eid);
+                    Assert.assertEquals(expected.getEventType(), eventType);
+                    Assert.assertSame(server, gameServer);
+                    Assert.assertEquals(expected.getSecondOfDay(), secondOfDay);
+                    Assert.assertArrayEquals(expected.getArgs(), args);
+
+                    rows.add(args);
+
+                });
+
+                Assert.assertEquals(descriptors.size(), rows.size());
+
+                // Events 10 and 12 have the same arguments, which are only decoded once
+                if (server.getSid() == 1)
+                    Assert.assertSame(rows.get(1), rows.get(2));
+
+            }
+
+        }
+
+    }
+
+    @Test
+    public void testValidSnapshotIsAccepted() throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(new File(this.snapshotPath).toPath()));
+
+        SnapshotRepository.validate(buffer);
+        SnapshotRepository.verifyChecksum(buffer);
+
+    }
+
+    @Test
+    public void testTruncatedSnapshotIsRejected() throws IOException {
+
+        byte[] bytes = Files.readAllBytes(new File(this.snapshotPath).toPath());
+
+        // Cut off in the string pool, in the event table, and in the header. This is caught from the header alone, without the checksum.
+        for (int length : new int[]{bytes.length - 1, bytes.length / 2, 20}) {
+
+            try {
+
+                SnapshotRepository.validate(ByteBuffer.wrap(Arrays.copyOf(bytes, length)));
+                Assert.fail("A snapshot cut off at " + length + " of " + bytes.length + " bytes was accepted");
+
+            } catch (IOException e) {
+
+                // Expected
+
+            }
+
+        }
+
+    }
+
+    @Test
+    public void testCorruptSnapshotIsRejected() throws IOException {
+
+        byte[] bytes = Files.readAllBytes(new File(this.snapshotPath).toPath());
+
+        // A single flipped bit anywhere after the magic number, including the counts and offsets of the header. Past the header, only the checksum catches it.
+        for (int i = 4; i < bytes.length; i += 3) {
+
+            byte[] corrupt = bytes.clone();
+            corrupt[i] ^= 0x10;
+
+            try {
+
+                ByteBuffer buffer = ByteBuffer.wrap(corrupt);
+
+                SnapshotRepository.validate(buffer);
+                SnapshotRepository.verifyChecksum(buffer);
+                Assert.fail("A snapshot with byte " + i + " of " + bytes.length + " corrupted was accepted");
+
+            } catch (IOException e) {
+
+                // Expected
+
+            }
+
+        }
+
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.nchroniaris.ASC.client.database;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Creates database files for the tests of the repositories, which connect to a path rather than taking a connection.
+ */
+final class TestDatabase {
+
+    private TestDatabase() {
+    }
+
+    /**
+     * Creates a database with the schema as it was before any migrations existed, and brings it up to date, so that the repositories do not have anything to migrate (and log) themselves.
+     *
+     * @param file       The database file, which should not exist yet.
+     * @param statements Any statements to run after the migrations, usually to insert some servers and events.
+     */
+    static void create(File file, String... statements) throws SQLException {
+
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+             Statement statement = connection.createStatement()) {
+
+            statement.executeUpdate("CREATE TABLE servers (sid INTEGER PRIMARY KEY NOT NULL, description TEXT NOT NULL, game TEXT NOT NULL, moniker TEXT NOT NULL, startfile TEXT NOT NULL, stopcommand TEXT NOT NULL, warncommand TEXT NOT NULL, port INTEGER NOT NULL, autostart INTEGER NOT NULL)");
+            statement.executeUpdate("CREATE TABLE eventType (etid INTEGER PRIMARY KEY, label TEXT)");
+            statement.executeUpdate("CREATE TABLE events (eid INTEGER PRIMARY KEY NOT NULL, sid INTEGER NOT NULL REFERENCES servers (sid), time TIME NOT NULL, etype INTEGER NOT NULL REFERENCES eventType (etid), args TEXT NOT NULL DEFAULT '[]')");
+
+            SchemaMigrator.migrate(connection);
+
+            for (String sql : statements)
+                statement.executeUpdate(sql);
+
+        }
+
+    }
+
+}
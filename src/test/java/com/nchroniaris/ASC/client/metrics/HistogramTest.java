@@ -0,0 +1,50 @@
+package com.nchroniaris.ASC.client.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HistogramTest {
+
+    @Test
+    public void bucketsAreWrittenCumulatively() {
+
+        Histogram histogram = new Histogram(1, 10);
+
+        histogram.observeNanos(500_000);
+        histogram.observeNanos(1_000_000);
+        histogram.observeNanos(5_000_000);
+        histogram.observeNanos(50_000_000);
+
+        StringBuilder out = new StringBuilder();
+        histogram.writeSamples(out, "test_seconds", "type=\"start\"");
+
+        assertEquals("test_seconds_bucket{type=\"start\",le=\"0.001\"} 2\n"
+                + "test_seconds_bucket{type=\"start\",le=\"0.01\"} 3\n"
+                + "test_seconds_bucket{type=\"start\",le=\"+Inf\"} 4\n"
+                + "test_seconds_sum{type=\"start\"} 0.0565\n"
+                + "test_seconds_count{type=\"start\"} 4\n", out.toString());
+
+    }
+
+    @Test
+    public void negativeDurationsCountAsZero() {
+
+        Histogram histogram = new Histogram(1);
+        histogram.observeNanos(-5);
+
+        StringBuilder out = new StringBuilder();
+        histogram.writeSamples(out, "test_seconds", "");
+
+        assertTrue(out.toString().startsWith("test_seconds_bucket{le=\"0.001\"} 1\ntest_seconds_bucket{le=\"+Inf\"} 1\ntest_seconds_sum 0.0\n"));
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void boundsMustIncrease() {
+
+        new Histogram(10, 1);
+
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.nchroniaris.ASC.client.model;
+
+import com.nchroniaris.ASC.util.model.GameServer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ServerIndexTest {
+
+    private ServerIndex index;
+
+    private static GameServer server(int sid, String game, String moniker) {
+
+        return new GameServer(sid, "Test server", game, moniker, "/bin/true", "stop", "Stopping in $TIME minutes", 25565, true);
+
+    }
+
+    @Before
+    public void setUp() {
+
+        this.index = new ServerIndex(Arrays.asList(
+                ServerIndexTest.server(3, "minecraft", "survival"),
+                ServerIndexTest.server(1, "minecraft", "creative"),
+                ServerIndexTest.server(2, "factorio", "main"),
+                ServerIndexTest.server(42, "minecraft", "skyblock")
+        ));
+
+    }
+
+    @Test
+    public void serversAreFoundBySidAndSessionName() {
+
+        assertEquals("minecraft_survival", this.index.bySid(3).getSessionName());
+        assertEquals(2, this.index.bySessionName("factorio_main").getSid());
+        assertNull(this.index.bySid(7));
+        assertNull(this.index.bySessionName("factorio"));
+
+    }
+
+    @Test
+    public void allServersAreSortedBySid() {
+
+        List<Integer> sids = new ArrayList<>();
+
+        for (GameServer server : this.index.getAll())
+            sids.add(server.getSid());
+
+        assertEquals(Arrays.asList(1, 2, 3, 42), sids);
+
+    }
+
+    @Test
+    public void prefixesCompleteInAlphabeticalOrder() {
+
+        assertEquals(Arrays.asList("minecraft_creative", "minecraft_skyblock", "minecraft_survival"), this.index.sessionNamesWithPrefix("minecraft_", 10));
+        assertEquals(Arrays.asList("minecraft_skyblock", "minecraft_survival"), this.index.sessionNamesWithPrefix("minecraft_s", 10));
+        assertEquals(Arrays.asList("factorio_main", "minecraft_creative"), this.index.sessionNamesWithPrefix("", 2));
+        assertTrue(this.index.sessionNamesWithPrefix("terraria", 10).isEmpty());
+
+    }
+
+    @Test
+    public void referencesResolveBySidNameOrUniquePrefix() {
+
+        assertEquals(42, this.index.resolve("42").getSid());
+        assertEquals(3, this.index.resolve("minecraft_survival").getSid());
+        assertEquals(3, this.index.resolve("minecraft_su").getSid());
+        assertEquals(2, this.index.resolve("f").getSid());
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ambiguousPrefixesAreRejected() {
+
+        this.index.resolve("minecraft_s");
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownServersAreRejected() {
+
+        this.index.resolve("terraria");
+
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.nchroniaris.ASC.client.schedule;
+
+import com.nchroniaris.ASC.client.model.EventDescriptor;
+import com.nchroniaris.ASC.client.model.EventFactory;
+import com.nchroniaris.ASC.client.multiplexer.RecordingMultiplexer;
+import com.nchroniaris.ASC.util.model.GameServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class EventSchedulerTest {
+
+    private static final GameServer SERVER = new GameServer(1, "Test server", "minecraft", "survival", "/bin/true", "stop", "Stopping in $TIME minutes", 25565, true);
+
+    private EventScheduler scheduler;
+
+    @Before
+    public void setUp() {
+
+        // 12:00:00 on a fixed day, forever
+        Instant noon = LocalDate.of(2020, 8, 22).atTime(12, 0).toInstant(ZoneOffset.UTC);
+        this.scheduler = new EventScheduler(new RecordingMultiplexer(Clock.systemUTC()), Clock.fixed(noon, ZoneOffset.UTC));
+
+    }
+
+    @After
+    public void tearDown() {
+
+        this.scheduler.shutdownNow();
+
+    }
+
+    private static EventDescriptor commandAt(LocalTime time) {
+
+        return new EventDescriptor(1, EventFactory.EVENT_COMMAND, EventSchedulerTest.SERVER, time.toSecondOfDay(), new String[]{"say Hello"});
+
+    }
+
+    @Test
+    public void eventsAreScheduledRelativeToTheClock() {
+
+        List<Future<?>> futures = this.scheduler.scheduleEvents(Arrays.asList(
+                EventSchedulerTest.commandAt(LocalTime.of(13, 0)),
+                EventSchedulerTest.commandAt(LocalTime.of(11, 0))
+        ));
+
+        // The delays are counting down in real time, so they can only be checked to the second
+        assertEquals(TimeUnit.HOURS.toSeconds(1), ((ScheduledFuture<?>) futures.get(0)).getDelay(TimeUnit.SECONDS), 1);
+        assertEquals(TimeUnit.HOURS.toSeconds(23), ((ScheduledFuture<?>) futures.get(1)).getDelay(TimeUnit.SECONDS), 1);
+
+    }
+
+    @Test
+    public void delaysWrapAroundMidnight() {
+
+        assertEquals(0, this.scheduler.calculateDelay(LocalTime.NOON, LocalTime.NOON));
+        assertEquals(TimeUnit.MINUTES.toMillis(1), this.scheduler.calculateDelay(LocalTime.of(0, 0), LocalTime.of(23, 59)));
+        assertEquals(TimeUnit.HOURS.toMillis(24) - 1000, this.scheduler.calculateDelay(LocalTime.of(11, 59, 59), LocalTime.NOON));
+
+    }
+
+    @Test
+    public void aStopCountdownOnlyArmsOneStepAtATime() throws InterruptedException {
+
+        // Every step of the countdown is within the arming window, but only its first warning (at 12:01) should be in the queue, next to the command
+        EventDescriptor countdown = new EventDescriptor(1, EventFactory.EVENT_STOP_COUNTDOWN, EventSchedulerTest.SERVER, LocalTime.of(12, 4).toSecondOfDay(), new String[]{"1", "3", "2"});
+        Future<?> cycle = this.scheduler.scheduleTable(new ScheduleTable(Arrays.asList(countdown, EventSchedulerTest.commandAt(LocalTime.of(12, 2)))));
+
+        // The first window is armed on the executor, so wait for it. Until then the queue only has the task that arms it.
+        for (int i = 0; i < 100 && this.scheduler.getQueueDepth() < 2; i++)
+            Thread.sleep(10);
+
+        assertEquals(2, this.scheduler.getQueueDepth());
+
+        // Cancelling the cycle cancels the countdown, warnings and stop alike
+        assertTrue(cycle.cancel(false));
+        assertEquals(0, this.scheduler.getQueueDepth());
+
+    }
+
+}
@@ -0,0 +1,101 @@
+package com.nchroniaris.ASC.client.schedule;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+
+public class HostPressureTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path proc(String loadavg, String cpuPressure) throws IOException {
+
+        Path proc = this.folder.getRoot().toPath();
+        Files.createDirectories(proc.resolve("pressure"));
+
+        Files.write(proc.resolve("loadavg"), loadavg.getBytes(StandardCharsets.US_ASCII));
+        Files.write(proc.resolve("meminfo"), "MemTotal:       16000000 kB\nMemFree:         1000000 kB\nMemAvailable:    4000000 kB\n".getBytes(StandardCharsets.US_ASCII));
+        Files.write(proc.resolve("pressure").resolve("cpu"), cpuPressure.getBytes(StandardCharsets.US_ASCII));
+        Files.write(proc.resolve("pressure").resolve("io"), "some avg10=0.00 avg60=0.00 avg300=0.00 total=0\nfull avg10=0.00 avg60=0.00 avg300=0.00 total=0\n".getBytes(StandardCharsets.US_ASCII));
+        Files.write(proc.resolve("pressure").resolve("memory"), "some avg10=1.50 avg60=0.00 avg300=0.00 total=0\nfull avg10=0.00 avg60=0.00 avg300=0.00 total=0\n".getBytes(StandardCharsets.US_ASCII));
+
+        return proc;
+
+    }
+
+    @Test
+    public void everyFileIsParsed() throws IOException {
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        HostPressure.Sample sample = new HostPressure(this.proc(processors * 2 + ".00 0.58 0.59 1/467 12345\n", "some avg10=12.34 avg60=0.00 avg300=0.00 total=0\n")).sample();
+
+        assertEquals(2.0, sample.getLoadPerCpu(), 1e-9);
+        assertEquals(12.34, sample.getCpuPressure(), 1e-9);
+        assertEquals(0.0, sample.getIoPressure(), 1e-9);
+        assertEquals(1.5, sample.getMemoryPressure(), 1e-9);
+        assertEquals(25.0, sample.getMemoryAvailablePercent(), 1e-9);
+
+    }
+
+    @Test
+    public void missingFilesAreIgnored() {
+
+        HostPressure pressure = new HostPressure(this.folder.getRoot().toPath().resolve("missing"));
+
+        assertTrue(Double.isNaN(pressure.sample().getLoadPerCpu()));
+        assertNull(new LoadAdmission(pressure, 0, 0, 100, Duration.ofMinutes(1)).overloadReason());
+
+    }
+
+    @Test
+    public void unreadableFilesAreTriedAgain() throws IOException {
+
+        Path proc = this.proc("garbage", "some avg10=12.34 avg60=0.00 avg300=0.00 total=0\n");
+        HostPressure pressure = new HostPressure(proc);
+
+        assertTrue(Double.isNaN(pressure.read().getLoadPerCpu()));
+        assertEquals(12.34, pressure.read().getCpuPressure(), 1e-9);
+
+        Files.write(proc.resolve("loadavg"), "0.00 0.58 0.59 1/467 12345\n".getBytes(StandardCharsets.US_ASCII));
+
+        assertEquals(0.0, pressure.read().getLoadPerCpu(), 1e-9);
+
+    }
+
+    @Test
+    public void missingFilesAreNotReadAgain() throws IOException {
+
+        Path proc = this.folder.getRoot().toPath();
+        HostPressure pressure = new HostPressure(proc);
+
+        assertTrue(Double.isNaN(pressure.read().getLoadPerCpu()));
+
+        // Files do not appear in /proc, so once one is missing, it is not looked for again
+        this.proc("0.00 0.58 0.59 1/467 12345\n", "some avg10=12.34 avg60=0.00 avg300=0.00 total=0\n");
+
+        assertTrue(Double.isNaN(pressure.read().getLoadPerCpu()));
+        assertTrue(Double.isNaN(pressure.read().getCpuPressure()));
+
+    }
+
+    @Test
+    public void theFirstLimitThatIsExceededIsReported() throws IOException {
+
+        HostPressure pressure = new HostPressure(this.proc("0.00 0.00 0.00 1/467 12345\n", "some avg10=55.00 avg60=0.00 avg300=0.00 total=0\n"));
+
+        assertEquals("CPU pressure of 55.0%", new LoadAdmission(pressure, 1.5, 40, 10, Duration.ofMinutes(1)).overloadReason());
+        assertNull(new LoadAdmission(pressure, 1.5, 60, 10, Duration.ofMinutes(1)).overloadReason());
+        assertEquals("only 25.0% of the memory available", new LoadAdmission(pressure, 1.5, 60, 30, Duration.ofMinutes(1)).overloadReason());
+
+    }
+
+}
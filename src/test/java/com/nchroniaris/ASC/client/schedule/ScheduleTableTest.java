@@ -0,0 +1,113 @@
+package com.nchroniaris.ASC.client.schedule;
+
+import com.nchroniaris.ASC.client.model.EventDescriptor;
+import com.nchroniaris.ASC.client.model.EventFactory;
+import com.nchroniaris.ASC.util.model.GameServer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ScheduleTableTest {
+
+    private static final GameServer SURVIVAL = new GameServer(1, "Survival", "minecraft", "survival", "/bin/true", "stop", "say $TIME", 25565, true);
+    private static final GameServer CREATIVE = new GameServer(2, "Creative", "minecraft", "creative", "/bin/true", "stop", "say $TIME", 25566, true);
+
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+
+    @Test
+    public void aBuiltTableIsTheSameAsOneMadeFromDescriptors() {
+
+        Random random = new Random(42);
+        List<EventDescriptor> eventList = new ArrayList<>();
+        ScheduleTable.Builder builder = new ScheduleTable.Builder();
+
+        // Many events at the same few times, so that the order of events at the same time matters
+        for (int eid = 0; eid < 5000; eid++) {
+
+            GameServer server = random.nextBoolean() ? ScheduleTableTest.SURVIVAL : ScheduleTableTest.CREATIVE;
+            int secondOfDay = random.nextInt(50) * 1000;
+            String[] args = (eid % 3 == 0) ? new String[0] : new String[]{"say " + (eid % 7)};
+
+            eventList.add(new EventDescriptor(eid, EventFactory.EVENT_COMMAND, server, secondOfDay, args));
+            builder.add(eid, EventFactory.EVENT_COMMAND, server, secondOfDay, args);
+
+        }
+
+        ScheduleTable expected = new ScheduleTable(eventList);
+        ScheduleTable actual = builder.build();
+
+        assertEquals(eventList.size(), actual.size());
+
+        for (int row = 0; row < actual.size(); row++) {
+
+            assertEquals(expected.getEid(row), actual.getEid(row));
+            assertEquals(expected.getSecondOfDay(row), actual.getSecondOfDay(row));
+            assertSame(expected.getGameServer(row), actual.getGameServer(row));
+            assertArrayEquals(expected.getArgs(row), actual.getArgs(row));
+
+            // Sorted by time, and in the order they were added within the same time
+            if (row > 0) {
+
+                assertTrue(actual.getSecondOfDay(row - 1) <= actual.getSecondOfDay(row));
+
+                if (actual.getSecondOfDay(row - 1) == actual.getSecondOfDay(row))
+                    assertTrue(actual.getEid(row - 1) < actual.getEid(row));
+
+            }
+
+        }
+
+        for (GameServer server : new GameServer[]{ScheduleTableTest.SURVIVAL, ScheduleTableTest.CREATIVE})
+            assertArrayEquals(expected.rowsForServer(server.getSid()), actual.rowsForServer(server.getSid()));
+
+    }
+
+    @Test
+    public void identicalArgumentsAreStoredOnce() {
+
+        ScheduleTable.Builder builder = new ScheduleTable.Builder();
+
+        builder.add(1, EventFactory.EVENT_COMMAND, ScheduleTableTest.SURVIVAL, 10, new String[]{"say hi"});
+        builder.add(2, EventFactory.EVENT_COMMAND, ScheduleTableTest.CREATIVE, 20, new String[]{"say hi"});
+        builder.add(3, EventFactory.EVENT_START, ScheduleTableTest.CREATIVE, ScheduleTableTest.SECONDS_PER_DAY - 1, new String[0]);
+
+        ScheduleTable table = builder.build();
+
+        assertSame(table.getArgs(0), table.getArgs(1));
+        assertEquals(0, table.getArgs(2).length);
+        assertEquals(ScheduleTableTest.SECONDS_PER_DAY - 1, table.getSecondOfDay(2));
+
+    }
+
+    @Test
+    public void commandsAreCompiledOncePerArguments() {
+
+        ScheduleTable.Builder builder = new ScheduleTable.Builder();
+
+        builder.add(1, EventFactory.EVENT_COMMAND, ScheduleTableTest.SURVIVAL, 10, new String[]{"say Welcome to $SERVER"});
+        builder.add(2, EventFactory.EVENT_COMMAND, ScheduleTableTest.CREATIVE, 20, new String[]{"say Welcome to $SERVER"});
+        builder.add(3, EventFactory.EVENT_WARN, ScheduleTableTest.CREATIVE, 30, new String[]{"5"});
+
+        ScheduleTable table = builder.build();
+
+        // One template for both servers, which is only filled in for each of them when their event fires
+        assertSame(table.getCommand(0), table.getCommand(1));
+        assertEquals("say Welcome to Survival", table.getCommand(0).render(table.getGameServer(0), null));
+        assertEquals("say Welcome to Creative", table.getCommand(1).render(table.getGameServer(1), null));
+
+        assertNull(table.getCommand(2));
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void aTimeOutsideOfTheDayIsRejected() {
+
+        new ScheduleTable.Builder().add(1, EventFactory.EVENT_COMMAND, ScheduleTableTest.SURVIVAL, ScheduleTableTest.SECONDS_PER_DAY, new String[]{"say hi"});
+
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.nchroniaris.ASC.client.schedule;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StartAdmissionTest {
+
+    private StartAdmission admission;
+
+    @Before
+    public void setUp() {
+
+        this.admission = new StartAdmission(1, Duration.ofMinutes(10), Duration.ofMinutes(5));
+
+    }
+
+    @After
+    public void tearDown() {
+
+        this.admission.close();
+
+    }
+
+    @Test
+    public void waitingStartsGetTheirSlotsInOrder() {
+
+        List<String> started = new ArrayList<>();
+
+        assertTrue(this.admission.admit(() -> started.add("first"), Runnable::run));
+        assertFalse(this.admission.admit(() -> started.add("second"), Runnable::run));
+        assertFalse(this.admission.admit(() -> started.add("third"), Runnable::run));
+        assertEquals(2, this.admission.getWaiting());
+
+        // The slot of the first start goes straight to the second one
+        this.admission.release();
+        assertEquals(1, this.admission.getStarting());
+        assertEquals(1, this.admission.getWaiting());
+
+        this.admission.release();
+        this.admission.release();
+
+        assertEquals(0, this.admission.getStarting());
+        assertEquals(0, this.admission.getWaiting());
+        assertEquals(List.of("second", "third"), started);
+
+    }
+
+    @Test
+    public void jitterIsBoundedAndTheSameEveryTime() {
+
+        long max = Duration.ofMinutes(10).toMillis();
+
+        for (int sid = 1; sid <= 100; sid++) {
+
+            long jitter = this.admission.jitterMillis(sid);
+
+            assertTrue(jitter >= 0 && jitter <= max);
+            assertEquals(jitter, this.admission.jitterMillis(sid));
+
+        }
+
+        // Servers that are next to each other should not start next to each other
+        assertNotEquals(this.admission.jitterMillis(1), this.admission.jitterMillis(2));
+
+    }
+
+}
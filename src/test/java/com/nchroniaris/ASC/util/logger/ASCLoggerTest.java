@@ -0,0 +1,152 @@
+package com.nchroniaris.ASC.util.logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ASCLoggerTest {
+
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 20_000;
+
+    // This is a HotSpot extension of ThreadMXBean, which is available on every JDK the client runs on
+    private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private File logFile;
+    private ASCLogger logger;
+
+    @Before
+    public void setUp() throws IOException {
+
+        this.logFile = File.createTempFile("ASCLoggerTest", ".log");
+        this.logger = new ASCLogger(this.logFile.getPath());
+
+    }
+
+    @After
+    public void tearDown() {
+
+        this.logger.close();
+        this.logFile.delete();
+
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread so far. Reading this allocates a little by itself, which is why the measurements below average over many iterations.
+     */
+    private static long allocatedBytes() {
+
+        return ASCLoggerTest.THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+
+    }
+
+    /**
+     * The logging that an event does when it fires: a trace line before it runs and an info line with its outcome. The arguments are strings that already exist, like the event string and session name.
+     */
+    private void firePath(String eventString, String sessionName) {
+
+        this.logger.logTrace("Event [%s] - Firing for session '%s'.", eventString, sessionName);
+        this.logger.journalEvent(EventJournal.LEVEL_INFO, 1, 2, 0, "%s - Session '%s'", eventString, sessionName);
+        this.logger.logInfo("Event [%s] - Command sent to session '%s'.", eventString, sessionName);
+
+    }
+
+    private double bytesPerFire() {
+
+        for (int i = 0; i < ASCLoggerTest.WARMUP; i++)
+            this.firePath("Run Command", "survival");
+
+        long before = ASCLoggerTest.allocatedBytes();
+
+        for (int i = 0; i < ASCLoggerTest.ITERATIONS; i++)
+            this.firePath("Run Command", "survival");
+
+        return (double) (ASCLoggerTest.allocatedBytes() - before) / ASCLoggerTest.ITERATIONS;
+
+    }
+
+    @Test
+    public void suppressedMessagesDoNotAllocate() {
+
+        this.logger.setLevel(LogLevel.INFO);
+
+        String eventString = "Run Command";
+        String sessionName = "survival";
+
+        for (int i = 0; i < ASCLoggerTest.WARMUP; i++) {
+
+            this.logger.logTrace("Event [%s] - Firing for session '%s'.", eventString, sessionName);
+            this.logger.logDebug(() -> "never built");
+
+        }
+
+        long before = ASCLoggerTest.allocatedBytes();
+
+        for (int i = 0; i < ASCLoggerTest.ITERATIONS; i++) {
+
+            this.logger.logTrace("Event [%s] - Firing for session '%s'.", eventString, sessionName);
+            this.logger.logDebug(() -> "never built");
+
+        }
+
+        // Reading the counter costs a few hundred bytes, which averages out to much less than the smallest possible allocation (16 bytes) per call
+        double bytesPerCall = (double) (ASCLoggerTest.allocatedBytes() - before) / (2 * ASCLoggerTest.ITERATIONS);
+        assertTrue(String.format("Suppressed log calls allocated %.2f B/op", bytesPerCall), bytesPerCall < 1);
+
+    }
+
+    @Test
+    public void firePathDoesNotAllocateAtInfo() {
+
+        // Only the asynchronous mode can log the INFO line without allocating, since it is formatted on the writer thread. How this compares to TRACE is measured by ASCLoggerBenchmark.
+        this.logger.close();
+        this.logger = new ASCLogger(this.logFile.getPath(), null, true);
+        this.logger.setLevel(LogLevel.INFO);
+
+        double info = this.bytesPerFire();
+        assertTrue(String.format("The event fire path allocated %.2f B/op at INFO", info), info < 1);
+
+    }
+
+    @Test
+    public void messagesBelowTheLevelAreDropped() throws IOException {
+
+        this.logger.setLevel(LogLevel.WARN);
+
+        this.logger.logDebug("debug");
+        this.logger.logInfo("info %s", "formatted");
+        this.logger.logWarning("warning %d", 42);
+        this.logger.logError(() -> "error");
+
+        List<String> lines = Files.readAllLines(this.logFile.toPath());
+
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).endsWith("[WARN]:\twarning 42"));
+        assertTrue(lines.get(1).endsWith("[CRIT]:\terror"));
+
+    }
+
+    @Test
+    public void levelNamesAreParsedIgnoringCase() {
+
+        assertEquals(LogLevel.TRACE, LogLevel.fromName(" trace "));
+        assertEquals(LogLevel.ERROR, LogLevel.fromName("Error"));
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownLevelNamesAreRejected() {
+
+        LogLevel.fromName("verbose");
+
+    }
+
+}
@@ -0,0 +1,156 @@
+package com.nchroniaris.ASC.util.logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class AsyncLogWriterTest {
+
+    // Has to match AsyncLogWriter.CAPACITY, so that the tests below go around the ring more than once
+    private static final int CAPACITY = 8192;
+
+    private static final Pattern DROPPED = Pattern.compile("(\\d+) log lines were dropped because the log buffer was full!");
+
+    private File logFile;
+    private LogFileWriter fileWriter;
+    private AsyncLogWriter writer;
+
+    @Before
+    public void setUp() throws IOException {
+
+        this.logFile = File.createTempFile("AsyncLogWriterTest", ".log");
+        this.fileWriter = new LogFileWriter(this.logFile, 0, false, 0);
+        this.writer = new AsyncLogWriter(this.fileWriter, DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+
+    }
+
+    @After
+    public void tearDown() {
+
+        this.writer.close();
+        this.logFile.delete();
+
+    }
+
+    private List<String> lines() throws IOException {
+
+        return Files.readAllLines(this.logFile.toPath());
+
+    }
+
+    @Test
+    public void linesKeepTheirOrderAcrossLapsOfTheRing() throws IOException, InterruptedException {
+
+        int total = AsyncLogWriterTest.CAPACITY * 3 + 17;
+
+        // Published in chunks that fit, waiting for each to be taken out, so that nothing is dropped on the way around
+        for (int i = 0; i < total; i++) {
+
+            assertTrue(this.writer.publishFormat(System.currentTimeMillis(), "[INFO]:\t", "line %d of %s", i, "test", null));
+
+            if (i % (AsyncLogWriterTest.CAPACITY / 2) == 0)
+                while (this.writer.getQueueDepth() > 0)
+                    Thread.sleep(1);
+
+        }
+
+        this.writer.close();
+
+        List<String> lines = this.lines();
+        assertEquals(total, lines.size());
+
+        for (int i = 0; i < total; i++)
+            assertTrue(lines.get(i), lines.get(i).endsWith("[INFO]:\tline " + i + " of test"));
+
+    }
+
+    @Test
+    public void droppedLinesAreCountedAndReported() throws IOException {
+
+        int total = AsyncLogWriterTest.CAPACITY * 8;
+        int accepted = 0;
+
+        // Holding the lock of the file keeps the writer thread from writing anything, so the ring fills up once it has gathered a batch
+        synchronized (this.fileWriter) {
+
+            for (int i = 0; i < total; i++)
+                if (this.writer.publish(System.currentTimeMillis(), "line " + i))
+                    accepted++;
+
+        }
+
+        this.writer.close();
+
+        int written = 0;
+        long reported = 0;
+
+        for (String line : this.lines()) {
+
+            Matcher matcher = AsyncLogWriterTest.DROPPED.matcher(line);
+
+            if (matcher.find())
+                reported += Long.parseLong(matcher.group(1));
+            else
+                written++;
+
+        }
+
+        assertTrue(accepted < total);
+        assertEquals(accepted, written);
+        assertEquals(total - accepted, reported);
+
+    }
+
+    @Test
+    public void closeWritesOutWhatIsLeft() throws IOException {
+
+        for (int i = 0; i < 100; i++)
+            this.writer.publish(System.currentTimeMillis(), "line " + i);
+
+        // Well before the flush interval is up
+        this.writer.close();
+
+        List<String> lines = this.lines();
+
+        assertEquals(100, lines.size());
+        assertTrue(lines.get(99).endsWith("line 99"));
+
+    }
+
+    @Test
+    public void aLineThatCannotBeFormattedIsWrittenAsIs() throws IOException {
+
+        Object broken = new Object() {
+
+            @Override
+            public String toString() {
+                throw new IllegalStateException("broken");
+            }
+
+        };
+
+        this.writer.publishFormat(System.currentTimeMillis(), "[INFO]:\t", "count %d", "not a number", null, null);
+        this.writer.publishFormat(System.currentTimeMillis(), "[INFO]:\t", "value %s", broken, null, null);
+        this.writer.publishFormat(System.currentTimeMillis(), "[INFO]:\t", "still %s", "working", null, null);
+        this.writer.close();
+
+        List<String> lines = this.lines();
+
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(0), lines.get(0).contains("[WARN]:\t") && lines.get(0).contains("[INFO]:\tcount %d [not a number, null, null]"));
+        assertTrue(lines.get(1), lines.get(1).contains("[WARN]:\t") && lines.get(1).contains("[INFO]:\tvalue %s ["));
+        assertTrue(lines.get(2).endsWith("[INFO]:\tstill working"));
+
+    }
+
+}
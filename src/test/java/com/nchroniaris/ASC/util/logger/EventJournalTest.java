@@ -0,0 +1,119 @@
+package com.nchroniaris.ASC.util.logger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.*;
+
+public class EventJournalTest {
+
+    // More than the initial record mapping holds (65536), and with the messages below, more than the initial message mapping (4 MiB), so both files have to grow
+    private static final int FIRST_BATCH = 70_000;
+    private static final int SECOND_BATCH = 1000;
+
+    private static final int SERVERS = 7;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String message(int i) {
+
+        return String.format("Event %6d - Command sent to session 'game_server_%d', with some padding", i, i % EventJournalTest.SERVERS);
+
+    }
+
+    private static void appendAll(EventJournal journal, int from, int to) {
+
+        for (int i = from; i < to; i++)
+            journal.append(EventJournal.LEVEL_INFO, i % EventJournalTest.SERVERS, 2, 0, EventJournalTest.message(i));
+
+    }
+
+    @Test
+    public void recordsSurviveGrowingAndReopening() throws IOException, InterruptedException {
+
+        String path = this.folder.getRoot().toPath().resolve("ASC.journal").toString();
+
+        try (EventJournal journal = new EventJournal(path)) {
+
+            EventJournalTest.appendAll(journal, 0, EventJournalTest.FIRST_BATCH);
+
+        }
+
+        // Both files were mapped past their initial sizes
+        assertTrue(Files.size(Paths.get(path)) > EventJournal.HEADER_BYTES + 65536L * EventJournal.RECORD_BYTES);
+        assertTrue(Files.size(Paths.get(path + EventJournal.SUFFIX_MESSAGES)) > 4L * 1024 * 1024);
+
+        // Records appended after reopening come strictly after this, so it splits the journal in two
+        Thread.sleep(5);
+        long boundary = System.currentTimeMillis();
+        Thread.sleep(5);
+
+        try (EventJournal journal = new EventJournal(path)) {
+
+            assertEquals(EventJournalTest.FIRST_BATCH, journal.size());
+            EventJournalTest.appendAll(journal, EventJournalTest.FIRST_BATCH, EventJournalTest.FIRST_BATCH + EventJournalTest.SECOND_BATCH);
+
+        }
+
+        try (JournalReader reader = new JournalReader(path)) {
+
+            int total = EventJournalTest.FIRST_BATCH + EventJournalTest.SECOND_BATCH;
+            assertEquals(total, reader.size());
+
+            for (int i = 0; i < total; i += 997) {
+
+                assertEquals(i % EventJournalTest.SERVERS, reader.getSid(i));
+                assertEquals(2, reader.getEventType(i));
+                assertEquals(EventJournal.LEVEL_INFO, reader.getLevel(i));
+                assertEquals(EventJournalTest.message(i), reader.getMessage(i));
+
+            }
+
+            // The records of the second batch are found by time alone
+            assertEquals(EventJournalTest.FIRST_BATCH, reader.firstAtOrAfter(boundary));
+            assertEquals(0, reader.firstAtOrAfter(Long.MIN_VALUE));
+            assertEquals(total, reader.firstAtOrAfter(Long.MAX_VALUE));
+
+            // Every record of one server, then only the ones of the first batch, the same way the command line tool filters
+            int sid = 3;
+            int matches = 0;
+            int matchesBefore = 0;
+
+            for (long i = reader.firstAtOrAfter(Long.MIN_VALUE); i < reader.size(); i++) {
+
+                if (reader.getSid(i) != sid)
+                    continue;
+
+                matches++;
+
+                if (reader.getTimestamp(i) < boundary)
+                    matchesBefore++;
+
+            }
+
+            assertEquals(total / EventJournalTest.SERVERS + (total % EventJournalTest.SERVERS > sid ? 1 : 0), matches);
+            assertEquals(EventJournalTest.FIRST_BATCH / EventJournalTest.SERVERS + (EventJournalTest.FIRST_BATCH % EventJournalTest.SERVERS > sid ? 1 : 0), matchesBefore);
+
+        }
+
+    }
+
+    @Test(expected = IOException.class)
+    public void aFileThatIsNotAJournalIsRejected() throws IOException {
+
+        Path path = this.folder.getRoot().toPath().resolve("not.journal");
+        Files.write(path, new byte[EventJournal.HEADER_BYTES * 2]);
+        Files.write(Paths.get(path + EventJournal.SUFFIX_MESSAGES), new byte[0]);
+
+        new JournalReader(path.toString()).close();
+
+    }
+
+}
@@ -0,0 +1,179 @@
+package com.nchroniaris.ASC.util.logger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+public class LogFileWriterTest {
+
+    private static final int THREADS = 8;
+    private static final int LINES_PER_THREAD = 5000;
+
+    // Small enough that the file rotates a few dozen times while the threads are writing
+    private static final long MAX_BYTES = 32 * 1024;
+
+    private static final Pattern LINE = Pattern.compile("writer \\d+ line \\d+ [a-z]+");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<Path> files() throws IOException {
+
+        List<Path> files = new ArrayList<>();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.folder.getRoot().toPath())) {
+
+            for (Path path : stream)
+                files.add(path);
+
+        }
+
+        return files;
+
+    }
+
+    /**
+     * Waits for the compressor thread to be done, which is once only the live file and compressed segments are left.
+     */
+    private List<Path> awaitCompression(File logFile) throws IOException, InterruptedException {
+
+        long deadline = System.nanoTime() + 30_000_000_000L;
+
+        while (true) {
+
+            List<Path> files = this.files();
+            boolean done = true;
+
+            for (Path path : files)
+                if (!path.getFileName().toString().equals(logFile.getName()) && !path.getFileName().toString().endsWith(".gz"))
+                    done = false;
+
+            if (done)
+                return files;
+
+            assertTrue("The segments were not compressed in time", System.nanoTime() - deadline < 0);
+            Thread.sleep(20);
+
+        }
+
+    }
+
+    private static List<String> readLines(Path path) throws IOException {
+
+        if (!path.getFileName().toString().endsWith(".gz"))
+            return Files.readAllLines(path);
+
+        List<String> lines = new ArrayList<>();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(Files.newInputStream(path)), StandardCharsets.UTF_8))) {
+
+            String line;
+
+            while ((line = reader.readLine()) != null)
+                lines.add(line);
+
+        }
+
+        return lines;
+
+    }
+
+    @Test
+    public void rotatingUnderConcurrentWritersKeepsEveryLineWhole() throws IOException, InterruptedException {
+
+        File logFile = new File(this.folder.getRoot(), "ASC.log");
+        LogFileWriter writer = new LogFileWriter(logFile, LogFileWriterTest.MAX_BYTES, false, 0);
+
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+
+        for (int t = 0; t < LogFileWriterTest.THREADS; t++) {
+
+            int id = t;
+
+            Thread thread = new Thread(() -> {
+
+                try {
+
+                    // Lines of different lengths, so that the rotations do not line up with the lines of any one thread
+                    for (int i = 0; i < LogFileWriterTest.LINES_PER_THREAD; i++)
+                        writer.write(String.format("writer %d line %d %s%n", id, i, "abcdefghijklmnopqrstuvwxyz".substring(0, 1 + (i + id) % 26)).getBytes(StandardCharsets.UTF_8));
+
+                } catch (IOException | RuntimeException e) {
+
+                    synchronized (failures) {
+
+                        failures.add(e);
+
+                    }
+
+                }
+
+            });
+
+            threads.add(thread);
+            thread.start();
+
+        }
+
+        for (Thread thread : threads)
+            thread.join();
+
+        assertEquals(List.of(), failures);
+
+        int lines = 0;
+        int segments = 0;
+
+        for (Path path : this.awaitCompression(logFile)) {
+
+            if (path.getFileName().toString().endsWith(".gz"))
+                segments++;
+
+            for (String line : LogFileWriterTest.readLines(path)) {
+
+                assertTrue(line, LogFileWriterTest.LINE.matcher(line).matches());
+                lines++;
+
+            }
+
+        }
+
+        assertTrue(segments > 1);
+        assertEquals(LogFileWriterTest.THREADS * LogFileWriterTest.LINES_PER_THREAD, lines);
+
+    }
+
+    @Test
+    public void partlyCompressedSegmentsAreDeletedOnStartup() throws IOException {
+
+        File logFile = new File(this.folder.getRoot(), "ASC.log");
+
+        Path orphan = this.folder.getRoot().toPath().resolve("ASC.log.2020-08-22.3.gz.tmp");
+        Path unrelated = this.folder.getRoot().toPath().resolve("other.log.2020-08-22.3.gz.tmp");
+
+        Files.write(orphan, new byte[]{31, -117});
+        Files.write(unrelated, new byte[]{31, -117});
+
+        new LogFileWriter(logFile, LogFileWriterTest.MAX_BYTES, false, 0);
+
+        assertFalse(Files.exists(orphan));
+        assertTrue(Files.exists(unrelated));
+
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.nchroniaris.ASC.util.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CommandTemplateTest {
+
+    private static final GameServer SERVER = new GameServer(7, "Survival world", "minecraft", "survival", "/bin/true", "stop", "say Stopping in $TIME minutes", 25565, true);
+
+    @Test
+    public void everyVariableIsFilledIn() {
+
+        CommandTemplate template = CommandTemplate.compile("$SERVER ($GAME/$MONIKER, #$SID) on $PORT as $SESSION in $TIME");
+
+        assertEquals("Survival world (minecraft/survival, #7) on 25565 as minecraft_survival in 5", template.render(CommandTemplateTest.SERVER, "5"));
+
+    }
+
+    @Test
+    public void unknownVariablesAndMissingTimeAreLeftAsTheyAre() {
+
+        CommandTemplate template = CommandTemplate.compile("say $$5 for $TIME at $HOME$");
+
+        assertEquals("say $$5 for $TIME at $HOME$", template.render(CommandTemplateTest.SERVER, null));
+
+    }
+
+    @Test
+    public void variablesCanBeFollowedByText() {
+
+        // This is how $TIME behaved before there were templates, when it was a plain String.replace()
+        CommandTemplate template = CommandTemplate.compile("$TIMEs left, $PORTS");
+
+        assertEquals("15s left, 25565S", template.render(CommandTemplateTest.SERVER, "15"));
+
+    }
+
+    @Test
+    public void renderingAppendsToTheBuilder() {
+
+        StringBuilder out = new StringBuilder("> ");
+        CommandTemplateTest.SERVER.getWarnTemplate().render(out, CommandTemplateTest.SERVER, "1");
+
+        assertEquals("> say Stopping in 1 minutes", out.toString());
+
+    }
+
+}